@@ -0,0 +1,160 @@
+package rs.emulate.lynx;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.security.CodeSigner;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.logging.Logger;
+
+/**
+ * Verifies the signature of a gamepack, checking the digest of every entry against the signed manifest. The
+ * verification can either be performed on the calling thread with {@link #verify}, or on a separate thread with
+ * {@link #start}, in which case {@link #await} must be called before the result is trusted.
+ *
+ * @author Major
+ */
+public final class GamepackVerifier {
+
+	/**
+	 * The logger for this class.
+	 */
+	private static final Logger logger = Logger.getLogger(GamepackVerifier.class.getSimpleName());
+
+	/**
+	 * The size of the buffer used to read each entry, in bytes.
+	 */
+	private static final int BUFFER_SIZE = 8 * 1024;
+
+	/**
+	 * Returns whether or not the entry with the specified name is part of the signature itself (i.e. in the
+	 * {@code META-INF} directory), and so is not signed.
+	 *
+	 * @param name The name of the entry.
+	 * @return {@code true} if the entry is part of the signature, {@code false} if not.
+	 */
+	private static boolean isSignature(String name) {
+		return name.toUpperCase().startsWith("META-INF/");
+	}
+
+	/**
+	 * The Path to the gamepack.
+	 */
+	private final Path gamepack;
+
+	/**
+	 * The FutureTask verifying the gamepack, or {@code null} if verification has not been started.
+	 */
+	private FutureTask<Void> task;
+
+	/**
+	 * Creates the GamepackVerifier.
+	 *
+	 * @param gamepack The {@link Path} to the gamepack.
+	 */
+	public GamepackVerifier(Path gamepack) {
+		this.gamepack = gamepack;
+	}
+
+	/**
+	 * Waits for the verification started by {@link #start} to finish, rethrowing its failure.
+	 *
+	 * @throws IOException If the gamepack could not be read, or its signature did not verify.
+	 * @throws IllegalStateException If verification has not been started.
+	 */
+	public void await() throws IOException {
+		if (task == null) {
+			throw new IllegalStateException("Verification has not been started.");
+		}
+
+		try {
+			task.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while waiting for the gamepack to be verified.", e);
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof IOException) {
+				throw (IOException) cause;
+			} else if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+
+			throw new IOException("Error verifying the gamepack.", cause);
+		}
+	}
+
+	/**
+	 * Starts verifying the gamepack on a separate (daemon) thread.
+	 */
+	public void start() {
+		if (task != null) {
+			throw new IllegalStateException("Verification has already been started.");
+		}
+
+		task = new FutureTask<>(() -> {
+			verify();
+			return null;
+		});
+
+		Thread thread = new Thread(task, "GamepackVerifier");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * Verifies the gamepack on the calling thread. Every entry is read in full, which causes {@link JarFile} to check
+	 * its digest against the manifest (throwing a {@link SecurityException} if it does not match). If the gamepack is
+	 * signed, every entry (other than those in {@code META-INF}) must also be signed.
+	 *
+	 * @throws IOException If the gamepack could not be read, or its signature did not verify.
+	 */
+	public void verify() throws IOException {
+		long start = System.nanoTime();
+
+		try (JarFile jar = new JarFile(gamepack.toFile(), true)) {
+			List<JarEntry> entries = new ArrayList<>();
+			boolean signed = false;
+			byte[] buffer = new byte[BUFFER_SIZE];
+
+			for (Enumeration<JarEntry> iterator = jar.entries(); iterator.hasMoreElements();) {
+				JarEntry entry = iterator.nextElement();
+				String name = entry.getName();
+				signed |= isSignature(name) && name.toUpperCase().endsWith(".SF");
+
+				try (InputStream input = jar.getInputStream(entry)) {
+					while (input.read(buffer, 0, buffer.length) != -1) {
+						// Reading the entry is all that is required to verify its digest.
+					}
+				}
+
+				entries.add(entry);
+			}
+
+			if (!signed) {
+				logger.fine("The gamepack " + gamepack + " is not signed, so only its structure was verified.");
+				return;
+			}
+
+			for (JarEntry entry : entries) {
+				String name = entry.getName();
+				CodeSigner[] signers = entry.getCodeSigners();
+
+				if (!entry.isDirectory() && !isSignature(name) && (signers == null || signers.length == 0)) {
+					throw new IOException("The gamepack entry " + name + " is not signed.");
+				}
+			}
+		} catch (SecurityException e) {
+			throw new IOException("The signature of the gamepack is invalid.", e);
+		}
+
+		logger.fine("Verified the gamepack in " + (System.nanoTime() - start) / 1_000_000 + "ms.");
+	}
+
+}
@@ -1,28 +1,24 @@
 package rs.emulate.lynx;
 
 import java.io.BufferedInputStream;
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.Closeable;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.nio.ByteBuffer;
 import java.nio.file.Path;
 import java.security.GeneralSecurityException;
-import java.util.Base64;
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
 import java.util.jar.JarEntry;
-import java.util.jar.JarFile;
 import java.util.jar.JarInputStream;
-import java.util.jar.JarOutputStream;
-import java.util.jar.Pack200;
 import java.util.zip.GZIPInputStream;
-import java.util.zip.ZipEntry;
 
-import javax.crypto.Cipher;
-import javax.crypto.spec.IvParameterSpec;
-import javax.crypto.spec.SecretKeySpec;
+import rs.emulate.lynx.crypto.DecryptionStrategy;
+import rs.emulate.lynx.pack.ClassArena;
+import rs.emulate.lynx.pack.SegmentedUnpacker;
+import rs.emulate.lynx.pipeline.Pipeline;
+import rs.emulate.lynx.zip.MappedZipFile;
 
 /**
  * Decrypts the {@code inner.pack.gz} archive in the {@code gamepack} jar file.
@@ -32,129 +28,257 @@ import javax.crypto.spec.SecretKeySpec;
 public final class InnerPackDecrypter implements Closeable {
 
 	/**
-	 * The key returned if an empty (i.e. {@code length == 0} string is decrypted.
+	 * An {@link InputStream} that reads the remaining data of a {@link ByteBuffer}.
 	 */
-	private static final byte[] EMPTY_KEY = new byte[0];
+	private static final class BufferInputStream extends InputStream {
+
+		/**
+		 * The ByteBuffer to read from.
+		 */
+		private final ByteBuffer buffer;
+
+		/**
+		 * Creates the BufferInputStream.
+		 * 
+		 * @param buffer The {@link ByteBuffer} to read from. Its position is advanced as it is read.
+		 */
+		private BufferInputStream(ByteBuffer buffer) {
+			this.buffer = buffer;
+		}
+
+		@Override
+		public int available() {
+			return buffer.remaining();
+		}
+
+		@Override
+		public int read() {
+			return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+		}
+
+		@Override
+		public int read(byte[] bytes, int offset, int length) {
+			if (length == 0) {
+				return 0;
+			} else if (!buffer.hasRemaining()) {
+				return -1;
+			}
+
+			int count = Math.min(length, buffer.remaining());
+			buffer.get(bytes, offset, count);
+			return count;
+		}
+
+	}
+
+	/**
+	 * The size of the buffer used when inflating the decrypted archive, in bytes.
+	 */
+	private static final int INFLATER_BUFFER_SIZE = 64 * 1024;
 
 	/**
-	 * The encoded secret key for the AES block cipher.
+	 * The size of each chunk in the pipes between the stages of decryption, in bytes.
 	 */
-	private final String encodedSecret;
+	private static final int PIPE_CHUNK_SIZE = 64 * 1024;
 
 	/**
-	 * The encoded initialisation vector for the AES block cipher.
+	 * The amount of chunks in each pipe between the stages of decryption.
 	 */
-	private final String encodedVector;
+	private static final int PIPE_CHUNKS = 8;
 
 	/**
-	 * The input stream to the {@code inner.pack.gz} file.
+	 * The size of the buffer used by each stage of decryption, in bytes.
+	 */
+	private static final int STAGE_BUFFER_SIZE = 64 * 1024;
+
+	/**
+	 * Copies the data read from the specified {@link InputStream} to the {@link OutputStream}.
+	 * 
+	 * @param input The InputStream.
+	 * @param output The OutputStream.
+	 * @throws IOException If there is an error reading or writing the data.
+	 */
+	private static void copy(InputStream input, OutputStream output) throws IOException {
+		byte[] buffer = new byte[STAGE_BUFFER_SIZE];
+		int read;
+
+		while ((read = input.read(buffer, 0, buffer.length)) != -1) {
+			output.write(buffer, 0, read);
+		}
+	}
+
+	/**
+	 * Advances the specified {@link JarInputStream} to the {@code inner.pack.gz} entry.
+	 * 
+	 * @param jar The JarInputStream.
+	 * @return The JarInputStream, positioned at the start of the {@code inner.pack.gz} entry.
+	 * @throws IOException If there is an error reading from the stream, or if it does not contain the entry.
+	 */
+	private static InputStream seek(JarInputStream jar) throws IOException {
+		for (JarEntry entry = jar.getNextJarEntry(); entry != null; entry = jar.getNextJarEntry()) {
+			if (entry.getName().equals(LynxConstants.ENCRYPTED_ARCHIVE_NAME)) {
+				return jar;
+			}
+		}
+
+		jar.close();
+		throw new IOException("The gamepack does not contain " + LynxConstants.ENCRYPTED_ARCHIVE_NAME + ".");
+	}
+
+	/**
+	 * The data of the {@code inner.pack.gz} file, or {@code null} if the gamepack is being read from a stream.
+	 */
+	private final ByteBuffer archive;
+
+	/**
+	 * The input stream to the {@code inner.pack.gz} file (which supports marking), or {@code null} if the gamepack is
+	 * memory-mapped.
 	 */
 	private final InputStream input;
 
 	/**
-	 * The gamepack jar file.
+	 * The memory-mapped gamepack, or {@code null} if the gamepack is being read from a stream.
 	 */
-	private final JarFile jar;
+	private final MappedZipFile zip;
 
 	/**
-	 * Creates the inner pack decrypter.
+	 * Creates the inner pack decrypter. The gamepack is memory-mapped, so if the {@code inner.pack.gz} entry is stored,
+	 * it is decrypted straight from the mapping; if it is deflated, it is inflated into a direct buffer first.
 	 * 
 	 * @param gamepack The {@link Path} to the gamepack jar.
-	 * @param secret The encoded secret key.
-	 * @param vector The encoded initialisation vector.
-	 * @throws IOException If the path to the gamepack is invalid.
+	 * @throws IOException If the path to the gamepack is invalid, or if it does not contain the encrypted archive.
 	 */
-	public InnerPackDecrypter(Path gamepack, String secret, String vector) throws IOException {
-		this.encodedSecret = secret;
-		this.encodedVector = vector;
-		this.jar = new JarFile(gamepack.toFile());
+	public InnerPackDecrypter(Path gamepack) throws IOException {
+		this.zip = new MappedZipFile(gamepack);
+		this.input = null;
 
-		ZipEntry archive = jar.getEntry(LynxConstants.ENCRYPTED_ARCHIVE_NAME);
-		this.input = new BufferedInputStream(jar.getInputStream(archive));
+		try {
+			this.archive = zip.read(LynxConstants.ENCRYPTED_ARCHIVE_NAME);
+		} catch (IOException e) {
+			zip.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Creates the inner pack decrypter, reading the gamepack from a stream (e.g. while it is being downloaded). The
+	 * local headers of the gamepack are read until the {@code inner.pack.gz} entry is reached, so that it may be
+	 * decrypted without waiting for the rest of the gamepack.
+	 * 
+	 * @param gamepack The {@link InputStream} of the gamepack jar. Closing the decrypter closes this stream.
+	 * @throws IOException If there is an error reading the gamepack, or if it does not contain the encrypted archive.
+	 */
+	public InnerPackDecrypter(InputStream gamepack) throws IOException {
+		this.zip = null;
+		this.archive = null;
+		this.input = new BufferedInputStream(seek(new JarInputStream(gamepack)), STAGE_BUFFER_SIZE); // For peek.
 	}
 
 	@Override
 	public void close() throws IOException {
-		input.close();
-		jar.close();
+		if (input != null) {
+			input.close();
+		}
+
+		if (zip != null) {
+			zip.close();
+		}
 	}
 
 	/**
-	 * Decrypts the {@code inner.pack.gz} archive using the AES cipher. The decrypted data is then de-gzipped and
-	 * unpacked from the pack200 format, before finally being split into a {@link ByteBuffer} per class. The data is
-	 * then returned as a {@link Map} of class names to byte buffers.
+	 * Decrypts the {@code inner.pack.gz} archive using the specified {@link DecryptionStrategy}. The decrypted data is
+	 * de-gzipped and unpacked from the pack200 format as it is decrypted, before finally being split into a
+	 * {@link ByteBuffer} per class. The data is then returned as a {@link ClassArena}: a {@link Map} of class names to
+	 * byte buffers, backed by a single off-heap slab.
+	 * <p>
+	 * Reading, decrypting and inflating each run on their own thread, connected by bounded pipes, so that they overlap
+	 * with each other and with unpacking (on the calling thread). The time each stage spent running and idle is
+	 * printed once the archive has been unpacked.
+	 * <p>
+	 * The segments of the archive are unpacked concurrently by a {@link SegmentedUnpacker}, which places each class
+	 * straight into the map: the unpacked jar is never encoded, so no class is deflated only to be inflated again.
 	 * 
-	 * @return The Map of Class names to the ByteBuffers containing their data.
+	 * @param strategy The DecryptionStrategy.
+	 * @return The frozen ClassArena of class names to the ByteBuffers containing their data.
 	 * @throws GeneralSecurityException If there is some sort of security error.
 	 * @throws IOException If there is an error reading from or writing to any of the various streams used.
 	 */
-	public Map<String, ByteBuffer> decrypt() throws GeneralSecurityException, IOException {
-		byte[] secretKey = (encodedSecret.length() == 0) ? EMPTY_KEY : decodeBase64(encodedSecret);
-		byte[] initialisationVector = (encodedVector.length() == 0) ? EMPTY_KEY : decodeBase64(encodedVector);
+	public ClassArena decrypt(DecryptionStrategy strategy) throws GeneralSecurityException, IOException {
+		System.out.println("Decrypting the archive with " + strategy.getName() + ".");
 
-		Cipher cipher = Cipher.getInstance("AES/CBC/PKCS5Padding");
-		SecretKeySpec secret = new SecretKeySpec(secretKey, "AES");
-		IvParameterSpec vector = new IvParameterSpec(initialisationVector);
+		Pipeline pipeline = new Pipeline(input, PIPE_CHUNKS, PIPE_CHUNK_SIZE);
+		if (archive != null) { // The cipher reads straight from the mapping, so there is no need for a read stage.
+			pipeline.add("decrypt", (in, out) -> strategy.decrypt(archive.duplicate(), out));
+		} else {
+			pipeline.add("read", InnerPackDecrypter::copy);
+			pipeline.add("decrypt", (in, out) -> strategy.decrypt(in, out));
+		}
 
-		cipher.init(Cipher.DECRYPT_MODE, secret, vector);
+		pipeline.add("inflate", (in, out) -> copy(new GZIPInputStream(in, INFLATER_BUFFER_SIZE), out));
 
-		byte[] buffer = new byte[LynxConstants.BUFFER_SIZE];
-		int read = 0, in = 0;
+		SegmentedUnpacker unpacker = new SegmentedUnpacker(ForkJoinPool.commonPool());
+		long start = System.nanoTime();
+		ClassArena classes;
 
-		while (read < buffer.length && (in = input.read(buffer, read, buffer.length - read)) != -1) {
-			read += in;
+		try (InputStream archive = pipeline.start()) {
+			classes = unpacker.unpack(archive);
+		} catch (IOException | RuntimeException e) {
+			pipeline.abort(); // The cause of e is the failure of the stage that broke the pipeline, if any.
+			throw e;
 		}
 
-		System.out.println("Decrypting the archive.");
+		long elapsed = System.nanoTime() - start;
+		pipeline.await();
+		pipeline.report("unpack", elapsed);
 
-		byte[] decrypted = cipher.doFinal(buffer, 0, read);
-		ByteArrayOutputStream bos = new ByteArrayOutputStream(LynxConstants.BUFFER_SIZE);
+		unpacker.getResources().forEach(System.out::println);
+		return classes;
+	}
 
-		try (JarOutputStream jar = new JarOutputStream(bos);
-				GZIPInputStream gzip = new GZIPInputStream(new ByteArrayInputStream(decrypted))) {
-			Pack200.newUnpacker().unpack(gzip, jar);
+	/**
+	 * Reads the first bytes of the encrypted {@code inner.pack.gz} archive, without consuming them, so that a
+	 * {@link DecryptionStrategy} can be checked before the archive is decrypted.
+	 * 
+	 * @param length The maximum amount of bytes to read.
+	 * @return The read-only {@link ByteBuffer} containing the bytes, which may be shorter than the length if the
+	 *         archive is.
+	 * @throws IOException If there is an error reading the archive.
+	 */
+	public ByteBuffer peek(int length) throws IOException {
+		if (archive != null) {
+			ByteBuffer prefix = archive.duplicate();
+			prefix.limit(prefix.position() + Math.min(length, prefix.remaining()));
+			return prefix.slice().asReadOnlyBuffer();
 		}
 
-		Map<String, ByteBuffer> classes = new HashMap<>();
-
-		try (JarInputStream jar = new JarInputStream(new ByteArrayInputStream(bos.toByteArray()))) {
-			for (JarEntry entry = jar.getNextJarEntry(); entry != null; entry = jar.getNextJarEntry()) {
-				String name = entry.getName();
-				if (!name.endsWith(".class")) {
-					System.out.println(name);
-					continue;
-				}
-
-				read = in = 0;
-				while (read < buffer.length && (in = jar.read(buffer, read, buffer.length - read)) != -1) {
-					read += in;
-				}
+		byte[] prefix = new byte[length];
+		int offset = 0;
+		input.mark(length);
 
-				ByteBuffer data = ByteBuffer.allocate(read);
-				data.put(buffer, 0, read).flip();
-				classes.put(name, data);
+		try {
+			int read;
+			while (offset < length && (read = input.read(prefix, offset, length - offset)) != -1) {
+				offset += read;
 			}
+		} finally {
+			input.reset();
 		}
 
-		return classes;
+		return ByteBuffer.wrap(prefix, 0, offset).slice().asReadOnlyBuffer();
 	}
 
 	/**
-	 * Decodes the base64 string into a valid secret key or initialisation vector.
-	 * <p>
-	 * Jagex use a slightly different variant of base 64, where '+' and '/' are replaced with '*' and '-', so we replace
-	 * those before passing it to the decoder. This is similar to the <a
-	 * href="https://tools.ietf.org/html/rfc4648#page-7">Base 64 Encoding with URL and Filename Safe Alphabet</a>
-	 * variant of Base 64 (but uses '*' in place of '_').
+	 * Opens the {@code inner.pack.gz} archive, returning an {@link InputStream} of the pack200 data, which is
+	 * decrypted and de-gzipped as it is read. Unlike {@link #decrypt}, everything is done on the calling thread.
 	 * 
-	 * @param string The String to decode.
-	 * @return The key, as a byte array.
+	 * @param strategy The {@link DecryptionStrategy} used to decrypt the archive.
+	 * @return The InputStream.
+	 * @throws GeneralSecurityException If the decryption could not be initialised.
+	 * @throws IOException If there is an error reading the gzip header.
 	 */
-	private byte[] decodeBase64(String string) {
-		String valid = string.replace('*', '+').replace('-', '/');
-
-		Base64.Decoder base64 = Base64.getDecoder();
-		return base64.decode(valid);
+	public InputStream open(DecryptionStrategy strategy) throws GeneralSecurityException, IOException {
+		InputStream source = (archive != null) ? new BufferInputStream(archive.duplicate()) : input;
+		return new GZIPInputStream(strategy.open(source), INFLATER_BUFFER_SIZE);
 	}
 
 }
\ No newline at end of file
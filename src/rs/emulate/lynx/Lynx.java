@@ -1,32 +1,61 @@
 package rs.emulate.lynx;
 
-import java.io.BufferedInputStream;
-import java.io.BufferedOutputStream;
 import java.io.BufferedWriter;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStream;
 import java.net.URL;
 import java.nio.ByteBuffer;
-import java.nio.channels.FileChannel;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.FileAlreadyExistsException;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.StandardOpenOption;
+import java.nio.file.StandardCopyOption;
+import java.security.GeneralSecurityException;
+import java.security.Provider;
+import java.time.Duration;
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
-import java.util.jar.JarOutputStream;
+import java.util.concurrent.ForkJoinPool;
 import java.util.logging.Logger;
-import java.util.zip.ZipEntry;
 
 import rs.emulate.lynx.args.ArgumentParser;
 import rs.emulate.lynx.args.Arguments;
 import rs.emulate.lynx.args.ClientSource;
+import rs.emulate.lynx.args.OutputTarget;
+import rs.emulate.lynx.args.OutputType;
+import rs.emulate.lynx.args.VerificationMode;
+import rs.emulate.lynx.crypto.AesCbcStrategy;
+import rs.emulate.lynx.crypto.CipherProviders;
+import rs.emulate.lynx.crypto.DecryptionStrategy;
+import rs.emulate.lynx.crypto.KeyProbe;
 import rs.emulate.lynx.net.ClientVersionWorker;
 import rs.emulate.lynx.net.Crawler;
+import rs.emulate.lynx.net.Downloader;
+import rs.emulate.lynx.net.HttpCache;
+import rs.emulate.lynx.net.StreamingDownload;
 import rs.emulate.lynx.net.Js5Constants;
+import rs.emulate.lynx.output.ClassHashes;
+import rs.emulate.lynx.output.DirectorySink;
+import rs.emulate.lynx.output.FanOutSink;
+import rs.emulate.lynx.output.JarSink;
+import rs.emulate.lynx.output.MemorySink;
+import rs.emulate.lynx.output.NullSink;
+import rs.emulate.lynx.output.OutputSink;
+import rs.emulate.lynx.output.TarSink;
+import rs.emulate.lynx.pack.ClassArena;
+import rs.emulate.lynx.pack.Packers;
+import rs.emulate.lynx.store.ArchiveSink;
+import rs.emulate.lynx.store.ObjectStore;
+import rs.emulate.lynx.store.RevisionArchive;
+import rs.emulate.lynx.store.RevisionCompactor;
+import rs.emulate.lynx.store.StoreSink;
+import rs.emulate.lynx.zip.JarWriter;
 
 /**
  * Retrieves and decrypts the Runescape game client.
@@ -44,6 +73,8 @@ public final class Lynx {
 		try {
 			logger.fine("Creating directories: " + LynxConstants.SAVE_DIRECTORY);
 			Files.createDirectories(LynxConstants.SAVE_DIRECTORY);
+			Files.createDirectories(LynxConstants.DOWNLOAD_DIRECTORY);
+			Files.createDirectories(LynxConstants.CACHE_DIRECTORY);
 		} catch (IOException e) {
 			throw new ExceptionInInitializerError("Could not create directories: " + e.getMessage());
 		}
@@ -64,7 +95,7 @@ public final class Lynx {
 			System.exit(1);
 		}
 
-		Lynx lynx = new Lynx(parser.getOrDefault(Arguments.IDENTIFY_VERSION), parser.getOrDefault(Arguments.GAMEPACK_SOURCE));
+		Lynx lynx = new Lynx(parser);
 
 		try {
 			lynx.run();
@@ -79,31 +110,23 @@ public final class Lynx {
 	}
 
 	/**
-	 * Downloads the gamepack file, saving it in the {@link LynxConstants#SAVE_DIRECTORY}.
+	 * Downloads the gamepack file, saving it to the specified {@link Path}.
 	 * 
 	 * @param url The {@link URL} to download from.
-	 * @param directory The directory to store the {@code gamepack} in.
-	 * @return The path to the {@code gamepack} file.
+	 * @param gamepack The Path to save the {@code gamepack} to.
+	 * @return {@code true} if the {@code gamepack} was downloaded, {@code false} if it has not changed since it was
+	 *         last downloaded.
 	 * @throws IOException If there is an error downloading the {@code gamepack} file.
 	 */
-	private Path downloadGamepack(URL url, Path directory) throws IOException {
-		String name = source.isEncrypted() ? "gamepack.jar" : "client.jar";
-		Path gamepack = directory.resolve(name);
-		System.out.println("Downloading " + source.getPrettyName() + " " + name + " to " + directory);
-
-		try (InputStream is = new BufferedInputStream(url.openStream());
-				OutputStream os = new BufferedOutputStream(Files.newOutputStream(gamepack, StandardOpenOption.TRUNCATE_EXISTING,
-						StandardOpenOption.CREATE))) {
+	private boolean downloadGamepack(URL url, Path gamepack) throws IOException {
+		Path name = gamepack.getFileName();
+		System.out.println("Downloading " + source.getPrettyName() + " " + name + ".");
 
-			int read;
-			while ((read = is.read()) != -1) {
-				os.write(read);
-			}
+		try {
+			return downloader.download(url, gamepack);
 		} catch (IOException e) {
 			throw new IOException("Error retrieving " + name + " - please report.", e);
 		}
-
-		return gamepack;
 	}
 
 	/**
@@ -136,87 +159,172 @@ public final class Lynx {
 	}
 
 	/**
-	 * Writes the classes to the specified directory.
-	 * 
-	 * @param classes The {@link Map} of class names to {@link ByteBuffer}s.
-	 * @param directory The {@link Path} to the directory to store the classes in.
-	 * @throws IOException If there is an error writing the classes to files.
+	 * Indicates whether the classes should be added to the revision archive.
 	 */
-	private static void writeClasses(Map<String, ByteBuffer> classes, Path directory) throws IOException {
-		for (Entry<String, ByteBuffer> entry : classes.entrySet()) {
-			String name = entry.getKey();
-			Path path = directory.resolve(name);
+	private final boolean archive;
 
-			if (name.contains("/")) {
-				Files.createDirectories(path.getParent());
-			}
+	/**
+	 * The HttpCache used to avoid downloading unchanged pages and gamepacks, or {@code null} if caching is disabled.
+	 */
+	private final HttpCache cache;
 
-			try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE, StandardOpenOption.CREATE)) {
-				ByteBuffer buffer = entry.getValue();
-				channel.write(buffer);
-			} catch (Exception e) {
-				throw new IllegalStateException(
-						"Error writing classes to file - please ensure this program has write permissions.", e);
-			}
-		}
-	}
+	/**
+	 * The amount of revisions between full snapshots in the revision archive.
+	 */
+	private final int checkpoint;
 
 	/**
-	 * Writes the class data to a jar file with the specified name.
-	 * 
-	 * @param classes The {@link Map} of class names to {@link ByteBuffer}s.
-	 * @param directory The {@link Path} to the directory to store the jar file in.
-	 * @param name The name of the jar file.
-	 * @throws IOException If there is an error writing to the jar file.
+	 * The age, in days, after which revisions are compacted, or {@code 0} if they are not.
 	 */
-	private static void writeJar(Map<String, ByteBuffer> classes, Path directory, String name) throws IOException {
-		Path jar = directory.resolve(name);
+	private final int compact;
 
-		try (JarOutputStream jos = new JarOutputStream(new BufferedOutputStream(Files.newOutputStream(jar)))) {
-			for (Entry<String, ByteBuffer> entry : classes.entrySet()) {
-				ZipEntry zip = new ZipEntry(entry.getKey());
+	/**
+	 * The name of the security provider used to decrypt the gamepack, or {@link CipherProviders#AUTOMATIC}.
+	 */
+	private final String cipherProvider;
 
-				jos.putNextEntry(zip);
-				jos.write(entry.getValue().array());
-			}
-		} catch (Exception e) {
-			throw new IllegalStateException("Error writing classes to jar - please ensure this program has write permissions.", e);
-		}
-	}
+	/**
+	 * The compression level of the classes in the client jar, or {@link JarWriter#STORED}.
+	 */
+	private final int compression;
+
+	/**
+	 * The Downloader used to download the gamepack.
+	 */
+	private final Downloader downloader;
 
 	/**
 	 * Indicates whether to identify the current client version, or to use the current date instead.
 	 */
 	private final boolean identifyVersion;
 
+	/**
+	 * Indicates whether class files that are unchanged since the previous revision should be linked to.
+	 */
+	private final boolean incremental;
+
+	/**
+	 * Indicates whether the client jar should contain a jar index.
+	 */
+	private final boolean index;
+
+	/**
+	 * The name of the revision to materialise from the class store or revision archive, or {@code null} to download
+	 * the gamepack.
+	 */
+	private final String materialize;
+
+	/**
+	 * The List of outputs the classes are written to.
+	 */
+	private final List<OutputTarget> outputs;
+
+	/**
+	 * Indicates whether the client jar should be reproducible.
+	 */
+	private final boolean reproducible;
+
 	/**
 	 * The GamepackSource to download the gamepack from.
 	 */
 	private final ClientSource source;
 
+	/**
+	 * The channel to standard output, if an output is streamed to it, or {@code null}.
+	 */
+	private final WritableByteChannel standardOutput;
+
+	/**
+	 * Indicates whether the classes should be added to the class store.
+	 */
+	private final boolean store;
+
+	/**
+	 * Indicates whether to decrypt the gamepack while it is being downloaded, rather than after.
+	 */
+	private final boolean stream;
+
+	/**
+	 * The VerificationMode used to verify the signature of the gamepack.
+	 */
+	private final VerificationMode verification;
+
+	/**
+	 * The maximum amount of class files written concurrently.
+	 */
+	private final int writers;
+
 	/**
 	 * Creates Lynx.
 	 * 
-	 * @param identifyVersion Whether or not the current client version should be identified.
-	 * @param source The {@link ClientSource} to download the gamepack from.
+	 * @param arguments The parsed {@link ArgumentParser} containing the application arguments.
 	 */
-	public Lynx(boolean identifyVersion, ClientSource source) {
-		this.identifyVersion = identifyVersion;
-		this.source = source;
+	public Lynx(ArgumentParser arguments) {
+		this.identifyVersion = arguments.getOrDefault(Arguments.IDENTIFY_VERSION);
+		this.source = arguments.getOrDefault(Arguments.GAMEPACK_SOURCE);
+		this.stream = arguments.getOrDefault(Arguments.STREAM);
+		this.verification = arguments.getOrDefault(Arguments.VERIFY);
+		this.cipherProvider = arguments.getOrDefault(Arguments.CIPHER_PROVIDER);
+		this.writers = arguments.getOrDefault(Arguments.WRITERS);
+		this.compression = arguments.getOrDefault(Arguments.COMPRESSION);
+		this.reproducible = arguments.getOrDefault(Arguments.REPRODUCIBLE);
+		this.index = arguments.getOrDefault(Arguments.JAR_INDEX);
+		this.incremental = arguments.getOrDefault(Arguments.INCREMENTAL);
+		this.store = arguments.getOrDefault(Arguments.STORE);
+		this.archive = arguments.getOrDefault(Arguments.ARCHIVE);
+		this.checkpoint = arguments.getOrDefault(Arguments.CHECKPOINT);
+		this.compact = arguments.getOrDefault(Arguments.COMPACT);
+		this.materialize = arguments.get(Arguments.MATERIALIZE).orElse(null);
+		this.outputs = arguments.getOrDefault(Arguments.OUTPUT);
+
+		if (outputs.stream().anyMatch(OutputTarget::isStandardOutput)) {
+			this.standardOutput = Channels.newChannel(new FileOutputStream(FileDescriptor.out));
+			System.setOut(System.err); // Keeps progress messages out of the streamed archive.
+		} else {
+			this.standardOutput = null;
+		}
+
+		this.cache = arguments.getOrDefault(Arguments.CACHE) ? new HttpCache(LynxConstants.CACHE_DIRECTORY) : null;
+		this.downloader = new Downloader(arguments.getOrDefault(Arguments.CONNECTIONS), LynxConstants.DOWNLOAD_DIRECTORY,
+				cache);
 	}
 
 	/**
-	 * Runs lynx, which downloads the gamepack, decrypts the {@code inner.pack.gz} file, and writes the class data.
+	 * Runs lynx, which either materialises a revision or fetches the latest one, and then (if enabled) starts
+	 * compacting old revisions. Compaction only starts once the revision has been written, so that it never competes
+	 * with the fetch, and the revision that was written is excluded from it.
 	 * 
 	 * @throws IOException If there is an I/O error.
 	 */
 	private void run() throws IOException {
 		long start = System.currentTimeMillis();
+		String revision = null;
+
+		if (materialize != null) {
+			materialize(materialize);
+		} else {
+			revision = fetch();
+		}
 
+		System.out.println("Done, took " + (System.currentTimeMillis() - start) / 1_000 + " seconds.");
+
+		if (compact > 0) {
+			startCompaction(revision);
+		}
+	}
+
+	/**
+	 * Downloads the gamepack, decrypts the {@code inner.pack.gz} file, and writes the class data. If streaming is
+	 * enabled, the {@code inner.pack.gz} file is decrypted while the gamepack is being downloaded.
+	 * 
+	 * @return The name of the revision that was written, or {@code null} if the gamepack has not changed.
+	 * @throws IOException If there is an I/O error.
+	 */
+	private String fetch() throws IOException {
 		String path = source.forCrawler(LynxConstants.PROTOCOL, LynxConstants.WORLD_ID);
 
 		logger.fine("Creating a Crawler for the URL " + path);
-		Crawler crawler = new Crawler(new URL(path));
+		Crawler crawler = new Crawler(new URL(path), cache);
 		List<String> page = crawler.readPage();
 		Map<String, String> parameters = crawler.fetchParameters(page);
 
@@ -228,48 +336,259 @@ public final class Lynx {
 
 		System.out.println("Successfully fetched parameters.");
 
+		path = source.forClient(LynxConstants.PROTOCOL, LynxConstants.WORLD_ID);
+		URL url = new URL(path + parameters.get("gamepack"));
+		logger.fine("Downloading gamepack from " + path + parameters.get("gamepack"));
+
+		String name = source.isEncrypted() ? "gamepack.jar" : "client.jar";
+		Path download = LynxConstants.DOWNLOAD_DIRECTORY.resolve(name);
+		Map<String, ByteBuffer> classes = null;
+
+		if (stream) {
+			System.out.println("Streaming " + source.getPrettyName() + " " + name + ".");
+
+			try (StreamingDownload gamepack = downloader.stream(url, download)) {
+				if (gamepack == null) {
+					System.out.println("The " + name + " has not changed since the last run, so there is nothing to do.");
+					return null;
+				} else if (source.isEncrypted()) {
+					try (InnerPackDecrypter decrypter = new InnerPackDecrypter(gamepack)) {
+						classes = decrypt(decrypter, parameters);
+						gamepack.complete(); // Before the decrypter closes (and so discards) the download.
+					} catch (Exception e) {
+						throw new IllegalStateException("Error decrypting the inner archive - please report.", e);
+					}
+				} else {
+					gamepack.complete();
+				}
+			}
+		} else if (!downloadGamepack(url, download)) {
+			System.out.println("The " + name + " has not changed since the last run, so there is nothing to do.");
+			return null;
+		}
+
 		String suffix = getDirectorySuffix(parameters);
+
 		Path directory = LynxConstants.SAVE_DIRECTORY.resolve(suffix);
 		Files.createDirectories(directory);
-		
-		savePage(page, directory);
 
-		path = source.forClient(LynxConstants.PROTOCOL, LynxConstants.WORLD_ID);
-		URL url = new URL(path + parameters.get("gamepack"));
-		logger.fine("Downloading gamepack from " + path + parameters.get("gamepack"));
+		savePage(page, directory);
 
-		Path gamepack = downloadGamepack(url, directory);
+		Path gamepack = directory.resolve(name);
 		logger.fine("Saving gamepack to " + gamepack + ".");
+		Files.move(download, gamepack, StandardCopyOption.REPLACE_EXISTING);
 
 		if (source.isEncrypted()) {
-			String secret = parameters.get(LynxConstants.SECRET_PARAMETER_NAME);
-			String vector = parameters.get(LynxConstants.VECTOR_PARAMETER_NAME);
+			GamepackVerifier verifier = new GamepackVerifier(gamepack);
+			if (verification == VerificationMode.SEQUENTIAL) {
+				try {
+					verifier.verify();
+				} catch (IOException e) {
+					throw new IllegalStateException("The gamepack failed signature verification - please report.", e);
+				}
+			} else if (verification == VerificationMode.CONCURRENT) {
+				verifier.start(); // Decryption does not open the gamepack as a JarFile, so is not slowed by this.
+			}
 
-			logger.fine("Secret parameter: " + secret);
-			logger.fine("Vector parameter: " + vector);
+			if (classes == null) {
+				try (InnerPackDecrypter decrypter = new InnerPackDecrypter(gamepack)) {
+					classes = decrypt(decrypter, parameters);
+				} catch (Exception e) {
+					throw new IllegalStateException("Error decrypting the inner archive - please report.", e);
+				}
+			}
 
-			if (secret == null || vector == null) {
-				throw new IllegalStateException("Failed to identify an AES parameter - please report.");
+			if (verification == VerificationMode.CONCURRENT) {
+				try {
+					verifier.await();
+				} catch (IOException e) {
+					throw new IllegalStateException("The gamepack failed signature verification - please report.", e);
+				}
 			}
 
-			Map<String, ByteBuffer> classes;
+			System.out.println("Writing class files.");
 
-			try (InnerPackDecrypter decrypter = new InnerPackDecrypter(gamepack, secret, vector)) {
-				classes = decrypter.decrypt();
-			} catch (Exception e) {
-				throw new IllegalStateException("Error decrypting the inner archive - please report.", e);
+			ClassHashes hashes = new ClassHashes();
+			List<OutputSink> sinks = createSinks(directory, incremental ? findPreviousRevision() : null, hashes);
+			if (store) {
+				ObjectStore objects = new ObjectStore(LynxConstants.STORE_DIRECTORY);
+				sinks.add(new StoreSink(objects, suffix, ForkJoinPool.commonPool(), hashes));
 			}
 
-			Path client = directory.resolve("bin");
-			Files.createDirectories(client);
+			if (archive) {
+				RevisionArchive revisions = new RevisionArchive(LynxConstants.ARCHIVE_DIRECTORY, checkpoint);
+				sinks.add(new ArchiveSink(revisions, suffix, ForkJoinPool.commonPool()));
+			}
 
-			System.out.println("Writing class files.");
+			OutputSink sink = new FanOutSink(sinks);
 
-			writeJar(classes, directory, "client.jar");
-			writeClasses(classes, client);
+			try {
+				for (Entry<String, ByteBuffer> entry : classes.entrySet()) {
+					sink.write(entry.getKey(), entry.getValue());
+				}
+
+				sink.finish();
+			} catch (IOException e) {
+				throw new IllegalStateException(
+						"Error writing classes - please ensure this program has write permissions.", e);
+			}
+
+			Files.write(getLatestRevisionPath(source), suffix.getBytes(StandardCharsets.UTF_8));
 		}
 
-		System.out.println("Done, took " + (System.currentTimeMillis() - start) / 1_000 + " seconds.");
+		if (cache != null) {
+			cache.commit(url, gamepack); // Only now will the next run be told the gamepack is unchanged.
+		}
+
+		return suffix;
+	}
+
+	/**
+	 * Creates the {@link OutputSink}s that write the outputs of a revision (by default, its {@code client.jar} file and
+	 * {@code bin} directory). Outputs without a path are written to the directory of the revision.
+	 * 
+	 * @param directory The {@link Path} to the directory of the revision.
+	 * @param previous The Path to the {@code bin} directory of the previous revision, or {@code null} to write every
+	 *            class.
+	 * @param hashes The {@link ClassHashes} shared by the sinks that hash the classes.
+	 * @return The {@link List} of OutputSinks, which may be added to.
+	 * @throws IOException If an output could not be created.
+	 */
+	private List<OutputSink> createSinks(Path directory, Path previous, ClassHashes hashes) throws IOException {
+		List<OutputSink> sinks = new ArrayList<>(outputs.size() + 2);
+		ForkJoinPool pool = ForkJoinPool.commonPool();
+
+		for (OutputTarget output : outputs) {
+			OutputType type = output.getType();
+
+			switch (type) {
+				case DIRECTORY:
+					Path client = Files.createDirectories(output.getPath().orElse(directory.resolve("bin")));
+					sinks.add(new DirectorySink(client, writers, previous, hashes));
+					break;
+				case JAR:
+					if (output.isStandardOutput()) {
+						sinks.add(new JarSink("client.jar", new JarWriter("client.jar", standardOutput, pool,
+								compression, reproducible, index)));
+					} else {
+						Path jar = output.getPath().orElse(directory.resolve("client.jar"));
+						sinks.add(new JarSink(jar.getFileName().toString(), new JarWriter(jar, pool, compression,
+								reproducible, index)));
+					}
+					break;
+				case TAR:
+					if (output.isStandardOutput()) {
+						sinks.add(new TarSink("client.tar", standardOutput, reproducible));
+					} else {
+						sinks.add(new TarSink(output.getPath().orElse(directory.resolve("client.tar")), reproducible));
+					}
+					break;
+				case MEMORY:
+					sinks.add(new MemorySink());
+					break;
+				case NONE:
+					sinks.add(new NullSink());
+					break;
+				default:
+					throw new IllegalStateException("Unrecognised output type " + type + " - please report.");
+			}
+		}
+
+		return sinks;
+	}
+
+	/**
+	 * Decrypts the inner archive. The first blocks of the archive are decrypted with the secret key and initialisation
+	 * vector parameters first, to check that they are correct: if they are not (e.g. because the parameters have been
+	 * renamed), every pair of parameters that could be a key and vector is tried in parallel instead.
+	 * 
+	 * @param decrypter The {@link InnerPackDecrypter}.
+	 * @param parameters The {@link Map} of parameters.
+	 * @return The {@link ClassArena} of classes.
+	 * @throws GeneralSecurityException If there is an error decrypting the archive.
+	 * @throws IOException If there is an error reading or unpacking the archive.
+	 * @throws IllegalStateException If no parameters decrypt the archive.
+	 */
+	private ClassArena decrypt(InnerPackDecrypter decrypter, Map<String, String> parameters)
+			throws GeneralSecurityException, IOException {
+		Provider provider = CipherProviders.select(AesCbcStrategy.TRANSFORMATION, cipherProvider);
+		ByteBuffer prefix = decrypter.peek(KeyProbe.PREFIX_LENGTH);
+
+		String secret = parameters.get(LynxConstants.SECRET_PARAMETER_NAME);
+		String vector = parameters.get(LynxConstants.VECTOR_PARAMETER_NAME);
+
+		logger.fine("Secret parameter: " + secret);
+		logger.fine("Vector parameter: " + vector);
+
+		if (secret != null && vector != null) {
+			try {
+				DecryptionStrategy strategy = AesCbcStrategy.fromParameters(secret, vector, provider);
+				if (KeyProbe.matches(strategy, prefix)) {
+					return decrypter.decrypt(strategy);
+				}
+			} catch (IllegalArgumentException e) {
+				logger.fine("An AES parameter is not valid base 64: " + e.getMessage());
+			}
+		}
+
+		List<AesCbcStrategy> candidates = AesCbcStrategy.candidates(parameters, provider);
+		System.out.println("Failed to decrypt with the AES parameters, so trying " + candidates.size()
+				+ " other pairs of parameters.");
+
+		DecryptionStrategy strategy = KeyProbe.search(candidates, prefix).orElseThrow(
+				() -> new IllegalStateException("Failed to identify the AES parameters - please report."));
+		return decrypter.decrypt(strategy);
+	}
+
+	/**
+	 * Materialises the {@code client.jar} file and {@code bin} directory of the specified revision: by restoring it,
+	 * if it has been compacted, otherwise from the class store or, if the revision is not in the store, the revision
+	 * archive.
+	 * 
+	 * @param revision The name of the revision.
+	 * @throws IOException If the revision is neither compacted, stored nor archived.
+	 */
+	private void materialize(String revision) throws IOException {
+		Path directory = LynxConstants.SAVE_DIRECTORY.resolve(revision);
+		if (RevisionCompactor.isCompacted(directory)) {
+			System.out.println("Restoring compacted revision " + revision + ".");
+
+			try {
+				boolean rewritten = outputs.stream().anyMatch(output -> output.getType() == OutputType.DIRECTORY
+						&& !output.getPath().isPresent());
+				OutputSink sink = new FanOutSink(createSinks(directory, null, new ClassHashes()));
+				RevisionCompactor.restore(directory, sink, rewritten);
+			} catch (IOException e) {
+				throw new IllegalStateException(
+						"Error writing classes - please ensure this program has write permissions.", e);
+			}
+
+			return;
+		}
+
+		ObjectStore objects = new ObjectStore(LynxConstants.STORE_DIRECTORY);
+		RevisionArchive revisions = new RevisionArchive(LynxConstants.ARCHIVE_DIRECTORY, checkpoint);
+		boolean stored = objects.containsRevision(revision);
+		if (!stored && !revisions.contains(revision)) {
+			throw new IOException("Neither the class store nor the revision archive contain revision " + revision
+					+ ".");
+		}
+
+		String origin = stored ? "class store" : "revision archive";
+		System.out.println("Materialising revision " + revision + " from the " + origin + ".");
+		Files.createDirectories(directory);
+		OutputSink sink = new FanOutSink(createSinks(directory, null, new ClassHashes()));
+
+		try {
+			if (stored) {
+				objects.materialize(revision, sink);
+			} else {
+				revisions.materialize(revision, sink);
+			}
+		} catch (IOException e) {
+			throw new IllegalStateException(
+					"Error writing classes - please ensure this program has write permissions.", e);
+		}
 	}
 
 	/**
@@ -291,6 +610,76 @@ public final class Lynx {
 		}
 	}
 
+	/**
+	 * Finds the directory of the classes of the previous revision of the client from the current source.
+	 * 
+	 * @return The {@link Path} to the directory, or {@code null} if there is no previous revision (or it has since been
+	 *         deleted).
+	 * @throws IOException If there is an error reading the name of the previous revision.
+	 */
+	private Path findPreviousRevision() throws IOException {
+		Path latest = getLatestRevisionPath(source);
+		if (!Files.exists(latest)) {
+			return null;
+		}
+
+		String suffix = new String(Files.readAllBytes(latest), StandardCharsets.UTF_8).trim();
+		Path previous = LynxConstants.SAVE_DIRECTORY.resolve(suffix).resolve("bin");
+		logger.fine("Previous revision: " + previous);
+
+		return Files.isDirectory(previous) ? previous : null;
+	}
+
+	/**
+	 * Gets the {@link Path} of the file containing the name of the latest revision of the client from the specified
+	 * source.
+	 * 
+	 * @param source The {@link ClientSource}.
+	 * @return The Path.
+	 */
+	private static Path getLatestRevisionPath(ClientSource source) {
+		return LynxConstants.SAVE_DIRECTORY.resolve(source.name().toLowerCase() + ".latest");
+	}
+
+	/**
+	 * Starts compacting the revisions that are older than the compaction age in the background. The latest revision of
+	 * each source (which the next run links unchanged classes to), the revision that was just written, and the
+	 * revision being materialised, are never compacted. Compaction is skipped if no pack200 packer is available.
+	 * 
+	 * @param revision The name of the revision that was just written, or {@code null} if none was.
+	 * @throws IOException If there is an error listing the revisions.
+	 */
+	private void startCompaction(String revision) throws IOException {
+		if (!Packers.isAvailable()) {
+			System.err.println("No pack200 packer is available - skipping compaction.");
+			return;
+		}
+
+		int threads = Math.max(1, Runtime.getRuntime().availableProcessors() / 4);
+		RevisionCompactor compactor = new RevisionCompactor(LynxConstants.SAVE_DIRECTORY, Duration.ofDays(compact),
+				threads);
+
+		for (ClientSource client : ClientSource.values()) {
+			Path latest = getLatestRevisionPath(client);
+			if (Files.exists(latest)) {
+				compactor.exclude(new String(Files.readAllBytes(latest), StandardCharsets.UTF_8).trim());
+			}
+		}
+
+		if (revision != null) {
+			compactor.exclude(revision);
+		}
+
+		if (materialize != null) {
+			compactor.exclude(materialize);
+		}
+
+		int count = compactor.start();
+		if (count > 0) {
+			System.out.println("Compacting " + count + " old revisions in the background.");
+		}
+	}
+
 	/**
 	 * Gets the suffix for the directory name.
 	 * 
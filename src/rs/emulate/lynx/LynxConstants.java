@@ -11,9 +11,19 @@ import java.nio.file.Paths;
 public final class LynxConstants {
 
 	/**
-	 * The size of the buffer used when decrypting the {@code inner.pack.gz} archive, in bytes.
+	 * The path to the directory of the delta-encoded archive of revisions.
 	 */
-	public static final int BUFFER_SIZE = 5 * 1024 * 1024;
+	public static final Path ARCHIVE_DIRECTORY = Paths.get(".", "data", "archive");
+
+	/**
+	 * The path to the directory that cached http responses are kept in.
+	 */
+	public static final Path CACHE_DIRECTORY = Paths.get(".", "data", "cache");
+
+	/**
+	 * The path to the directory that incomplete downloads are kept in, so that they may be resumed.
+	 */
+	public static final Path DOWNLOAD_DIRECTORY = Paths.get(".", "data", "downloads");
 
 	/**
 	 * The name of the archive containing the client.
@@ -30,6 +40,11 @@ public final class LynxConstants {
 	 */
 	public static final Path SAVE_DIRECTORY = Paths.get(".", "data");
 
+	/**
+	 * The path to the directory of the content-addressed store of classes.
+	 */
+	public static final Path STORE_DIRECTORY = Paths.get(".", "data", "store");
+
 	/**
 	 * The parameter name for the encoded AES secret key.
 	 */
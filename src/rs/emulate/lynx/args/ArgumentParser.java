@@ -1,6 +1,7 @@
 package rs.emulate.lynx.args;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
@@ -8,6 +9,12 @@ import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.regex.Pattern;
+import java.util.zip.Deflater;
+
+import rs.emulate.lynx.crypto.CipherProviders;
+import rs.emulate.lynx.pack.Packers;
+import rs.emulate.lynx.store.RevisionArchive;
+import rs.emulate.lynx.zip.JarWriter;
 
 /**
  * A parser for the application arguments.
@@ -44,18 +51,53 @@ public final class ArgumentParser {
 		help.add("--c  --classic    Specifies that the classic client should be downloaded.");
 		help.add("--o  --oldschool    Specifies that the oldschool client should be downloaded.");
 		help.add("--i  --identify <boolean>    Specifies whether or not the current client version should be identified (if supported). Defaults to true.");
+		help.add("--cache <boolean>    Specifies whether or not unchanged pages and gamepacks should be served from the cache (skipping the run if the gamepack is unchanged). Defaults to true.");
+		help.add("--s  --stream    Specifies that the gamepack should be decrypted while it is downloaded, over a single connection.");
+		help.add("--n  --connections <count>    Specifies the maximum amount of concurrent connections used to download the gamepack. Defaults to 4.");
+		help.add("--verify <off|async|sync>    Specifies whether the signature of the gamepack should be verified, and if so, whether it is verified while (async) or before (sync) it is decrypted. Defaults to async.");
+		help.add("--provider <name|auto>    Specifies the security provider used to decrypt the gamepack, or auto to use the fastest installed provider (found with a short benchmark). Defaults to auto.");
+		help.add("--w  --writers <count>    Specifies the maximum amount of class files written concurrently. Defaults to 8.");
+		help.add("--compression <stored|0-9>    Specifies whether the classes in client.jar should be stored or deflated, and if deflated, the compression level. Defaults to 6.");
+		help.add("--reproducible    Specifies that client.jar should be reproducible: entries are sorted by name and have a fixed timestamp, so identical classes always produce an identical jar.");
+		help.add("--index    Specifies that client.jar should contain a jar index (META-INF/INDEX.LIST).");
+		help.add("--incremental <boolean>    Specifies whether or not class files that are unchanged since the previous revision should be hard-linked to, rather than written again. Linked files share an inode with the previous revision, so modifying one in place modifies both. Defaults to false.");
+		help.add("--store <boolean>    Specifies whether or not the classes should be added to the content-addressed class store (data/store), which stores each distinct class once. Defaults to false.");
+		help.add("--archive <boolean>    Specifies whether or not the classes should be added to the revision archive (data/archive), which stores each changed class as a binary delta against the previous revision. Defaults to false.");
+		help.add("--checkpoint <count>    Specifies the amount of revisions between full snapshots in the revision archive. Defaults to 16.");
+		help.add("--compact <days>    Specifies the age after which revisions are compacted (in the background, once the client has been written) into a pack200 archive, which is unpacked again when the revision is materialised, or 0 to disable compaction. Requires a pack200 packer (commons-compress, or Java 13 or earlier). Defaults to 0.");
+		help.add("--output <type[:path],...>    Specifies the outputs the classes are written to: directory, jar, tar, memory or none, optionally followed by a path, or - to stream a jar or tar archive to standard output (in which case progress is printed to standard error). Defaults to jar,directory.");
+		help.add("--materialize <revision>    Writes the bin directory and client.jar of the specified revision from its compacted archive, the class store or the revision archive, instead of downloading the gamepack.");
 		HELP_TEXT = Collections.unmodifiableList(help);
 
-		ArgumentMap defaults = new ArgumentMap(2);
+		ArgumentMap defaults = new ArgumentMap(17);
 		defaults.put(Arguments.GAMEPACK_SOURCE, ClientSource.RUNESCAPE);
 		defaults.put(Arguments.IDENTIFY_VERSION, true);
+		defaults.put(Arguments.CONNECTIONS, 4);
+		defaults.put(Arguments.CACHE, true);
+		defaults.put(Arguments.STREAM, false);
+		defaults.put(Arguments.VERIFY, VerificationMode.CONCURRENT);
+		defaults.put(Arguments.CIPHER_PROVIDER, CipherProviders.AUTOMATIC);
+		defaults.put(Arguments.WRITERS, 8);
+		defaults.put(Arguments.COMPRESSION, JarWriter.DEFAULT_LEVEL);
+		defaults.put(Arguments.REPRODUCIBLE, false);
+		defaults.put(Arguments.JAR_INDEX, false);
+		defaults.put(Arguments.INCREMENTAL, false);
+		defaults.put(Arguments.STORE, false);
+		defaults.put(Arguments.ARCHIVE, false);
+		defaults.put(Arguments.CHECKPOINT, RevisionArchive.DEFAULT_INTERVAL);
+		defaults.put(Arguments.COMPACT, 0);
+		defaults.put(Arguments.OUTPUT, Arrays.asList(new OutputTarget(OutputType.JAR, null),
+				new OutputTarget(OutputType.DIRECTORY, null)));
 		DEFAULT_VALUES = defaults.freeze();
 
-		Map<String, String> aliases = new HashMap<>(4);
+		Map<String, String> aliases = new HashMap<>(7);
 		aliases.put("r", "runescape");
 		aliases.put("c", "classic");
 		aliases.put("o", "oldschool");
 		aliases.put("i", "identify");
+		aliases.put("n", "connections");
+		aliases.put("s", "stream");
+		aliases.put("w", "writers");
 		ALIASES = Collections.unmodifiableMap(aliases);
 	}
 
@@ -143,12 +185,161 @@ public final class ArgumentParser {
 				case "identify":
 					pairs.put(Arguments.IDENTIFY_VERSION, Boolean.parseBoolean(arguments[index++]));
 					break;
+				case "stream":
+					pairs.put(Arguments.STREAM, true);
+					break;
+				case "reproducible":
+					pairs.put(Arguments.REPRODUCIBLE, true);
+					break;
+				case "index":
+					pairs.put(Arguments.JAR_INDEX, true);
+					break;
+				case "cache":
+					pairs.put(Arguments.CACHE, Boolean.parseBoolean(nextValue(argument, ++index)));
+					break;
+				case "incremental":
+					pairs.put(Arguments.INCREMENTAL, Boolean.parseBoolean(nextValue(argument, ++index)));
+					break;
+				case "store":
+					pairs.put(Arguments.STORE, Boolean.parseBoolean(nextValue(argument, ++index)));
+					break;
+				case "archive":
+					pairs.put(Arguments.ARCHIVE, Boolean.parseBoolean(nextValue(argument, ++index)));
+					break;
+				case "checkpoint":
+					pairs.put(Arguments.CHECKPOINT, parsePositive(argument, nextValue(argument, ++index)));
+					break;
+				case "compact":
+					pairs.put(Arguments.COMPACT, parseCompaction(nextValue(argument, ++index)));
+					break;
+				case "materialize":
+					pairs.put(Arguments.MATERIALIZE, nextValue(argument, ++index));
+					break;
+				case "output":
+					pairs.put(Arguments.OUTPUT, parseOutput(nextValue(argument, ++index)));
+					break;
+				case "connections":
+					pairs.put(Arguments.CONNECTIONS, parsePositive(argument, nextValue(argument, ++index)));
+					break;
+				case "verify":
+					pairs.put(Arguments.VERIFY, VerificationMode.forName(nextValue(argument, ++index)));
+					break;
+				case "provider":
+					pairs.put(Arguments.CIPHER_PROVIDER, nextValue(argument, ++index));
+					break;
+				case "writers":
+					pairs.put(Arguments.WRITERS, parsePositive(argument, nextValue(argument, ++index)));
+					break;
+				case "compression":
+					pairs.put(Arguments.COMPRESSION, parseCompression(nextValue(argument, ++index)));
+					break;
 				default:
 					throw new IllegalArgumentException("Undefined Argument " + argument + ".");
 			}
 		}
 	}
 
+	/**
+	 * Gets the value of the argument at the specified index.
+	 * 
+	 * @param argument The name of the argument the value belongs to.
+	 * @param index The index of the value.
+	 * @return The value.
+	 * @throws IllegalArgumentException If there is no value at the specified index.
+	 */
+	private String nextValue(String argument, int index) {
+		if (index >= arguments.length) {
+			throw new IllegalArgumentException("Argument " + argument + " requires a value.");
+		}
+
+		return arguments[index].trim();
+	}
+
+	/**
+	 * Parses the value of the compact argument.
+	 * 
+	 * @param value The value: the compaction age in days, or {@code 0} to disable compaction.
+	 * @return The compaction age.
+	 * @throws IllegalArgumentException If the value is negative, or if compaction is enabled but no pack200 packer is
+	 *             available.
+	 */
+	private int parseCompaction(String value) {
+		int days = Integer.parseInt(value);
+		if (days < 0) {
+			throw new IllegalArgumentException("Compaction age must not be negative.");
+		} else if (days > 0 && !Packers.isAvailable()) {
+			throw new IllegalArgumentException("Compaction requires a pack200 packer - please add commons-compress to "
+					+ "the classpath, or run on Java 13 or earlier.");
+		}
+
+		return days;
+	}
+
+	/**
+	 * Parses the value of the compression argument.
+	 * 
+	 * @param value The value: either {@code stored}, or a compression level from {@code 0} to {@code 9}.
+	 * @return The compression level, or {@link JarWriter#STORED}.
+	 * @throws IllegalArgumentException If the value is not valid.
+	 */
+	private int parseCompression(String value) {
+		if (value.equalsIgnoreCase("stored")) {
+			return JarWriter.STORED;
+		}
+
+		int level = Integer.parseInt(value);
+		if (level < Deflater.NO_COMPRESSION || level > Deflater.BEST_COMPRESSION) {
+			throw new IllegalArgumentException("Compression level must be stored, or from 0 to 9.");
+		}
+
+		return level;
+	}
+
+	/**
+	 * Parses the value of the output argument.
+	 *
+	 * @param value The value: a comma-separated list of outputs, each of the form {@code type[:path]}.
+	 * @return The {@link List} of {@link OutputTarget}s.
+	 * @throws IllegalArgumentException If an output is not valid, or if more than one output is written to standard
+	 *             output.
+	 */
+	private List<OutputTarget> parseOutput(String value) {
+		List<OutputTarget> targets = new ArrayList<>();
+		boolean streamed = false;
+
+		for (String output : value.split(",")) {
+			OutputTarget target = OutputTarget.parse(output.trim());
+			if (target.isStandardOutput()) {
+				if (streamed) {
+					throw new IllegalArgumentException("Only one output can be written to standard output.");
+				}
+
+				streamed = true;
+			}
+
+			targets.add(target);
+		}
+
+		return Collections.unmodifiableList(targets);
+	}
+
+	/**
+	 * Parses the value of an argument that must be a positive integer.
+	 * 
+	 * @param argument The name of the argument.
+	 * @param value The value.
+	 * @return The parsed value.
+	 * @throws IllegalArgumentException If the value is not a positive integer.
+	 */
+	private int parsePositive(String argument, String value) {
+		int parsed = Integer.parseInt(value);
+		if (parsed < 1) {
+			throw new IllegalArgumentException("Argument " + argument + " must be at least 1.");
+		}
+
+		return parsed;
+	}
+
 	/**
 	 * Prints the help text.
 	 */
@@ -1,5 +1,7 @@
 package rs.emulate.lynx.args;
 
+import java.util.List;
+
 /**
  * Contains instances of application {@link Argument}s.
  *
@@ -7,6 +9,43 @@ package rs.emulate.lynx.args;
  */
 public final class Arguments {
 
+	/**
+	 * The Argument specifying whether or not the classes should be added to the delta-encoded revision archive.
+	 */
+	public static final Argument<Boolean> ARCHIVE = new Argument<>("archive");
+
+	/**
+	 * The Argument specifying whether or not unchanged pages and gamepacks should be served from the cache.
+	 */
+	public static final Argument<Boolean> CACHE = new Argument<>("cache");
+
+	/**
+	 * The Argument specifying the amount of revisions between full snapshots in the revision archive.
+	 */
+	public static final Argument<Integer> CHECKPOINT = new Argument<>("checkpoint");
+
+	/**
+	 * The Argument specifying the name of the security provider used to decrypt the gamepack, or {@code auto} to use
+	 * the fastest.
+	 */
+	public static final Argument<String> CIPHER_PROVIDER = new Argument<>("provider");
+
+	/**
+	 * The Argument specifying the age, in days, after which revisions are compacted into a pack200 archive, or
+	 * {@code 0} if revisions should not be compacted.
+	 */
+	public static final Argument<Integer> COMPACT = new Argument<>("compact");
+
+	/**
+	 * The Argument specifying the compression level of the classes in the client jar, or that they should be stored.
+	 */
+	public static final Argument<Integer> COMPRESSION = new Argument<>("compression");
+
+	/**
+	 * The Argument specifying the maximum amount of concurrent connections used to download the gamepack.
+	 */
+	public static final Argument<Integer> CONNECTIONS = new Argument<>("connections");
+
 	/**
 	 * The Argument specifying which gamepack should be downloaded.
 	 */
@@ -17,6 +56,53 @@ public final class Arguments {
 	 */
 	public static final Argument<Boolean> IDENTIFY_VERSION = new Argument<>("identify");
 
+	/**
+	 * The Argument specifying whether or not class files that are unchanged since the previous revision should be
+	 * linked to, rather than written again.
+	 */
+	public static final Argument<Boolean> INCREMENTAL = new Argument<>("incremental");
+
+	/**
+	 * The Argument specifying that the client jar should contain a jar index.
+	 */
+	public static final Argument<Boolean> JAR_INDEX = new Argument<>("index");
+
+	/**
+	 * The Argument specifying the name of a revision to materialise from the class store, instead of downloading the
+	 * gamepack.
+	 */
+	public static final Argument<String> MATERIALIZE = new Argument<>("materialize");
+
+	/**
+	 * The Argument specifying the outputs the decrypted classes are written to.
+	 */
+	public static final Argument<List<OutputTarget>> OUTPUT = new Argument<>("output");
+
+	/**
+	 * The Argument specifying that the client jar should be reproducible, i.e. byte-identical for identical classes.
+	 */
+	public static final Argument<Boolean> REPRODUCIBLE = new Argument<>("reproducible");
+
+	/**
+	 * The Argument specifying whether or not the classes should be added to the class store.
+	 */
+	public static final Argument<Boolean> STORE = new Argument<>("store");
+
+	/**
+	 * The Argument specifying that the gamepack should be decrypted while it is being downloaded.
+	 */
+	public static final Argument<Boolean> STREAM = new Argument<>("stream");
+
+	/**
+	 * The Argument specifying how the signature of the gamepack should be verified.
+	 */
+	public static final Argument<VerificationMode> VERIFY = new Argument<>("verify");
+
+	/**
+	 * The Argument specifying the maximum amount of class files written concurrently.
+	 */
+	public static final Argument<Integer> WRITERS = new Argument<>("writers");
+
 	/**
 	 * Sole private constructor to prevent instantiation.
 	 */
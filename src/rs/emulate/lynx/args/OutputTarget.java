@@ -0,0 +1,99 @@
+package rs.emulate.lynx.args;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * An output the decrypted classes are written to: an {@link OutputType}, and optionally where the output is written.
+ *
+ * @author Major
+ */
+public final class OutputTarget {
+
+	/**
+	 * The location that indicates an output should be written to standard output.
+	 */
+	public static final String STANDARD_OUTPUT = "-";
+
+	/**
+	 * Parses an OutputTarget, of the form {@code type[:location]}.
+	 *
+	 * @param value The value to parse.
+	 * @return The OutputTarget.
+	 * @throws IllegalArgumentException If the type is not defined, or if standard output is specified for a type that
+	 *             cannot be streamed.
+	 */
+	public static OutputTarget parse(String value) {
+		int separator = value.indexOf(':');
+		if (separator == -1) {
+			return new OutputTarget(OutputType.forName(value), null);
+		}
+
+		OutputType type = OutputType.forName(value.substring(0, separator));
+		String location = value.substring(separator + 1);
+		if (location.isEmpty()) {
+			throw new IllegalArgumentException("Output " + type + " has an empty location.");
+		} else if (location.equals(STANDARD_OUTPUT) && !type.isStreamable()) {
+			throw new IllegalArgumentException("Output " + type + " cannot be written to standard output.");
+		}
+
+		return new OutputTarget(type, location);
+	}
+
+	/**
+	 * The location of this output, or {@code null} if the default location should be used.
+	 */
+	private final String location;
+
+	/**
+	 * The type of this output.
+	 */
+	private final OutputType type;
+
+	/**
+	 * Creates the OutputTarget.
+	 *
+	 * @param type The {@link OutputType}.
+	 * @param location The location of the output, or {@code null} if the default location should be used.
+	 */
+	public OutputTarget(OutputType type, String location) {
+		this.type = Objects.requireNonNull(type, "Type must not be null.");
+		this.location = location;
+	}
+
+	/**
+	 * Gets the {@link Path} this output is written to, if one was specified.
+	 *
+	 * @return The {@link Optional} containing the Path, or {@link Optional#empty} if the default location should be
+	 *         used or the output is written to standard output.
+	 */
+	public Optional<Path> getPath() {
+		return (location == null || isStandardOutput()) ? Optional.empty() : Optional.of(Paths.get(location));
+	}
+
+	/**
+	 * Gets the {@link OutputType} of this output.
+	 *
+	 * @return The OutputType.
+	 */
+	public OutputType getType() {
+		return type;
+	}
+
+	/**
+	 * Returns whether or not this output is written to standard output.
+	 *
+	 * @return {@code true} if this output is written to standard output, {@code false} if not.
+	 */
+	public boolean isStandardOutput() {
+		return STANDARD_OUTPUT.equals(location);
+	}
+
+	@Override
+	public String toString() {
+		return (location == null) ? type.toString() : type + ":" + location;
+	}
+
+}
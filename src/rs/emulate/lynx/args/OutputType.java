@@ -0,0 +1,83 @@
+package rs.emulate.lynx.args;
+
+/**
+ * A type of output the decrypted classes are written to.
+ *
+ * @author Major
+ */
+public enum OutputType {
+
+	/**
+	 * The classes are written as loose class files to a directory ({@code bin}, by default).
+	 */
+	DIRECTORY("directory", false),
+
+	/**
+	 * The classes are written to a jar ({@code client.jar}, by default), which may be streamed to standard output.
+	 */
+	JAR("jar", true),
+
+	/**
+	 * The classes are kept in memory.
+	 */
+	MEMORY("memory", false),
+
+	/**
+	 * The classes are discarded.
+	 */
+	NONE("none", false),
+
+	/**
+	 * The classes are written to a tar archive ({@code client.tar}, by default), which may be streamed to standard
+	 * output.
+	 */
+	TAR("tar", true);
+
+	/**
+	 * Gets the OutputType with the specified name.
+	 *
+	 * @param name The name of the OutputType.
+	 * @return The OutputType.
+	 * @throws IllegalArgumentException If there is no OutputType with the specified name.
+	 */
+	public static OutputType forName(String name) {
+		for (OutputType type : values()) {
+			if (type.name.equalsIgnoreCase(name)) {
+				return type;
+			}
+		}
+
+		throw new IllegalArgumentException("Undefined output type " + name + ".");
+	}
+
+	/**
+	 * The name of this OutputType, as passed on the command line.
+	 */
+	private final String name;
+
+	/**
+	 * Whether or not this OutputType can be streamed.
+	 */
+	private final boolean streamable;
+
+	/**
+	 * Creates the OutputType.
+	 *
+	 * @param name The name of the OutputType, as passed on the command line.
+	 * @param streamable Whether or not the OutputType can be streamed.
+	 */
+	private OutputType(String name, boolean streamable) {
+		this.name = name;
+		this.streamable = streamable;
+	}
+
+	/**
+	 * Returns whether or not this OutputType can be streamed, i.e. written to standard output.
+	 *
+	 * @return {@code true} if this OutputType can be streamed, {@code false} if not.
+	 */
+	public boolean isStreamable() {
+		return streamable;
+	}
+
+}
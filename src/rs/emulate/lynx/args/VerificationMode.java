@@ -0,0 +1,57 @@
+package rs.emulate.lynx.args;
+
+/**
+ * The mode in which the signature of the gamepack is verified.
+ *
+ * @author Major
+ */
+public enum VerificationMode {
+
+	/**
+	 * The gamepack is verified while it is decrypted, and the run fails (before anything is written) if it does not
+	 * pass.
+	 */
+	CONCURRENT("async"),
+
+	/**
+	 * The gamepack is not verified.
+	 */
+	NONE("off"),
+
+	/**
+	 * The gamepack is verified before it is decrypted.
+	 */
+	SEQUENTIAL("sync");
+
+	/**
+	 * Gets the VerificationMode with the specified name.
+	 *
+	 * @param name The name of the VerificationMode.
+	 * @return The VerificationMode.
+	 * @throws IllegalArgumentException If there is no VerificationMode with the specified name.
+	 */
+	public static VerificationMode forName(String name) {
+		for (VerificationMode mode : values()) {
+			if (mode.name.equalsIgnoreCase(name)) {
+				return mode;
+			}
+		}
+
+		throw new IllegalArgumentException("Undefined verification mode " + name + ".");
+	}
+
+	/**
+	 * The name of this VerificationMode, as passed on the command line.
+	 */
+	private final String name;
+
+	/**
+	 * Creates the VerificationMode.
+	 *
+	 * @param name The name of the VerificationMode, as passed on the command line.
+	 */
+	private VerificationMode(String name) {
+		this.name = name;
+	}
+
+}
@@ -0,0 +1,270 @@
+package rs.emulate.lynx.crypto;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.security.Provider;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import javax.crypto.Cipher;
+import javax.crypto.CipherInputStream;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * A {@link DecryptionStrategy} for archives encrypted with AES in CBC mode, with PKCS #5 padding. The data is passed
+ * to the {@link Cipher} in large chunks with {@link Cipher#update}, decrypting into a single buffer that is reused for
+ * every chunk.
+ * <p>
+ * The buffers and Ciphers are pooled, so decrypting an archive after the first allocates (almost) nothing.
+ *
+ * @author Major
+ */
+public final class AesCbcStrategy implements DecryptionStrategy {
+
+	/**
+	 * The transformation used to create the Cipher.
+	 */
+	public static final String TRANSFORMATION = "AES/CBC/PKCS5Padding";
+
+	/**
+	 * The size of an AES block, in bytes.
+	 */
+	private static final int BLOCK_SIZE = 16;
+
+	/**
+	 * The size of each chunk passed to the Cipher, in bytes.
+	 */
+	private static final int CHUNK_SIZE = 64 * 1024;
+
+	/**
+	 * The offset at which encrypted data is read into a buffer that is decrypted in place. The SunJCE provider copies
+	 * the input of an in-place update unless it is at least two blocks ahead of the output.
+	 */
+	private static final int IN_PLACE_OFFSET = 2 * BLOCK_SIZE;
+
+	/**
+	 * The BufferPool of arrays used to decrypt each chunk. Each array has room for a chunk read at
+	 * {@link #IN_PLACE_OFFSET}, which also leaves room for the block the cipher holds back (for padding).
+	 */
+	private static final BufferPool BUFFERS = new BufferPool(CHUNK_SIZE + IN_PLACE_OFFSET, 4);
+
+	/**
+	 * The key returned if an empty (i.e. {@code length == 0} string is decoded.
+	 */
+	private static final byte[] EMPTY_KEY = new byte[0];
+
+	/**
+	 * Creates the AesCbcStrategy from the secret key and initialisation vector parameters of the applet page.
+	 * <p>
+	 * Jagex use a slightly different variant of base 64, where '+' and '/' are replaced with '*' and '-', so we replace
+	 * those before passing it to the decoder. This is similar to the <a
+	 * href="https://tools.ietf.org/html/rfc4648#page-7">Base 64 Encoding with URL and Filename Safe Alphabet</a>
+	 * variant of Base 64 (but uses '*' in place of '_').
+	 *
+	 * @param secret The encoded secret key.
+	 * @param vector The encoded initialisation vector.
+	 * @param provider The {@link Provider} of the Cipher.
+	 * @return The AesCbcStrategy.
+	 * @throws IllegalArgumentException If either parameter is not valid base 64.
+	 */
+	public static AesCbcStrategy fromParameters(String secret, String vector, Provider provider) {
+		return new AesCbcStrategy(decodeBase64(secret), decodeBase64(vector), provider);
+	}
+
+	/**
+	 * Creates an AesCbcStrategy for every pair of parameters that could be a secret key and initialisation vector,
+	 * i.e. that decode to a valid AES key and a single block. Used when the parameters that usually contain the key
+	 * have been renamed.
+	 *
+	 * @param parameters The {@link Map} of applet parameter names to values.
+	 * @param provider The {@link Provider} of the Cipher.
+	 * @return The {@link List} of AesCbcStrategies, in parameter order.
+	 */
+	public static List<AesCbcStrategy> candidates(Map<String, String> parameters, Provider provider) {
+		Map<String, byte[]> keys = new LinkedHashMap<>();
+		Map<String, byte[]> vectors = new LinkedHashMap<>();
+
+		for (Map.Entry<String, String> parameter : parameters.entrySet()) {
+			byte[] decoded;
+			try {
+				decoded = decodeBase64(parameter.getValue());
+			} catch (IllegalArgumentException e) {
+				continue;
+			}
+
+			int length = decoded.length;
+			if (length == 16 || length == 24 || length == 32) {
+				keys.put(parameter.getKey(), decoded);
+			}
+
+			if (length == BLOCK_SIZE) {
+				vectors.put(parameter.getKey(), decoded);
+			}
+		}
+
+		List<AesCbcStrategy> candidates = new ArrayList<>(keys.size() * vectors.size());
+		for (Map.Entry<String, byte[]> key : keys.entrySet()) {
+			for (Map.Entry<String, byte[]> vector : vectors.entrySet()) {
+				if (!key.getKey().equals(vector.getKey())) {
+					candidates.add(new AesCbcStrategy(key.getValue(), vector.getValue(), provider));
+				}
+			}
+		}
+
+		return candidates;
+	}
+
+	/**
+	 * Decodes the specified base 64 string, using the Jagex alphabet.
+	 *
+	 * @param string The String to decode.
+	 * @return The decoded bytes.
+	 */
+	private static byte[] decodeBase64(String string) {
+		if (string.length() == 0) {
+			return EMPTY_KEY;
+		}
+
+		String valid = string.replace('*', '+').replace('-', '/');
+		return Base64.getDecoder().decode(valid);
+	}
+
+	/**
+	 * The Queue of initialised Ciphers that are not in use.
+	 */
+	private final Queue<Cipher> ciphers = new ConcurrentLinkedQueue<>();
+
+	/**
+	 * The secret key, or {@code null} if the key is empty.
+	 */
+	private final SecretKeySpec key;
+
+	/**
+	 * The Provider of the Cipher.
+	 */
+	private final Provider provider;
+
+	/**
+	 * The initialisation vector.
+	 */
+	private final IvParameterSpec vector;
+
+	/**
+	 * Creates the AesCbcStrategy.
+	 *
+	 * @param key The secret key.
+	 * @param vector The initialisation vector.
+	 * @param provider The {@link Provider} of the Cipher.
+	 */
+	public AesCbcStrategy(byte[] key, byte[] vector, Provider provider) {
+		this.key = (key.length == 0) ? null : new SecretKeySpec(key, "AES");
+		this.vector = new IvParameterSpec(vector);
+		this.provider = provider;
+	}
+
+	@Override
+	public void decrypt(ByteBuffer input, OutputStream output) throws GeneralSecurityException, IOException {
+		Cipher cipher = acquireCipher();
+		byte[] decrypted = BUFFERS.acquire();
+
+		try {
+			ByteBuffer buffer = ByteBuffer.wrap(decrypted);
+
+			while (input.hasRemaining()) {
+				ByteBuffer chunk = input.duplicate();
+				chunk.limit(chunk.position() + Math.min(CHUNK_SIZE, chunk.remaining()));
+
+				buffer.clear();
+				cipher.update(chunk, buffer); // Passed to the cipher directly, so a mapped buffer is never copied first.
+				input.position(chunk.position());
+				output.write(decrypted, 0, buffer.position());
+			}
+
+			int length = cipher.doFinal(decrypted, 0);
+			output.write(decrypted, 0, length);
+		} finally {
+			BUFFERS.release(decrypted);
+		}
+
+		ciphers.offer(cipher); // Only reused if decryption succeeded, as doFinal resets the cipher.
+	}
+
+	/**
+	 * Decrypts the data read from the specified {@link InputStream} in place: each chunk is read two blocks into the
+	 * buffer, and decrypted to the start of the same buffer. The output of the cipher therefore trails its input, so
+	 * the cipher never overwrites input it has not yet read and has no need to copy it first.
+	 */
+	@Override
+	public void decrypt(InputStream input, OutputStream output) throws GeneralSecurityException, IOException {
+		Cipher cipher = acquireCipher();
+		byte[] buffer = BUFFERS.acquire();
+
+		try {
+			int read;
+			while ((read = input.read(buffer, IN_PLACE_OFFSET, CHUNK_SIZE)) != -1) {
+				int length = cipher.update(buffer, IN_PLACE_OFFSET, read, buffer, 0);
+				output.write(buffer, 0, length);
+			}
+
+			int length = cipher.doFinal(buffer, 0);
+			output.write(buffer, 0, length);
+		} finally {
+			BUFFERS.release(buffer);
+		}
+
+		ciphers.offer(cipher);
+	}
+
+	@Override
+	public byte[] decryptPrefix(ByteBuffer prefix) throws GeneralSecurityException {
+		Cipher cipher = acquireCipher();
+		ByteBuffer input = prefix.duplicate();
+		ByteBuffer output = ByteBuffer.allocate(cipher.getOutputSize(input.remaining()));
+
+		cipher.update(input, output); // The final block is held back, as doFinal would fail on the padding.
+		ciphers.offer(cipher); // Reinitialised before it is next used.
+		return Arrays.copyOf(output.array(), output.position());
+	}
+
+	@Override
+	public String getName() {
+		return TRANSFORMATION + " (" + provider.getName() + ")";
+	}
+
+	@Override
+	public InputStream open(InputStream input) throws GeneralSecurityException {
+		return new CipherInputStream(input, acquireCipher()); // Not returned to the pool, as the stream owns it.
+	}
+
+	/**
+	 * Takes a Cipher from the pool (creating one if the pool is empty), initialised for decryption with the secret key
+	 * and initialisation vector.
+	 *
+	 * @return The {@link Cipher}.
+	 * @throws GeneralSecurityException If the secret key or initialisation vector are invalid.
+	 */
+	private Cipher acquireCipher() throws GeneralSecurityException {
+		if (key == null) {
+			throw new GeneralSecurityException("The secret key is empty.");
+		}
+
+		Cipher cipher = ciphers.poll();
+		if (cipher == null) {
+			cipher = Cipher.getInstance(TRANSFORMATION, provider);
+		}
+
+		cipher.init(Cipher.DECRYPT_MODE, key, vector);
+		return cipher;
+	}
+
+}
@@ -0,0 +1,57 @@
+package rs.emulate.lynx.crypto;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * A bounded pool of byte arrays of a fixed size. Arrays are created on demand when the pool is empty, and released
+ * arrays are kept (up to the capacity of the pool) to be handed out again, so that once every array in use has been
+ * created, decrypting another archive allocates nothing.
+ *
+ * @author Major
+ */
+public final class BufferPool {
+
+	/**
+	 * The BlockingQueue of arrays waiting to be reused.
+	 */
+	private final BlockingQueue<byte[]> buffers;
+
+	/**
+	 * The size of each array, in bytes.
+	 */
+	private final int size;
+
+	/**
+	 * Creates the BufferPool.
+	 *
+	 * @param size The size of each array, in bytes.
+	 * @param capacity The maximum amount of arrays kept by the pool.
+	 */
+	public BufferPool(int size, int capacity) {
+		this.size = size;
+		buffers = new ArrayBlockingQueue<>(capacity);
+	}
+
+	/**
+	 * Takes an array from this pool, creating one if the pool is empty. The contents of the array are undefined.
+	 *
+	 * @return The array.
+	 */
+	public byte[] acquire() {
+		byte[] buffer = buffers.poll();
+		return (buffer == null) ? new byte[size] : buffer;
+	}
+
+	/**
+	 * Returns the specified array to this pool. If the pool is already full, the array is discarded.
+	 *
+	 * @param buffer The array, which must have been taken from this pool and must no longer be used.
+	 */
+	public void release(byte[] buffer) {
+		if (buffer.length == size) {
+			buffers.offer(buffer);
+		}
+	}
+
+}
@@ -0,0 +1,166 @@
+package rs.emulate.lynx.crypto;
+
+import java.security.GeneralSecurityException;
+import java.security.Provider;
+import java.security.Security;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Logger;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Contains static utility methods for selecting the security {@link Provider} used to create a {@link Cipher}.
+ * <p>
+ * A provider can be chosen by name. Otherwise, every installed provider that supports the transformation is timed
+ * decrypting a small amount of data, and the fastest is chosen. The result of the benchmark is cached, so it only runs
+ * once per transformation.
+ *
+ * @author Major
+ */
+public final class CipherProviders {
+
+	/**
+	 * The logger for this class.
+	 */
+	private static final Logger logger = Logger.getLogger(CipherProviders.class.getSimpleName());
+
+	/**
+	 * The name used to request that the fastest provider is chosen automatically.
+	 */
+	public static final String AUTOMATIC = "auto";
+
+	/**
+	 * The amount of data decrypted by each iteration of the benchmark, in bytes.
+	 */
+	private static final int BENCHMARK_SIZE = 1024 * 1024;
+
+	/**
+	 * The Map of transformations to the fastest Provider supporting them.
+	 */
+	private static final Map<String, Provider> FASTEST = new ConcurrentHashMap<>();
+
+	/**
+	 * The amount of timed iterations of the benchmark, per provider.
+	 */
+	private static final int ITERATIONS = 4;
+
+	/**
+	 * The amount of untimed iterations of the benchmark, run before the timed ones so that the JIT has warmed up.
+	 */
+	private static final int WARMUP_ITERATIONS = 2;
+
+	/**
+	 * Gets the installed {@link Provider} with the specified name, or the fastest provider if the name is
+	 * {@link #AUTOMATIC}.
+	 *
+	 * @param transformation The transformation the Provider must support, e.g. {@code AES/CBC/PKCS5Padding}.
+	 * @param name The name of the Provider, or {@link #AUTOMATIC}.
+	 * @return The Provider.
+	 * @throws IllegalArgumentException If there is no Provider with the specified name, or if it does not support the
+	 *             transformation.
+	 */
+	public static Provider select(String transformation, String name) {
+		if (name.equalsIgnoreCase(AUTOMATIC)) {
+			return FASTEST.computeIfAbsent(transformation, CipherProviders::fastest);
+		}
+
+		Provider provider = Security.getProvider(name);
+		if (provider == null) {
+			throw new IllegalArgumentException("No security provider named " + name + " is installed.");
+		}
+
+		try {
+			Cipher.getInstance(transformation, provider);
+		} catch (GeneralSecurityException e) {
+			throw new IllegalArgumentException("The " + name + " provider does not support " + transformation + ".", e);
+		}
+
+		return provider;
+	}
+
+	/**
+	 * Times the specified {@link Provider} decrypting {@link #BENCHMARK_SIZE} bytes with the transformation.
+	 *
+	 * @param transformation The transformation, which must use a 128-bit key and (if any) a 128-bit initialisation
+	 *            vector.
+	 * @param provider The Provider.
+	 * @return The throughput, in bytes per second.
+	 * @throws GeneralSecurityException If the Provider does not support the transformation.
+	 */
+	private static double benchmark(String transformation, Provider provider) throws GeneralSecurityException {
+		Cipher cipher = Cipher.getInstance(transformation, provider);
+		String algorithm = transformation.split("/")[0];
+
+		SecretKeySpec key = new SecretKeySpec(new byte[16], algorithm);
+		IvParameterSpec vector = new IvParameterSpec(new byte[16]);
+
+		byte[] input = new byte[BENCHMARK_SIZE];
+		byte[] output = new byte[BENCHMARK_SIZE + cipher.getBlockSize()];
+		long best = Long.MAX_VALUE;
+
+		for (int iteration = 0; iteration < WARMUP_ITERATIONS + ITERATIONS; iteration++) {
+			cipher.init(Cipher.DECRYPT_MODE, key, vector);
+			long start = System.nanoTime();
+			cipher.update(input, 0, input.length, output); // Padding is not checked, as doFinal is never called.
+			long elapsed = System.nanoTime() - start;
+
+			if (iteration >= WARMUP_ITERATIONS) {
+				best = Math.min(best, elapsed);
+			}
+		}
+
+		return BENCHMARK_SIZE * 1e9 / Math.max(best, 1);
+	}
+
+	/**
+	 * Finds the fastest installed {@link Provider} that supports the specified transformation.
+	 *
+	 * @param transformation The transformation.
+	 * @return The Provider.
+	 * @throws IllegalStateException If no installed Provider supports the transformation.
+	 */
+	private static Provider fastest(String transformation) {
+		Provider fastest = null;
+		double best = 0;
+
+		for (Provider provider : Security.getProviders()) {
+			if (provider.getService("Cipher", transformation) == null
+					&& provider.getService("Cipher", transformation.split("/")[0]) == null) {
+				continue;
+			}
+
+			try {
+				double throughput = benchmark(transformation, provider);
+				logger.fine(String.format("The %s provider decrypts %s at %.1f MiB/s.", provider.getName(),
+						transformation, throughput / (1024 * 1024)));
+
+				if (throughput > best) {
+					best = throughput;
+					fastest = provider;
+				}
+			} catch (GeneralSecurityException | RuntimeException e) {
+				logger.fine("The " + provider.getName() + " provider does not support " + transformation + ": " + e);
+			}
+		}
+
+		if (fastest == null) {
+			throw new IllegalStateException("No installed security provider supports " + transformation
+					+ " - please report.");
+		}
+
+		System.out.println(String.format("Using the %s provider for %s (%.1f MiB/s).", fastest.getName(),
+				transformation, best / (1024 * 1024)));
+		return fastest;
+	}
+
+	/**
+	 * Sole private constructor to prevent instantiation.
+	 */
+	private CipherProviders() {
+
+	}
+
+}
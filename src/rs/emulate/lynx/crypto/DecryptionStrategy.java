@@ -0,0 +1,66 @@
+package rs.emulate.lynx.crypto;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+
+/**
+ * A scheme used to decrypt the inner archive of the gamepack. A strategy holds everything needed to decrypt the
+ * archive (such as the key), so the code that reads and unpacks the archive does not depend on how it is encrypted.
+ * <p>
+ * Each call decrypts a whole archive from the beginning, so a strategy may be used any number of times.
+ *
+ * @author Major
+ */
+public interface DecryptionStrategy {
+
+	/**
+	 * Decrypts the remaining data in the specified {@link ByteBuffer}, writing it to the {@link OutputStream}. The
+	 * position of the ByteBuffer is advanced to its limit.
+	 *
+	 * @param input The ByteBuffer containing the encrypted data.
+	 * @param output The OutputStream. It is not closed.
+	 * @throws GeneralSecurityException If the data could not be decrypted.
+	 * @throws IOException If there is an error writing the data.
+	 */
+	void decrypt(ByteBuffer input, OutputStream output) throws GeneralSecurityException, IOException;
+
+	/**
+	 * Decrypts the data read from the specified {@link InputStream}, writing it to the {@link OutputStream}.
+	 *
+	 * @param input The InputStream. It is not closed.
+	 * @param output The OutputStream. It is not closed.
+	 * @throws GeneralSecurityException If the data could not be decrypted.
+	 * @throws IOException If there is an error reading or writing the data.
+	 */
+	void decrypt(InputStream input, OutputStream output) throws GeneralSecurityException, IOException;
+
+	/**
+	 * Decrypts as much of the specified prefix of the archive as can be decrypted without the rest of it, e.g. to
+	 * check that the key is correct before decrypting the whole archive.
+	 *
+	 * @param prefix The ByteBuffer containing the start of the encrypted data. Its position is not changed.
+	 * @return The decrypted data, which may be shorter than the prefix.
+	 * @throws GeneralSecurityException If the prefix could not be decrypted.
+	 */
+	byte[] decryptPrefix(ByteBuffer prefix) throws GeneralSecurityException;
+
+	/**
+	 * Gets the name of this strategy, for diagnostics.
+	 *
+	 * @return The name.
+	 */
+	String getName();
+
+	/**
+	 * Wraps the specified {@link InputStream}, so that the data read from it is decrypted as it is read.
+	 *
+	 * @param input The InputStream of the encrypted data.
+	 * @return The InputStream of the decrypted data. Closing it closes the encrypted InputStream.
+	 * @throws GeneralSecurityException If the decryption could not be initialised.
+	 */
+	InputStream open(InputStream input) throws GeneralSecurityException;
+
+}
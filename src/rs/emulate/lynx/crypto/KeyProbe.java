@@ -0,0 +1,85 @@
+package rs.emulate.lynx.crypto;
+
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.util.Collection;
+import java.util.Optional;
+
+/**
+ * Contains static utility methods for checking that a {@link DecryptionStrategy} decrypts the inner archive, by
+ * decrypting only its first blocks and checking for the gzip header. A wrong key therefore fails immediately, rather
+ * than after the whole archive has been decrypted.
+ *
+ * @author Major
+ */
+public final class KeyProbe {
+
+	/**
+	 * The amount of encrypted bytes that must be decrypted to check for the gzip header. Two blocks are required, as
+	 * the cipher holds back the final block it is given.
+	 */
+	public static final int PREFIX_LENGTH = 32;
+
+	/**
+	 * The gzip compression method byte for deflate.
+	 */
+	private static final int GZIP_DEFLATE = 8;
+
+	/**
+	 * The first byte of the gzip magic.
+	 */
+	private static final int GZIP_MAGIC_HIGH = 0x1F;
+
+	/**
+	 * The second byte of the gzip magic.
+	 */
+	private static final int GZIP_MAGIC_LOW = 0x8B;
+
+	/**
+	 * The mask of the reserved bits of the gzip flags byte, which must be clear.
+	 */
+	private static final int GZIP_RESERVED_FLAGS = 0xE0;
+
+	/**
+	 * Returns whether or not the specified {@link DecryptionStrategy} decrypts the prefix of the archive into the
+	 * start of a gzip stream.
+	 *
+	 * @param strategy The DecryptionStrategy.
+	 * @param prefix The {@link ByteBuffer} containing (at least) the first {@link #PREFIX_LENGTH} bytes of the
+	 *            encrypted archive.
+	 * @return {@code true} if the strategy decrypts the archive, {@code false} if not.
+	 */
+	public static boolean matches(DecryptionStrategy strategy, ByteBuffer prefix) {
+		byte[] header;
+		try {
+			header = strategy.decryptPrefix(prefix);
+		} catch (GeneralSecurityException | RuntimeException e) {
+			return false;
+		}
+
+		return header.length >= 4 && (header[0] & 0xFF) == GZIP_MAGIC_HIGH && (header[1] & 0xFF) == GZIP_MAGIC_LOW
+				&& header[2] == GZIP_DEFLATE && (header[3] & GZIP_RESERVED_FLAGS) == 0;
+	}
+
+	/**
+	 * Probes every candidate {@link DecryptionStrategy} in parallel, returning the first (in the order of the
+	 * {@link Collection}) that decrypts the archive.
+	 *
+	 * @param <T> The type of DecryptionStrategy.
+	 * @param candidates The Collection of candidate DecryptionStrategies.
+	 * @param prefix The {@link ByteBuffer} containing (at least) the first {@link #PREFIX_LENGTH} bytes of the
+	 *            encrypted archive.
+	 * @return The {@link Optional} containing the DecryptionStrategy, or {@link Optional#empty} if none match.
+	 */
+	public static <T extends DecryptionStrategy> Optional<T> search(Collection<T> candidates, ByteBuffer prefix) {
+		return candidates.parallelStream().filter(strategy -> matches(strategy, prefix)).findFirst();
+	}
+
+	/**
+	 * Sole private constructor to prevent instantiation.
+	 */
+	private KeyProbe() {
+
+	}
+
+}
@@ -0,0 +1,4 @@
+/**
+ * Contains classes for decrypting the inner archive of the gamepack.
+ */
+package rs.emulate.lynx.crypto;
\ No newline at end of file
@@ -1,11 +1,14 @@
 package rs.emulate.lynx.net;
 
-import java.io.BufferedInputStream;
 import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.net.HttpURLConnection;
 import java.net.URL;
+import java.net.URLConnection;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -40,6 +43,11 @@ public final class Crawler {
 	 */
 	private static final Pattern VALUE_PATTERN = Pattern.compile("(?<=value=\")(.*)(?=\")");
 
+	/**
+	 * The cache of pages, or {@code null} if pages are not cached.
+	 */
+	private final HttpCache cache;
+
 	/**
 	 * The url to crawl.
 	 */
@@ -49,9 +57,11 @@ public final class Crawler {
 	 * Creates the crawler.
 	 * 
 	 * @param url The url.
+	 * @param cache The {@link HttpCache} to store the page in, or {@code null} if the page should not be cached.
 	 */
-	public Crawler(URL url) {
+	public Crawler(URL url, HttpCache cache) {
 		this.url = url;
+		this.cache = cache;
 	}
 
 	/**
@@ -84,16 +94,40 @@ public final class Crawler {
 	}
 
 	/**
-	 * Reads the page, returning it as a {@link List} of strings (one string per line).
+	 * Reads the page, returning it as a {@link List} of strings (one string per line). If the page is cached and has
+	 * not been modified since, the cached copy is read instead.
 	 * 
 	 * @return The list of strings.
 	 * @throws IOException If there was an error reading from the {@link URL}.
 	 */
 	public List<String> readPage() throws IOException {
-		List<String> lines = new ArrayList<>();
+		URLConnection connection = url.openConnection();
+		boolean conditional = cache != null && cache.addConditions(url, connection);
+		byte[] page;
+
+		if (conditional && connection instanceof HttpURLConnection
+				&& cache.isNotModified(url, (HttpURLConnection) connection)) {
+			page = cache.readBody(url);
+		} else {
+			try (InputStream is = connection.getInputStream()) {
+				ByteArrayOutputStream bos = new ByteArrayOutputStream();
+				byte[] buffer = new byte[8192];
+
+				int read;
+				while ((read = is.read(buffer)) != -1) {
+					bos.write(buffer, 0, read);
+				}
+
+				page = bos.toByteArray();
+			}
 
-		try (InputStream is = new BufferedInputStream(url.openStream());
-				BufferedReader reader = new BufferedReader(new InputStreamReader(is))) {
+			if (cache != null) {
+				cache.store(url, connection, page);
+			}
+		}
+
+		List<String> lines = new ArrayList<>();
+		try (BufferedReader reader = new BufferedReader(new InputStreamReader(new ByteArrayInputStream(page)))) {
 			String line;
 			while ((line = reader.readLine()) != null) {
 				lines.add(line);
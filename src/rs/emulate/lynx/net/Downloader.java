@@ -0,0 +1,530 @@
+package rs.emulate.lynx.net;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Downloads a file over http. If the server supports byte ranges, the file is split into ranges that are fetched
+ * concurrently and written directly into their position in the destination file; otherwise the file is streamed over a
+ * single connection.
+ * <p>
+ * Data is written to a {@link PartialDownload} first, and only moved to the destination once it is complete. If a
+ * ranged download fails, the next attempt continues each range from where it stopped (provided the server still
+ * reports the same validator for the file).
+ *
+ * @author Major
+ */
+public final class Downloader {
+
+	/**
+	 * The result of probing a file before it is downloaded.
+	 */
+	private static final class Probe {
+
+		/**
+		 * The result of a probe that could not determine anything about the file.
+		 */
+		private static final Probe UNKNOWN = new Probe(-1, false, null);
+
+		/**
+		 * The length of the file, or {@code -1} if it is not known.
+		 */
+		private final long length;
+
+		/**
+		 * The {@code Last-Modified} header of the file, or {@code null} if the server did not provide one.
+		 */
+		private final String modified;
+
+		/**
+		 * Whether or not the server supports byte ranges.
+		 */
+		private final boolean ranges;
+
+		/**
+		 * The {@code ETag} header of the file, or {@code null} if the server did not provide one.
+		 */
+		private final String tag;
+
+		/**
+		 * Creates the Probe.
+		 *
+		 * @param length The length of the file.
+		 * @param ranges Whether or not the server supports byte ranges.
+		 * @param connection The {@link HttpURLConnection} the probe was made on, or {@code null} if there was none.
+		 */
+		public Probe(long length, boolean ranges, HttpURLConnection connection) {
+			this.length = length;
+			this.ranges = ranges;
+			this.tag = (connection == null) ? null : connection.getHeaderField("ETag");
+			this.modified = (connection == null) ? null : connection.getHeaderField("Last-Modified");
+		}
+
+		/**
+		 * Gets the validator of the file. A strong {@code ETag} is preferred, as weak ones may not be used in an
+		 * {@code If-Range} header.
+		 *
+		 * @return The validator, or {@code null} if the server did not provide a usable one.
+		 */
+		public String getValidator() {
+			return (tag != null && !tag.startsWith("W/")) ? tag : modified;
+		}
+
+	}
+
+	/**
+	 * The exception thrown when the server does not respond to a range request with the requested range.
+	 */
+	private static final class RangeNotSatisfiedException extends IOException {
+
+		/**
+		 * The serial version unique id.
+		 */
+		private static final long serialVersionUID = 1L;
+
+		/**
+		 * Creates the RangeNotSatisfiedException.
+		 *
+		 * @param message The detail message.
+		 */
+		public RangeNotSatisfiedException(String message) {
+			super(message);
+		}
+
+	}
+
+	/**
+	 * The time to wait for a connection to be established, in milliseconds.
+	 */
+	private static final int CONNECT_TIMEOUT = 15_000;
+
+	/**
+	 * The pattern used to match the first and last byte positions, and the complete length (which may be unknown), in
+	 * a {@code Content-Range} header.
+	 */
+	private static final Pattern CONTENT_RANGE_PATTERN = Pattern.compile("^bytes (\\d+)-(\\d+)/(\\d+|\\*)$");
+
+	/**
+	 * The logger for this class.
+	 */
+	private static final Logger logger = Logger.getLogger(Downloader.class.getSimpleName());
+
+	/**
+	 * The minimum amount of bytes fetched by a single connection.
+	 */
+	private static final long MINIMUM_RANGE_LENGTH = 256 * 1024;
+
+	/**
+	 * The time to wait for data from a connection before abandoning it, in milliseconds.
+	 */
+	private static final int READ_TIMEOUT = 30_000;
+
+	/**
+	 * The size of the buffer used when transferring data from a connection, in bytes.
+	 */
+	private static final int TRANSFER_BUFFER_SIZE = 64 * 1024;
+
+	/**
+	 * Formats the throughput of a transfer, for display.
+	 *
+	 * @param bytes The amount of bytes transferred.
+	 * @param nanos The time taken, in nanoseconds.
+	 * @return The formatted throughput.
+	 */
+	private static String formatThroughput(long bytes, long nanos) {
+		double seconds = Math.max(nanos, 1) / 1e9;
+		double mebibytes = bytes / (1024.0 * 1024.0);
+		return String.format("%.2f MiB in %.2fs (%.2f MiB/s)", mebibytes, seconds, mebibytes / seconds);
+	}
+
+	/**
+	 * Opens a connection to the specified {@link URL}, applying the connect and read timeouts.
+	 *
+	 * @param url The URL.
+	 * @return The {@link URLConnection}.
+	 * @throws IOException If there is an error opening the connection.
+	 */
+	private static URLConnection open(URL url) throws IOException {
+		URLConnection connection = url.openConnection();
+		connection.setConnectTimeout(CONNECT_TIMEOUT);
+		connection.setReadTimeout(READ_TIMEOUT);
+		return connection;
+	}
+
+	/**
+	 * The HttpCache that downloaded files are stored in, or {@code null} if files are not cached.
+	 */
+	private final HttpCache cache;
+
+	/**
+	 * The maximum amount of concurrent connections to make.
+	 */
+	private final int connections;
+
+	/**
+	 * The directory containing partial downloads.
+	 */
+	private final Path partials;
+
+	/**
+	 * Creates the Downloader.
+	 *
+	 * @param connections The maximum amount of concurrent connections to make. Must be positive.
+	 * @param partials The {@link Path} to the directory that partial downloads are kept in.
+	 * @param cache The {@link HttpCache} to store downloaded files in, or {@code null} if files should not be cached.
+	 */
+	public Downloader(int connections, Path partials, HttpCache cache) {
+		if (connections < 1) {
+			throw new IllegalArgumentException("Connection count must be positive.");
+		}
+
+		this.connections = connections;
+		this.partials = partials;
+		this.cache = cache;
+	}
+
+	/**
+	 * Downloads the file at the specified {@link URL} to the specified {@link Path}, replacing any existing file.
+	 * <p>
+	 * If the file is cached and the server reports that it has not been modified since, nothing is transferred and the
+	 * destination is left untouched; the cached copy may be retrieved from the {@link HttpCache} instead. Otherwise, the
+	 * response is {@link HttpCache#stage staged}, and is only cached once the caller commits it.
+	 *
+	 * @param url The URL to download from.
+	 * @param destination The Path to the destination file.
+	 * @return {@code true} if the file was downloaded, {@code false} if the cached copy is still valid.
+	 * @throws IOException If there is an error downloading the file.
+	 */
+	public boolean download(URL url, Path destination) throws IOException {
+		Probe probe = probe(url);
+		if (probe == null) {
+			logger.fine(url + " has not been modified since it was cached.");
+			return false;
+		}
+
+		downloadFile(url, destination, probe);
+		if (cache != null) {
+			cache.stage(url, probe.tag, probe.modified);
+		}
+
+		return true;
+	}
+
+	/**
+	 * Opens a {@link StreamingDownload} of the file at the specified {@link URL}, over a single connection. Every byte
+	 * read from the stream is also written to disk, and the file is moved to the specified destination when the
+	 * download is {@link StreamingDownload#complete completed}.
+	 * <p>
+	 * If the file is cached and the server reports that it has not been modified since, no stream is opened.
+	 *
+	 * @param url The URL to download from.
+	 * @param destination The {@link Path} to the destination file.
+	 * @return The StreamingDownload, or {@code null} if the cached copy of the file is still valid.
+	 * @throws IOException If there is an error opening the connection or the partial file.
+	 */
+	public StreamingDownload stream(URL url, Path destination) throws IOException {
+		URLConnection connection = open(url);
+		boolean conditional = cache != null && cache.addConditions(url, connection);
+
+		if (conditional && connection instanceof HttpURLConnection
+				&& cache.isNotModified(url, (HttpURLConnection) connection)) {
+			logger.fine(url + " has not been modified since it was cached.");
+			((HttpURLConnection) connection).disconnect();
+			return null;
+		}
+
+		InputStream input = connection.getInputStream();
+		PartialDownload partial = PartialDownload.open(partials, url, -1, null, new long[] { 0 }, new long[] { -1 });
+		FileChannel channel = FileChannel.open(partial.getFile(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING);
+
+		return new StreamingDownload(input, url, connection.getHeaderField("ETag"),
+				connection.getHeaderField("Last-Modified"), partial, channel, destination, cache);
+	}
+
+	/**
+	 * Downloads the file at the specified {@link URL} to the specified {@link Path}, using the {@link Probe} to decide
+	 * between ranged and streamed downloads.
+	 *
+	 * @param url The URL to download from.
+	 * @param destination The Path to the destination file.
+	 * @param probe The Probe of the file.
+	 * @throws IOException If there is an error downloading the file.
+	 */
+	private void downloadFile(URL url, Path destination, Probe probe) throws IOException {
+		if (probe.ranges) {
+			int count = (int) Math.max(1, Math.min(connections, probe.length / MINIMUM_RANGE_LENGTH));
+			long size = (probe.length + count - 1) / count;
+			long[] starts = new long[count], ends = new long[count];
+
+			for (int range = 0; range < count; range++) {
+				starts[range] = range * size;
+				ends[range] = Math.min(starts[range] + size, probe.length) - 1;
+			}
+
+			PartialDownload partial = PartialDownload.open(partials, url, probe.length, probe.getValidator(), starts, ends);
+			try {
+				downloadRanges(url, partial);
+				partial.complete(destination);
+				return;
+			} catch (RangeNotSatisfiedException e) {
+				logger.fine("Server ignored a range request (" + e.getMessage() + "), falling back to a single connection.");
+				partial.discard();
+			}
+		}
+
+		PartialDownload partial = PartialDownload.open(partials, url, -1, null, new long[] { 0 }, new long[] { -1 });
+		downloadStream(url, partial);
+		partial.complete(destination);
+	}
+
+	/**
+	 * Downloads the ranges of the {@link PartialDownload} concurrently, skipping any bytes that were completed by a
+	 * previous attempt. If a range fails, the progress of every range is saved before the exception is rethrown.
+	 *
+	 * @param url The {@link URL} to download from.
+	 * @param partial The PartialDownload.
+	 * @throws IOException If there is an error downloading any of the ranges.
+	 */
+	private void downloadRanges(URL url, PartialDownload partial) throws IOException {
+		int count = partial.getRangeCount();
+		long length = partial.getEnd(count - 1) + 1, remaining = 0;
+
+		for (int range = 0; range < count; range++) {
+			remaining += partial.getEnd(range) - partial.getStart(range) + 1 - partial.getCompleted(range);
+		}
+
+		if (partial.isResumed()) {
+			System.out.println("Resuming download, " + remaining + " of " + length + " bytes remaining.");
+		} else {
+			System.out.println("Downloading " + length + " bytes over " + count + " connections.");
+		}
+
+		long start = System.nanoTime();
+		ExecutorService executor = Executors.newFixedThreadPool(count);
+		boolean resumed = partial.isResumed();
+
+		try (FileChannel channel = FileChannel.open(partial.getFile(), StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+			if (!resumed) {
+				channel.write(ByteBuffer.allocate(1), length - 1); // Preallocate the file.
+			}
+
+			List<Future<Long>> futures = new ArrayList<>(count);
+			for (int range = 0; range < count; range++) {
+				int index = range;
+				futures.add(executor.submit(() -> fetch(url, channel, partial, index)));
+			}
+
+			try {
+				for (Future<Long> future : futures) {
+					future.get();
+				}
+			} catch (ExecutionException e) {
+				partial.save(channel);
+
+				Throwable cause = e.getCause();
+				if (cause instanceof IOException) {
+					throw (IOException) cause;
+				}
+
+				throw new IOException("Error downloading a range.", cause);
+			} catch (InterruptedException e) {
+				partial.save(channel);
+				Thread.currentThread().interrupt();
+				throw new IOException("Interrupted while downloading.", e);
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+
+		System.out.println("Downloaded " + formatThroughput(remaining, System.nanoTime() - start) + ".");
+	}
+
+	/**
+	 * Downloads the file over a single connection.
+	 *
+	 * @param url The {@link URL} to download from.
+	 * @param partial The {@link PartialDownload} to write to.
+	 * @return The amount of bytes downloaded.
+	 * @throws IOException If there is an error downloading the file.
+	 */
+	private long downloadStream(URL url, PartialDownload partial) throws IOException {
+		long start = System.nanoTime(), position = 0;
+
+		try (InputStream input = open(url).getInputStream();
+				FileChannel channel = FileChannel.open(partial.getFile(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+						StandardOpenOption.TRUNCATE_EXISTING)) {
+			position = transfer(input, channel, partial, 0, Long.MAX_VALUE);
+		}
+
+		System.out.println("Downloaded " + formatThroughput(position, System.nanoTime() - start) + ".");
+		return position;
+	}
+
+	/**
+	 * Fetches the remainder of a single range, writing it to the correct position in the {@link FileChannel}. If part
+	 * of the range was completed by a previous attempt, an {@code If-Range} header is sent so that the server refuses
+	 * the request if the file has changed since.
+	 *
+	 * @param url The {@link URL} to download from.
+	 * @param channel The FileChannel to write to.
+	 * @param partial The {@link PartialDownload}.
+	 * @param range The index of the range to fetch.
+	 * @return The amount of bytes fetched.
+	 * @throws IOException If there is an error fetching the range.
+	 */
+	private long fetch(URL url, FileChannel channel, PartialDownload partial, int range) throws IOException {
+		long completed = partial.getCompleted(range);
+		long first = partial.getStart(range) + completed, last = partial.getEnd(range);
+		if (first > last) {
+			return 0;
+		}
+
+		long start = System.nanoTime();
+		String header = "bytes=" + first + "-" + last;
+		HttpURLConnection connection = (HttpURLConnection) open(url);
+		connection.setRequestProperty("Range", header);
+
+		if (completed > 0) {
+			connection.setRequestProperty("If-Range", partial.getValidator());
+		}
+
+		try {
+			int code = connection.getResponseCode();
+			if (code != HttpURLConnection.HTTP_PARTIAL) {
+				throw new RangeNotSatisfiedException("expected status 206, received " + code);
+			}
+
+			String returned = connection.getHeaderField("Content-Range");
+			Matcher matcher = CONTENT_RANGE_PATTERN.matcher((returned == null) ? "" : returned.trim());
+			if (!matcher.matches() || Long.parseLong(matcher.group(1)) != first
+					|| Long.parseLong(matcher.group(2)) != last) {
+				throw new RangeNotSatisfiedException("requested " + header + ", received " + returned);
+			}
+
+			long expected = last - first + 1, transferred;
+			try (InputStream input = connection.getInputStream()) {
+				transferred = transfer(input, channel, partial, range, expected);
+			}
+
+			if (transferred != expected) {
+				throw new IOException("Range " + header + " ended after " + transferred + " bytes.");
+			}
+
+			System.out.println("Range " + (range + 1) + " (" + header + "): "
+					+ formatThroughput(transferred, System.nanoTime() - start) + ".");
+			return transferred;
+		} finally {
+			connection.disconnect();
+		}
+	}
+
+	/**
+	 * Probes the file at the specified {@link URL}. A {@code HEAD} request is made first; if that does not indicate
+	 * support for ranges, a request for the first byte is made instead. Both requests are conditional if the file is
+	 * cached.
+	 *
+	 * @param url The URL to probe.
+	 * @return The {@link Probe}, or {@code null} if the cached copy of the file is still valid.
+	 * @throws IOException If there is an error making either request.
+	 */
+	private Probe probe(URL url) throws IOException {
+		URLConnection opened = open(url);
+		if (!(opened instanceof HttpURLConnection)) {
+			return Probe.UNKNOWN;
+		}
+
+		HttpURLConnection connection = (HttpURLConnection) opened;
+		boolean conditional = cache != null && cache.addConditions(url, connection);
+		Probe probe = Probe.UNKNOWN;
+
+		try {
+			connection.setRequestMethod("HEAD");
+			long length = connection.getContentLengthLong();
+
+			if (conditional && cache.isNotModified(url, connection)) {
+				return null;
+			} else if (connection.getResponseCode() == HttpURLConnection.HTTP_OK) {
+				boolean ranges = length > 0 && "bytes".equalsIgnoreCase(connection.getHeaderField("Accept-Ranges"));
+				probe = new Probe(length, ranges, connection);
+			}
+		} finally {
+			connection.disconnect();
+		}
+
+		if (probe.ranges) {
+			return probe;
+		}
+
+		connection = (HttpURLConnection) open(url);
+		conditional = cache != null && cache.addConditions(url, connection);
+		connection.setRequestProperty("Range", "bytes=0-0");
+
+		try {
+			if (conditional && cache.isNotModified(url, connection)) {
+				return null;
+			} else if (connection.getResponseCode() != HttpURLConnection.HTTP_PARTIAL) {
+				return probe;
+			}
+
+			String header = connection.getHeaderField("Content-Range");
+			Matcher matcher = CONTENT_RANGE_PATTERN.matcher((header == null) ? "" : header.trim());
+			if (!matcher.matches() || matcher.group(3).equals("*")) {
+				return probe;
+			}
+
+			return new Probe(Long.parseLong(matcher.group(3)), true, connection);
+		} finally {
+			connection.disconnect();
+		}
+	}
+
+	/**
+	 * Transfers at most the specified amount of bytes from the {@link InputStream} to a range of the
+	 * {@link PartialDownload}, continuing from the range's completed bytes.
+	 *
+	 * @param input The InputStream to read from.
+	 * @param channel The FileChannel to write to.
+	 * @param partial The PartialDownload.
+	 * @param range The index of the range.
+	 * @param limit The maximum amount of bytes to transfer.
+	 * @return The amount of bytes transferred.
+	 * @throws IOException If there is an error reading from the stream or writing to the channel.
+	 */
+	private long transfer(InputStream input, FileChannel channel, PartialDownload partial, int range, long limit)
+			throws IOException {
+		byte[] bytes = new byte[TRANSFER_BUFFER_SIZE];
+		ByteBuffer buffer = ByteBuffer.wrap(bytes);
+		long position = partial.getStart(range) + partial.getCompleted(range), transferred = 0;
+
+		int read;
+		while (transferred < limit && (read = input.read(bytes, 0, (int) Math.min(bytes.length, limit - transferred))) != -1) {
+			buffer.clear().limit(read);
+
+			while (buffer.hasRemaining()) {
+				int written = channel.write(buffer, position + transferred);
+				transferred += written;
+				partial.advance(channel, range, written);
+			}
+		}
+
+		return transferred;
+	}
+
+}
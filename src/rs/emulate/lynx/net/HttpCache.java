@@ -0,0 +1,330 @@
+package rs.emulate.lynx.net;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Logger;
+
+/**
+ * A cache of http responses, keyed by {@link URL}. The body of each response is stored alongside its {@code ETag} and
+ * {@code Last-Modified} headers, which are sent back as {@code If-None-Match} and {@code If-Modified-Since} headers on
+ * the next request; if the server responds with {@code 304 Not Modified}, the body is served from disk instead.
+ * <p>
+ * A response that still has to be processed (e.g. a gamepack that has not been decrypted yet) should be
+ * {@link #stage staged} rather than stored, and only {@link #commit committed} once processing has succeeded: until
+ * then, the previous response remains cached, so a failed run does not cause the next one to be skipped.
+ *
+ * @author Major
+ */
+public final class HttpCache {
+
+	/**
+	 * The validating headers of a response.
+	 */
+	private static final class Validators {
+
+		/**
+		 * The {@code Last-Modified} header, or {@code null} if the response did not have one.
+		 */
+		private final String modified;
+
+		/**
+		 * The {@code ETag} header, or {@code null} if the response did not have one.
+		 */
+		private final String tag;
+
+		/**
+		 * Creates the Validators.
+		 *
+		 * @param tag The {@code ETag} header, or {@code null} if the response did not have one.
+		 * @param modified The {@code Last-Modified} header, or {@code null} if the response did not have one.
+		 */
+		public Validators(String tag, String modified) {
+			this.tag = tag;
+			this.modified = modified;
+		}
+
+	}
+
+	/**
+	 * The logger for this class.
+	 */
+	private static final Logger logger = Logger.getLogger(HttpCache.class.getSimpleName());
+
+	/**
+	 * Links the file at the specified target {@link Path} to the source file, replacing any existing file. A hard link
+	 * is created if the file system supports it, so that the file is not stored twice; otherwise the file is copied.
+	 *
+	 * @param source The Path of the existing file.
+	 * @param target The Path of the link to create.
+	 * @throws IOException If there is an error linking or copying the file.
+	 */
+	private static void link(Path source, Path target) throws IOException {
+		Files.deleteIfExists(target);
+
+		try {
+			Files.createLink(target, source);
+		} catch (IOException | UnsupportedOperationException e) {
+			logger.fine("Could not link " + target + " to " + source + ", copying instead.");
+			Files.copy(source, target, StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+
+	/**
+	 * Moves the file at the specified source {@link Path} to the target, atomically if possible.
+	 *
+	 * @param source The Path of the file to move.
+	 * @param target The Path to move the file to.
+	 * @throws IOException If there is an error moving the file.
+	 */
+	private static void move(Path source, Path target) throws IOException {
+		try {
+			Files.move(source, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (AtomicMoveNotSupportedException e) {
+			Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+
+	/**
+	 * The directory the cache is stored in.
+	 */
+	private final Path directory;
+
+	/**
+	 * The Map of URLs (in their external form) to the validators of responses that have been staged, but not yet
+	 * committed.
+	 */
+	private final Map<String, Validators> staged = new ConcurrentHashMap<>();
+
+	/**
+	 * Creates the HttpCache.
+	 *
+	 * @param directory The {@link Path} to the directory the cache is stored in.
+	 */
+	public HttpCache(Path directory) {
+		this.directory = directory;
+	}
+
+	/**
+	 * Adds the conditional request headers for the cached response of the specified {@link URL} to the
+	 * {@link URLConnection}. Does nothing if there is no cached response.
+	 *
+	 * @param url The URL.
+	 * @param connection The URLConnection, which must not yet be connected.
+	 * @return {@code true} if any headers were added, {@code false} if not.
+	 * @throws IOException If there is an error reading the cached headers.
+	 */
+	public boolean addConditions(URL url, URLConnection connection) throws IOException {
+		Properties headers = getHeaders(url);
+		if (headers == null) {
+			return false;
+		}
+
+		String tag = headers.getProperty("ETag"), modified = headers.getProperty("Last-Modified");
+		if (tag != null) {
+			connection.setRequestProperty("If-None-Match", tag);
+		}
+
+		if (modified != null) {
+			connection.setRequestProperty("If-Modified-Since", modified);
+		}
+
+		return tag != null || modified != null;
+	}
+
+	/**
+	 * Commits the staged response for the specified {@link URL}, storing the file containing its body. Does nothing if
+	 * no response has been staged for the URL.
+	 *
+	 * @param url The URL the response is for.
+	 * @param file The {@link Path} to the file containing the body.
+	 * @return {@code true} if the response was stored, {@code false} if not.
+	 * @throws IOException If there is an error storing the response.
+	 */
+	public boolean commit(URL url, Path file) throws IOException {
+		Validators validators = staged.remove(url.toString());
+		return validators != null && store(url, validators.tag, validators.modified, file);
+	}
+
+	/**
+	 * Gets the {@link Path} to the cached body of the specified {@link URL}. The file may not exist.
+	 *
+	 * @param url The URL.
+	 * @return The Path.
+	 */
+	public Path getBody(URL url) {
+		return directory.resolve(key(url) + ".body");
+	}
+
+	/**
+	 * Returns whether or not the specified response may be served from the cache, i.e. if the server responded with
+	 * {@code 304 Not Modified} and the body of the {@link URL} is cached.
+	 *
+	 * @param url The URL.
+	 * @param connection The {@link HttpURLConnection} the request was made on.
+	 * @return {@code true} if the cached body is still valid, {@code false} if not.
+	 * @throws IOException If there is an error reading the response code.
+	 */
+	public boolean isNotModified(URL url, HttpURLConnection connection) throws IOException {
+		return connection.getResponseCode() == HttpURLConnection.HTTP_NOT_MODIFIED && Files.exists(getBody(url));
+	}
+
+	/**
+	 * Reads the cached body of the specified {@link URL}.
+	 *
+	 * @param url The URL.
+	 * @return The body.
+	 * @throws IOException If there is no cached body, or if there is an error reading it.
+	 */
+	public byte[] readBody(URL url) throws IOException {
+		return Files.readAllBytes(getBody(url));
+	}
+
+	/**
+	 * Stages a response whose body has been downloaded but not yet processed. The response is not stored until it is
+	 * {@link #commit committed}, so the previous response for the {@link URL} (if any) remains cached until then.
+	 *
+	 * @param url The URL the response is for.
+	 * @param tag The {@code ETag} header, or {@code null} if the response did not have one.
+	 * @param modified The {@code Last-Modified} header, or {@code null} if the response did not have one.
+	 */
+	public void stage(URL url, String tag, String modified) {
+		staged.put(url.toString(), new Validators(tag, modified));
+	}
+
+	/**
+	 * Stores the response from the specified {@link URLConnection}. If the response has neither an {@code ETag} or a
+	 * {@code Last-Modified} header, it could never be revalidated, and so is not stored.
+	 *
+	 * @param url The URL the response is for.
+	 * @param connection The URLConnection the response was received on.
+	 * @param data The body of the response.
+	 * @return {@code true} if the response was stored, {@code false} if not.
+	 * @throws IOException If there is an error storing the response.
+	 */
+	public boolean store(URL url, URLConnection connection, byte[] data) throws IOException {
+		String tag = connection.getHeaderField("ETag"), modified = connection.getHeaderField("Last-Modified");
+		if (tag == null && modified == null) {
+			return false;
+		}
+
+		Path body = getBody(url);
+		Path temporary = body.resolveSibling(body.getFileName() + ".tmp");
+		Files.write(temporary, data);
+
+		// Replace the body first: if the headers can't be written, the stale ones will simply fail to validate.
+		move(temporary, body);
+		writeHeaders(url, tag, modified);
+		return true;
+	}
+
+	/**
+	 * Stores a response whose body has been written to the specified file. The file is linked into the cache (or
+	 * copied, if the file system does not support links), and so remains where it is. If the response has neither an
+	 * {@code ETag} or a {@code Last-Modified} header, it could never be revalidated, and so is not stored.
+	 *
+	 * @param url The URL the response is for.
+	 * @param tag The {@code ETag} header, or {@code null} if the response did not have one.
+	 * @param modified The {@code Last-Modified} header, or {@code null} if the response did not have one.
+	 * @param file The {@link Path} to the file containing the body.
+	 * @return {@code true} if the response was stored, {@code false} if not.
+	 * @throws IOException If there is an error storing the response.
+	 */
+	public boolean store(URL url, String tag, String modified, Path file) throws IOException {
+		if (tag == null && modified == null) {
+			return false;
+		}
+
+		link(file, getBody(url));
+		writeHeaders(url, tag, modified);
+		return true;
+	}
+
+	/**
+	 * Gets the cached headers of the specified {@link URL}.
+	 *
+	 * @param url The URL.
+	 * @return The headers, or {@code null} if the URL is not cached (or is cached for a different URL with the same
+	 *         key).
+	 * @throws IOException If there is an error reading the headers.
+	 */
+	private Properties getHeaders(URL url) throws IOException {
+		if (!Files.exists(getBody(url))) {
+			return null;
+		}
+
+		Properties headers = new Properties();
+		try (InputStream is = Files.newInputStream(directory.resolve(key(url) + ".properties"))) {
+			headers.load(is);
+		} catch (NoSuchFileException e) {
+			return null;
+		}
+
+		return url.toString().equals(headers.getProperty("url")) ? headers : null;
+	}
+
+	/**
+	 * Gets the key of the specified {@link URL}, which is the hex-encoded SHA-1 digest of its external form.
+	 *
+	 * @param url The URL.
+	 * @return The key.
+	 */
+	private String key(URL url) {
+		try {
+			byte[] digest = MessageDigest.getInstance("SHA-1").digest(url.toString().getBytes(StandardCharsets.UTF_8));
+			StringBuilder builder = new StringBuilder(digest.length * 2);
+
+			for (byte value : digest) {
+				builder.append(Character.forDigit((value >> 4) & 0xF, 16)).append(Character.forDigit(value & 0xF, 16));
+			}
+
+			return builder.toString();
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException("SHA-1 is not supported by this platform.", e);
+		}
+	}
+
+	/**
+	 * Writes the validating headers of the response for the specified {@link URL}.
+	 *
+	 * @param url The URL the response is for.
+	 * @param tag The {@code ETag} header, or {@code null} if the response did not have one.
+	 * @param modified The {@code Last-Modified} header, or {@code null} if the response did not have one.
+	 * @throws IOException If there is an error writing the headers.
+	 */
+	private void writeHeaders(URL url, String tag, String modified) throws IOException {
+		Properties headers = new Properties();
+		headers.setProperty("url", url.toString());
+		if (tag != null) {
+			headers.setProperty("ETag", tag);
+		}
+
+		if (modified != null) {
+			headers.setProperty("Last-Modified", modified);
+		}
+
+		Path file = directory.resolve(key(url) + ".properties");
+		Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+
+		try (OutputStream os = Files.newOutputStream(temporary)) {
+			headers.store(os, null);
+		}
+
+		move(temporary, file);
+	}
+
+}
@@ -0,0 +1,372 @@
+package rs.emulate.lynx.net;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.logging.Logger;
+
+/**
+ * The on-disk state of a download that may be resumed. The data is written to a {@code .partial} file, alongside a
+ * sidecar that records the {@link URL}, the expected length, the validator (an {@code ETag} or {@code Last-Modified}
+ * value) and the amount of bytes completed in each range.
+ * <p>
+ * The progress of a range is only recorded after its data has been written to the partial file, and the file is forced
+ * to the storage device before the sidecar is saved, so the sidecar never claims more than the file holds (even after a
+ * crash).
+ *
+ * @author Major
+ */
+public final class PartialDownload {
+
+	/**
+	 * The logger for this class.
+	 */
+	private static final Logger logger = Logger.getLogger(PartialDownload.class.getSimpleName());
+
+	/**
+	 * The amount of bytes a range must advance by before the sidecar is rewritten.
+	 */
+	private static final long SAVE_INTERVAL = 1024 * 1024;
+
+	/**
+	 * Opens the partial download of the specified {@link URL}. If an existing sidecar matches the URL, length and
+	 * validator, its ranges and their progress are restored; otherwise any existing partial data is discarded and the
+	 * file is split into the specified ranges.
+	 *
+	 * @param directory The directory containing partial downloads.
+	 * @param url The URL being downloaded.
+	 * @param length The expected length of the file, or {@code -1} if it is not known.
+	 * @param validator The validator of the file, or {@code null} if there is none.
+	 * @param starts The position of the first byte of each range.
+	 * @param ends The position of the last byte (inclusive) of each range.
+	 * @return The PartialDownload.
+	 * @throws IOException If there is an error reading the sidecar or deleting stale data.
+	 */
+	public static PartialDownload open(Path directory, URL url, long length, String validator, long[] starts, long[] ends)
+			throws IOException {
+		String name = Integer.toHexString(url.toString().hashCode()) + "-" + getFileName(url);
+		Path file = directory.resolve(name + ".partial");
+		Path sidecar = directory.resolve(name + ".partial.properties");
+
+		if (length > 0 && validator != null && Files.exists(file) && Files.size(file) == length) {
+			PartialDownload restored = restore(file, sidecar, url, length, validator);
+			if (restored != null) {
+				return restored;
+			}
+		}
+
+		PartialDownload download = new PartialDownload(file, sidecar, url, length, validator, starts, ends);
+		download.discard();
+		return download;
+	}
+
+	/**
+	 * Gets the name of the file at the specified {@link URL}.
+	 *
+	 * @param url The URL.
+	 * @return The file name, or {@code "download"} if the URL has no path.
+	 */
+	private static String getFileName(URL url) {
+		String path = url.getPath();
+		String name = path.substring(path.lastIndexOf('/') + 1).replaceAll("[^A-Za-z0-9._-]", "_");
+		return name.isEmpty() ? "download" : name;
+	}
+
+	/**
+	 * Restores the partial download recorded in the specified sidecar, if it describes the same download.
+	 *
+	 * @param file The path to the partial data.
+	 * @param sidecar The path to the sidecar.
+	 * @param url The URL being downloaded.
+	 * @param length The expected length of the file.
+	 * @param validator The validator of the file.
+	 * @return The restored PartialDownload, or {@code null} if the sidecar is missing or does not match.
+	 * @throws IOException If there is an error reading the sidecar.
+	 */
+	private static PartialDownload restore(Path file, Path sidecar, URL url, long length, String validator)
+			throws IOException {
+		Properties properties = new Properties();
+		try (InputStream is = Files.newInputStream(sidecar)) {
+			properties.load(is);
+		} catch (NoSuchFileException e) {
+			return null;
+		}
+
+		if (!url.toString().equals(properties.getProperty("url")) || !validator.equals(properties.getProperty("validator"))
+				|| !Long.toString(length).equals(properties.getProperty("length"))) {
+			logger.fine("Discarding stale partial download of " + url + ".");
+			return null;
+		}
+
+		try {
+			int count = Integer.parseInt(properties.getProperty("ranges"));
+			long[] starts = new long[count], ends = new long[count];
+
+			for (int range = 0; range < count; range++) {
+				starts[range] = Long.parseLong(properties.getProperty("range." + range + ".start"));
+				ends[range] = Long.parseLong(properties.getProperty("range." + range + ".end"));
+			}
+
+			PartialDownload download = new PartialDownload(file, sidecar, url, length, validator, starts, ends);
+			for (int range = 0; range < count; range++) {
+				long completed = Long.parseLong(properties.getProperty("range." + range + ".completed"));
+				download.completed.set(range, completed);
+				download.saved[range] = completed;
+			}
+
+			return download;
+		} catch (NumberFormatException e) { // Thrown by parseLong for a missing (null) property, too.
+			logger.fine("Discarding malformed partial download sidecar " + sidecar + ".");
+			return null;
+		}
+	}
+
+	/**
+	 * The progress of each range, as the amount of bytes completed.
+	 */
+	private final AtomicLongArray completed;
+
+	/**
+	 * The position of the last byte (inclusive) of each range.
+	 */
+	private final long[] ends;
+
+	/**
+	 * The path to the partial data.
+	 */
+	private final Path file;
+
+	/**
+	 * The expected length of the file, or {@code -1} if it is not known.
+	 */
+	private final long length;
+
+	/**
+	 * The amount of bytes completed in each range when the sidecar was last saved.
+	 */
+	private final long[] saved;
+
+	/**
+	 * The path to the sidecar.
+	 */
+	private final Path sidecar;
+
+	/**
+	 * The position of the first byte of each range.
+	 */
+	private final long[] starts;
+
+	/**
+	 * The URL being downloaded.
+	 */
+	private final URL url;
+
+	/**
+	 * The validator of the file, or {@code null} if there is none.
+	 */
+	private final String validator;
+
+	/**
+	 * Creates the PartialDownload.
+	 *
+	 * @param file The path to the partial data.
+	 * @param sidecar The path to the sidecar.
+	 * @param url The URL being downloaded.
+	 * @param length The expected length of the file.
+	 * @param validator The validator of the file.
+	 * @param starts The position of the first byte of each range.
+	 * @param ends The position of the last byte (inclusive) of each range.
+	 */
+	private PartialDownload(Path file, Path sidecar, URL url, long length, String validator, long[] starts, long[] ends) {
+		this.file = file;
+		this.sidecar = sidecar;
+		this.url = url;
+		this.length = length;
+		this.validator = validator;
+		this.starts = starts.clone();
+		this.ends = ends.clone();
+		this.completed = new AtomicLongArray(starts.length);
+		this.saved = new long[starts.length];
+	}
+
+	/**
+	 * Records that the specified amount of bytes in a range have been written to the partial file, saving the sidecar
+	 * if the range has advanced far enough since it was last saved.
+	 *
+	 * @param channel The {@link FileChannel} the bytes were written to.
+	 * @param range The index of the range.
+	 * @param bytes The amount of bytes written.
+	 * @throws IOException If there is an error saving the sidecar.
+	 */
+	public void advance(FileChannel channel, int range, long bytes) throws IOException {
+		long total = completed.addAndGet(range, bytes);
+
+		synchronized (saved) {
+			if (total - saved[range] >= SAVE_INTERVAL) {
+				save(channel);
+			}
+		}
+	}
+
+	/**
+	 * Verifies and completes this download, moving the partial data to the specified destination and deleting the
+	 * sidecar.
+	 *
+	 * @param destination The destination of the file.
+	 * @throws IOException If the partial data is not the expected length, or if it could not be moved.
+	 */
+	public void complete(Path destination) throws IOException {
+		long size = Files.size(file);
+		if (length > 0 && size != length) {
+			discard();
+			throw new IOException("Downloaded " + size + " bytes from " + url + ", expected " + length + ".");
+		}
+
+		for (int range = 0; range < starts.length; range++) {
+			if (length > 0 && completed.get(range) != ends[range] - starts[range] + 1) {
+				throw new IOException("Range " + range + " of " + url + " is incomplete.");
+			}
+		}
+
+		try {
+			Files.move(file, destination, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (AtomicMoveNotSupportedException e) {
+			Files.move(file, destination, StandardCopyOption.REPLACE_EXISTING);
+		}
+
+		Files.deleteIfExists(sidecar);
+	}
+
+	/**
+	 * Discards any progress, deleting the partial data and the sidecar.
+	 *
+	 * @throws IOException If there is an error deleting either file.
+	 */
+	public void discard() throws IOException {
+		for (int range = 0; range < starts.length; range++) {
+			completed.set(range, 0);
+		}
+
+		Files.deleteIfExists(file);
+		Files.deleteIfExists(sidecar);
+	}
+
+	/**
+	 * Gets the amount of bytes completed in the specified range.
+	 *
+	 * @param range The index of the range.
+	 * @return The amount of bytes.
+	 */
+	public long getCompleted(int range) {
+		return completed.get(range);
+	}
+
+	/**
+	 * Gets the position of the last byte (inclusive) of the specified range.
+	 *
+	 * @param range The index of the range.
+	 * @return The position.
+	 */
+	public long getEnd(int range) {
+		return ends[range];
+	}
+
+	/**
+	 * Gets the path to the partial data.
+	 *
+	 * @return The path.
+	 */
+	public Path getFile() {
+		return file;
+	}
+
+	/**
+	 * Gets the amount of ranges in this download.
+	 *
+	 * @return The amount of ranges.
+	 */
+	public int getRangeCount() {
+		return starts.length;
+	}
+
+	/**
+	 * Gets the position of the first byte of the specified range.
+	 *
+	 * @param range The index of the range.
+	 * @return The position.
+	 */
+	public long getStart(int range) {
+		return starts[range];
+	}
+
+	/**
+	 * Gets the validator of the file.
+	 *
+	 * @return The validator, or {@code null} if there is none.
+	 */
+	public String getValidator() {
+		return validator;
+	}
+
+	/**
+	 * Returns whether or not any data from a previous attempt was restored.
+	 *
+	 * @return {@code true} if this download is being resumed, {@code false} if not.
+	 */
+	public boolean isResumed() {
+		for (int range = 0; range < starts.length; range++) {
+			if (completed.get(range) > 0) {
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * Saves the sidecar, recording the current progress of each range. The partial file is forced to the storage
+	 * device first, so that every byte the sidecar records has been persisted.
+	 *
+	 * @param channel The {@link FileChannel} of the partial file.
+	 * @throws IOException If there is an error forcing the partial file or writing the sidecar.
+	 */
+	public void save(FileChannel channel) throws IOException {
+		if (validator == null || length <= 0) {
+			return; // The download can't be resumed, so there's no point recording its progress.
+		}
+
+		synchronized (saved) {
+			Properties properties = new Properties();
+			properties.setProperty("url", url.toString());
+			properties.setProperty("length", Long.toString(length));
+			properties.setProperty("validator", validator);
+			properties.setProperty("ranges", Integer.toString(starts.length));
+
+			for (int range = 0; range < starts.length; range++) {
+				saved[range] = completed.get(range);
+				properties.setProperty("range." + range + ".start", Long.toString(starts[range]));
+				properties.setProperty("range." + range + ".end", Long.toString(ends[range]));
+				properties.setProperty("range." + range + ".completed", Long.toString(saved[range]));
+			}
+
+			channel.force(false); // The progress has been recorded, so every byte it counts has been written.
+
+			Path temporary = sidecar.resolveSibling(sidecar.getFileName() + ".tmp");
+			try (OutputStream os = Files.newOutputStream(temporary)) {
+				properties.store(os, null);
+			}
+
+			Files.move(temporary, sidecar, StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+
+}
@@ -0,0 +1,211 @@
+package rs.emulate.lynx.net;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+
+/**
+ * An {@link InputStream} of a file that is being downloaded, which writes every byte read from it to disk. The file is
+ * only moved to its destination (and staged in the {@link HttpCache}) when the download is explicitly
+ * {@link #complete completed}: any data that was not read by then is drained from the connection first, so the file on
+ * disk is always complete. Closing a download that has not been completed (e.g. because processing the stream failed)
+ * discards it.
+ *
+ * @author Major
+ */
+public final class StreamingDownload extends FilterInputStream {
+
+	/**
+	 * The size of the buffer used when draining the stream, in bytes.
+	 */
+	private static final int DRAIN_BUFFER_SIZE = 64 * 1024;
+
+	/**
+	 * The HttpCache to store the file in, or {@code null} if the file is not cached.
+	 */
+	private final HttpCache cache;
+
+	/**
+	 * The FileChannel of the partial file.
+	 */
+	private final FileChannel channel;
+
+	/**
+	 * Whether or not this stream has been closed.
+	 */
+	private boolean closed;
+
+	/**
+	 * Whether or not this download has been completed.
+	 */
+	private boolean completed;
+
+	/**
+	 * The destination of the file.
+	 */
+	private final Path destination;
+
+	/**
+	 * The {@code Last-Modified} header of the file, or {@code null} if the server did not provide one.
+	 */
+	private final String modified;
+
+	/**
+	 * The PartialDownload the file is written to.
+	 */
+	private final PartialDownload partial;
+
+	/**
+	 * The time the download started, in nanoseconds.
+	 */
+	private final long start = System.nanoTime();
+
+	/**
+	 * The {@code ETag} header of the file, or {@code null} if the server did not provide one.
+	 */
+	private final String tag;
+
+	/**
+	 * The amount of bytes transferred.
+	 */
+	private long transferred;
+
+	/**
+	 * The URL being downloaded.
+	 */
+	private final URL url;
+
+	/**
+	 * Creates the StreamingDownload.
+	 *
+	 * @param input The InputStream of the connection.
+	 * @param url The URL being downloaded.
+	 * @param tag The {@code ETag} header of the response.
+	 * @param modified The {@code Last-Modified} header of the response.
+	 * @param partial The {@link PartialDownload} to write to.
+	 * @param channel The FileChannel of the partial file.
+	 * @param destination The destination of the file.
+	 * @param cache The {@link HttpCache} to store the file in, or {@code null} if the file should not be cached.
+	 */
+	StreamingDownload(InputStream input, URL url, String tag, String modified, PartialDownload partial,
+			FileChannel channel, Path destination, HttpCache cache) {
+		super(input);
+		this.url = url;
+		this.tag = tag;
+		this.modified = modified;
+		this.partial = partial;
+		this.channel = channel;
+		this.destination = destination;
+		this.cache = cache;
+	}
+
+	/**
+	 * Closes the connection and the partial file. If this download has not been {@link #complete completed}, the
+	 * partial file is discarded.
+	 */
+	@Override
+	public void close() throws IOException {
+		if (closed) {
+			return;
+		}
+
+		closed = true;
+		try {
+			in.close();
+			channel.close();
+		} finally {
+			if (!completed) {
+				partial.discard();
+			}
+		}
+	}
+
+	/**
+	 * Completes this download, draining the rest of the file from the connection, moving the file to its destination
+	 * and staging it in the {@link HttpCache} (to be committed once the file has been processed). The stream is closed.
+	 *
+	 * @throws IOException If there is an error draining the connection or moving the file.
+	 */
+	public void complete() throws IOException {
+		if (closed) {
+			throw new IOException("Cannot complete a download that has been closed.");
+		}
+
+		byte[] buffer = new byte[DRAIN_BUFFER_SIZE];
+		while (read(buffer, 0, buffer.length) != -1) {
+			// Drain the rest of the file so that the copy on disk is complete.
+		}
+
+		closed = true;
+		in.close();
+		channel.close();
+
+		partial.complete(destination);
+		completed = true;
+		if (cache != null) {
+			cache.stage(url, tag, modified);
+		}
+
+		double seconds = Math.max(System.nanoTime() - start, 1) / 1e9, mebibytes = transferred / (1024.0 * 1024.0);
+		System.out.println(String.format("Streamed %.2f MiB in %.2fs (%.2f MiB/s).", mebibytes, seconds, mebibytes / seconds));
+	}
+
+	@Override
+	public void mark(int limit) {
+		// Marking is not supported, as the bytes have already been written to disk.
+	}
+
+	@Override
+	public boolean markSupported() {
+		return false;
+	}
+
+	@Override
+	public int read() throws IOException {
+		int value = in.read();
+		if (value != -1) {
+			write(ByteBuffer.wrap(new byte[] { (byte) value }));
+		}
+
+		return value;
+	}
+
+	@Override
+	public int read(byte[] bytes, int offset, int length) throws IOException {
+		int read = in.read(bytes, offset, length);
+		if (read > 0) {
+			write(ByteBuffer.wrap(bytes, offset, read));
+		}
+
+		return read;
+	}
+
+	@Override
+	public void reset() throws IOException {
+		throw new IOException("Mark and reset are not supported.");
+	}
+
+	@Override
+	public long skip(long count) throws IOException {
+		byte[] buffer = new byte[(int) Math.min(count, DRAIN_BUFFER_SIZE)];
+		int read = read(buffer, 0, buffer.length);
+		return Math.max(read, 0);
+	}
+
+	/**
+	 * Writes the specified bytes to the partial file.
+	 *
+	 * @param buffer The {@link ByteBuffer} containing the bytes.
+	 * @throws IOException If there is an error writing to the file.
+	 */
+	private void write(ByteBuffer buffer) throws IOException {
+		while (buffer.hasRemaining()) {
+			transferred += channel.write(buffer);
+		}
+	}
+
+}
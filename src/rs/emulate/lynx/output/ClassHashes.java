@@ -0,0 +1,32 @@
+package rs.emulate.lynx.output;
+
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The SHA-256 hashes of the classes of a revision, shared between the sinks that need them so that each class is only
+ * hashed once. The first sink to ask for the hash of a class computes it; any other sink asking for it at the same
+ * time waits for that hash rather than computing its own.
+ *
+ * @author Major
+ */
+public final class ClassHashes {
+
+	/**
+	 * The Map of class names to hashes.
+	 */
+	private final Map<String, String> hashes = new ConcurrentHashMap<>();
+
+	/**
+	 * Gets the hash of the specified class, hashing it if it has not been already.
+	 *
+	 * @param name The name of the class.
+	 * @param data The {@link ByteBuffer} containing the data of the class. Its position is not changed.
+	 * @return The hash, as a lower-case hexadecimal String.
+	 */
+	public String get(String name, ByteBuffer data) {
+		return hashes.computeIfAbsent(name, key -> HashManifest.hash(data));
+	}
+
+}
@@ -0,0 +1,309 @@
+package rs.emulate.lynx.output;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * An {@link OutputSink} that writes each class to its own file, using a bounded pool of threads. The directory of each
+ * package is created once, when its first class is written to the sink, and each file is then written concurrently
+ * with the others, so that the latency of each file (which is high on network storage) overlaps with that of the
+ * others.
+ * <p>
+ * The SHA-256 hash of each class is recorded in a {@link HashManifest}, which is written alongside the directory once
+ * every class has been written. If the directory of the previous revision is given, each class is compared against
+ * its manifest: a class that is unchanged is hard-linked to the file of the previous revision rather than written
+ * again, so the amount of data written (and the growth of the data directory) scales with the size of the change
+ * rather than the size of the client.
+ *
+ * @author Major
+ */
+public final class DirectorySink implements OutputSink {
+
+	/**
+	 * The amount of seconds an idle thread waits for another file before it stops.
+	 */
+	private static final long KEEP_ALIVE_SECONDS = 1;
+
+	/**
+	 * The logger for this class.
+	 */
+	private static final Logger logger = Logger.getLogger(DirectorySink.class.getSimpleName());
+
+	/**
+	 * Replaces the file at the specified {@link Path} with a hard link to the specified original file, if the original
+	 * file still has the specified size.
+	 *
+	 * @param path The Path of the file.
+	 * @param original The Path of the original file.
+	 * @param size The expected size of the original file, in bytes.
+	 * @return {@code true} if the file is now a link to the original file, {@code false} if the original file has
+	 *         changed or could not be linked to (e.g. because it is on a different file store).
+	 */
+	private static boolean link(Path path, Path original, long size) {
+		try {
+			if (Files.size(original) != size) {
+				return false; // Modified since the manifest was written, so can't be trusted.
+			} else if (Files.exists(path) && Files.isSameFile(path, original)) {
+				return true;
+			}
+
+			Files.deleteIfExists(path);
+			Files.createLink(path, original);
+			return true;
+		} catch (IOException | UnsupportedOperationException | SecurityException e) {
+			logger.log(Level.FINE, "Could not link " + path + " to " + original + ".", e);
+			return false;
+		}
+	}
+
+	/**
+	 * Writes the remaining data in the specified {@link ByteBuffer} to the file at the specified {@link Path},
+	 * replacing any existing file. The position of the ByteBuffer is not changed.
+	 * <p>
+	 * An existing file is deleted rather than truncated, as it may be a link to the file of an earlier revision.
+	 *
+	 * @param path The Path of the file.
+	 * @param buffer The ByteBuffer.
+	 * @throws IOException If there is an error writing the file.
+	 */
+	private static void write(Path path, ByteBuffer buffer) throws IOException {
+		Files.deleteIfExists(path);
+
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE, StandardOpenOption.CREATE_NEW)) {
+			ByteBuffer data = buffer.duplicate();
+			while (data.hasRemaining()) {
+				channel.write(data);
+			}
+		}
+	}
+
+	/**
+	 * The amount of classes that were not in the previous revision.
+	 */
+	private final AtomicInteger added = new AtomicInteger();
+
+	/**
+	 * The amount of classes that have changed since the previous revision.
+	 */
+	private final AtomicInteger changed = new AtomicInteger();
+
+	/**
+	 * The directory the classes are written to.
+	 */
+	private final Path directory;
+
+	/**
+	 * The ThreadPoolExecutor files are written on.
+	 */
+	private final ThreadPoolExecutor executor;
+
+	/**
+	 * The List of Futures of the files being written.
+	 */
+	private final List<Future<?>> futures = new ArrayList<>();
+
+	/**
+	 * The ClassHashes the hash of each class is taken from.
+	 */
+	private final ClassHashes hasher;
+
+	/**
+	 * The Map of class names to hashes.
+	 */
+	private final Map<String, String> hashes = new ConcurrentHashMap<>();
+
+	/**
+	 * The amount of unchanged classes that were linked to the file of the previous revision.
+	 */
+	private final AtomicInteger linked = new AtomicInteger();
+
+	/**
+	 * The Set of package directories that have been created.
+	 */
+	private final Set<Path> packages = new HashSet<>();
+
+	/**
+	 * The directory of the previous revision, or {@code null} if there is not one.
+	 */
+	private final Path previous;
+
+	/**
+	 * The HashManifest of the previous revision, or {@code null} if there is not one.
+	 */
+	private final HashManifest previousManifest;
+
+	/**
+	 * The time at which the first class was written, in nanoseconds, or {@code 0} if none have been.
+	 */
+	private long start;
+
+	/**
+	 * The maximum amount of files written concurrently.
+	 */
+	private final int threads;
+
+	/**
+	 * The amount of classes that are unchanged since the previous revision.
+	 */
+	private final AtomicInteger unchanged = new AtomicInteger();
+
+	/**
+	 * Creates the DirectorySink, taking the hash of each class from the specified {@link ClassHashes}. If there is a
+	 * previous revision with a manifest, the classes that are unchanged since it are linked to rather than written.
+	 *
+	 * @param directory The {@link Path} to the directory to write the classes to.
+	 * @param threads The maximum amount of files written concurrently.
+	 * @param previous The Path to the directory of the classes of the previous revision, or {@code null} if there is
+	 *            not one.
+	 * @param hasher The ClassHashes, which may be shared with other sinks.
+	 * @throws IOException If the manifest of the previous revision exists, but could not be read.
+	 */
+	public DirectorySink(Path directory, int threads, Path previous, ClassHashes hasher) throws IOException {
+		if (threads < 1) {
+			throw new IllegalArgumentException("Must write with at least one thread.");
+		}
+
+		this.directory = directory;
+		this.threads = threads;
+		this.hasher = hasher;
+
+		Path manifest = (previous == null) ? null : HashManifest.locate(previous);
+		if (manifest != null && Files.exists(manifest)) {
+			this.previous = previous;
+			this.previousManifest = HashManifest.read(manifest);
+		} else {
+			this.previous = null;
+			this.previousManifest = null;
+		}
+
+		AtomicInteger count = new AtomicInteger();
+		executor = new ThreadPoolExecutor(threads, threads, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+				new LinkedBlockingQueue<>(), runnable -> {
+					Thread thread = new Thread(runnable, "DirectorySink-" + count.incrementAndGet());
+					thread.setDaemon(true);
+					return thread;
+				});
+		executor.allowCoreThreadTimeOut(true); // Don't leave idle threads behind if the sink is never finished.
+	}
+
+	/**
+	 * Waits for every file to be written and writes the manifest, printing how many files were written per second
+	 * and (if there is a previous revision) how many classes have changed since it.
+	 */
+	@Override
+	public void finish() throws IOException {
+		try {
+			for (Future<?> future : futures) {
+				await(future);
+			}
+		} finally {
+			executor.shutdownNow(); // Interrupts any file still being written if one failed.
+		}
+
+		new HashManifest(hashes).write(HashManifest.locate(directory));
+
+		double elapsed = (start == 0) ? 0 : (System.nanoTime() - start) / 1e9;
+		System.out.println(String.format("Wrote %d class files in %.2fs (%.0f files/s, %d threads).", futures.size(),
+				elapsed, futures.size() / Math.max(elapsed, 1e-9), threads));
+
+		if (previousManifest != null) {
+			long removed = previousManifest.getNames().stream().filter(name -> !hashes.containsKey(name)).count();
+			System.out.println(String.format("Since the previous revision: %d added, %d changed, %d unchanged (%d "
+					+ "linked), %d removed.", added.get(), changed.get(), unchanged.get(), linked.get(), removed));
+		}
+	}
+
+	@Override
+	public String getName() {
+		return directory.getFileName().toString();
+	}
+
+	@Override
+	public void write(String name, ByteBuffer data) throws IOException {
+		if (start == 0) {
+			start = System.nanoTime();
+		}
+
+		Path path = directory.resolve(name);
+		Path parent = path.getParent();
+		if (packages.add(parent)) {
+			Files.createDirectories(parent);
+		}
+
+		futures.add(executor.submit(() -> {
+			store(name, path, data);
+			return null;
+		}));
+	}
+
+	/**
+	 * Hashes the specified class and stores it, linking it to the file of the previous revision if it is unchanged.
+	 *
+	 * @param name The name of the class.
+	 * @param path The {@link Path} of the file.
+	 * @param data The {@link ByteBuffer} containing the data of the class.
+	 * @throws IOException If there is an error writing the file.
+	 */
+	private void store(String name, Path path, ByteBuffer data) throws IOException {
+		String hash = hasher.get(name, data);
+		hashes.put(name, hash);
+
+		String last = (previousManifest == null) ? null : previousManifest.get(name);
+		if (last == null) {
+			added.incrementAndGet();
+		} else if (!last.equals(hash)) {
+			changed.incrementAndGet();
+		} else {
+			unchanged.incrementAndGet();
+			if (link(path, previous.resolve(name), data.remaining())) {
+				linked.incrementAndGet();
+				return;
+			}
+		}
+
+		write(path, data);
+	}
+
+	/**
+	 * Waits for the specified {@link Future} to complete, rethrowing any exception thrown by its task.
+	 *
+	 * @param future The Future.
+	 * @throws IOException If the task threw an I/O exception, or if the current thread was interrupted.
+	 */
+	private void await(Future<?> future) throws IOException {
+		try {
+			future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while waiting for class files to be written.", e);
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof IOException) {
+				throw (IOException) cause;
+			} else if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+
+			throw new IOException("Error writing class files.", cause);
+		}
+	}
+
+}
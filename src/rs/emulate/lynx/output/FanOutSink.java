@@ -0,0 +1,125 @@
+package rs.emulate.lynx.output;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.stream.Collectors;
+
+/**
+ * An {@link OutputSink} that passes every class to each of several other sinks, so that the classes are only walked
+ * once however many outputs there are. Each sink receives its own view of each {@link ByteBuffer}, so no sink can
+ * affect the position seen by another.
+ * <p>
+ * The sinks are finished concurrently, so writing takes as long as the slowest sink, rather than the sum of them all.
+ *
+ * @author Major
+ */
+public final class FanOutSink implements OutputSink {
+
+	/**
+	 * The List of sinks.
+	 */
+	private final List<OutputSink> sinks;
+
+	/**
+	 * Creates the FanOutSink.
+	 *
+	 * @param sinks The {@link OutputSink}s to pass classes to.
+	 */
+	public FanOutSink(OutputSink... sinks) {
+		this(Arrays.asList(sinks));
+	}
+
+	/**
+	 * Creates the FanOutSink.
+	 *
+	 * @param sinks The {@link List} of {@link OutputSink}s to pass classes to.
+	 */
+	public FanOutSink(List<OutputSink> sinks) {
+		this.sinks = new ArrayList<>(sinks);
+	}
+
+	/**
+	 * Finishes every sink concurrently, each on its own thread (other than the first, which is finished on the calling
+	 * thread). Every sink is finished even if another fails.
+	 *
+	 * @throws IOException If any sink failed, with the failures of the other sinks suppressed.
+	 */
+	@Override
+	public void finish() throws IOException {
+		List<FutureTask<Void>> tasks = new ArrayList<>(sinks.size());
+
+		for (OutputSink sink : sinks.subList(Math.min(1, sinks.size()), sinks.size())) {
+			FutureTask<Void> task = new FutureTask<>(() -> {
+				sink.finish();
+				return null;
+			});
+
+			Thread thread = new Thread(task, "FanOutSink-" + sink.getName());
+			thread.setDaemon(true);
+			thread.start();
+			tasks.add(task);
+		}
+
+		Throwable failure = null;
+		if (!sinks.isEmpty()) {
+			try {
+				sinks.get(0).finish();
+			} catch (IOException | RuntimeException e) {
+				failure = e;
+			}
+		}
+
+		for (FutureTask<Void> task : tasks) {
+			Throwable cause = await(task);
+			if (failure == null) {
+				failure = cause;
+			} else if (cause != null) {
+				failure.addSuppressed(cause);
+			}
+		}
+
+		if (failure instanceof IOException) {
+			throw (IOException) failure;
+		} else if (failure instanceof RuntimeException) {
+			throw (RuntimeException) failure;
+		} else if (failure != null) {
+			throw new IOException("Error writing classes.", failure);
+		}
+	}
+
+	@Override
+	public String getName() {
+		return sinks.stream().map(OutputSink::getName).collect(Collectors.joining(", "));
+	}
+
+	@Override
+	public void write(String name, ByteBuffer data) throws IOException {
+		for (OutputSink sink : sinks) {
+			sink.write(name, data.duplicate());
+		}
+	}
+
+	/**
+	 * Waits for the specified task to finish, returning its failure.
+	 *
+	 * @param task The {@link FutureTask} finishing a sink.
+	 * @return The failure, or {@code null} if the task succeeded.
+	 */
+	private Throwable await(FutureTask<Void> task) {
+		try {
+			task.get();
+			return null;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return new IOException("Interrupted while waiting for classes to be written.", e);
+		} catch (ExecutionException e) {
+			return e.getCause();
+		}
+	}
+
+}
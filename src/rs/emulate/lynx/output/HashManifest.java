@@ -0,0 +1,184 @@
+package rs.emulate.lynx.output;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * A manifest of the SHA-256 hashes of the classes in a revision, keyed by class name. The manifest is stored in the
+ * format used by {@code sha256sum} (a hash, two spaces, then the name, on each line), so the files of a revision can
+ * be checked with {@code sha256sum -c}.
+ *
+ * @author Major
+ */
+public final class HashManifest {
+
+	/**
+	 * The name of the digest algorithm.
+	 */
+	public static final String ALGORITHM = "SHA-256";
+
+	/**
+	 * The MessageDigest of each thread, as creating one is relatively slow.
+	 */
+	private static final ThreadLocal<MessageDigest> DIGESTS = ThreadLocal.withInitial(() -> {
+		try {
+			return MessageDigest.getInstance(ALGORITHM);
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException("The " + ALGORITHM + " algorithm is not available - please report.", e);
+		}
+	});
+
+	/**
+	 * The extension of manifest files.
+	 */
+	private static final String EXTENSION = ".sha256";
+
+	/**
+	 * The length of a hash, in hexadecimal digits.
+	 */
+	private static final int HASH_LENGTH = 64;
+
+	/**
+	 * The hexadecimal digits.
+	 */
+	private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+	/**
+	 * Hashes the remaining data in the specified {@link ByteBuffer}. The position of the ByteBuffer is not changed.
+	 *
+	 * @param data The ByteBuffer.
+	 * @return The hash, as a lower-case hexadecimal String.
+	 */
+	public static String hash(ByteBuffer data) {
+		MessageDigest digest = DIGESTS.get();
+		digest.update(data.duplicate());
+
+		byte[] hash = digest.digest();
+		char[] hex = new char[hash.length * 2];
+		for (int index = 0; index < hash.length; index++) {
+			hex[index * 2] = HEX_DIGITS[(hash[index] >> 4) & 0xF];
+			hex[index * 2 + 1] = HEX_DIGITS[hash[index] & 0xF];
+		}
+
+		return new String(hex);
+	}
+
+	/**
+	 * Gets the {@link Path} of the manifest of the classes in the specified directory, which is a sibling of the
+	 * directory (e.g. {@code bin.sha256} for {@code bin}).
+	 *
+	 * @param directory The Path of the directory.
+	 * @return The Path of the manifest.
+	 */
+	public static Path locate(Path directory) {
+		return directory.resolveSibling(directory.getFileName() + EXTENSION);
+	}
+
+	/**
+	 * Reads the manifest at the specified {@link Path}.
+	 *
+	 * @param path The Path of the manifest.
+	 * @return The HashManifest.
+	 * @throws IOException If there is an error reading the manifest, or if it is malformed.
+	 */
+	public static HashManifest read(Path path) throws IOException {
+		List<String> lines = Files.readAllLines(path, StandardCharsets.UTF_8);
+		Map<String, String> hashes = new TreeMap<>();
+
+		for (String line : lines) {
+			if (line.isEmpty()) {
+				continue;
+			} else if (line.length() < HASH_LENGTH + 2 || line.charAt(HASH_LENGTH) != ' ') {
+				throw new IOException("Malformed line in " + path + ": " + line);
+			}
+
+			// sha256sum separates the hash and name with a space, then a space (text) or an asterisk (binary mode).
+			hashes.put(line.substring(HASH_LENGTH + 2), line.substring(0, HASH_LENGTH));
+		}
+
+		return new HashManifest(hashes);
+	}
+
+	/**
+	 * The SortedMap of class names to hashes.
+	 */
+	private final SortedMap<String, String> hashes;
+
+	/**
+	 * Creates the HashManifest.
+	 *
+	 * @param hashes The {@link Map} of class names to hashes. The Map is copied.
+	 */
+	public HashManifest(Map<String, String> hashes) {
+		this.hashes = Collections.unmodifiableSortedMap(new TreeMap<>(hashes));
+	}
+
+	/**
+	 * Gets the hash of the class with the specified name.
+	 *
+	 * @param name The name of the class.
+	 * @return The hash, or {@code null} if this manifest does not contain the class.
+	 */
+	public String get(String name) {
+		return hashes.get(name);
+	}
+
+	/**
+	 * Gets the names of the classes in this manifest, in order.
+	 *
+	 * @return The {@link Set} of names.
+	 */
+	public Set<String> getNames() {
+		return hashes.keySet();
+	}
+
+	/**
+	 * Gets the amount of classes in this manifest.
+	 *
+	 * @return The amount of classes.
+	 */
+	public int size() {
+		return hashes.size();
+	}
+
+	/**
+	 * Writes this manifest to the specified {@link Path}. The manifest is written to a temporary file that then
+	 * replaces the existing manifest (atomically, if supported), so a failed run never leaves a truncated manifest.
+	 *
+	 * @param path The Path to write the manifest to.
+	 * @throws IOException If there is an error writing the manifest.
+	 */
+	public void write(Path path) throws IOException {
+		Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+
+		try (BufferedWriter writer = Files.newBufferedWriter(temporary, StandardCharsets.UTF_8)) {
+			for (Map.Entry<String, String> entry : hashes.entrySet()) {
+				writer.write(entry.getValue());
+				writer.write("  ");
+				writer.write(entry.getKey());
+				writer.newLine();
+			}
+		}
+
+		try {
+			Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (AtomicMoveNotSupportedException e) {
+			Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+
+}
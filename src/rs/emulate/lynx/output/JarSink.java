@@ -0,0 +1,65 @@
+package rs.emulate.lynx.output;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import rs.emulate.lynx.zip.JarWriter;
+
+/**
+ * An {@link OutputSink} that writes the classes to a jar with a {@link JarWriter}, which may write to a file or a
+ * stream. Each class starts compressing as soon as it is written to the sink, and the jar itself is assembled when the
+ * sink finishes.
+ *
+ * @author Major
+ */
+public final class JarSink implements OutputSink {
+
+	/**
+	 * The name of the jar.
+	 */
+	private final String name;
+
+	/**
+	 * The time at which the first class was written, in nanoseconds, or {@code 0} if none have been.
+	 */
+	private long start;
+
+	/**
+	 * The JarWriter.
+	 */
+	private final JarWriter writer;
+
+	/**
+	 * Creates the JarSink.
+	 *
+	 * @param name The name of the jar.
+	 * @param writer The {@link JarWriter} writing the jar.
+	 */
+	public JarSink(String name, JarWriter writer) {
+		this.name = name;
+		this.writer = writer;
+	}
+
+	@Override
+	public void finish() throws IOException {
+		writer.finish();
+
+		double elapsed = (start == 0) ? 0 : (System.nanoTime() - start) / 1e9;
+		System.out.println(String.format("Wrote %s in %.2fs.", name, elapsed));
+	}
+
+	@Override
+	public String getName() {
+		return name;
+	}
+
+	@Override
+	public void write(String name, ByteBuffer data) {
+		if (start == 0) {
+			start = System.nanoTime();
+		}
+
+		writer.add(name, data);
+	}
+
+}
@@ -0,0 +1,54 @@
+package rs.emulate.lynx.output;
+
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * An {@link OutputSink} that keeps a copy of each class on the heap, so that the classes can be handed to another
+ * component (e.g. an analysis or a test) in the same process, without being written to disk.
+ *
+ * @author Major
+ */
+public final class MemorySink implements OutputSink {
+
+	/**
+	 * The amount of bytes of classes kept.
+	 */
+	private long bytes;
+
+	/**
+	 * The Map of class names to classes, in name order.
+	 */
+	private final Map<String, ByteBuffer> classes = new TreeMap<>();
+
+	@Override
+	public void finish() {
+		System.out.println(String.format("Kept %d classes (%d KiB) in memory.", classes.size(), bytes / 1024));
+	}
+
+	/**
+	 * Gets the classes that have been written to this sink.
+	 *
+	 * @return The unmodifiable {@link Map} of class names to read-only {@link ByteBuffer}s, in name order.
+	 */
+	public Map<String, ByteBuffer> getClasses() {
+		return Collections.unmodifiableMap(classes);
+	}
+
+	@Override
+	public String getName() {
+		return "memory";
+	}
+
+	@Override
+	public void write(String name, ByteBuffer data) {
+		ByteBuffer copy = ByteBuffer.allocate(data.remaining());
+		copy.put(data.duplicate()).flip();
+
+		classes.put(name, copy.asReadOnlyBuffer());
+		bytes += copy.remaining();
+	}
+
+}
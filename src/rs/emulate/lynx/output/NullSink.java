@@ -0,0 +1,33 @@
+package rs.emulate.lynx.output;
+
+import java.nio.ByteBuffer;
+
+/**
+ * An {@link OutputSink} that discards every class, e.g. when only the class store or revision archive should be
+ * written, or to measure how quickly the gamepack alone can be decrypted.
+ *
+ * @author Major
+ */
+public final class NullSink implements OutputSink {
+
+	/**
+	 * The amount of classes discarded.
+	 */
+	private int count;
+
+	@Override
+	public void finish() {
+		System.out.println("Discarded " + count + " classes.");
+	}
+
+	@Override
+	public String getName() {
+		return "none";
+	}
+
+	@Override
+	public void write(String name, ByteBuffer data) {
+		count++;
+	}
+
+}
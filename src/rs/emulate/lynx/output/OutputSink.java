@@ -0,0 +1,39 @@
+package rs.emulate.lynx.output;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * A destination for the decrypted classes. Classes are passed to the sink one at a time, from a single thread, and the
+ * sink may write them asynchronously; once every class has been passed to the sink, {@link #finish} waits for it to
+ * finish writing them.
+ *
+ * @author Major
+ */
+public interface OutputSink {
+
+	/**
+	 * Finishes writing the classes, blocking until they have all been written.
+	 *
+	 * @throws IOException If there is an error writing the classes.
+	 */
+	void finish() throws IOException;
+
+	/**
+	 * Gets the name of this sink, for diagnostics.
+	 *
+	 * @return The name.
+	 */
+	String getName();
+
+	/**
+	 * Writes the class with the specified name.
+	 *
+	 * @param name The name of the class.
+	 * @param data The {@link ByteBuffer} containing the data of the class. The sink must not change its position, or
+	 *            use it after it has finished.
+	 * @throws IOException If there is an error writing the class.
+	 */
+	void write(String name, ByteBuffer data) throws IOException;
+
+}
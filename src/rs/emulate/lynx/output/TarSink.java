@@ -0,0 +1,256 @@
+package rs.emulate.lynx.output;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * An {@link OutputSink} that streams the classes as a (ustar) tar archive, to a file or to a stream such as standard
+ * output, so that the classes can be piped straight into another tool. Each class is written as soon as it is passed
+ * to the sink, so the archive is never held in memory.
+ *
+ * @author Major
+ */
+public final class TarSink implements OutputSink {
+
+	/**
+	 * The size of a tar block, in bytes.
+	 */
+	private static final int BLOCK_SIZE = 512;
+
+	/**
+	 * The size of the buffer that blocks are gathered in before they are written.
+	 */
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	/**
+	 * The maximum length of the name field, in bytes.
+	 */
+	private static final int MAXIMUM_NAME_LENGTH = 100;
+
+	/**
+	 * The maximum length of the name prefix field, in bytes.
+	 */
+	private static final int MAXIMUM_PREFIX_LENGTH = 155;
+
+	/**
+	 * Writes the specified value into the specified header field as a zero-padded, NUL-terminated octal number.
+	 *
+	 * @param header The header.
+	 * @param offset The offset of the field.
+	 * @param length The length of the field, including the terminator.
+	 * @param value The value.
+	 */
+	private static void putOctal(byte[] header, int offset, int length, long value) {
+		String octal = Long.toOctalString(value);
+		int padding = length - 1 - octal.length();
+		for (int index = 0; index < padding; index++) {
+			header[offset + index] = '0';
+		}
+
+		byte[] digits = octal.getBytes(StandardCharsets.US_ASCII);
+		System.arraycopy(digits, 0, header, offset + padding, digits.length);
+		header[offset + length - 1] = 0;
+	}
+
+	/**
+	 * The buffer blocks are gathered in.
+	 */
+	private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+	/**
+	 * The WritableByteChannel the archive is written to.
+	 */
+	private final WritableByteChannel channel;
+
+	/**
+	 * Whether or not the channel is closed when the sink finishes.
+	 */
+	private final boolean close;
+
+	/**
+	 * The amount of classes written.
+	 */
+	private int count;
+
+	/**
+	 * The modification time of each entry, in seconds since the epoch.
+	 */
+	private final long modified;
+
+	/**
+	 * The name of the archive.
+	 */
+	private final String name;
+
+	/**
+	 * The time at which the first class was written, in nanoseconds, or {@code 0} if none have been.
+	 */
+	private long start;
+
+	/**
+	 * Creates the TarSink, which writes to (and then closes) the file at the specified {@link Path}.
+	 *
+	 * @param path The Path of the file. It is replaced if it already exists.
+	 * @param reproducible Whether or not every entry should have a fixed modification time.
+	 * @throws IOException If the file could not be opened.
+	 */
+	public TarSink(Path path, boolean reproducible) throws IOException {
+		this(path.getFileName().toString(), FileChannel.open(path, StandardOpenOption.WRITE, StandardOpenOption.CREATE,
+				StandardOpenOption.TRUNCATE_EXISTING), true, reproducible);
+	}
+
+	/**
+	 * Creates the TarSink, which writes to the specified {@link WritableByteChannel}. The channel is flushed, but not
+	 * closed, when the sink finishes.
+	 *
+	 * @param name The name of the archive.
+	 * @param channel The WritableByteChannel.
+	 * @param reproducible Whether or not every entry should have a fixed modification time.
+	 */
+	public TarSink(String name, WritableByteChannel channel, boolean reproducible) {
+		this(name, channel, false, reproducible);
+	}
+
+	/**
+	 * Creates the TarSink.
+	 *
+	 * @param name The name of the archive.
+	 * @param channel The {@link WritableByteChannel} to write to.
+	 * @param close Whether or not the channel should be closed when the sink finishes.
+	 * @param reproducible Whether or not every entry should have a fixed modification time.
+	 */
+	private TarSink(String name, WritableByteChannel channel, boolean close, boolean reproducible) {
+		this.name = name;
+		this.channel = channel;
+		this.close = close;
+		this.modified = reproducible ? 0 : System.currentTimeMillis() / 1_000;
+	}
+
+	/**
+	 * Writes the end-of-archive marker (two empty blocks) and flushes the archive.
+	 */
+	@Override
+	public void finish() throws IOException {
+		try {
+			put(ByteBuffer.allocate(BLOCK_SIZE * 2));
+			flush();
+		} finally {
+			if (close) {
+				channel.close();
+			}
+		}
+
+		double elapsed = (start == 0) ? 0 : (System.nanoTime() - start) / 1e9;
+		System.out.println(String.format("Wrote %d classes to %s in %.2fs.", count, name, elapsed));
+	}
+
+	@Override
+	public String getName() {
+		return name;
+	}
+
+	@Override
+	public void write(String name, ByteBuffer data) throws IOException {
+		if (start == 0) {
+			start = System.nanoTime();
+		}
+
+		ByteBuffer contents = data.duplicate();
+		int size = contents.remaining();
+
+		put(ByteBuffer.wrap(header(name, size)));
+		put(contents);
+
+		int padding = (BLOCK_SIZE - size % BLOCK_SIZE) % BLOCK_SIZE;
+		put(ByteBuffer.allocate(padding));
+		count++;
+	}
+
+	/**
+	 * Writes the gathered blocks to the channel.
+	 *
+	 * @throws IOException If there is an error writing the blocks.
+	 */
+	private void flush() throws IOException {
+		buffer.flip();
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+
+		buffer.clear();
+	}
+
+	/**
+	 * Creates the header block of the entry with the specified name and size.
+	 *
+	 * @param name The name of the entry.
+	 * @param size The size of the entry, in bytes.
+	 * @return The header.
+	 * @throws IOException If the name is too long to be stored in a ustar header.
+	 */
+	private byte[] header(String name, int size) throws IOException {
+		byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+		byte[] prefix = new byte[0];
+
+		if (bytes.length > MAXIMUM_NAME_LENGTH) {
+			int split = name.lastIndexOf('/', MAXIMUM_PREFIX_LENGTH);
+			if (split <= 0 || name.substring(split + 1).getBytes(StandardCharsets.UTF_8).length > MAXIMUM_NAME_LENGTH
+					|| name.substring(0, split).getBytes(StandardCharsets.UTF_8).length > MAXIMUM_PREFIX_LENGTH) {
+				throw new IOException("The name " + name + " is too long to be written to a tar archive.");
+			}
+
+			prefix = name.substring(0, split).getBytes(StandardCharsets.UTF_8);
+			bytes = name.substring(split + 1).getBytes(StandardCharsets.UTF_8);
+		}
+
+		byte[] header = new byte[BLOCK_SIZE];
+		System.arraycopy(bytes, 0, header, 0, bytes.length);
+		putOctal(header, 100, 8, 0644); // Mode.
+		putOctal(header, 108, 8, 0); // Owner.
+		putOctal(header, 116, 8, 0); // Group.
+		putOctal(header, 124, 12, size);
+		putOctal(header, 136, 12, modified);
+		header[156] = '0'; // A regular file.
+
+		byte[] magic = "ustar\u000000".getBytes(StandardCharsets.US_ASCII); // The magic, then the version.
+		System.arraycopy(magic, 0, header, 257, magic.length);
+		System.arraycopy(prefix, 0, header, 345, prefix.length);
+
+		Arrays.fill(header, 148, 156, (byte) ' '); // The checksum is computed as if its field were spaces.
+		int checksum = 0;
+		for (byte value : header) {
+			checksum += value & 0xFF;
+		}
+
+		putOctal(header, 148, 7, checksum);
+		return header;
+	}
+
+	/**
+	 * Gathers the remaining data of the specified {@link ByteBuffer}, writing the gathered blocks whenever the buffer
+	 * fills up.
+	 *
+	 * @param data The ByteBuffer.
+	 * @throws IOException If there is an error writing the blocks.
+	 */
+	private void put(ByteBuffer data) throws IOException {
+		while (data.hasRemaining()) {
+			if (!buffer.hasRemaining()) {
+				flush();
+			}
+
+			int length = Math.min(buffer.remaining(), data.remaining());
+			ByteBuffer slice = data.duplicate();
+			slice.limit(slice.position() + length);
+			buffer.put(slice);
+			data.position(data.position() + length);
+		}
+	}
+
+}
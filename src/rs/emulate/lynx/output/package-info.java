@@ -0,0 +1,4 @@
+/**
+ * Contains classes for writing the decrypted classes.
+ */
+package rs.emulate.lynx.output;
\ No newline at end of file
@@ -0,0 +1,335 @@
+package rs.emulate.lynx.pack;
+
+import java.nio.ByteBuffer;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A {@link Map} of class names to {@link ByteBuffer}s, where the data of every class is stored in a single direct
+ * buffer (the slab), rather than in a heap buffer per class. The map only holds an index of each class's offset and
+ * length in the slab; the ByteBuffers it returns are read-only slices of the slab, created on demand.
+ * <p>
+ * Classes are appended to the slab, either all at once with {@link #put}, or incrementally with {@link #begin},
+ * {@link #write} and {@link #end}. Once {@link #freeze frozen}, the arena can no longer be modified, and may be read
+ * from any thread.
+ *
+ * @author Major
+ */
+public final class ClassArena extends AbstractMap<String, ByteBuffer> {
+
+	/**
+	 * The default initial capacity of the slab, in bytes.
+	 */
+	private static final int DEFAULT_CAPACITY = 1024 * 1024;
+
+	/**
+	 * The largest capacity the slab may grow to, in bytes.
+	 */
+	private static final int MAXIMUM_CAPACITY = Integer.MAX_VALUE - 8;
+
+	/**
+	 * Gets the length from the specified index value.
+	 *
+	 * @param value The index value.
+	 * @return The length.
+	 */
+	private static int length(long value) {
+		return (int) value;
+	}
+
+	/**
+	 * Gets the offset from the specified index value.
+	 *
+	 * @param value The index value.
+	 * @return The offset.
+	 */
+	private static int offset(long value) {
+		return (int) (value >>> 32);
+	}
+
+	/**
+	 * Packs the specified offset and length into an index value.
+	 *
+	 * @param offset The offset of the class in the slab.
+	 * @param length The length of the class.
+	 * @return The index value.
+	 */
+	private static long pack(int offset, int length) {
+		return (long) offset << 32 | length & 0xFFFFFFFFL;
+	}
+
+	/**
+	 * Whether or not this ClassArena is frozen.
+	 */
+	private boolean frozen;
+
+	/**
+	 * The Map of class names to their offset and length in the slab, packed into a single value.
+	 */
+	private final Map<String, Long> index = new HashMap<>();
+
+	/**
+	 * The name of the class currently being written, or {@code null} if there is none.
+	 */
+	private String pending;
+
+	/**
+	 * The offset of the class currently being written.
+	 */
+	private int pendingOffset;
+
+	/**
+	 * The slab containing the data of every class. Its position is the amount of bytes used.
+	 */
+	private ByteBuffer slab;
+
+	/**
+	 * Creates the ClassArena with the default initial capacity.
+	 */
+	public ClassArena() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Creates the ClassArena.
+	 *
+	 * @param capacity The initial capacity of the slab, in bytes.
+	 */
+	public ClassArena(int capacity) {
+		slab = ByteBuffer.allocateDirect(Math.max(capacity, 1));
+	}
+
+	/**
+	 * Appends every class in the specified ClassArena to this one, with a single copy of the other arena's slab. Any
+	 * class already in this arena with the same name as one in the other is replaced.
+	 *
+	 * @param other The other ClassArena.
+	 */
+	public void addAll(ClassArena other) {
+		checkWritable();
+		ByteBuffer source = other.slab.duplicate();
+		source.flip();
+
+		int base = slab.position();
+		ensureCapacity(source.remaining());
+		slab.put(source);
+
+		for (Entry<String, Long> entry : other.index.entrySet()) {
+			long value = entry.getValue();
+			index.put(entry.getKey(), pack(base + offset(value), length(value)));
+		}
+	}
+
+	/**
+	 * Begins writing the class with the specified name. The data of the class is appended with {@link #write}, and
+	 * the class is added to this arena when {@link #end} is called.
+	 *
+	 * @param name The name of the class.
+	 * @param expected The expected length of the class, or {@code 0} if it is not known. The slab is grown to fit the
+	 *            class up front, but the class may be longer.
+	 */
+	public void begin(String name, int expected) {
+		checkWritable();
+		if (pending != null) {
+			throw new IllegalStateException("Cannot begin " + name + " before " + pending + " has ended.");
+		}
+
+		ensureCapacity(expected);
+		pending = name;
+		pendingOffset = slab.position();
+	}
+
+	@Override
+	public boolean containsKey(Object name) {
+		return index.containsKey(name);
+	}
+
+	/**
+	 * Ends writing the current class, adding it to this arena.
+	 */
+	public void end() {
+		if (pending == null) {
+			throw new IllegalStateException("No class is being written.");
+		}
+
+		index.put(pending, pack(pendingOffset, slab.position() - pendingOffset));
+		pending = null;
+	}
+
+	@Override
+	public Set<Entry<String, ByteBuffer>> entrySet() {
+		return new AbstractSet<Entry<String, ByteBuffer>>() {
+
+			@Override
+			public Iterator<Entry<String, ByteBuffer>> iterator() {
+				Iterator<Entry<String, Long>> iterator = index.entrySet().iterator();
+
+				return new Iterator<Entry<String, ByteBuffer>>() {
+
+					@Override
+					public boolean hasNext() {
+						return iterator.hasNext();
+					}
+
+					@Override
+					public Entry<String, ByteBuffer> next() {
+						Entry<String, Long> entry = iterator.next();
+						return new SimpleImmutableEntry<>(entry.getKey(), slice(entry.getValue()));
+					}
+
+				};
+			}
+
+			@Override
+			public int size() {
+				return index.size();
+			}
+
+		};
+	}
+
+	/**
+	 * Freezes this ClassArena, preventing any further modification.
+	 *
+	 * @return This ClassArena.
+	 */
+	public ClassArena freeze() {
+		if (pending != null) {
+			throw new IllegalStateException("Cannot freeze a ClassArena while " + pending + " is being written.");
+		}
+
+		frozen = true;
+		return this;
+	}
+
+	/**
+	 * Gets a read-only slice of the slab containing the data of the specified class.
+	 *
+	 * @param name The name of the class.
+	 * @return The {@link ByteBuffer}, or {@code null} if this arena does not contain the class.
+	 */
+	@Override
+	public ByteBuffer get(Object name) {
+		Long value = index.get(name);
+		return (value == null) ? null : slice(value);
+	}
+
+	/**
+	 * Gets the amount of bytes used in the slab, which may include the data of classes that have been replaced.
+	 *
+	 * @return The amount of bytes.
+	 */
+	public int getSlabSize() {
+		return slab.position();
+	}
+
+	/**
+	 * Copies the remaining data of the specified {@link ByteBuffer} into this arena, replacing any existing class with
+	 * the same name. The position of the ByteBuffer is not changed.
+	 *
+	 * @param name The name of the class.
+	 * @param buffer The ByteBuffer containing the data of the class.
+	 * @return The ByteBuffer of the class that was replaced, or {@code null} if there was none.
+	 */
+	@Override
+	public ByteBuffer put(String name, ByteBuffer buffer) {
+		ByteBuffer previous = get(name);
+		begin(name, buffer.remaining());
+		slab.put(buffer.duplicate());
+		end();
+
+		return previous;
+	}
+
+	@Override
+	public int size() {
+		return index.size();
+	}
+
+	/**
+	 * Writes the specified bytes to the class currently being written.
+	 *
+	 * @param bytes The byte array containing the bytes.
+	 * @param offset The offset of the first byte.
+	 * @param length The amount of bytes.
+	 */
+	public void write(byte[] bytes, int offset, int length) {
+		checkPending();
+		ensureCapacity(length);
+		slab.put(bytes, offset, length);
+	}
+
+	/**
+	 * Writes the specified byte to the class currently being written.
+	 *
+	 * @param value The byte.
+	 */
+	public void write(int value) {
+		checkPending();
+		ensureCapacity(1);
+		slab.put((byte) value);
+	}
+
+	/**
+	 * Checks that a class is currently being written.
+	 *
+	 * @throws IllegalStateException If no class is being written.
+	 */
+	private void checkPending() {
+		if (pending == null) {
+			throw new IllegalStateException("No class is being written.");
+		}
+	}
+
+	/**
+	 * Checks that this ClassArena is not frozen.
+	 *
+	 * @throws IllegalStateException If this ClassArena is frozen.
+	 */
+	private void checkWritable() {
+		if (frozen) {
+			throw new IllegalStateException("Cannot place classes into a frozen ClassArena.");
+		}
+	}
+
+	/**
+	 * Ensures that the slab can fit the specified amount of additional bytes, growing it if necessary. Slices of the
+	 * old slab that have already been handed out remain valid.
+	 *
+	 * @param additional The amount of additional bytes.
+	 */
+	private void ensureCapacity(int additional) {
+		if (slab.remaining() >= additional) {
+			return;
+		}
+
+		long required = (long) slab.position() + additional;
+		if (required > MAXIMUM_CAPACITY) {
+			throw new IllegalStateException("ClassArena cannot hold more than " + MAXIMUM_CAPACITY + " bytes.");
+		}
+
+		int capacity = (int) Math.min(MAXIMUM_CAPACITY, Math.max(required, (long) slab.capacity() * 2));
+		ByteBuffer grown = ByteBuffer.allocateDirect(capacity);
+
+		slab.flip();
+		grown.put(slab);
+		slab = grown;
+	}
+
+	/**
+	 * Creates a read-only slice of the slab from the specified index value.
+	 *
+	 * @param value The index value.
+	 * @return The slice.
+	 */
+	private ByteBuffer slice(long value) {
+		ByteBuffer slice = slab.duplicate();
+		slice.limit(offset(value) + length(value)).position(offset(value));
+		return slice.slice().asReadOnlyBuffer();
+	}
+
+}
@@ -0,0 +1,159 @@
+package rs.emulate.lynx.pack;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.jar.JarOutputStream;
+import java.util.zip.ZipEntry;
+
+/**
+ * A {@link JarOutputStream} that collects the entries written to it, instead of encoding them as a jar. The pack200
+ * unpacker can only write to a JarOutputStream, so this is used as its sink: each class is written directly into a
+ * {@link ClassArena}, without being deflated and then inflated again. The names of any other entries are recorded,
+ * but their data is discarded.
+ *
+ * @author Major
+ */
+public final class ClassCollector extends JarOutputStream {
+
+	/**
+	 * The OutputStream passed to the super constructor. Nothing is ever written to it, as every method that would do
+	 * so is overridden.
+	 */
+	private static final OutputStream DISCARD = new OutputStream() {
+
+		@Override
+		public void write(int value) {
+
+		}
+
+	};
+
+	/**
+	 * The ClassArena the classes are written to.
+	 */
+	private final ClassArena classes;
+
+	/**
+	 * Whether or not the data of the current entry is being discarded, as it is not a class.
+	 */
+	private boolean discard;
+
+	/**
+	 * The name of the current entry, or {@code null} if there is no current entry.
+	 */
+	private String name;
+
+	/**
+	 * The names of the entries that are not classes, in the order they were written.
+	 */
+	private final List<String> resources = new ArrayList<>();
+
+	/**
+	 * Creates the ClassCollector, writing to a new {@link ClassArena}.
+	 *
+	 * @throws IOException Never, but declared by the super constructor.
+	 */
+	public ClassCollector() throws IOException {
+		this(new ClassArena());
+	}
+
+	/**
+	 * Creates the ClassCollector.
+	 *
+	 * @param classes The {@link ClassArena} to write the classes to.
+	 * @throws IOException Never, but declared by the super constructor.
+	 */
+	public ClassCollector(ClassArena classes) throws IOException {
+		super(DISCARD);
+		this.classes = classes;
+	}
+
+	@Override
+	public void close() {
+		closeEntry();
+		def.end(); // Release the (unused) native deflater.
+	}
+
+	@Override
+	public void closeEntry() {
+		if (name == null) {
+			return;
+		}
+
+		if (discard) {
+			resources.add(name);
+		} else {
+			classes.end();
+		}
+
+		name = null;
+	}
+
+	@Override
+	public void finish() {
+		closeEntry();
+	}
+
+	@Override
+	public void flush() {
+
+	}
+
+	/**
+	 * Gets the {@link ClassArena} containing the classes collected so far.
+	 *
+	 * @return The ClassArena.
+	 */
+	public ClassArena getClasses() {
+		return classes;
+	}
+
+	/**
+	 * Gets the names of the entries written so far that are not classes, in the order they were written.
+	 *
+	 * @return The {@link List} of names.
+	 */
+	public List<String> getResources() {
+		return resources;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * If the size of the entry is known, the arena is grown to fit it up front, so it is never copied while it is
+	 * being written.
+	 */
+	@Override
+	public void putNextEntry(ZipEntry entry) {
+		closeEntry();
+
+		long size = entry.getSize();
+		name = entry.getName();
+		discard = !name.endsWith(".class");
+
+		if (!discard) {
+			classes.begin(name, (size > 0 && size <= Integer.MAX_VALUE) ? (int) size : 0);
+		}
+	}
+
+	@Override
+	public void write(byte[] bytes, int offset, int length) throws IOException {
+		if (name == null) {
+			throw new IOException("No current entry.");
+		} else if (!discard) {
+			classes.write(bytes, offset, length);
+		}
+	}
+
+	@Override
+	public void write(int value) throws IOException {
+		if (name == null) {
+			throw new IOException("No current entry.");
+		} else if (!discard) {
+			classes.write(value);
+		}
+	}
+
+}
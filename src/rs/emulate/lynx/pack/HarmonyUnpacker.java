@@ -0,0 +1,216 @@
+package rs.emulate.lynx.pack;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.jar.JarOutputStream;
+
+/**
+ * An {@link Unpacker} that drives the commons-compress segment decoder directly, rather than through its
+ * {@code Pack200} facade: the facade logs to (and then closes) {@link System#out}, whereas each segment here is given a
+ * log stream of its own that discards everything written to it.
+ *
+ * @author Major
+ */
+public final class HarmonyUnpacker implements Unpacker {
+
+	/**
+	 * The fully-qualified name of the commons-compress segment decoder.
+	 */
+	private static final String SEGMENT = "org.apache.commons.compress.harmony.unpack200.Segment";
+
+	/**
+	 * The magic number of a pack200 segment.
+	 */
+	private static final byte[] MAGIC = { (byte) 0xCA, (byte) 0xFE, (byte) 0xD0, 0x0D };
+
+	/**
+	 * The stream the segments log to, which discards everything.
+	 */
+	private static final OutputStream DISCARD = new OutputStream() {
+
+		@Override
+		public void write(byte[] bytes, int offset, int length) {
+
+		}
+
+		@Override
+		public void write(int value) {
+
+		}
+
+	};
+
+	/**
+	 * Creates a HarmonyUnpacker.
+	 *
+	 * @return The HarmonyUnpacker, or {@code null} if commons-compress (or a library it depends on, such as
+	 *         commons-io) is not available.
+	 */
+	public static HarmonyUnpacker create() {
+		try {
+			Class<?> segment = Class.forName(SEGMENT);
+			int quiet = segment.getField("LOG_LEVEL_QUIET").getInt(null);
+
+			return new HarmonyUnpacker(segment.getConstructor(), quiet, segment.getMethod("setLogLevel", int.class),
+					segment.getMethod("setLogStream", OutputStream.class),
+					segment.getMethod("setPreRead", boolean.class),
+					segment.getMethod("unpack", InputStream.class, JarOutputStream.class));
+		} catch (ClassNotFoundException | NoClassDefFoundError e) {
+			return null;
+		} catch (ReflectiveOperationException | RuntimeException e) {
+			throw new IllegalStateException("Error creating the commons-compress unpacker - please report.", e);
+		}
+	}
+
+	/**
+	 * The constructor of the segment decoder.
+	 */
+	private final Constructor<?> constructor;
+
+	/**
+	 * The log level that disables logging.
+	 */
+	private final int quiet;
+
+	/**
+	 * The {@code setLogLevel(int)} method.
+	 */
+	private final Method setLogLevel;
+
+	/**
+	 * The {@code setLogStream(OutputStream)} method.
+	 */
+	private final Method setLogStream;
+
+	/**
+	 * The {@code setPreRead(boolean)} method.
+	 */
+	private final Method setPreRead;
+
+	/**
+	 * The {@code unpack(InputStream, JarOutputStream)} method.
+	 */
+	private final Method unpack;
+
+	/**
+	 * Creates the HarmonyUnpacker.
+	 *
+	 * @param constructor The constructor of the segment decoder.
+	 * @param quiet The log level that disables logging.
+	 * @param setLogLevel The {@code setLogLevel(int)} method.
+	 * @param setLogStream The {@code setLogStream(OutputStream)} method.
+	 * @param setPreRead The {@code setPreRead(boolean)} method.
+	 * @param unpack The {@code unpack(InputStream, JarOutputStream)} method.
+	 */
+	private HarmonyUnpacker(Constructor<?> constructor, int quiet, Method setLogLevel, Method setLogStream,
+			Method setPreRead, Method unpack) {
+		this.constructor = constructor;
+		this.quiet = quiet;
+		this.setLogLevel = setLogLevel;
+		this.setLogStream = setLogStream;
+		this.setPreRead = setPreRead;
+		this.unpack = unpack;
+	}
+
+	@Override
+	public String getName() {
+		return "commons-compress";
+	}
+
+	@Override
+	public void unpack(InputStream input, JarOutputStream output) throws IOException {
+		// The start of each segment after the first is found by marking a buffered stream. The segment decoder unwraps a
+		// FilterInputStream to look for an underlying file, so the buffered stream is hidden behind a plain InputStream.
+		BufferedInputStream buffered = new BufferedInputStream(input);
+		InputStream opaque = new InputStream() {
+
+			@Override
+			public int available() throws IOException {
+				return buffered.available();
+			}
+
+			@Override
+			public synchronized void mark(int limit) {
+				buffered.mark(limit);
+			}
+
+			@Override
+			public boolean markSupported() {
+				return true;
+			}
+
+			@Override
+			public int read() throws IOException {
+				return buffered.read();
+			}
+
+			@Override
+			public int read(byte[] bytes, int offset, int length) throws IOException {
+				return buffered.read(bytes, offset, length);
+			}
+
+			@Override
+			public synchronized void reset() throws IOException {
+				buffered.reset();
+			}
+
+			@Override
+			public long skip(long amount) throws IOException {
+				return buffered.skip(amount);
+			}
+
+		};
+
+		try {
+			do {
+				Object segment = constructor.newInstance();
+				setLogLevel.invoke(segment, quiet);
+				setLogStream.invoke(segment, DISCARD);
+				setPreRead.invoke(segment, false);
+				unpack.invoke(segment, opaque, output);
+			} while (hasNextSegment(buffered));
+		} catch (InvocationTargetException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof IOException) {
+				throw (IOException) cause;
+			} else if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			} else if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+
+			throw new IOException("Error unpacking the archive.", cause);
+		} catch (InstantiationException | IllegalAccessException e) {
+			throw new IllegalStateException("Could not access the commons-compress unpacker - please report.", e);
+		}
+	}
+
+	/**
+	 * Returns whether or not another segment follows, leaving the stream where it was.
+	 *
+	 * @param input The {@link BufferedInputStream}.
+	 * @return {@code true} if the next bytes of the stream are the magic number of a segment.
+	 * @throws IOException If there is an error reading from the stream.
+	 */
+	private boolean hasNextSegment(BufferedInputStream input) throws IOException {
+		input.mark(MAGIC.length);
+
+		try {
+			for (byte expected : MAGIC) {
+				if (input.read() != (expected & 0xFF)) {
+					return false;
+				}
+			}
+
+			return true;
+		} finally {
+			input.reset();
+		}
+	}
+
+}
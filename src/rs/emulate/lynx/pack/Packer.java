@@ -0,0 +1,31 @@
+package rs.emulate.lynx.pack;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.jar.JarFile;
+
+/**
+ * A pack200 packer.
+ *
+ * @author Major
+ */
+public interface Packer {
+
+	/**
+	 * Gets the name of this packer, for display purposes.
+	 *
+	 * @return The name.
+	 */
+	String getName();
+
+	/**
+	 * Packs the specified {@link JarFile} into a pack200 archive, written to the {@link OutputStream}. The output
+	 * stream is not closed.
+	 *
+	 * @param input The JarFile.
+	 * @param output The OutputStream to write the (un-gzipped) archive to.
+	 * @throws IOException If there is an error reading the jar or writing the archive.
+	 */
+	void pack(JarFile input, OutputStream output) throws IOException;
+
+}
@@ -0,0 +1,52 @@
+package rs.emulate.lynx.pack;
+
+/**
+ * Contains static utility methods for locating {@link Packer}s.
+ *
+ * @author Major
+ */
+public final class Packers {
+
+	/**
+	 * Gets the preferred {@link Packer}: the JDK implementation if it is present, otherwise the commons-compress one.
+	 *
+	 * @return The Packer.
+	 * @throws IllegalStateException If no packer is available.
+	 */
+	public static Packer create() {
+		Packer packer = find();
+		if (packer == null) {
+			throw new IllegalStateException("No pack200 packer is available - please add commons-compress to the "
+					+ "classpath, or run on Java 13 or earlier.");
+		}
+
+		return packer;
+	}
+
+	/**
+	 * Returns whether or not a {@link Packer} is available.
+	 *
+	 * @return {@code true} if {@link #create()} will succeed, otherwise {@code false}.
+	 */
+	public static boolean isAvailable() {
+		return find() != null;
+	}
+
+	/**
+	 * Finds the preferred {@link Packer}, if any.
+	 *
+	 * @return The Packer, or {@code null} if no packer is available.
+	 */
+	private static Packer find() {
+		Packer jdk = ReflectivePacker.create("jdk", Unpackers.JDK_PACK200);
+		return jdk != null ? jdk : ReflectivePacker.create("commons-compress", Unpackers.COMMONS_COMPRESS_PACK200);
+	}
+
+	/**
+	 * Sole private constructor to prevent instantiation.
+	 */
+	private Packers() {
+
+	}
+
+}
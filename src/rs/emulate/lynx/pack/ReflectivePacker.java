@@ -0,0 +1,94 @@
+package rs.emulate.lynx.pack;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.jar.JarFile;
+
+/**
+ * A {@link Packer} that delegates to a {@code Pack200} implementation looked up by name, for the same reason as the
+ * {@link ReflectiveUnpacker}.
+ *
+ * @author Major
+ */
+public final class ReflectivePacker implements Packer {
+
+	/**
+	 * Creates a ReflectivePacker using the {@code Pack200} class with the specified name, which must mirror the
+	 * (former) JDK class: a static {@code newPacker()} method, returning a {@code Pack200.Packer} with a
+	 * {@code pack(JarFile, OutputStream)} method.
+	 *
+	 * @param name The display name of the packer.
+	 * @param factory The fully-qualified name of the {@code Pack200} class.
+	 * @return The ReflectivePacker, or {@code null} if the class is not available.
+	 */
+	public static ReflectivePacker create(String name, String factory) {
+		try {
+			Object packer = Class.forName(factory).getMethod("newPacker").invoke(null);
+
+			// Look the method up on the public interface, as the implementing class may not be accessible.
+			Method pack = Class.forName(factory + "$Packer").getMethod("pack", JarFile.class, OutputStream.class);
+
+			return new ReflectivePacker(name, packer, pack);
+		} catch (ClassNotFoundException e) {
+			return null;
+		} catch (ReflectiveOperationException | RuntimeException e) {
+			throw new IllegalStateException("Error creating the " + name + " packer - please report.", e);
+		}
+	}
+
+	/**
+	 * The display name of this packer.
+	 */
+	private final String name;
+
+	/**
+	 * The {@code pack(JarFile, OutputStream)} method.
+	 */
+	private final Method pack;
+
+	/**
+	 * The {@code Pack200.Packer} being delegated to.
+	 */
+	private final Object packer;
+
+	/**
+	 * Creates the ReflectivePacker.
+	 *
+	 * @param name The display name of the packer.
+	 * @param packer The {@code Pack200.Packer} to delegate to.
+	 * @param pack The {@code pack(JarFile, OutputStream)} method.
+	 */
+	private ReflectivePacker(String name, Object packer, Method pack) {
+		this.name = name;
+		this.packer = packer;
+		this.pack = pack;
+	}
+
+	@Override
+	public String getName() {
+		return name;
+	}
+
+	@Override
+	public void pack(JarFile input, OutputStream output) throws IOException {
+		try {
+			pack.invoke(packer, input, output);
+		} catch (InvocationTargetException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof IOException) {
+				throw (IOException) cause;
+			} else if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			} else if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+
+			throw new IOException("Error packing the archive.", cause);
+		} catch (IllegalAccessException e) {
+			throw new IllegalStateException("Could not access the " + name + " packer - please report.", e);
+		}
+	}
+
+}
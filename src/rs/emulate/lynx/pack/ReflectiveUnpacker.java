@@ -0,0 +1,116 @@
+package rs.emulate.lynx.pack;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.jar.JarOutputStream;
+
+/**
+ * An {@link Unpacker} that delegates to a {@code Pack200} implementation looked up by name, as {@code Pack200} was
+ * removed from the JDK in Java 14 and so cannot be linked against directly.
+ *
+ * @author Major
+ */
+public final class ReflectiveUnpacker implements Unpacker {
+
+	/**
+	 * Creates a ReflectiveUnpacker using the {@code Pack200} class with the specified name, which must mirror the
+	 * (former) JDK class: a static {@code newUnpacker()} method, returning a {@code Pack200.Unpacker} with an
+	 * {@code unpack(InputStream, JarOutputStream)} method.
+	 *
+	 * @param name The display name of the unpacker.
+	 * @param factory The fully-qualified name of the {@code Pack200} class.
+	 * @return The ReflectiveUnpacker, or {@code null} if the class is not available.
+	 */
+	public static ReflectiveUnpacker create(String name, String factory) {
+		try {
+			Object unpacker = Class.forName(factory).getMethod("newUnpacker").invoke(null);
+
+			// Look the method up on the public interface, as the implementing class may not be accessible.
+			Method unpack = Class.forName(factory + "$Unpacker").getMethod("unpack", InputStream.class,
+					JarOutputStream.class);
+
+			return new ReflectiveUnpacker(name, unpacker, unpack);
+		} catch (ClassNotFoundException e) {
+			return null;
+		} catch (ReflectiveOperationException | RuntimeException e) {
+			throw new IllegalStateException("Error creating the " + name + " unpacker - please report.", e);
+		}
+	}
+
+	/**
+	 * The display name of this unpacker.
+	 */
+	private final String name;
+
+	/**
+	 * The {@code unpack(InputStream, JarOutputStream)} method.
+	 */
+	private final Method unpack;
+
+	/**
+	 * The {@code Pack200.Unpacker} being delegated to.
+	 */
+	private final Object unpacker;
+
+	/**
+	 * Creates the ReflectiveUnpacker.
+	 *
+	 * @param name The display name of the unpacker.
+	 * @param unpacker The {@code Pack200.Unpacker} to delegate to.
+	 * @param unpack The {@code unpack(InputStream, JarOutputStream)} method.
+	 */
+	private ReflectiveUnpacker(String name, Object unpacker, Method unpack) {
+		this.name = name;
+		this.unpacker = unpacker;
+		this.unpack = unpack;
+	}
+
+	@Override
+	public String getName() {
+		return name;
+	}
+
+	@Override
+	public void unpack(InputStream input, JarOutputStream output) throws IOException {
+		// Some implementations unwrap a FilterInputStream to look for an underlying file, which would bypass the cipher
+		// and inflater, so the input is hidden behind a plain InputStream.
+		InputStream opaque = new InputStream() {
+
+			@Override
+			public int available() throws IOException {
+				return input.available();
+			}
+
+			@Override
+			public int read() throws IOException {
+				return input.read();
+			}
+
+			@Override
+			public int read(byte[] bytes, int offset, int length) throws IOException {
+				return input.read(bytes, offset, length);
+			}
+
+		};
+
+		try {
+			unpack.invoke(unpacker, opaque, output);
+		} catch (InvocationTargetException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof IOException) {
+				throw (IOException) cause;
+			} else if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			} else if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+
+			throw new IOException("Error unpacking the archive.", cause);
+		} catch (IllegalAccessException e) {
+			throw new IllegalStateException("Could not access the " + name + " unpacker - please report.", e);
+		}
+	}
+
+}
@@ -0,0 +1,210 @@
+package rs.emulate.lynx.pack;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Splits a pack200 archive into its segments. Each segment is a complete archive in its own right, so they may be
+ * unpacked independently.
+ * <p>
+ * A segment starts with a header of the form {@code magic:byte4, minver:UNSIGNED5, majver:UNSIGNED5,
+ * options:UNSIGNED5}, followed (if the options have the {@code AO_HAVE_FILE_HEADERS} bit set) by the size of the rest
+ * of the segment as {@code size_hi:UNSIGNED5, size_lo:UNSIGNED5}. A segment that declares its size is read into memory,
+ * so that it can be unpacked on another thread while the following segments are read. If a segment does not declare
+ * its size, it can't be split from the segments following it, so the rest of the archive is returned as a single
+ * segment, which is streamed from the archive rather than read into memory.
+ * <p>
+ * Unpackers accept archives that are themselves gzipped, so a gzipped archive is transparently de-gzipped.
+ *
+ * @author Major
+ */
+public final class SegmentReader {
+
+	/**
+	 * The archive option bit indicating that the segment header includes the size of the segment.
+	 */
+	private static final int AO_HAVE_FILE_HEADERS = 1 << 4;
+
+	/**
+	 * The magic number a gzip stream starts with.
+	 */
+	private static final int GZIP_MAGIC = 0x1F8B;
+
+	/**
+	 * The magic number each segment starts with.
+	 */
+	private static final int MAGIC = 0xCAFED00D;
+
+	/**
+	 * The size of the buffer used when reading a segment of unknown size, in bytes.
+	 */
+	private static final int READ_BUFFER_SIZE = 64 * 1024;
+
+	/**
+	 * The amount of bytes in each UNSIGNED5 value.
+	 */
+	private static final int UNSIGNED5_MAXIMUM_LENGTH = 5;
+
+	/**
+	 * The radix of the UNSIGNED5 encoding ({@code 256 - L}).
+	 */
+	private static final int UNSIGNED5_RADIX = 64;
+
+	/**
+	 * The smallest byte value that indicates that another byte follows, in the UNSIGNED5 encoding.
+	 */
+	private static final int UNSIGNED5_THRESHOLD = 192;
+
+	/**
+	 * The InputStream of the archive.
+	 */
+	private InputStream input;
+
+	/**
+	 * Whether or not the first segment has been read.
+	 */
+	private boolean started;
+
+	/**
+	 * Whether or not the last segment returned was streamed from the archive.
+	 */
+	private boolean streamed;
+
+	/**
+	 * Creates the SegmentReader.
+	 *
+	 * @param input The {@link InputStream} of the archive, which may be gzipped.
+	 */
+	public SegmentReader(InputStream input) {
+		this.input = new BufferedInputStream(input, READ_BUFFER_SIZE);
+	}
+
+	/**
+	 * Returns whether or not the last segment returned by {@link #next} is streamed from the archive, rather than
+	 * read into memory. A streamed segment is the rest of the archive, so it must be read on the thread reading the
+	 * archive, and is always the last segment.
+	 *
+	 * @return {@code true} if the segment is streamed, {@code false} if not.
+	 */
+	public boolean isStreamed() {
+		return streamed;
+	}
+
+	/**
+	 * Reads the next segment of the archive.
+	 *
+	 * @return The {@link InputStream} of the segment, or {@code null} if the end of the archive has been reached.
+	 * @throws IOException If there is an error reading from the archive, or if the segment is malformed.
+	 */
+	public InputStream next() throws IOException {
+		if (streamed) {
+			return null;
+		} else if (!started) {
+			started = true;
+			input.mark(2);
+			int magic = input.read() << 8 | input.read();
+			input.reset();
+
+			if (magic == GZIP_MAGIC) {
+				input = new BufferedInputStream(new GZIPInputStream(input, READ_BUFFER_SIZE), READ_BUFFER_SIZE);
+			}
+		}
+
+		int first = input.read();
+		if (first == -1) {
+			return null;
+		}
+
+		ByteArrayOutputStream header = new ByteArrayOutputStream(32);
+		header.write(first);
+
+		int magic = first;
+		for (int index = 1; index < Integer.BYTES; index++) {
+			int value = readByte(header);
+			magic = magic << 8 | value;
+		}
+
+		if (magic != MAGIC) {
+			throw new IOException("Invalid pack200 segment magic: " + Integer.toHexString(magic) + ".");
+		}
+
+		readUnsigned5(header); // minver
+		readUnsigned5(header); // majver
+		int options = (int) readUnsigned5(header);
+
+		long size = 0;
+		if ((options & AO_HAVE_FILE_HEADERS) != 0) {
+			long high = readUnsigned5(header), low = readUnsigned5(header);
+			size = high << 32 | low;
+		}
+
+		if (size <= 0 || size > Integer.MAX_VALUE - header.size()) { // Not declared, so take the rest of the archive.
+			streamed = true;
+			return new SequenceInputStream(new ByteArrayInputStream(header.toByteArray()), input);
+		}
+
+		int offset = header.size();
+		byte[] segment = new byte[offset + (int) size];
+		System.arraycopy(header.toByteArray(), 0, segment, 0, offset);
+
+		while (offset < segment.length) {
+			int read = input.read(segment, offset, segment.length - offset);
+			if (read == -1) {
+				throw new EOFException("Segment truncated: expected " + size + " bytes after the header.");
+			}
+
+			offset += read;
+		}
+
+		return new ByteArrayInputStream(segment);
+	}
+
+	/**
+	 * Reads a single byte from the archive, appending it to the specified header.
+	 *
+	 * @param header The {@link ByteArrayOutputStream} containing the header read so far.
+	 * @return The byte, as an unsigned value.
+	 * @throws IOException If there is an error reading the byte, or if the end of the archive has been reached.
+	 */
+	private int readByte(ByteArrayOutputStream header) throws IOException {
+		int value = input.read();
+		if (value == -1) {
+			throw new EOFException("Segment header truncated.");
+		}
+
+		header.write(value);
+		return value;
+	}
+
+	/**
+	 * Reads an UNSIGNED5 value (i.e. {@code B = 5, H = 64}) from the archive, appending its bytes to the specified
+	 * header.
+	 *
+	 * @param header The {@link ByteArrayOutputStream} containing the header read so far.
+	 * @return The value.
+	 * @throws IOException If there is an error reading the value, or if the end of the archive has been reached.
+	 */
+	private long readUnsigned5(ByteArrayOutputStream header) throws IOException {
+		long value = 0, multiplier = 1;
+
+		for (int index = 0; index < UNSIGNED5_MAXIMUM_LENGTH; index++) {
+			int next = readByte(header);
+			value += next * multiplier;
+
+			if (next < UNSIGNED5_THRESHOLD) {
+				break;
+			}
+
+			multiplier *= UNSIGNED5_RADIX;
+		}
+
+		return value;
+	}
+
+}
@@ -0,0 +1,170 @@
+package rs.emulate.lynx.pack;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Unpacks a pack200 archive into a {@link ClassArena}, decoding each segment of the archive concurrently on a
+ * {@link ForkJoinPool}. Segments are submitted as soon as they have been read, so decoding overlaps with reading (and
+ * decrypting) the rest of the archive.
+ * <p>
+ * Memory use is bounded by the size of a segment, rather than the size of the archive: at most one more segment than
+ * the pool has threads is held in memory, and once that many are waiting to be decoded, reading stops until the oldest
+ * has been decoded (which in turn blocks the stages feeding the archive). A segment of undeclared size (which is
+ * always the last) is decoded straight from the stream, without being read into memory at all.
+ * <p>
+ * Each segment is decoded into its own arena, and the arenas are merged in segment order once every segment has been
+ * decoded, so the output does not depend on which segment finishes first.
+ *
+ * @author Major
+ */
+public final class SegmentedUnpacker {
+
+	/**
+	 * Unpacks the specified segment.
+	 *
+	 * @param segment The {@link InputStream} of the segment.
+	 * @return The {@link ClassCollector} containing the unpacked entries.
+	 * @throws IOException If there is an error unpacking the segment.
+	 */
+	private static ClassCollector unpackSegment(InputStream segment) throws IOException {
+		try (ClassCollector collector = new ClassCollector()) {
+			Unpackers.create().unpack(segment, collector);
+			collector.finish();
+			return collector;
+		}
+	}
+
+	/**
+	 * The ForkJoinPool segments are decoded on.
+	 */
+	private final ForkJoinPool pool;
+
+	/**
+	 * The names of the entries that are not classes, from the last archive unpacked.
+	 */
+	private final List<String> resources = new ArrayList<>();
+
+	/**
+	 * Creates the SegmentedUnpacker.
+	 *
+	 * @param pool The {@link ForkJoinPool} to decode segments on.
+	 */
+	public SegmentedUnpacker(ForkJoinPool pool) {
+		this.pool = pool;
+	}
+
+	/**
+	 * Gets the names of the entries that are not classes from the last archive unpacked, in archive order.
+	 *
+	 * @return The {@link List} of names.
+	 */
+	public List<String> getResources() {
+		return resources;
+	}
+
+	/**
+	 * Unpacks the archive read from the specified {@link InputStream}. An archive with a single segment is decoded on
+	 * the calling thread.
+	 *
+	 * @param input The InputStream of the (de-gzipped) archive.
+	 * @return The frozen {@link ClassArena} of classes.
+	 * @throws IOException If there is an error reading or unpacking the archive.
+	 */
+	public ClassArena unpack(InputStream input) throws IOException {
+		resources.clear();
+		SegmentReader reader = new SegmentReader(input);
+
+		InputStream first = reader.next();
+		if (first == null) {
+			throw new IOException("The archive is empty.");
+		}
+
+		InputStream second = reader.isStreamed() ? null : reader.next();
+		if (second == null) {
+			ClassCollector collector = unpackSegment(first);
+			resources.addAll(collector.getResources());
+			return collector.getClasses().freeze();
+		}
+
+		int window = pool.getParallelism() + 1;
+		List<ForkJoinTask<ClassCollector>> tasks = new ArrayList<>();
+		List<ClassCollector> collectors = new ArrayList<>();
+		ClassCollector last = null;
+
+		try {
+			tasks.add(pool.submit(() -> unpackSegment(first)));
+
+			for (InputStream segment = second; segment != null; segment = reader.next()) {
+				if (reader.isStreamed()) {
+					last = unpackSegment(segment); // The rest of the archive, which can only be read on this thread.
+					break;
+				}
+
+				while (tasks.size() - collectors.size() >= window) {
+					collectors.add(await(tasks.get(collectors.size())));
+				}
+
+				InputStream next = segment;
+				tasks.add(pool.submit(() -> unpackSegment(next)));
+			}
+
+			System.out.println("Unpacking " + (tasks.size() + ((last == null) ? 0 : 1)) + " segments.");
+			for (int index = collectors.size(); index < tasks.size(); index++) {
+				collectors.add(await(tasks.get(index)));
+			}
+
+			if (last != null) {
+				collectors.add(last);
+			}
+
+			int size = 0;
+			for (ClassCollector collector : collectors) {
+				size += collector.getClasses().getSlabSize();
+			}
+
+			ClassArena classes = new ClassArena(size);
+			for (ClassCollector collector : collectors) {
+				classes.addAll(collector.getClasses());
+				resources.addAll(collector.getResources());
+			}
+
+			return classes.freeze();
+		} finally {
+			for (ForkJoinTask<ClassCollector> task : tasks) {
+				task.cancel(false); // Does nothing to tasks that have completed.
+			}
+		}
+	}
+
+	/**
+	 * Waits for the specified task to finish, rethrowing any exception it threw.
+	 *
+	 * @param task The {@link ForkJoinTask} unpacking a segment.
+	 * @return The {@link ClassCollector} containing the unpacked entries.
+	 * @throws IOException If the task threw an I/O exception, or if the current thread was interrupted.
+	 */
+	private ClassCollector await(ForkJoinTask<ClassCollector> task) throws IOException {
+		try {
+			return task.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while waiting for a segment to be unpacked.", e);
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof IOException) {
+				throw (IOException) cause;
+			} else if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+
+			throw new IOException("Error unpacking a segment.", cause);
+		}
+	}
+
+}
@@ -0,0 +1,31 @@
+package rs.emulate.lynx.pack;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.jar.JarOutputStream;
+
+/**
+ * A pack200 unpacker.
+ *
+ * @author Major
+ */
+public interface Unpacker {
+
+	/**
+	 * Gets the name of this unpacker, for display purposes.
+	 *
+	 * @return The name.
+	 */
+	String getName();
+
+	/**
+	 * Unpacks the pack200 archive read from the specified {@link InputStream} into the {@link JarOutputStream}. The
+	 * output stream is not closed.
+	 *
+	 * @param input The InputStream of the (de-gzipped) archive.
+	 * @param output The JarOutputStream to write the entries to.
+	 * @throws IOException If there is an error reading or unpacking the archive.
+	 */
+	void unpack(InputStream input, JarOutputStream output) throws IOException;
+
+}
@@ -0,0 +1,162 @@
+package rs.emulate.lynx.pack;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.GeneralSecurityException;
+import java.security.Provider;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+import rs.emulate.lynx.InnerPackDecrypter;
+import rs.emulate.lynx.crypto.AesCbcStrategy;
+import rs.emulate.lynx.crypto.CipherProviders;
+import rs.emulate.lynx.crypto.DecryptionStrategy;
+import rs.emulate.lynx.pack.band.BandUnpacker;
+
+/**
+ * Benchmarks the {@link BandUnpacker} against the JDK and commons-compress unpackers (whichever are available), and the
+ * {@link SegmentedUnpacker}, on the same {@code inner.pack.gz} archive. The archive is decrypted and de-gzipped into
+ * memory once, so only the unpacking itself is timed, and the classes produced by each unpacker are compared to those
+ * of the BandUnpacker.
+ *
+ * @author Major
+ */
+public final class UnpackerBenchmark {
+
+	/**
+	 * The default amount of timed iterations per unpacker.
+	 */
+	private static final int DEFAULT_ITERATIONS = 10;
+
+	/**
+	 * The amount of untimed iterations per unpacker, run before the timed ones so that the JIT has warmed up.
+	 */
+	private static final int WARMUP_ITERATIONS = 3;
+
+	/**
+	 * The entry point of the benchmark.
+	 *
+	 * @param args The program arguments: the path to the gamepack, the encoded secret key, the encoded initialisation
+	 *            vector, and (optionally) the amount of iterations.
+	 * @throws GeneralSecurityException If the archive could not be decrypted.
+	 * @throws IOException If there is an error reading or unpacking the archive.
+	 */
+	public static void main(String[] args) throws GeneralSecurityException, IOException {
+		if (args.length < 3) {
+			System.err.println("Usage: UnpackerBenchmark <gamepack> <secret> <vector> [iterations]");
+			System.exit(1);
+		}
+
+		Path gamepack = Paths.get(args[0]);
+		int iterations = (args.length > 3) ? Integer.parseInt(args[3]) : DEFAULT_ITERATIONS;
+
+		Provider provider = CipherProviders.select(AesCbcStrategy.TRANSFORMATION, CipherProviders.AUTOMATIC);
+		DecryptionStrategy strategy = AesCbcStrategy.fromParameters(args[1], args[2], provider);
+
+		byte[] archive;
+		try (InnerPackDecrypter decrypter = new InnerPackDecrypter(gamepack);
+				InputStream input = decrypter.open(strategy)) {
+			ByteArrayOutputStream bos = new ByteArrayOutputStream();
+			byte[] buffer = new byte[64 * 1024];
+			int read;
+
+			while ((read = input.read(buffer, 0, buffer.length)) != -1) {
+				bos.write(buffer, 0, read);
+			}
+
+			archive = bos.toByteArray();
+		}
+
+		List<Unpacker> unpackers = Unpackers.available();
+		System.out.println(String.format("Unpacking %d bytes, %d iterations.", archive.length, iterations));
+		Map<String, ByteBuffer> reference = null;
+
+		for (Unpacker unpacker : unpackers) {
+			for (int iteration = 0; iteration < WARMUP_ITERATIONS; iteration++) {
+				unpack(unpacker, archive);
+			}
+
+			long[] times = new long[iterations];
+			Map<String, ByteBuffer> classes = null;
+
+			for (int iteration = 0; iteration < iterations; iteration++) {
+				long start = System.nanoTime();
+				classes = unpack(unpacker, archive);
+				times[iteration] = System.nanoTime() - start;
+			}
+
+			report(unpacker.getName(), classes, times);
+
+			if (reference == null) {
+				reference = classes;
+			} else if (!reference.equals(classes)) {
+				System.out.println("Warning: " + unpacker.getName() + " produced different classes to "
+						+ unpackers.get(0).getName() + ".");
+			}
+		}
+
+		SegmentedUnpacker segmented = new SegmentedUnpacker(ForkJoinPool.commonPool());
+		for (int iteration = 0; iteration < WARMUP_ITERATIONS; iteration++) {
+			segmented.unpack(new ByteArrayInputStream(archive));
+		}
+
+		long[] times = new long[iterations];
+		Map<String, ByteBuffer> classes = null;
+
+		for (int iteration = 0; iteration < iterations; iteration++) {
+			long start = System.nanoTime();
+			classes = segmented.unpack(new ByteArrayInputStream(archive));
+			times[iteration] = System.nanoTime() - start;
+		}
+
+		report("segmented (" + ForkJoinPool.commonPool().getParallelism() + " threads)", classes, times);
+		if (!reference.equals(classes)) {
+			System.out.println("Warning: segmented unpacking produced different classes to " + unpackers.get(0).getName()
+					+ ".");
+		}
+	}
+
+	/**
+	 * Prints the results of timing an unpacker.
+	 *
+	 * @param name The name of the unpacker.
+	 * @param classes The {@link Map} of classes produced by the last iteration.
+	 * @param times The time taken by each iteration, in nanoseconds.
+	 */
+	private static void report(String name, Map<String, ByteBuffer> classes, long[] times) {
+		Arrays.sort(times);
+		System.out.println(String.format("%s: %d classes, min %.2fms, median %.2fms, max %.2fms.", name, classes.size(),
+				times[0] / 1e6, times[times.length / 2] / 1e6, times[times.length - 1] / 1e6));
+	}
+
+	/**
+	 * Unpacks the specified archive using the {@link Unpacker}.
+	 *
+	 * @param unpacker The Unpacker.
+	 * @param archive The de-gzipped archive.
+	 * @return The {@link Map} of class names to {@link ByteBuffer}s.
+	 * @throws IOException If there is an error unpacking the archive.
+	 */
+	private static Map<String, ByteBuffer> unpack(Unpacker unpacker, byte[] archive) throws IOException {
+		try (ClassCollector collector = new ClassCollector()) {
+			unpacker.unpack(new ByteArrayInputStream(archive), collector);
+			collector.finish();
+			return collector.getClasses();
+		}
+	}
+
+	/**
+	 * Sole private constructor to prevent instantiation.
+	 */
+	private UnpackerBenchmark() {
+
+	}
+
+}
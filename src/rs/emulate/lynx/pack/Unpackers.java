@@ -0,0 +1,66 @@
+package rs.emulate.lynx.pack;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import rs.emulate.lynx.pack.band.BandUnpacker;
+
+/**
+ * Contains static utility methods for locating {@link Unpacker}s.
+ *
+ * @author Major
+ */
+public final class Unpackers {
+
+	/**
+	 * The fully-qualified name of the commons-compress {@code Pack200} class, which is a drop-in replacement for the
+	 * one removed from the JDK. Only the {@link Packers} use it: commons-compress unpacks through the
+	 * {@link HarmonyUnpacker}.
+	 */
+	static final String COMMONS_COMPRESS_PACK200 = "org.apache.commons.compress.java.util.jar.Pack200";
+
+	/**
+	 * The fully-qualified name of the JDK {@code Pack200} class, which is only present before Java 14.
+	 */
+	static final String JDK_PACK200 = "java.util.jar.Pack200";
+
+	/**
+	 * Gets every {@link Unpacker} available on this platform, in order of preference.
+	 *
+	 * @return The {@link List} of Unpackers, which always starts with the {@link BandUnpacker}.
+	 */
+	public static List<Unpacker> available() {
+		List<Unpacker> unpackers = new ArrayList<>(3);
+		unpackers.add(new BandUnpacker());
+
+		Unpacker jdk = ReflectiveUnpacker.create("jdk", JDK_PACK200);
+		if (jdk != null) {
+			unpackers.add(jdk);
+		}
+
+		Unpacker commons = HarmonyUnpacker.create();
+		if (commons != null) {
+			unpackers.add(commons);
+		}
+
+		return unpackers;
+	}
+
+	/**
+	 * Gets the preferred {@link Unpacker}: the {@link BandUnpacker}, which decodes the archive without the JDK or
+	 * commons-compress, and so is always available. The other unpackers are not looked up.
+	 *
+	 * @return The Unpacker.
+	 */
+	public static Unpacker create() {
+		return new BandUnpacker();
+	}
+
+	/**
+	 * Sole private constructor to prevent instantiation.
+	 */
+	private Unpackers() {
+
+	}
+
+}
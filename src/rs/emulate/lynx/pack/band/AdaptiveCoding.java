@@ -0,0 +1,150 @@
+package rs.emulate.lynx.pack.band;
+
+import java.io.IOException;
+
+/**
+ * An adaptive coding, which codes the first {@code K} values of a band with one coding and the rest with another.
+ *
+ * @author Major
+ */
+final class AdaptiveCoding implements CodingMethod {
+
+	/**
+	 * The first meta-coding byte selecting an adaptive coding.
+	 */
+	private static final int META_RUN = 117;
+
+	/**
+	 * The first meta-coding byte that does not select an adaptive coding.
+	 */
+	private static final int META_LIMIT = 141;
+
+	/**
+	 * The default value of {@code KB}, if it is not specified.
+	 */
+	private static final int DEFAULT_KB = 3;
+
+	/**
+	 * Parses an adaptive coding from the band headers.
+	 *
+	 * @param input The {@link PackInput} holding the band headers.
+	 * @param op The meta-coding byte that selected the adaptive coding.
+	 * @param fallback The default coding of the band.
+	 * @return The AdaptiveCoding.
+	 * @throws IOException If the meta-coding is malformed.
+	 */
+	static AdaptiveCoding parse(PackInput input, int op, Coding fallback) throws IOException {
+		AdaptiveCoding first = null, previous = null;
+
+		for (boolean more = true; more;) {
+			more = false;
+			op -= META_RUN;
+
+			int kx = op & 3, kb = (op & 4) != 0 ? input.nextMetaByte() : DEFAULT_KB;
+			boolean defaultHead = (op >> 3 & 1) != 0, defaultTail = (op >> 3 & 2) != 0;
+
+			CodingMethod head = defaultHead ? fallback : Coding.parse(input, fallback);
+			CodingMethod tail = fallback;
+
+			if (!defaultTail) {
+				int next = input.peekMetaByte();
+				if (next >= META_RUN && next < META_LIMIT) {
+					op = input.nextMetaByte();
+					more = true;
+				} else {
+					tail = Coding.parse(input, fallback);
+				}
+			}
+
+			AdaptiveCoding coding = new AdaptiveCoding((kb + 1) << kx * 4, head, tail);
+			if (previous == null) {
+				first = coding;
+			} else {
+				previous.tail = coding;
+			}
+
+			previous = coding;
+		}
+
+		return first;
+	}
+
+	/**
+	 * The coding of the first {@link #length} values.
+	 */
+	private final CodingMethod head;
+
+	/**
+	 * The amount of values coded with the {@link #head} coding.
+	 */
+	private final int length;
+
+	/**
+	 * The coding of the rest of the values.
+	 */
+	private CodingMethod tail;
+
+	/**
+	 * Creates the AdaptiveCoding.
+	 *
+	 * @param length The amount of values coded with the head coding.
+	 * @param head The {@link CodingMethod} of the head values.
+	 * @param tail The CodingMethod of the rest of the values.
+	 */
+	private AdaptiveCoding(int length, CodingMethod head, CodingMethod tail) {
+		this.length = length;
+		this.head = head;
+		this.tail = tail;
+	}
+
+	/**
+	 * Gets the coding of the first {@link #getLength} values.
+	 *
+	 * @return The {@link CodingMethod}.
+	 */
+	public CodingMethod getHead() {
+		return head;
+	}
+
+	/**
+	 * Gets the amount of values coded with the head coding.
+	 *
+	 * @return The length.
+	 */
+	public int getLength() {
+		return length;
+	}
+
+	/**
+	 * Gets the coding of the rest of the values.
+	 *
+	 * @return The {@link CodingMethod}.
+	 */
+	public CodingMethod getTail() {
+		return tail;
+	}
+
+	@Override
+	public void readArray(PackInput input, int[] values, int start, int end) throws IOException {
+		AdaptiveCoding run = this;
+
+		while (true) {
+			int middle = start + run.length;
+			if (middle > end) {
+				throw new IOException("Adaptive coding run of " + run.length + " exceeds the band.");
+			}
+
+			run.head.readArray(input, values, start, middle);
+			start = middle;
+
+			if (!(run.tail instanceof AdaptiveCoding)) {
+				break;
+			}
+
+			run = (AdaptiveCoding) run.tail;
+		}
+
+		run.tail.readArray(input, values, start, end);
+	}
+
+}
@@ -0,0 +1,59 @@
+package rs.emulate.lynx.pack.band;
+
+/**
+ * An attribute of a class, field, method, or method body. The contents of the attribute (and the references in them)
+ * are held in the {@link ContentHeap} of the segment, rather than in an array of their own.
+ *
+ * @author Major
+ */
+final class Attribute {
+
+	/**
+	 * The empty array of attributes.
+	 */
+	static final Attribute[] NONE = new Attribute[0];
+
+	/**
+	 * The position in the heap after the contents of this attribute.
+	 */
+	int end;
+
+	/**
+	 * The index of the first reference in the contents of this attribute.
+	 */
+	int firstReference;
+
+	/**
+	 * The index after the last reference in the contents of this attribute.
+	 */
+	int lastReference;
+
+	/**
+	 * The layout of this attribute.
+	 */
+	final AttributeLayout layout;
+
+	/**
+	 * The position of the contents of this attribute in the heap.
+	 */
+	int start;
+
+	/**
+	 * Creates the Attribute, with no contents.
+	 *
+	 * @param layout The {@link AttributeLayout}.
+	 */
+	Attribute(AttributeLayout layout) {
+		this.layout = layout;
+	}
+
+	/**
+	 * Gets the length of the contents of this attribute.
+	 *
+	 * @return The length, in bytes.
+	 */
+	public int length() {
+		return end - start;
+	}
+
+}
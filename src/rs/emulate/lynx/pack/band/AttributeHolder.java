@@ -0,0 +1,37 @@
+package rs.emulate.lynx.pack.band;
+
+/**
+ * A class, field, method or method body: anything that has access flags (or, for a method body, attribute flags) and
+ * attributes.
+ *
+ * @author Major
+ */
+abstract class AttributeHolder {
+
+	/**
+	 * The attributes, in the order they are written.
+	 */
+	Attribute[] attributes = Attribute.NONE;
+
+	/**
+	 * The access flags. Before the attributes have been counted, these also contain the attribute flag bits.
+	 */
+	int flags;
+
+	/**
+	 * Gets the index of the first attribute with the specified name.
+	 *
+	 * @param name The name.
+	 * @return The index, or {@code -1} if there is no attribute with the name.
+	 */
+	public int indexOf(String name) {
+		for (int index = 0; index < attributes.length; index++) {
+			if (attributes[index].layout.getName().equals(name)) {
+				return index;
+			}
+		}
+
+		return -1;
+	}
+
+}
@@ -0,0 +1,913 @@
+package rs.emulate.lynx.pack.band;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The layout of an attribute, as defined by the pack200 layout language. A layout is tokenized into a tree of
+ * elements, each of which owns the {@link Band} holding its values for the current segment.
+ *
+ * @author Major
+ */
+final class AttributeLayout {
+
+	/**
+	 * The class attribute context.
+	 */
+	static final int CLASS = 0;
+
+	/**
+	 * The field attribute context.
+	 */
+	static final int FIELD = 1;
+
+	/**
+	 * The method attribute context.
+	 */
+	static final int METHOD = 2;
+
+	/**
+	 * The code attribute context.
+	 */
+	static final int CODE = 3;
+
+	/**
+	 * The amount of attribute contexts.
+	 */
+	static final int CONTEXT_COUNT = 4;
+
+	/**
+	 * The names of the attribute contexts, for error messages.
+	 */
+	static final String[] CONTEXT_NAMES = { "class", "field", "method", "code" };
+
+	/**
+	 * An integral element ({@code B}, {@code H}, {@code I}, {@code V}, optionally prefixed with {@code S}).
+	 */
+	private static final int INTEGRAL = 1;
+
+	/**
+	 * A bytecode index element ({@code P} or {@code PO}).
+	 */
+	private static final int BCI = 2;
+
+	/**
+	 * A bytecode offset element ({@code O}).
+	 */
+	private static final int BCO = 3;
+
+	/**
+	 * A flag element ({@code F}).
+	 */
+	private static final int FLAG = 4;
+
+	/**
+	 * A replication element ({@code N}).
+	 */
+	private static final int REPLICATION = 5;
+
+	/**
+	 * A union element ({@code T}).
+	 */
+	private static final int UNION = 6;
+
+	/**
+	 * A case of a union.
+	 */
+	private static final int CASE = 7;
+
+	/**
+	 * A call to a callable.
+	 */
+	private static final int CALL = 8;
+
+	/**
+	 * A callable body.
+	 */
+	private static final int CALLABLE = 9;
+
+	/**
+	 * A constant pool reference element ({@code K} or {@code R}).
+	 */
+	private static final int REFERENCE = 10;
+
+	/**
+	 * Creates an AttributeLayout, tokenizing the specified layout string.
+	 *
+	 * @param context The attribute context.
+	 * @param name The name of the attribute.
+	 * @param layout The layout string.
+	 * @param predefined Whether or not the layout is one of the predefined layouts.
+	 * @return The AttributeLayout.
+	 * @throws IOException If the layout string is malformed.
+	 */
+	static AttributeLayout create(int context, String name, String layout, boolean predefined) throws IOException {
+		AttributeLayout attribute = new AttributeLayout(context, name, layout, predefined);
+
+		try {
+			if (layout.startsWith("[")) {
+				List<String> bodies = splitBodies(layout);
+				Element[] callables = new Element[bodies.size()];
+				for (int index = 0; index < callables.length; index++) {
+					callables[index] = new Element(CALLABLE);
+				}
+
+				attribute.elements = callables;
+				for (int index = 0; index < callables.length; index++) {
+					callables[index].body = attribute.tokenize(index, bodies.get(index));
+				}
+			} else {
+				attribute.elements = attribute.tokenize(-1, layout);
+			}
+		} catch (IndexOutOfBoundsException | NumberFormatException e) {
+			throw new IOException("Bad attribute layout: " + layout + ".", e);
+		}
+
+		return attribute;
+	}
+
+	/**
+	 * Finds the position of a dash separating the two numbers of a case range, such as {@code 1-5} or {@code -3--1}.
+	 *
+	 * @param value The case string.
+	 * @return The position of the dash, or {@code -1} if there is none.
+	 */
+	private static int findCaseDash(String value) {
+		for (int dash = value.indexOf('-', 1); dash >= 0 && dash <= value.length() - 2; dash = value.indexOf('-',
+				dash + 1)) {
+			if (Character.isDigit(value.charAt(dash - 1))) {
+				char after = value.charAt(dash + 1);
+				if (after == '-' && dash + 2 < value.length()) {
+					after = value.charAt(dash + 2);
+				}
+
+				if (Character.isDigit(after)) {
+					return dash;
+				}
+			}
+		}
+
+		return -1;
+	}
+
+	/**
+	 * Finds the bracket closing the body that starts at the specified position.
+	 *
+	 * @param layout The layout string.
+	 * @param start The position just after the opening bracket.
+	 * @return The position of the closing bracket.
+	 * @throws IOException If the body is empty or unbalanced.
+	 */
+	private static int skipBody(String layout, int start) throws IOException {
+		if (layout.charAt(start) == ']') {
+			throw new IOException("Empty body in attribute layout: " + layout + ".");
+		}
+
+		int position = start;
+		for (int depth = 1; depth > 0;) {
+			char character = layout.charAt(position++);
+			if (character == '[') {
+				depth++;
+			} else if (character == ']') {
+				depth--;
+			}
+		}
+
+		return position - 1;
+	}
+
+	/**
+	 * Splits a layout made of callables ({@code [foo][bar]...}) into the bodies of each callable.
+	 *
+	 * @param layout The layout string.
+	 * @return The bodies.
+	 * @throws IOException If the layout string is malformed.
+	 */
+	private static List<String> splitBodies(String layout) throws IOException {
+		List<String> bodies = new ArrayList<>();
+
+		for (int position = 0; position < layout.length(); position++) {
+			if (layout.charAt(position++) != '[') {
+				throw new IOException("Bad attribute layout: " + layout + ".");
+			}
+
+			int start = position;
+			position = skipBody(layout, start);
+			bodies.add(layout.substring(start, position));
+		}
+
+		return bodies;
+	}
+
+	/**
+	 * Parses the length of an integral element ({@code V}, {@code B}, {@code H} or {@code I}).
+	 *
+	 * @param element The {@link Element}.
+	 * @param layout The layout string.
+	 * @param position The position of the length character.
+	 * @return The position after the length character.
+	 * @throws IOException If the character is not a valid length.
+	 */
+	private static int tokenizeLength(Element element, String layout, int position) throws IOException {
+		switch (layout.charAt(position)) {
+			case 'V':
+				element.length = 0;
+				break;
+			case 'B':
+				element.length = 1;
+				break;
+			case 'H':
+				element.length = 2;
+				break;
+			case 'I':
+				element.length = 4;
+				break;
+			default:
+				throw new IOException("Bad attribute layout: " + layout + ".");
+		}
+
+		return position + 1;
+	}
+
+	/**
+	 * Parses the length of an integral element that may be signed.
+	 *
+	 * @param element The {@link Element}.
+	 * @param layout The layout string.
+	 * @param position The position of the optional {@code S}.
+	 * @return The position after the length character.
+	 * @throws IOException If the character is not a valid length.
+	 */
+	private static int tokenizeSignedLength(Element element, String layout, int position) throws IOException {
+		if (layout.charAt(position) == 'S') {
+			element.signed = true;
+			position++;
+		}
+
+		return tokenizeLength(element, layout, position);
+	}
+
+	/**
+	 * The context of this layout.
+	 */
+	private final int context;
+
+	/**
+	 * The top-level elements: the callables, if the layout has any, or else the body.
+	 */
+	private Element[] elements;
+
+	/**
+	 * The layout string.
+	 */
+	private final String layout;
+
+	/**
+	 * The name of the attribute.
+	 */
+	private final String name;
+
+	/**
+	 * Whether or not this is one of the predefined layouts.
+	 */
+	private final boolean predefined;
+
+	/**
+	 * The amount of attributes with this layout in the current segment.
+	 */
+	private int total;
+
+	/**
+	 * Creates the AttributeLayout.
+	 *
+	 * @param context The attribute context.
+	 * @param name The name of the attribute.
+	 * @param layout The layout string.
+	 * @param predefined Whether or not the layout is predefined.
+	 */
+	private AttributeLayout(int context, String name, String layout, boolean predefined) {
+		this.context = context;
+		this.name = name;
+		this.layout = layout;
+		this.predefined = predefined;
+	}
+
+	/**
+	 * Adds one to the amount of attributes with this layout in the current segment.
+	 */
+	public void count() {
+		total++;
+	}
+
+	/**
+	 * Counts the callables of this layout that are the target of a backward call, which each have an entry in the
+	 * {@code attr_calls} band.
+	 *
+	 * @return The amount of backward callables.
+	 */
+	public int countBackwardCallables() {
+		int count = 0;
+		for (Element element : elements) {
+			if (element.kind == CALLABLE && element.backward) {
+				count++;
+			}
+		}
+
+		return count;
+	}
+
+	/**
+	 * Gets the context of this layout.
+	 *
+	 * @return The context.
+	 */
+	public int getContext() {
+		return context;
+	}
+
+	/**
+	 * Gets the name of the attribute.
+	 *
+	 * @return The name.
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Gets the amount of attributes with this layout in the current segment.
+	 *
+	 * @return The total.
+	 */
+	public int getTotal() {
+		return total;
+	}
+
+	/**
+	 * Returns whether or not attributes with this layout have no contents, and so no bands.
+	 *
+	 * @return {@code true} if the layout is empty.
+	 */
+	public boolean isEmpty() {
+		return layout.isEmpty();
+	}
+
+	/**
+	 * Returns whether or not this is one of the predefined layouts.
+	 *
+	 * @return {@code true} if the layout is predefined, {@code false} if it was defined by the archive.
+	 */
+	public boolean isPredefined() {
+		return predefined;
+	}
+
+	/**
+	 * Reads the bands of this layout, sized by the amount of attributes counted in the current segment.
+	 *
+	 * @param input The {@link PackInput} to read from.
+	 * @param calls The {@code attr_calls} {@link Band} of the context, holding the counts of backward calls.
+	 * @throws IOException If there is an error reading the bands.
+	 */
+	public void readBands(PackInput input, Band calls) throws IOException {
+		if (elements.length == 0 || elements[0].kind != CALLABLE) {
+			readBands(input, elements, total, null);
+			return;
+		}
+
+		int[] forward = new int[elements.length];
+		forward[0] = total;
+
+		for (int index = 0; index < elements.length; index++) {
+			Element callable = elements[index];
+			int count = forward[index];
+			forward[index] = -1;
+
+			if (total > 0 && callable.backward) {
+				count += calls.next();
+			}
+
+			readBands(input, callable.body, count, forward);
+		}
+	}
+
+	@Override
+	public String toString() {
+		return CONTEXT_NAMES[context] + " attribute " + name + " (" + layout + ")";
+	}
+
+	/**
+	 * Writes the contents of the next attribute with this layout to the {@link ContentHeap}, consuming its values from
+	 * the bands.
+	 *
+	 * @param heap The ContentHeap.
+	 * @param pool The {@link ConstantPool} of the segment.
+	 * @param literal The tag of the constant value of the field that owns the attribute, or {@code 0}.
+	 * @param code The {@link PackedCode} that owns the attribute, or {@code null}.
+	 * @throws IOException If a band is exhausted, or a value is out of range.
+	 */
+	public void unparse(ContentHeap heap, ConstantPool pool, int literal, PackedCode code) throws IOException {
+		Element[] entry = elements.length > 0 && elements[0].kind == CALLABLE ? elements[0].body : elements;
+		unparse(entry, heap, pool, literal, code);
+	}
+
+	/**
+	 * Reads the bands of the specified elements.
+	 *
+	 * @param input The {@link PackInput} to read from.
+	 * @param elements The elements.
+	 * @param count The amount of values in each band.
+	 * @param forward The counts of forward calls to each callable.
+	 * @throws IOException If there is an error reading the bands.
+	 */
+	private void readBands(PackInput input, Element[] elements, int count, int[] forward) throws IOException {
+		for (Element element : elements) {
+			Band band = element.band;
+			if (band != null) {
+				band.read(input, count);
+			}
+
+			switch (element.kind) {
+				case REPLICATION:
+					readBands(input, element.body, band.total(), forward);
+					break;
+				case UNION:
+					int remaining = count;
+					Element[] cases = element.body;
+
+					for (int index = 0; index < cases.length; index++) {
+						int caseCount = 0;
+
+						if (index == cases.length - 1) {
+							caseCount = remaining;
+						} else { // Cases that share a body are counted together, and read once.
+							do {
+								caseCount += band.count(cases[index++].value);
+							} while (index < cases.length && cases[index].backward);
+
+							index--;
+						}
+
+						remaining -= caseCount;
+						readBands(input, cases[index].body, caseCount, forward);
+					}
+					break;
+				case CALL:
+					if (!element.backward) {
+						forward[element.value] += count;
+					}
+					break;
+			}
+		}
+	}
+
+	/**
+	 * Resolves a reference value read from the band of a reference element.
+	 *
+	 * @param element The reference {@link Element}.
+	 * @param value The value.
+	 * @param pool The {@link ConstantPool}.
+	 * @param literal The tag of the constant value of the field that owns the attribute.
+	 * @return The {@link Entry}, or {@code null}.
+	 * @throws IOException If the value is out of range.
+	 */
+	private Entry resolve(Element element, int value, ConstantPool pool, int literal) throws IOException {
+		int tag = element.reference;
+		if (tag == ConstantPool.FIELD_SPECIFIC) {
+			if (literal == 0) {
+				throw new IOException("Field-specific reference outside of a constant value, in " + this + ".");
+			}
+
+			tag = literal;
+		}
+
+		if (element.nullable) {
+			return value == 0 ? null : pool.get(tag, value - 1);
+		}
+
+		return pool.get(tag, value);
+	}
+
+	/**
+	 * Tokenizes a layout body into its elements.
+	 *
+	 * @param callable The index of the callable the body belongs to, or {@code -1} if the layout has no callables.
+	 * @param layout The body.
+	 * @return The elements.
+	 * @throws IOException If the body is malformed.
+	 */
+	private Element[] tokenize(int callable, String layout) throws IOException {
+		List<Element> elements = new ArrayList<>();
+		boolean previousBci = false;
+
+		for (int position = 0; position < layout.length();) {
+			int start = position;
+			char character = layout.charAt(position++);
+			Element element;
+
+			switch (character) {
+				case 'B':
+				case 'H':
+				case 'I':
+				case 'V':
+					element = new Element(INTEGRAL);
+					position = tokenizeLength(element, layout, position - 1);
+					break;
+				case 'S':
+					element = new Element(INTEGRAL);
+					position = tokenizeSignedLength(element, layout, position - 1);
+					break;
+				case 'P':
+					element = new Element(BCI);
+					if (layout.charAt(position) == 'O') {
+						if (!previousBci) {
+							throw new IOException("Bytecode offset must follow an index, in " + layout + ".");
+						}
+
+						element.delta = true;
+						position++;
+					}
+
+					position = tokenizeLength(element, layout, position);
+					break;
+				case 'O':
+					if (!previousBci) {
+						throw new IOException("Bytecode offset must follow an index, in " + layout + ".");
+					}
+
+					element = new Element(BCO);
+					element.delta = true;
+					position = tokenizeSignedLength(element, layout, position);
+					break;
+				case 'F':
+					element = new Element(FLAG);
+					position = tokenizeLength(element, layout, position);
+					break;
+				case 'N':
+					element = new Element(REPLICATION);
+					position = tokenizeLength(element, layout, position);
+					if (layout.charAt(position++) != '[') {
+						throw new IOException("Bad replication in attribute layout: " + layout + ".");
+					}
+
+					int body = position;
+					position = skipBody(layout, body);
+					element.body = tokenize(callable, layout.substring(body, position++));
+					break;
+				case 'T':
+					element = new Element(UNION);
+					position = tokenizeSignedLength(element, layout, position);
+					position = tokenizeCases(element, callable, layout, position);
+					break;
+				case '(':
+					element = new Element(CALL);
+					position = layout.indexOf(')', position);
+					String offset = layout.substring(start + 1, position++);
+					int target = callable + Integer.parseInt(offset);
+
+					if (callable < 0 || target < 0 || target >= this.elements.length) {
+						throw new IOException("Bad call in attribute layout: " + layout + ".");
+					}
+
+					Element called = this.elements[target];
+					element.value = target;
+					element.body = new Element[] { called };
+
+					if (target <= callable) {
+						element.backward = true;
+						called.backward = true;
+					}
+					break;
+				case 'K':
+				case 'R':
+					element = new Element(REFERENCE);
+					element.reference = tokenizeReference(character, layout.charAt(position++), layout);
+					if (layout.charAt(position) == 'N') {
+						element.nullable = true;
+						position++;
+					}
+
+					position = tokenizeLength(element, layout, position);
+					break;
+				default:
+					throw new IOException("Bad attribute layout: " + layout + ".");
+			}
+
+			previousBci = element.kind == BCI;
+			element.band = createBand(element, layout.substring(start, position));
+			elements.add(element);
+		}
+
+		return elements.toArray(new Element[0]);
+	}
+
+	/**
+	 * Creates the band of the specified element, if it has one.
+	 *
+	 * @param element The {@link Element}.
+	 * @param token The layout of the element, for error messages.
+	 * @return The {@link Band}, or {@code null} if the element has no band.
+	 */
+	private Band createBand(Element element, String token) {
+		String name = CONTEXT_NAMES[context] + "_" + this.name + "_" + token;
+
+		switch (element.kind) {
+			case BCI:
+				return new Band(name, element.delta ? Coding.BRANCH5 : Coding.BCI5);
+			case BCO:
+				return new Band(name, Coding.BRANCH5);
+			case REFERENCE:
+				return new Band(name, Coding.UNSIGNED5);
+			case INTEGRAL:
+			case FLAG:
+			case REPLICATION:
+			case UNION:
+				Coding coding = element.signed ? Coding.SIGNED5 : element.length == 1 ? Coding.BYTE1 : Coding.UNSIGNED5;
+				return new Band(name, coding);
+			default:
+				return null;
+		}
+	}
+
+	/**
+	 * Tokenizes the cases of a union, ending with the default case.
+	 *
+	 * @param union The union {@link Element}.
+	 * @param callable The index of the enclosing callable, or {@code -1}.
+	 * @param layout The layout string.
+	 * @param position The position of the first case.
+	 * @return The position after the default case.
+	 * @throws IOException If the cases are malformed.
+	 */
+	private int tokenizeCases(Element union, int callable, String layout, int position) throws IOException {
+		List<Element> cases = new ArrayList<>();
+
+		while (true) {
+			if (layout.charAt(position++) != '(') {
+				throw new IOException("Bad union in attribute layout: " + layout + ".");
+			}
+
+			int end = layout.indexOf(')', position);
+			String values = layout.substring(position, end);
+			position = end + 1;
+
+			if (layout.charAt(position++) != '[') {
+				throw new IOException("Bad union in attribute layout: " + layout + ".");
+			}
+
+			int start = position;
+			if (layout.charAt(position) != ']') {
+				position = skipBody(layout, start);
+			}
+
+			Element[] body = tokenize(callable, layout.substring(start, position++));
+
+			if (values.isEmpty()) {
+				Element fallback = new Element(CASE);
+				fallback.body = body;
+				cases.add(fallback);
+				break;
+			}
+
+			boolean first = true;
+			for (String value : values.split(",", -1)) {
+				int dash = findCaseDash(value);
+				int low = Integer.parseInt(dash < 0 ? value : value.substring(0, dash));
+				int high = dash < 0 ? low : Integer.parseInt(value.substring(dash + 1));
+
+				if (low > high || dash >= 0 && low == high) {
+					throw new IOException("Bad case range in attribute layout: " + layout + ".");
+				}
+
+				for (int current = low; ; current++) {
+					Element element = new Element(CASE);
+					element.body = body;
+					element.backward = !first;
+					element.value = current;
+					cases.add(element);
+					first = false;
+
+					if (current == high) {
+						break;
+					}
+				}
+			}
+		}
+
+		union.body = cases.toArray(new Element[0]);
+		return position;
+	}
+
+	/**
+	 * Tokenizes the kind of a reference.
+	 *
+	 * @param prefix The prefix character ({@code K} or {@code R}).
+	 * @param kind The kind character.
+	 * @param layout The layout string, for error messages.
+	 * @return The tag of the referenced entries.
+	 * @throws IOException If the kind is not valid.
+	 */
+	private int tokenizeReference(char prefix, char kind, String layout) throws IOException {
+		if (prefix == 'K') {
+			switch (kind) {
+				case 'I':
+					return Entry.INTEGER;
+				case 'J':
+					return Entry.LONG;
+				case 'F':
+					return Entry.FLOAT;
+				case 'D':
+					return Entry.DOUBLE;
+				case 'S':
+					return Entry.STRING;
+				case 'Q':
+					return ConstantPool.FIELD_SPECIFIC;
+				case 'M':
+					return Entry.METHOD_HANDLE;
+				case 'T':
+					return Entry.METHOD_TYPE;
+				case 'L':
+					return ConstantPool.LOADABLE_VALUE;
+			}
+		} else {
+			switch (kind) {
+				case 'C':
+					return Entry.CLASS;
+				case 'S':
+					return Entry.SIGNATURE;
+				case 'D':
+					return Entry.NAME_AND_TYPE;
+				case 'F':
+					return Entry.FIELD;
+				case 'M':
+					return Entry.METHOD;
+				case 'I':
+					return Entry.INTERFACE_METHOD;
+				case 'U':
+					return Entry.UTF8;
+				case 'Q':
+					return ConstantPool.ALL;
+				case 'Y':
+					return Entry.INVOKE_DYNAMIC;
+				case 'B':
+					return Entry.BOOTSTRAP_METHOD;
+				case 'N':
+					return ConstantPool.ANY_MEMBER;
+			}
+		}
+
+		throw new IOException("Bad reference in attribute layout: " + layout + ".");
+	}
+
+	/**
+	 * Writes the contents of the specified elements, consuming their values from the bands.
+	 *
+	 * @param elements The elements.
+	 * @param heap The {@link ContentHeap}.
+	 * @param pool The {@link ConstantPool}.
+	 * @param literal The tag of the constant value of the field that owns the attribute, or {@code 0}.
+	 * @param code The {@link PackedCode} that owns the attribute, or {@code null}.
+	 * @throws IOException If a band is exhausted, or a value is out of range.
+	 */
+	private void unparse(Element[] elements, ContentHeap heap, ConstantPool pool, int literal, PackedCode code)
+			throws IOException {
+		int previousBci = 0, previousCoded = 0;
+
+		for (Element element : elements) {
+			switch (element.kind) {
+				case INTEGRAL:
+				case FLAG:
+					heap.write(element.band.next(), element.length);
+					break;
+				case BCI:
+				case BCO:
+					if (code == null) {
+						throw new IOException("Bytecode index outside of a method body, in " + this + ".");
+					}
+
+					int value = element.band.next();
+					int coded = element.delta ? previousCoded + value : value;
+					int bci = code.decodeBci(coded);
+
+					heap.write(element.kind == BCO ? bci - previousBci : bci, element.length);
+					previousBci = bci;
+					previousCoded = coded;
+					break;
+				case REPLICATION:
+					int count = element.band.next();
+					heap.write(count, element.length);
+
+					for (int index = 0; index < count; index++) {
+						unparse(element.body, heap, pool, literal, code);
+					}
+					break;
+				case UNION:
+					int tag = element.band.next();
+					heap.write(tag, element.length);
+					unparse(element.match(tag).body, heap, pool, literal, code);
+					break;
+				case CALL:
+					unparse(element.body[0].body, heap, pool, literal, code);
+					break;
+				case REFERENCE:
+					Entry entry = resolve(element, element.band.next(), pool, literal);
+					if (entry == null) {
+						heap.write(0, element.length);
+					} else {
+						heap.addReference(entry.tag == Entry.SIGNATURE ? entry.flattened : entry, element.length != 1);
+						if (element.length > 2) {
+							heap.write(0, element.length - 2);
+						}
+					}
+					break;
+			}
+		}
+	}
+
+	/**
+	 * An element of a layout.
+	 */
+	private static final class Element {
+
+		/**
+		 * Whether or not this is a callable or call that is part of a backward (recursive) call, or a case that shares
+		 * the body of the case before it.
+		 */
+		private boolean backward;
+
+		/**
+		 * The band holding the values of this element, or {@code null} if it has none.
+		 */
+		private Band band;
+
+		/**
+		 * The nested elements: the body of a replication, callable or case, the cases of a union, or the callable of
+		 * a call.
+		 */
+		private Element[] body;
+
+		/**
+		 * Whether or not this element holds a bytecode index relative to the previous one.
+		 */
+		private boolean delta;
+
+		/**
+		 * The kind of element.
+		 */
+		private final int kind;
+
+		/**
+		 * The length of the value of this element, in bytes.
+		 */
+		private int length;
+
+		/**
+		 * Whether or not this reference element may be null.
+		 */
+		private boolean nullable;
+
+		/**
+		 * The tag of the entries this reference element refers to.
+		 */
+		private int reference;
+
+		/**
+		 * Whether or not this integral element is signed.
+		 */
+		private boolean signed;
+
+		/**
+		 * The value of this case, or the index of the callable this call targets.
+		 */
+		private int value;
+
+		/**
+		 * Creates the Element.
+		 *
+		 * @param kind The kind of element.
+		 */
+		Element(int kind) {
+			this.kind = kind;
+		}
+
+		/**
+		 * Finds the case of this union that matches the specified tag: the first case with an equal value, or else
+		 * the default case.
+		 *
+		 * @param tag The tag.
+		 * @return The case {@link Element}.
+		 */
+		Element match(int tag) {
+			int last = body.length - 1;
+			for (int index = 0; index < last; index++) {
+				if (body[index].value == tag) {
+					return body[index];
+				}
+			}
+
+			return body[last];
+		}
+
+	}
+
+}
@@ -0,0 +1,206 @@
+package rs.emulate.lynx.pack.band;
+
+import java.io.IOException;
+
+/**
+ * A band: a sequence of integers, coded with a single {@link CodingMethod}. The values are decoded into an array that is
+ * reused each time the band is read, and then disbursed in order by {@link #next}.
+ *
+ * @author Major
+ */
+final class Band {
+
+	/**
+	 * The empty array of values, shared by every band until it is first read.
+	 */
+	private static final int[] EMPTY = new int[0];
+
+	/**
+	 * Decodes the escape byte from the first value of a band, if it is one.
+	 *
+	 * @param value The first value, read with the (non-delta) default coding.
+	 * @param coding The default coding of the band.
+	 * @return The escape byte, or {@code -1} if the value is not an escape.
+	 */
+	private static int decodeEscape(int value, Coding coding) {
+		if (coding.getLength() == 1 || coding.getThreshold() == 0) {
+			return -1;
+		} else if (coding.getSign() != 0) {
+			return value >= -256 && value <= -1 && coding.getMinimum() <= -256 ? -1 - value : -1;
+		}
+
+		int threshold = coding.getThreshold();
+		return value >= threshold && value <= threshold + 255 && coding.getMaximum() >= threshold + 255 ?
+				value - threshold : -1;
+	}
+
+	/**
+	 * The default coding of this band.
+	 */
+	private final Coding coding;
+
+	/**
+	 * Whether or not the first value of this band may be an escape that selects a different coding.
+	 */
+	private final boolean escapable;
+
+	/**
+	 * The amount of values in this band.
+	 */
+	private int length;
+
+	/**
+	 * The name of this band, for error messages.
+	 */
+	private final String name;
+
+	/**
+	 * The index of the next value to disburse.
+	 */
+	private int position;
+
+	/**
+	 * The values of this band.
+	 */
+	private int[] values = EMPTY;
+
+	/**
+	 * Creates the Band.
+	 *
+	 * @param name The name of the band.
+	 * @param coding The default {@link Coding} of the band.
+	 */
+	public Band(String name, Coding coding) {
+		this(name, coding, true);
+	}
+
+	/**
+	 * Creates the Band.
+	 *
+	 * @param name The name of the band.
+	 * @param coding The default {@link Coding} of the band.
+	 * @param escapable Whether or not the first value of the band may select a different coding.
+	 */
+	public Band(String name, Coding coding, boolean escapable) {
+		this.name = name;
+		this.coding = coding;
+		this.escapable = escapable;
+	}
+
+	/**
+	 * Counts the amount of values in this band that are equal to the specified value.
+	 *
+	 * @param value The value.
+	 * @return The amount of occurrences.
+	 */
+	public int count(int value) {
+		int count = 0;
+		for (int index = 0; index < length; index++) {
+			if (values[index] == value) {
+				count++;
+			}
+		}
+
+		return count;
+	}
+
+	/**
+	 * Gets the value at the specified index, without disbursing it.
+	 *
+	 * @param index The index.
+	 * @return The value.
+	 */
+	public int get(int index) {
+		return values[index];
+	}
+
+	/**
+	 * Gets the amount of values in this band.
+	 *
+	 * @return The length.
+	 */
+	public int length() {
+		return length;
+	}
+
+	/**
+	 * Disburses the next value of this band.
+	 *
+	 * @return The value.
+	 * @throws IOException If every value of the band has already been disbursed.
+	 */
+	public int next() throws IOException {
+		if (position >= length) {
+			throw new IOException("Band " + name + " exhausted.");
+		}
+
+		return values[position++];
+	}
+
+	/**
+	 * Reads the specified amount of values into this band, replacing any values it held before.
+	 *
+	 * @param input The {@link PackInput} to read from.
+	 * @param length The amount of values.
+	 * @return This band, for chaining.
+	 * @throws IOException If there is an error reading the values.
+	 */
+	public Band read(PackInput input, int length) throws IOException {
+		if (length < 0) {
+			throw new IOException("Negative length for band " + name + ".");
+		} else if (length > values.length) {
+			values = new int[Math.max(length, values.length + (values.length >> 1))];
+		}
+
+		this.length = length;
+		position = 0;
+
+		if (length == 0) {
+			return this;
+		}
+
+		CodingMethod method = coding;
+		if (escapable && (coding.getMinimum() <= -256 || coding.getMaximum() >= 256)) {
+			input.mark();
+			int escape = decodeEscape(coding.read(input), coding);
+
+			if (escape < 0) {
+				input.reset();
+			} else {
+				input.unmark();
+				input.pushMetaByte(escape);
+				method = Coding.parse(input, coding);
+			}
+		}
+
+		method.readArray(input, values, 0, length);
+		return this;
+	}
+
+	/**
+	 * Returns to the first value of this band, so that the values can be disbursed again.
+	 */
+	public void rewind() {
+		position = 0;
+	}
+
+	/**
+	 * Gets the sum of the values in this band.
+	 *
+	 * @return The sum.
+	 * @throws IOException If the sum is negative, or too large to be the length of another band.
+	 */
+	public int total() throws IOException {
+		long total = 0;
+		for (int index = 0; index < length; index++) {
+			total += values[index];
+		}
+
+		if (total < 0 || total > Integer.MAX_VALUE) {
+			throw new IOException("Invalid total (" + total + ") of band " + name + ".");
+		}
+
+		return (int) total;
+	}
+
+}
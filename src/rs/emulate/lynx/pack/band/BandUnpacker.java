@@ -0,0 +1,57 @@
+package rs.emulate.lynx.pack.band;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.util.jar.JarOutputStream;
+import java.util.zip.GZIPInputStream;
+
+import rs.emulate.lynx.pack.Unpacker;
+
+/**
+ * An {@link Unpacker} that decodes the bands of the archive itself, writing each class straight from the decoded bands
+ * rather than building the object model of the archive that the JDK and commons-compress implementations do.
+ *
+ * @author Major
+ */
+public final class BandUnpacker implements Unpacker {
+
+	/**
+	 * Wraps the specified stream in a {@link GZIPInputStream} if it starts with the gzip magic number, as the JDK and
+	 * commons-compress unpackers both accept gzipped archives.
+	 *
+	 * @param input The {@link InputStream}.
+	 * @return The stream to decode the segments from.
+	 * @throws IOException If there is an error reading from the stream.
+	 */
+	private static InputStream inflateIfGzipped(InputStream input) throws IOException {
+		PushbackInputStream pushback = new PushbackInputStream(input, 2);
+		int first = pushback.read(), second = (first == -1) ? -1 : pushback.read();
+
+		if (second != -1) {
+			pushback.unread(second);
+		}
+
+		if (first != -1) {
+			pushback.unread(first);
+		}
+
+		boolean gzipped = first != -1 && second != -1 && (first | second << 8) == GZIPInputStream.GZIP_MAGIC;
+		return gzipped ? new GZIPInputStream(pushback) : pushback;
+	}
+
+	@Override
+	public String getName() {
+		return "band";
+	}
+
+	@Override
+	public void unpack(InputStream input, JarOutputStream output) throws IOException {
+		SegmentDecoder decoder = new SegmentDecoder(new PackInput(inflateIfGzipped(input)));
+
+		do {
+			decoder.decode(output);
+		} while (decoder.hasNextSegment());
+	}
+
+}
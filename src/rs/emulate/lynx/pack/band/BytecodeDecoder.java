@@ -0,0 +1,865 @@
+package rs.emulate.lynx.pack.band;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Decodes the bytecode of the method bodies of a segment into the {@link ContentHeap}. The bytecode is transmitted as a
+ * stream of opcodes - some of them specific to pack200, such as those that imply a reference to a member of the current
+ * class - with every operand moved into a band of its own. The opcodes of every body are read first, to size the
+ * operand bands, and then expanded back into standard bytecode.
+ *
+ * @author Major
+ */
+final class BytecodeDecoder {
+
+	/**
+	 * The index of the {@code bc_case_value} band.
+	 */
+	private static final int CASE_VALUE = 0;
+
+	/**
+	 * The index of the {@code bc_byte} band.
+	 */
+	private static final int BYTE = 1;
+
+	/**
+	 * The index of the {@code bc_short} band.
+	 */
+	private static final int SHORT = 2;
+
+	/**
+	 * The index of the {@code bc_local} band.
+	 */
+	private static final int LOCAL = 3;
+
+	/**
+	 * The index of the {@code bc_label} band.
+	 */
+	private static final int LABEL = 4;
+
+	/**
+	 * The index of the {@code bc_intref} band.
+	 */
+	private static final int INT_REF = 5;
+
+	/**
+	 * The index of the {@code bc_floatref} band.
+	 */
+	private static final int FLOAT_REF = 6;
+
+	/**
+	 * The index of the {@code bc_longref} band.
+	 */
+	private static final int LONG_REF = 7;
+
+	/**
+	 * The index of the {@code bc_doubleref} band.
+	 */
+	private static final int DOUBLE_REF = 8;
+
+	/**
+	 * The index of the {@code bc_stringref} band.
+	 */
+	private static final int STRING_REF = 9;
+
+	/**
+	 * The index of the {@code bc_loadablevalueref} band.
+	 */
+	private static final int LOADABLE_REF = 10;
+
+	/**
+	 * The index of the {@code bc_classref} band, in which {@code 0} refers to the current class.
+	 */
+	private static final int CLASS_REF = 11;
+
+	/**
+	 * The index of the {@code bc_fieldref} band.
+	 */
+	private static final int FIELD_REF = 12;
+
+	/**
+	 * The index of the {@code bc_methodref} band.
+	 */
+	private static final int METHOD_REF = 13;
+
+	/**
+	 * The index of the {@code bc_imethodref} band.
+	 */
+	private static final int INTERFACE_METHOD_REF = 14;
+
+	/**
+	 * The index of the {@code bc_indyref} band.
+	 */
+	private static final int INVOKE_DYNAMIC_REF = 15;
+
+	/**
+	 * The index of the {@code bc_thisfield} band.
+	 */
+	private static final int THIS_FIELD = 16;
+
+	/**
+	 * The index of the {@code bc_superfield} band.
+	 */
+	private static final int SUPER_FIELD = 17;
+
+	/**
+	 * The index of the {@code bc_thismethod} band.
+	 */
+	private static final int THIS_METHOD = 18;
+
+	/**
+	 * The index of the {@code bc_supermethod} band.
+	 */
+	private static final int SUPER_METHOD = 19;
+
+	/**
+	 * The index of the {@code bc_initref} band.
+	 */
+	private static final int INIT_REF = 20;
+
+	/**
+	 * The index of the {@code bc_escref} band.
+	 */
+	private static final int ESCAPE_REF = 21;
+
+	/**
+	 * The index of the {@code bc_escrefsize} band.
+	 */
+	private static final int ESCAPE_REF_SIZE = 22;
+
+	/**
+	 * The index of the {@code bc_escsize} band.
+	 */
+	private static final int ESCAPE_SIZE = 23;
+
+	/**
+	 * The amount of operand bands, which are read in the order of their indices.
+	 */
+	private static final int BAND_COUNT = 24;
+
+	/**
+	 * The kind of an opcode that has no operands.
+	 */
+	private static final byte SIMPLE = 0;
+
+	/**
+	 * The kind of an opcode that is not valid in a pack200 archive.
+	 */
+	private static final byte INVALID = 1;
+
+	/**
+	 * The kind of an opcode that takes a local variable index.
+	 */
+	private static final byte LOCAL_VARIABLE = 2;
+
+	/**
+	 * The kind of an opcode that takes a branch offset.
+	 */
+	private static final byte BRANCH = 3;
+
+	/**
+	 * The kind of an opcode that takes a constant pool reference.
+	 */
+	private static final byte REFERENCE = 4;
+
+	/**
+	 * The kind of an opcode that refers to a member of the current class or its superclass.
+	 */
+	private static final byte SELF_LINKER = 5;
+
+	/**
+	 * The kind of an opcode that invokes an instance initialiser of the current class, its superclass, or the class of
+	 * the last {@code new} instruction.
+	 */
+	private static final byte INITIALISER = 6;
+
+	/**
+	 * The {@code aload_0} opcode.
+	 */
+	private static final int ALOAD_0 = 42;
+
+	/**
+	 * The {@code bipush} opcode.
+	 */
+	private static final int BIPUSH = 16;
+
+	/**
+	 * The {@code sipush} opcode.
+	 */
+	private static final int SIPUSH = 17;
+
+	/**
+	 * The {@code ldc} opcode.
+	 */
+	private static final int LDC = 18;
+
+	/**
+	 * The {@code ldc_w} opcode.
+	 */
+	private static final int LDC_W = 19;
+
+	/**
+	 * The {@code ldc2_w} opcode.
+	 */
+	private static final int LDC2_W = 20;
+
+	/**
+	 * The {@code iinc} opcode.
+	 */
+	private static final int IINC = 132;
+
+	/**
+	 * The {@code tableswitch} opcode.
+	 */
+	private static final int TABLESWITCH = 170;
+
+	/**
+	 * The {@code lookupswitch} opcode.
+	 */
+	private static final int LOOKUPSWITCH = 171;
+
+	/**
+	 * The {@code getstatic} opcode, the first of the field and method instructions.
+	 */
+	private static final int GETSTATIC = 178;
+
+	/**
+	 * The {@code invokespecial} opcode.
+	 */
+	private static final int INVOKESPECIAL = 183;
+
+	/**
+	 * The {@code invokestatic} opcode.
+	 */
+	private static final int INVOKESTATIC = 184;
+
+	/**
+	 * The {@code invokeinterface} opcode.
+	 */
+	private static final int INVOKEINTERFACE = 185;
+
+	/**
+	 * The {@code invokedynamic} opcode.
+	 */
+	private static final int INVOKEDYNAMIC = 186;
+
+	/**
+	 * The {@code new} opcode.
+	 */
+	private static final int NEW = 187;
+
+	/**
+	 * The {@code newarray} opcode.
+	 */
+	private static final int NEWARRAY = 188;
+
+	/**
+	 * The {@code wide} opcode.
+	 */
+	private static final int WIDE = 196;
+
+	/**
+	 * The {@code multianewarray} opcode.
+	 */
+	private static final int MULTIANEWARRAY = 197;
+
+	/**
+	 * The {@code goto_w} opcode, the first of the branches with a four-byte offset.
+	 */
+	private static final int GOTO_W = 200;
+
+	/**
+	 * The first self-linking opcode.
+	 */
+	private static final int SELF_LINKER_START = 202;
+
+	/**
+	 * The offset of the self-linking opcodes that are preceded by an {@code aload_0}.
+	 */
+	private static final int SELF_LINKER_ALOAD = 7;
+
+	/**
+	 * The offset of the self-linking opcodes that refer to a member of the superclass.
+	 */
+	private static final int SELF_LINKER_SUPER = 14;
+
+	/**
+	 * The first opcode that invokes an instance initialiser, which is of the current class (followed by the superclass
+	 * and then the class of the last {@code new} instruction).
+	 */
+	private static final int INVOKE_INITIALISER = 230;
+
+	/**
+	 * The pack200 {@code ldc} of a {@code Class}, the first of the typed {@code ldc} opcodes.
+	 */
+	private static final int CLASS_LDC = 233;
+
+	/**
+	 * The pack200 {@code invokespecial} of an interface method.
+	 */
+	private static final int INVOKESPECIAL_INTERFACE = 242;
+
+	/**
+	 * The pack200 {@code invokestatic} of an interface method.
+	 */
+	private static final int INVOKESTATIC_INTERFACE = 243;
+
+	/**
+	 * The opcode that escapes a constant pool reference, transmitted in a band of its own.
+	 */
+	private static final int REFERENCE_ESCAPE = 253;
+
+	/**
+	 * The opcode that escapes a run of bytes, transmitted in a band of their own.
+	 */
+	private static final int BYTE_ESCAPE = 254;
+
+	/**
+	 * The opcode that marks the end of the bytecode of a method body.
+	 */
+	private static final int END = 255;
+
+	/**
+	 * The operand band of each opcode that refers to the constant pool, indexed by opcode.
+	 */
+	private static final byte[] BANDS = new byte[256];
+
+	/**
+	 * The kind of each opcode.
+	 */
+	private static final byte[] KINDS = new byte[256];
+
+	/**
+	 * The standard opcode each opcode is expanded to.
+	 */
+	private static final int[] ORIGINALS = new int[256];
+
+	/**
+	 * The tag (or pseudo-tag) of the reference of each opcode that refers to the constant pool.
+	 */
+	private static final int[] TAGS = new int[256];
+
+	static {
+		for (int opcode = 0; opcode < ORIGINALS.length; opcode++) {
+			ORIGINALS[opcode] = opcode;
+			KINDS[opcode] = opcode < SELF_LINKER_START ? SIMPLE : INVALID;
+		}
+
+		for (int opcode = 21; opcode <= 25; opcode++) { // iload through aload, and the stores that follow.
+			KINDS[opcode] = KINDS[opcode + 33] = LOCAL_VARIABLE;
+		}
+		KINDS[169] = LOCAL_VARIABLE; // ret
+
+		for (int opcode = 153; opcode <= 168; opcode++) { // ifeq through jsr.
+			KINDS[opcode] = BRANCH;
+		}
+		for (int opcode = 198; opcode <= 201; opcode++) { // ifnull through jsr_w.
+			KINDS[opcode] = BRANCH;
+		}
+
+		reference(LDC, STRING_REF, Entry.STRING, LDC);
+		reference(LDC_W, STRING_REF, Entry.STRING, LDC_W);
+		reference(LDC2_W, LONG_REF, Entry.LONG, LDC2_W);
+		for (int opcode = GETSTATIC; opcode < INVOKESPECIAL - 1; opcode++) {
+			reference(opcode, FIELD_REF, Entry.FIELD, opcode);
+		}
+		for (int opcode = INVOKESPECIAL - 1; opcode <= INVOKESTATIC; opcode++) {
+			reference(opcode, METHOD_REF, Entry.METHOD, opcode);
+		}
+		reference(INVOKEINTERFACE, INTERFACE_METHOD_REF, Entry.INTERFACE_METHOD, INVOKEINTERFACE);
+		reference(INVOKEDYNAMIC, INVOKE_DYNAMIC_REF, Entry.INVOKE_DYNAMIC, INVOKEDYNAMIC);
+		reference(NEW, CLASS_REF, Entry.CLASS, NEW);
+		reference(189, CLASS_REF, Entry.CLASS, 189); // anewarray
+		reference(192, CLASS_REF, Entry.CLASS, 192); // checkcast
+		reference(193, CLASS_REF, Entry.CLASS, 193); // instanceof
+		reference(MULTIANEWARRAY, CLASS_REF, Entry.CLASS, MULTIANEWARRAY);
+
+		reference(CLASS_LDC, CLASS_REF, Entry.CLASS, LDC);
+		reference(CLASS_LDC + 1, INT_REF, Entry.INTEGER, LDC);
+		reference(CLASS_LDC + 2, FLOAT_REF, Entry.FLOAT, LDC);
+		reference(CLASS_LDC + 3, CLASS_REF, Entry.CLASS, LDC_W);
+		reference(CLASS_LDC + 4, INT_REF, Entry.INTEGER, LDC_W);
+		reference(CLASS_LDC + 5, FLOAT_REF, Entry.FLOAT, LDC_W);
+		reference(CLASS_LDC + 6, DOUBLE_REF, Entry.DOUBLE, LDC2_W);
+		reference(CLASS_LDC + 7, LOADABLE_REF, ConstantPool.LOADABLE_VALUE, LDC);
+		reference(CLASS_LDC + 8, LOADABLE_REF, ConstantPool.LOADABLE_VALUE, LDC_W);
+		reference(INVOKESPECIAL_INTERFACE, INTERFACE_METHOD_REF, Entry.INTERFACE_METHOD, INVOKESPECIAL);
+		reference(INVOKESTATIC_INTERFACE, INTERFACE_METHOD_REF, Entry.INTERFACE_METHOD, INVOKESTATIC);
+
+		for (int opcode = SELF_LINKER_START; opcode < INVOKE_INITIALISER; opcode++) {
+			int index = opcode - SELF_LINKER_START;
+			boolean superclass = index >= SELF_LINKER_SUPER;
+			int original = GETSTATIC + index % SELF_LINKER_ALOAD;
+			boolean field = original < INVOKESPECIAL - 1;
+
+			KINDS[opcode] = SELF_LINKER;
+			ORIGINALS[opcode] = original;
+			TAGS[opcode] = field ? Entry.FIELD : Entry.METHOD;
+			BANDS[opcode] = (byte) (field ? superclass ? SUPER_FIELD : THIS_FIELD : superclass ? SUPER_METHOD : THIS_METHOD);
+		}
+
+		for (int opcode = INVOKE_INITIALISER; opcode < CLASS_LDC; opcode++) {
+			KINDS[opcode] = INITIALISER;
+			ORIGINALS[opcode] = INVOKESPECIAL;
+		}
+	}
+
+	/**
+	 * Writes a big-endian integer directly into the specified array.
+	 *
+	 * @param bytes The array.
+	 * @param position The position of the integer.
+	 * @param value The integer.
+	 * @param length The amount of bytes.
+	 */
+	private static void put(byte[] bytes, int position, int value, int length) {
+		for (int shift = (length - 1) * 8; shift >= 0; shift -= 8) {
+			bytes[position++] = (byte) (value >>> shift);
+		}
+	}
+
+	/**
+	 * Reads a big-endian, four-byte integer from the specified array.
+	 *
+	 * @param bytes The array.
+	 * @param position The position of the integer.
+	 * @return The integer.
+	 */
+	private static int read(byte[] bytes, int position) {
+		return (bytes[position] & 0xFF) << 24 | (bytes[position + 1] & 0xFF) << 16 | (bytes[position + 2] & 0xFF) << 8
+				| bytes[position + 3] & 0xFF;
+	}
+
+	/**
+	 * Defines an opcode that refers to the constant pool.
+	 *
+	 * @param opcode The opcode.
+	 * @param band The index of the operand band.
+	 * @param tag The tag (or pseudo-tag) of the reference.
+	 * @param original The standard opcode it is expanded to.
+	 */
+	private static void reference(int opcode, int band, int tag, int original) {
+		KINDS[opcode] = REFERENCE;
+		BANDS[opcode] = (byte) band;
+		TAGS[opcode] = tag;
+		ORIGINALS[opcode] = original;
+	}
+
+	/**
+	 * The operand bands, indexed by the band constants.
+	 */
+	private final Band[] bands = {
+		new Band("bc_case_value", Coding.DELTA5), new Band("bc_byte", Coding.BYTE1),
+		new Band("bc_short", Coding.DELTA5), new Band("bc_local", Coding.UNSIGNED5),
+		new Band("bc_label", Coding.BRANCH5), new Band("bc_intref", Coding.DELTA5),
+		new Band("bc_floatref", Coding.DELTA5), new Band("bc_longref", Coding.DELTA5),
+		new Band("bc_doubleref", Coding.DELTA5), new Band("bc_stringref", Coding.DELTA5),
+		new Band("bc_loadablevalueref", Coding.DELTA5), new Band("bc_classref", Coding.UNSIGNED5),
+		new Band("bc_fieldref", Coding.DELTA5), new Band("bc_methodref", Coding.UNSIGNED5),
+		new Band("bc_imethodref", Coding.DELTA5), new Band("bc_indyref", Coding.DELTA5),
+		new Band("bc_thisfield", Coding.UNSIGNED5), new Band("bc_superfield", Coding.UNSIGNED5),
+		new Band("bc_thismethod", Coding.UNSIGNED5), new Band("bc_supermethod", Coding.UNSIGNED5),
+		new Band("bc_initref", Coding.UNSIGNED5), new Band("bc_escref", Coding.UNSIGNED5),
+		new Band("bc_escrefsize", Coding.UNSIGNED5), new Band("bc_escsize", Coding.UNSIGNED5)
+	};
+
+	/**
+	 * The band of the amount of cases of each switch.
+	 */
+	private final Band caseCounts = new Band("bc_case_count", Coding.UNSIGNED5);
+
+	/**
+	 * The band of the escaped bytes.
+	 */
+	private final Band escapedBytes = new Band("bc_escbyte", Coding.BYTE1);
+
+	/**
+	 * The ContentHeap the bytecode is written to.
+	 */
+	private final ContentHeap heap;
+
+	/**
+	 * The position of each instruction of the method body being expanded.
+	 */
+	private int[] instructions = new int[1024];
+
+	/**
+	 * The position of each instruction with a branch offset in the method body being expanded.
+	 */
+	private int[] labels = new int[256];
+
+	/**
+	 * The opcodes of every method body in the segment, each terminated by the end marker.
+	 */
+	private byte[] operations = new byte[16 * 1024];
+
+	/**
+	 * The ConstantPool of the segment.
+	 */
+	private final ConstantPool pool;
+
+	/**
+	 * The opcode of each switch in the segment.
+	 */
+	private int[] switches = new int[64];
+
+	/**
+	 * Creates the BytecodeDecoder.
+	 *
+	 * @param pool The {@link ConstantPool} of the segment.
+	 * @param heap The {@link ContentHeap} to write the bytecode to.
+	 */
+	public BytecodeDecoder(ConstantPool pool, ContentHeap heap) {
+		this.pool = pool;
+		this.heap = heap;
+	}
+
+	/**
+	 * Reads the bytecode bands, and expands the bytecode of each method body into the heap. The instruction positions
+	 * of each body are recorded, so that the bytecode indices in its attributes and exception handlers can be decoded.
+	 *
+	 * @param input The {@link PackInput} to read from.
+	 * @param codes The {@link PackedCode}s of the segment, in order.
+	 * @throws IOException If there is an error reading the bands, or the bytecode is malformed.
+	 */
+	public void decode(PackInput input, List<PackedCode> codes) throws IOException {
+		int[] lengths = new int[BAND_COUNT];
+		int switchCount = readOperations(input, codes.size(), lengths);
+
+		caseCounts.read(input, switchCount);
+		for (int index = 0; index < switchCount; index++) {
+			int cases = caseCounts.get(index);
+			lengths[LABEL] += 1 + cases;
+			lengths[CASE_VALUE] += switches[index] == TABLESWITCH ? 1 : cases;
+		}
+
+		for (int band = 0; band < BAND_COUNT; band++) {
+			bands[band].read(input, lengths[band]);
+		}
+		escapedBytes.read(input, bands[ESCAPE_SIZE].total());
+
+		int position = 0;
+		for (PackedCode code : codes) {
+			position = expand(code, position);
+		}
+	}
+
+	/**
+	 * Expands the bytecode of a method body into the heap.
+	 *
+	 * @param code The {@link PackedCode}.
+	 * @param position The position of the first opcode of the body.
+	 * @return The position after the end marker of the body.
+	 * @throws IOException If a band is exhausted, or an opcode or reference is invalid.
+	 */
+	private int expand(PackedCode code, int position) throws IOException {
+		PackedClass owner = code.method.owner;
+		Entry newClass = null;
+
+		int start = heap.size(), instructionCount = 0, labelCount = 0;
+		code.start = start;
+		code.firstReference = heap.referenceCount();
+
+		for (int opcode = operations[position++] & 0xFF; opcode != END; opcode = operations[position++] & 0xFF) {
+			int pc = heap.size() - start;
+			if (instructionCount + 2 > instructions.length) {
+				instructions = Arrays.copyOf(instructions, instructions.length * 2);
+			}
+			if (labelCount == labels.length) {
+				labels = Arrays.copyOf(labels, labelCount * 2);
+			}
+			instructions[instructionCount++] = pc;
+
+			boolean wide = opcode == WIDE;
+			if (wide) {
+				heap.write(WIDE);
+				opcode = operations[position++] & 0xFF;
+			}
+
+			switch (opcode) {
+				case TABLESWITCH:
+				case LOOKUPSWITCH:
+					labels[labelCount++] = pc;
+					expandSwitch(opcode, pc);
+					break;
+				case IINC:
+					heap.write(opcode);
+					heap.write(bands[LOCAL].next(), wide ? 2 : 1);
+					heap.write(wide ? bands[SHORT].next() : bands[BYTE].next(), wide ? 2 : 1);
+					break;
+				case SIPUSH:
+					heap.write(opcode);
+					heap.write(bands[SHORT].next(), 2);
+					break;
+				case BIPUSH:
+				case NEWARRAY:
+					heap.write(opcode);
+					heap.write(bands[BYTE].next());
+					break;
+				case REFERENCE_ESCAPE:
+					int size = bands[ESCAPE_REF_SIZE].next();
+					Entry entry = pool.get(ConstantPool.ALL, bands[ESCAPE_REF].next());
+					if (size != 1 && size != 2) {
+						throw new IOException("Invalid escaped reference size " + size + ".");
+					} else if (size == 1) {
+						owner.addLoaded(entry);
+					}
+
+					heap.addReference(entry.tag == Entry.SIGNATURE ? entry.flattened : entry, size == 2);
+					break;
+				case BYTE_ESCAPE:
+					for (int remaining = bands[ESCAPE_SIZE].next(); remaining > 0; remaining--) {
+						heap.write(escapedBytes.next());
+					}
+					break;
+				default:
+					switch (KINDS[opcode]) {
+						case SIMPLE:
+							heap.write(opcode);
+							break;
+						case LOCAL_VARIABLE:
+							heap.write(opcode);
+							heap.write(bands[LOCAL].next(), wide ? 2 : 1);
+							break;
+						case BRANCH:
+							labels[labelCount++] = pc;
+							heap.write(opcode);
+							heap.write(0, opcode >= GOTO_W ? 4 : 2);
+							break;
+						case REFERENCE:
+							Entry reference = expandReference(opcode, owner);
+							if (opcode == NEW) {
+								newClass = reference;
+							}
+							break;
+						case SELF_LINKER:
+							int index = opcode - SELF_LINKER_START;
+							Entry linked = index >= SELF_LINKER_SUPER ? owner.superClass : owner.thisClass;
+							if (linked == null) {
+								throw new IOException("Superclass member reference in class without a superclass.");
+							} else if (index % SELF_LINKER_SUPER >= SELF_LINKER_ALOAD) {
+								heap.write(ALOAD_0);
+								instructions[instructionCount++] = heap.size() - start;
+							}
+
+							heap.write(ORIGINALS[opcode]);
+							heap.addReference(pool.getMember(TAGS[opcode], linked, bands[BANDS[opcode]].next()), true);
+							break;
+						case INITIALISER:
+							index = opcode - INVOKE_INITIALISER;
+							Entry initialised = index == 0 ? owner.thisClass : index == 1 ? owner.superClass : newClass;
+							if (initialised == null) {
+								throw new IOException("Initialiser reference without a class.");
+							}
+
+							heap.write(INVOKESPECIAL);
+							heap.addReference(pool.getInitialiser(initialised, bands[INIT_REF].next()), true);
+							break;
+						default:
+							throw new IOException("Invalid opcode " + opcode + ".");
+					}
+			}
+		}
+
+		code.end = heap.size();
+		code.lastReference = heap.referenceCount();
+		code.setInstructions(instructions, instructionCount);
+
+		byte[] bytes = heap.getBytes();
+		Band band = bands[LABEL];
+
+		for (int index = 0; index < labelCount; index++) {
+			int pc = labels[index], at = start + pc, opcode = bytes[at] & 0xFF;
+			if (opcode != TABLESWITCH && opcode != LOOKUPSWITCH) {
+				int length = opcode >= GOTO_W ? 4 : 2;
+				put(bytes, at + 1, offset(code, pc, band), length);
+				continue;
+			}
+
+			int aligned = at + 1 + (3 - pc & 3);
+			put(bytes, aligned, offset(code, pc, band), 4);
+
+			if (opcode == TABLESWITCH) {
+				int cases = read(bytes, aligned + 8) - read(bytes, aligned + 4) + 1;
+				for (int label = 0; label < cases; label++) {
+					put(bytes, aligned + 12 + label * 4, offset(code, pc, band), 4);
+				}
+			} else {
+				int cases = read(bytes, aligned + 4);
+				for (int label = 0; label < cases; label++) {
+					put(bytes, aligned + 12 + label * 8, offset(code, pc, band), 4);
+				}
+			}
+		}
+
+		return position;
+	}
+
+	/**
+	 * Expands an instruction that refers to the constant pool.
+	 *
+	 * @param opcode The (pack200) opcode.
+	 * @param owner The {@link PackedClass} that declares the method body.
+	 * @return The {@link Entry} referred to.
+	 * @throws IOException If the operand band is exhausted, or the reference is out of range.
+	 */
+	private Entry expandReference(int opcode, PackedClass owner) throws IOException {
+		int band = BANDS[opcode], value = bands[band].next();
+		Entry entry;
+		if (band == CLASS_REF) {
+			entry = value == 0 ? owner.thisClass : pool.get(Entry.CLASS, value - 1);
+		} else {
+			entry = pool.get(TAGS[opcode], value);
+		}
+
+		int original = ORIGINALS[opcode];
+		heap.write(original);
+
+		if (original == LDC) {
+			owner.addLoaded(entry);
+			heap.addReference(entry, false);
+		} else {
+			heap.addReference(entry, true);
+		}
+
+		if (original == MULTIANEWARRAY) {
+			heap.write(bands[BYTE].next());
+		} else if (original == INVOKEINTERFACE) {
+			heap.write(1 + entry.references[1].references[1].argumentSize());
+			heap.write(0);
+		} else if (original == INVOKEDYNAMIC) {
+			heap.write(0, 2);
+		}
+
+		return entry;
+	}
+
+	/**
+	 * Expands a switch, leaving its labels to be filled in once the instruction positions of the method body are known.
+	 *
+	 * @param opcode The opcode of the switch.
+	 * @param pc The position of the switch, relative to the start of the method body.
+	 * @throws IOException If a band is exhausted.
+	 */
+	private void expandSwitch(int opcode, int pc) throws IOException {
+		int cases = caseCounts.next();
+		heap.write(opcode);
+		heap.write(0, 3 - pc & 3);
+		heap.write(0, 4);
+
+		if (opcode == TABLESWITCH) {
+			int low = bands[CASE_VALUE].next();
+			heap.write(low, 4);
+			heap.write(low + cases - 1, 4);
+			for (int index = 0; index < cases; index++) {
+				heap.write(0, 4);
+			}
+		} else {
+			heap.write(cases, 4);
+			for (int index = 0; index < cases; index++) {
+				heap.write(bands[CASE_VALUE].next(), 4);
+				heap.write(0, 4);
+			}
+		}
+	}
+
+	/**
+	 * Decodes the next label of an instruction into a branch offset.
+	 *
+	 * @param code The {@link PackedCode} that contains the instruction.
+	 * @param pc The position of the instruction, relative to the start of the method body.
+	 * @param labels The {@code bc_label} {@link Band}.
+	 * @return The offset of the branch target from the instruction.
+	 * @throws IOException If the band is exhausted.
+	 */
+	private int offset(PackedCode code, int pc, Band labels) throws IOException {
+		return code.decodeBci(labels.next() + code.encodeBci(pc)) - pc;
+	}
+
+	/**
+	 * Reads the opcodes of every method body, counting the operands of each band.
+	 *
+	 * @param input The {@link PackInput} to read from.
+	 * @param codes The amount of method bodies.
+	 * @param lengths The length of each operand band, which is incremented for each operand.
+	 * @return The amount of switches, whose case counts are read next.
+	 * @throws IOException If there is an error reading from the archive.
+	 */
+	private int readOperations(PackInput input, int codes, int[] lengths) throws IOException {
+		int position = 0, switchCount = 0;
+
+		for (int code = 0; code < codes; code++) {
+			while (true) {
+				if (position + 2 > operations.length) {
+					operations = Arrays.copyOf(operations, operations.length * 2);
+				}
+
+				int opcode = input.read();
+				operations[position++] = (byte) opcode;
+				if (opcode == END) {
+					break;
+				}
+
+				boolean wide = opcode == WIDE;
+				if (wide) {
+					opcode = input.read();
+					operations[position++] = (byte) opcode;
+				}
+
+				switch (opcode) {
+					case TABLESWITCH:
+					case LOOKUPSWITCH:
+						if (switchCount == switches.length) {
+							switches = Arrays.copyOf(switches, switchCount * 2);
+						}
+
+						switches[switchCount++] = opcode;
+						break;
+					case IINC:
+						lengths[LOCAL]++;
+						lengths[wide ? SHORT : BYTE]++;
+						break;
+					case SIPUSH:
+						lengths[SHORT]++;
+						break;
+					case BIPUSH:
+					case NEWARRAY:
+						lengths[BYTE]++;
+						break;
+					case MULTIANEWARRAY:
+						lengths[CLASS_REF]++;
+						lengths[BYTE]++;
+						break;
+					case REFERENCE_ESCAPE:
+						lengths[ESCAPE_REF_SIZE]++;
+						lengths[ESCAPE_REF]++;
+						break;
+					case BYTE_ESCAPE:
+						lengths[ESCAPE_SIZE]++;
+						break;
+					default:
+						switch (KINDS[opcode]) {
+							case LOCAL_VARIABLE:
+								lengths[LOCAL]++;
+								break;
+							case BRANCH:
+								lengths[LABEL]++;
+								break;
+							case REFERENCE:
+							case SELF_LINKER:
+								lengths[BANDS[opcode]]++;
+								break;
+							case INITIALISER:
+								lengths[INIT_REF]++;
+								break;
+						}
+				}
+			}
+		}
+
+		return switchCount;
+	}
+
+}
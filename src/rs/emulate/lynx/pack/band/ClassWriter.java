@@ -0,0 +1,821 @@
+package rs.emulate.lynx.pack.band;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Reconstructs class files from the {@link PackedClass}es of a segment: works out the constant pool (and the inner
+ * classes and bootstrap methods) of each class, and then writes it into a buffer that is reused for every class.
+ *
+ * @author Major
+ */
+final class ClassWriter {
+
+	/**
+	 * The magic number of a class file.
+	 */
+	private static final int MAGIC = 0xCAFEBABE;
+
+	/**
+	 * The name of the {@code BootstrapMethods} attribute.
+	 */
+	private static final String BOOTSTRAP_METHODS = "BootstrapMethods";
+
+	/**
+	 * The name of the {@code Code} attribute.
+	 */
+	private static final String CODE = "Code";
+
+	/**
+	 * The name of the {@code InnerClasses} attribute.
+	 */
+	private static final String INNER_CLASSES = "InnerClasses";
+
+	/**
+	 * The initial capacity of the buffer, in bytes.
+	 */
+	private static final int INITIAL_CAPACITY = 16 * 1024;
+
+	/**
+	 * The order in which the constant pool of a class is laid out: entries in the segment pool in the order they were
+	 * transmitted, followed by every other entry in natural order.
+	 */
+	private static final Comparator<Entry> OUTPUT_ORDER = (first, second) -> {
+		if (first.key >= 0 && second.key >= 0) {
+			return first.key - second.key;
+		} else if (first.key == second.key) {
+			return first.compareTo(second);
+		}
+
+		return first.key >= 0 ? -1 : 1;
+	};
+
+	/**
+	 * Returns whether or not the specified attribute is the (predefined, empty) {@code InnerClasses} attribute.
+	 *
+	 * @param attribute The {@link Attribute}.
+	 * @return {@code true} if the attribute is the InnerClasses attribute.
+	 */
+	private static boolean isInnerClasses(Attribute attribute) {
+		AttributeLayout layout = attribute.layout;
+		return layout.isPredefined() && layout.isEmpty() && layout.getName().equals(INNER_CLASSES);
+	}
+
+	/**
+	 * The bootstrap methods of the current class.
+	 */
+	private final List<Entry> bootstrapMethods = new ArrayList<>();
+
+	/**
+	 * The buffer the class file is written to.
+	 */
+	private byte[] bytes = new byte[INITIAL_CAPACITY];
+
+	/**
+	 * The amount of references whose own references have been added to the set.
+	 */
+	private int completed;
+
+	/**
+	 * The constant pool of the current class, in the order it is written.
+	 */
+	private Entry[] constants = new Entry[256];
+
+	/**
+	 * The inner classes of the segment, by nested class.
+	 */
+	private final Map<Entry, InnerClass> globalInnerClasses;
+
+	/**
+	 * The ContentHeap holding the attributes and bytecode of the segment.
+	 */
+	private final ContentHeap heap;
+
+	/**
+	 * The inner classes of the segment, in the order they were transmitted.
+	 */
+	private final List<InnerClass> innerClasses;
+
+	/**
+	 * The ConstantPool of the segment.
+	 */
+	private final ConstantPool pool;
+
+	/**
+	 * The set of entries referred to by the current class, as an array. Membership is recorded by stamping each entry
+	 * with {@link #stamp}, so that the set can be cleared without touching the entries.
+	 */
+	private Entry[] references = new Entry[256];
+
+	/**
+	 * The amount of entries in the reference set.
+	 */
+	private int referenceCount;
+
+	/**
+	 * The classes that are (or are outer classes of) an inner class referred to by the current class.
+	 */
+	private final Set<Entry> relevant = new HashSet<>();
+
+	/**
+	 * The amount of bytes written to the buffer.
+	 */
+	private int size;
+
+	/**
+	 * The stamp of the entries in the current reference set.
+	 */
+	private int stamp;
+
+	/**
+	 * Creates the ClassWriter.
+	 *
+	 * @param pool The {@link ConstantPool} of the segment.
+	 * @param heap The {@link ContentHeap} of the segment.
+	 * @param innerClasses The {@link InnerClass}es of the segment, in the order they were transmitted.
+	 * @param globalInnerClasses The InnerClasses of the segment, by nested class.
+	 */
+	ClassWriter(ConstantPool pool, ContentHeap heap, List<InnerClass> innerClasses,
+			Map<Entry, InnerClass> globalInnerClasses) {
+		this.pool = pool;
+		this.heap = heap;
+		this.innerClasses = innerClasses;
+		this.globalInnerClasses = globalInnerClasses;
+	}
+
+	/**
+	 * Gets the buffer the last class was written to.
+	 *
+	 * @return The buffer, which is only valid until the next class is written.
+	 */
+	public byte[] getBytes() {
+		return bytes;
+	}
+
+	/**
+	 * Reconstructs and writes the specified class.
+	 *
+	 * @param cls The {@link PackedClass}.
+	 * @return The length of the class file, in bytes.
+	 * @throws IOException If the class cannot be represented as a class file.
+	 */
+	public int write(PackedClass cls) throws IOException {
+		List<InnerClass> local = cls.innerClasses;
+		List<InnerClass> implied = null;
+		bootstrapMethods.clear();
+
+		if (local != null && !local.isEmpty()) { // The implied inner classes ignore the transmitted ones.
+			clear();
+			visit(cls, null, true);
+			complete();
+			implied = implyInnerClasses(cls);
+		}
+
+		clear();
+		visit(cls, local, false);
+		complete();
+
+		List<InnerClass> actual;
+		int changed;
+
+		if (local == null) {
+			implied = implyInnerClasses(cls);
+			actual = implied.isEmpty() ? null : implied;
+			changed = implied.isEmpty() ? 0 : 1;
+		} else if (local.isEmpty()) {
+			actual = null; // An empty attribute is transmitted to remove the implied inner classes.
+			changed = 0;
+		} else {
+			actual = difference(implied, local);
+			changed = actual.containsAll(local) ? 1 : -1;
+		}
+
+		cls.innerClasses = actual;
+		if (changed > 0) {
+			visitInnerClasses(actual);
+			complete();
+		} else if (changed < 0) { // Some of the transmitted classes were removed, so their references may be unused.
+			clear();
+			visit(cls, actual, true);
+			complete();
+		}
+
+		if (!bootstrapMethods.isEmpty()) {
+			add(pool.getUtf8(BOOTSTRAP_METHODS));
+			Collections.sort(bootstrapMethods);
+		}
+
+		int count = layoutConstants(cls);
+		size = 0;
+
+		writeInt(MAGIC);
+		writeShort(cls.minorVersion);
+		writeShort(cls.majorVersion);
+		writeConstants(count);
+
+		writeShort(cls.flags);
+		writeShort(cls.thisClass.index);
+		writeShort(cls.superClass == null ? 0 : cls.superClass.index);
+		writeShort(cls.interfaces.length);
+		for (Entry implemented : cls.interfaces) {
+			writeShort(implemented.index);
+		}
+
+		writeMembers(cls.fields);
+		writeMembers(cls.methods);
+		writeClassAttributes(cls);
+		return size;
+	}
+
+	/**
+	 * Adds the specified entry to the reference set, replacing a signature with its flattened {@code Utf8}, and moving
+	 * a bootstrap method to the bootstrap methods of the class (adding its own references).
+	 *
+	 * @param entry The {@link Entry}, which may be {@code null}.
+	 */
+	private void add(Entry entry) {
+		if (entry == null || entry.stamp == stamp) {
+			return;
+		}
+
+		entry.stamp = stamp;
+		if (entry.tag == Entry.SIGNATURE) {
+			add(entry.flattened);
+			return;
+		} else if (entry.tag == Entry.BOOTSTRAP_METHOD) {
+			if (!bootstrapMethods.contains(entry)) {
+				bootstrapMethods.add(entry);
+			}
+
+			for (Entry reference : entry.references) {
+				add(reference);
+			}
+			return;
+		}
+
+		if (referenceCount == references.length) {
+			references = Arrays.copyOf(references, referenceCount * 2);
+		}
+
+		references[referenceCount++] = entry;
+	}
+
+	/**
+	 * Clears the reference set.
+	 */
+	private void clear() {
+		stamp++;
+		referenceCount = 0;
+		completed = 0;
+	}
+
+	/**
+	 * Adds the references of every entry in the reference set to it, until no new entries are added.
+	 */
+	private void complete() {
+		while (completed < referenceCount) {
+			for (Entry reference : references[completed++].references) {
+				add(reference);
+			}
+		}
+	}
+
+	/**
+	 * Computes the symmetric difference of the implied and transmitted inner classes, which is the actual inner
+	 * classes of the class. The implied classes are placed first, as an outer class must precede its inner classes.
+	 *
+	 * @param implied The implied {@link InnerClass}es.
+	 * @param local The transmitted InnerClasses.
+	 * @return The {@link List} of actual InnerClasses.
+	 */
+	private List<InnerClass> difference(List<InnerClass> implied, List<InnerClass> local) {
+		if (implied.isEmpty()) {
+			return local;
+		}
+
+		List<InnerClass> common = new ArrayList<>(local);
+		common.retainAll(implied);
+
+		List<InnerClass> difference = new ArrayList<>(implied.size() + local.size());
+		difference.addAll(implied);
+		difference.addAll(local);
+		difference.removeAll(common);
+		return difference;
+	}
+
+	/**
+	 * Computes the inner classes implied by the reference set: those referred to by the class (and their outer
+	 * classes), and those that are members of the class, in the order they were transmitted.
+	 *
+	 * @param cls The {@link PackedClass}.
+	 * @return The {@link List} of implied {@link InnerClass}es.
+	 */
+	private List<InnerClass> implyInnerClasses(PackedClass cls) {
+		if (innerClasses.isEmpty()) {
+			return Collections.emptyList();
+		}
+
+		relevant.clear();
+		for (int index = 0; index < referenceCount; index++) {
+			Entry entry = references[index];
+			if (entry.tag != Entry.CLASS) {
+				continue;
+			}
+
+			while (entry != null) {
+				InnerClass inner = globalInnerClasses.get(entry);
+				if (inner == null || !relevant.add(entry)) {
+					break;
+				}
+
+				entry = inner.outerClass;
+			}
+		}
+
+		List<InnerClass> implied = new ArrayList<>();
+		for (InnerClass inner : innerClasses) {
+			if (relevant.contains(inner.thisClass) || inner.outerClass == cls.thisClass) {
+				implied.add(inner);
+			}
+		}
+
+		return implied;
+	}
+
+	/**
+	 * Lays out the constant pool of the class: the entries loaded by single-byte {@code ldc} instructions first, as
+	 * they must have an index below 256, and then every other entry. Each entry is given its index.
+	 *
+	 * @param cls The {@link PackedClass}.
+	 * @return The amount of constant pool slots, including the unused slot zero.
+	 */
+	private int layoutConstants(PackedClass cls) {
+		if (constants.length < referenceCount) {
+			constants = new Entry[Math.max(referenceCount, constants.length * 2)];
+		}
+
+		for (int index = 0; index < referenceCount; index++) {
+			references[index].index = 0;
+		}
+
+		int loaded = 0;
+		if (cls.loaded != null) {
+			for (Entry entry : cls.loaded) {
+				if (entry.index == 0) {
+					entry.index = -1;
+					constants[loaded++] = entry;
+				}
+			}
+		}
+
+		int position = loaded;
+		for (int index = 0; index < referenceCount; index++) {
+			Entry entry = references[index];
+			if (entry.index == 0) {
+				constants[position++] = entry;
+			}
+		}
+
+		Arrays.sort(constants, 0, loaded, OUTPUT_ORDER);
+		Arrays.sort(constants, loaded, position, OUTPUT_ORDER);
+
+		int next = 1;
+		for (int index = 0; index < position; index++) {
+			Entry entry = constants[index];
+			entry.index = next;
+			next += entry.isWide() ? 2 : 1;
+		}
+
+		return next;
+	}
+
+	/**
+	 * Ensures that the specified amount of bytes can be written without growing the buffer.
+	 *
+	 * @param length The amount of bytes.
+	 */
+	private void ensure(int length) {
+		if (size + length > bytes.length) {
+			bytes = Arrays.copyOf(bytes, Math.max(size + length, bytes.length * 2));
+		}
+	}
+
+	/**
+	 * Visits the references of the class, adding them to the reference set.
+	 *
+	 * @param cls The {@link PackedClass}.
+	 * @param inner The {@link InnerClass}es of the class, or {@code null} to ignore them.
+	 * @param bootstrap Whether or not to add the name of the {@code BootstrapMethods} attribute.
+	 */
+	private void visit(PackedClass cls, List<InnerClass> inner, boolean bootstrap) {
+		add(cls.thisClass);
+		add(cls.superClass);
+		for (Entry implemented : cls.interfaces) {
+			add(implemented);
+		}
+
+		for (PackedMember field : cls.fields) {
+			visitMember(field);
+		}
+
+		for (PackedMember method : cls.methods) {
+			visitMember(method);
+		}
+
+		visitInnerClasses(inner);
+		visitAttributes(cls);
+
+		if (bootstrap) {
+			add(pool.getUtf8(BOOTSTRAP_METHODS));
+		}
+	}
+
+	/**
+	 * Visits the names and references of the attributes of the specified holder.
+	 *
+	 * @param holder The {@link AttributeHolder}.
+	 */
+	private void visitAttributes(AttributeHolder holder) {
+		for (Attribute attribute : holder.attributes) {
+			add(pool.getUtf8(attribute.layout.getName()));
+			visitHeap(attribute.firstReference, attribute.lastReference);
+		}
+	}
+
+	/**
+	 * Visits the references in the heap with the specified indices.
+	 *
+	 * @param first The index of the first reference.
+	 * @param last The index after the last reference.
+	 */
+	private void visitHeap(int first, int last) {
+		for (int index = first; index < last; index++) {
+			add(heap.getReference(index));
+		}
+	}
+
+	/**
+	 * Visits the references of the specified inner classes, and the name of the {@code InnerClasses} attribute.
+	 *
+	 * @param inner The {@link InnerClass}es, or {@code null}.
+	 */
+	private void visitInnerClasses(List<InnerClass> inner) {
+		if (inner == null) {
+			return;
+		}
+
+		add(pool.getUtf8(INNER_CLASSES));
+		for (InnerClass nested : inner) {
+			add(nested.thisClass);
+			add(nested.outerClass);
+			add(nested.name);
+		}
+	}
+
+	/**
+	 * Visits the references of the specified field or method, including those of its body.
+	 *
+	 * @param member The {@link PackedMember}.
+	 */
+	private void visitMember(PackedMember member) {
+		add(member.descriptor.references[0]);
+		add(member.descriptor.references[1]);
+		visitAttributes(member);
+
+		PackedCode code = member.code;
+		if (code != null) {
+			add(pool.getUtf8(CODE));
+			for (Entry caught : code.handlerClasses) {
+				add(caught);
+			}
+
+			visitHeap(code.firstReference, code.lastReference);
+			visitAttributes(code);
+		}
+	}
+
+	/**
+	 * Writes the contents of an attribute (or the bytecode of a method) from the heap, replacing each reference with
+	 * the index of its entry.
+	 *
+	 * @param start The position of the contents in the heap.
+	 * @param end The position after the contents.
+	 * @param firstReference The index of the first reference in the contents.
+	 * @param lastReference The index after the last reference.
+	 */
+	private void writeHeap(int start, int end, int firstReference, int lastReference) {
+		int length = end - start;
+		ensure(length);
+		System.arraycopy(heap.getBytes(), start, bytes, size, length);
+
+		for (int index = firstReference; index < lastReference; index++) {
+			int offset = size + heap.getOffset(index) - start, value = heap.getReference(index).index;
+			if (heap.isWide(index)) {
+				bytes[offset++] = (byte) (value >> 8);
+			}
+
+			bytes[offset] = (byte) value;
+		}
+
+		size += length;
+	}
+
+	/**
+	 * Writes the specified attribute of a field, method or method body.
+	 *
+	 * @param holder The {@link AttributeHolder} of the attribute.
+	 * @param attribute The {@link Attribute}.
+	 */
+	private void writeAttribute(AttributeHolder holder, Attribute attribute) {
+		writeShort(pool.getUtf8(attribute.layout.getName()).index);
+		int start = size;
+		writeInt(0);
+
+		if (holder instanceof PackedMember && ((PackedMember) holder).code != null && attribute.layout.isPredefined()
+				&& attribute.layout.getName().equals(CODE)) {
+			writeCode(((PackedMember) holder).code);
+		} else {
+			writeHeap(attribute.start, attribute.end, attribute.firstReference, attribute.lastReference);
+		}
+
+		writeLength(start);
+	}
+
+	/**
+	 * Writes the attributes of the specified field, method or method body.
+	 *
+	 * @param holder The {@link AttributeHolder}.
+	 */
+	private void writeAttributes(AttributeHolder holder) {
+		writeShort(holder.attributes.length);
+		for (Attribute attribute : holder.attributes) {
+			writeAttribute(holder, attribute);
+		}
+	}
+
+	/**
+	 * Writes the {@code BootstrapMethods} attribute.
+	 */
+	private void writeBootstrapMethods() {
+		writeShort(pool.getUtf8(BOOTSTRAP_METHODS).index);
+		int start = size;
+		writeInt(0);
+
+		writeShort(bootstrapMethods.size());
+		for (Entry method : bootstrapMethods) {
+			Entry[] references = method.references;
+			writeShort(references[0].index);
+			writeShort(references.length - 1);
+
+			for (int index = 1; index < references.length; index++) {
+				writeShort(references[index].index);
+			}
+		}
+
+		writeLength(start);
+	}
+
+	/**
+	 * Writes the attributes of the class, placing the {@code BootstrapMethods} attribute (if there is one) before the
+	 * {@code InnerClasses} attribute, or else at the end.
+	 *
+	 * @param cls The {@link PackedClass}.
+	 */
+	private void writeClassAttributes(PackedClass cls) {
+		boolean bootstrap = !bootstrapMethods.isEmpty(), inner = cls.innerClasses != null, present = false;
+		int count = cls.attributes.length;
+
+		for (Attribute attribute : cls.attributes) {
+			if (isInnerClasses(attribute)) {
+				present = true;
+				if (!inner) {
+					count--;
+				}
+			}
+		}
+
+		if (inner && !present) {
+			count++;
+		}
+
+		writeShort(bootstrap ? count + 1 : count);
+		for (Attribute attribute : cls.attributes) {
+			if (!isInnerClasses(attribute)) {
+				writeAttribute(cls, attribute);
+			} else if (inner) {
+				if (bootstrap) {
+					writeBootstrapMethods();
+					bootstrap = false;
+				}
+
+				writeInnerClasses(cls.innerClasses);
+			}
+		}
+
+		if (bootstrap) {
+			writeBootstrapMethods();
+		}
+
+		if (inner && !present) {
+			writeInnerClasses(cls.innerClasses);
+		}
+	}
+
+	/**
+	 * Writes the body of a method.
+	 *
+	 * @param code The {@link PackedCode}.
+	 */
+	private void writeCode(PackedCode code) {
+		writeShort(code.maxStack);
+		writeShort(code.maxLocals);
+		writeInt(code.length());
+		writeHeap(code.start, code.end, code.firstReference, code.lastReference);
+
+		int[] handlers = code.handlers;
+		Entry[] classes = code.handlerClasses;
+		writeShort(classes.length);
+
+		for (int handler = 0; handler < classes.length; handler++) {
+			writeShort(handlers[handler * 3]);
+			writeShort(handlers[handler * 3 + 1]);
+			writeShort(handlers[handler * 3 + 2]);
+			writeShort(classes[handler] == null ? 0 : classes[handler].index);
+		}
+
+		writeAttributes(code);
+	}
+
+	/**
+	 * Writes the constant pool of the class.
+	 *
+	 * @param count The amount of constant pool slots.
+	 * @throws IOException If a {@code Utf8} entry is too long.
+	 */
+	private void writeConstants(int count) throws IOException {
+		writeShort(count);
+
+		for (int index = 0; index < referenceCount; index++) {
+			Entry entry = constants[index];
+			ensure(1);
+			bytes[size++] = (byte) entry.tag;
+
+			switch (entry.tag) {
+				case Entry.UTF8:
+					writeUtf8(entry.value);
+					break;
+				case Entry.INTEGER:
+				case Entry.FLOAT:
+					writeInt((int) entry.number);
+					break;
+				case Entry.LONG:
+				case Entry.DOUBLE:
+					writeInt((int) (entry.number >>> 32));
+					writeInt((int) entry.number);
+					break;
+				case Entry.CLASS:
+				case Entry.STRING:
+					writeShort(entry.references[0].index);
+					break;
+				case Entry.METHOD_TYPE:
+					writeShort(entry.references[0].flattened.index);
+					break;
+				case Entry.METHOD_HANDLE:
+					ensure(1);
+					bytes[size++] = (byte) entry.number;
+					writeShort(entry.references[0].index);
+					break;
+				case Entry.FIELD:
+				case Entry.METHOD:
+				case Entry.INTERFACE_METHOD:
+					writeShort(entry.references[0].index);
+					writeShort(entry.references[1].index);
+					break;
+				case Entry.NAME_AND_TYPE:
+					writeShort(entry.references[0].index);
+					writeShort(entry.references[1].flattened.index);
+					break;
+				case Entry.INVOKE_DYNAMIC:
+					writeShort(bootstrapMethods.indexOf(entry.references[0]));
+					writeShort(entry.references[1].index);
+					break;
+				default:
+					throw new IllegalStateException("Unexpected constant pool tag " + entry.tag + " - please report.");
+			}
+		}
+	}
+
+	/**
+	 * Writes the {@code InnerClasses} attribute.
+	 *
+	 * @param inner The {@link InnerClass}es.
+	 */
+	private void writeInnerClasses(List<InnerClass> inner) {
+		writeShort(pool.getUtf8(INNER_CLASSES).index);
+		writeInt(2 + inner.size() * 8);
+		writeShort(inner.size());
+
+		for (InnerClass nested : inner) {
+			writeShort(nested.thisClass.index);
+			writeShort(nested.outerClass == null ? 0 : nested.outerClass.index);
+			writeShort(nested.name == null ? 0 : nested.name.index);
+			writeShort(nested.flags);
+		}
+	}
+
+	/**
+	 * Writes a four-byte integer.
+	 *
+	 * @param value The integer.
+	 */
+	private void writeInt(int value) {
+		ensure(4);
+		bytes[size++] = (byte) (value >> 24);
+		bytes[size++] = (byte) (value >> 16);
+		bytes[size++] = (byte) (value >> 8);
+		bytes[size++] = (byte) value;
+	}
+
+	/**
+	 * Fills in the length of an attribute, now that its contents have been written.
+	 *
+	 * @param start The position of the (four-byte) length.
+	 */
+	private void writeLength(int start) {
+		int length = size - start - 4;
+		bytes[start] = (byte) (length >> 24);
+		bytes[start + 1] = (byte) (length >> 16);
+		bytes[start + 2] = (byte) (length >> 8);
+		bytes[start + 3] = (byte) length;
+	}
+
+	/**
+	 * Writes the specified fields or methods.
+	 *
+	 * @param members The {@link PackedMember}s.
+	 */
+	private void writeMembers(PackedMember[] members) {
+		writeShort(members.length);
+
+		for (PackedMember member : members) {
+			writeShort(member.flags);
+			writeShort(member.descriptor.references[0].index);
+			writeShort(member.descriptor.references[1].flattened.index);
+			writeAttributes(member);
+		}
+	}
+
+	/**
+	 * Writes a two-byte integer.
+	 *
+	 * @param value The integer.
+	 */
+	private void writeShort(int value) {
+		ensure(2);
+		bytes[size++] = (byte) (value >> 8);
+		bytes[size++] = (byte) value;
+	}
+
+	/**
+	 * Writes a string in the modified UTF-8 encoding used by class files, preceded by its (two-byte) length.
+	 *
+	 * @param value The string.
+	 * @throws IOException If the encoded string is longer than 65535 bytes.
+	 */
+	private void writeUtf8(String value) throws IOException {
+		int length = value.length(), encoded = 0;
+		for (int index = 0; index < length; index++) {
+			char character = value.charAt(index);
+			encoded += (character >= 0x01 && character <= 0x7F) ? 1 : (character > 0x7FF) ? 3 : 2;
+		}
+
+		if (encoded > 0xFFFF) {
+			throw new IOException("Utf8 constant too long (" + encoded + " bytes).");
+		}
+
+		writeShort(encoded);
+		ensure(encoded);
+
+		for (int index = 0; index < length; index++) {
+			char character = value.charAt(index);
+			if (character >= 0x01 && character <= 0x7F) {
+				bytes[size++] = (byte) character;
+			} else if (character > 0x7FF) {
+				bytes[size++] = (byte) (0xE0 | character >> 12);
+				bytes[size++] = (byte) (0x80 | character >> 6 & 0x3F);
+				bytes[size++] = (byte) (0x80 | character & 0x3F);
+			} else {
+				bytes[size++] = (byte) (0xC0 | character >> 6);
+				bytes[size++] = (byte) (0x80 | character & 0x3F);
+			}
+		}
+	}
+
+}
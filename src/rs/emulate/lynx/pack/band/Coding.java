@@ -0,0 +1,482 @@
+package rs.emulate.lynx.pack.band;
+
+import java.io.IOException;
+
+/**
+ * A (B, H, S, D) coding, the basic variable-length integer coding used by pack200.
+ * <p>
+ * A value is coded in up to {@code B} bytes, in radix {@code H}: each byte lower than {@code L = 256 - H} ends the
+ * value. If {@code S} is non-zero, the low {@code S} bits of the unsigned value select its sign, and if {@code D} is
+ * set, each value of a band is coded as the difference from the value before it.
+ *
+ * @author Major
+ */
+final class Coding implements CodingMethod {
+
+	/**
+	 * The {@code BYTE1} coding, in which each value is a single unsigned byte.
+	 */
+	static final Coding BYTE1 = new Coding(1, 256, 0, false);
+
+	/**
+	 * The {@code CHAR3} coding, used for the characters of strings.
+	 */
+	static final Coding CHAR3 = new Coding(3, 128, 0, false);
+
+	/**
+	 * The {@code BCI5} coding, used for bytecode offsets.
+	 */
+	static final Coding BCI5 = new Coding(5, 4, 0, false);
+
+	/**
+	 * The {@code BRANCH5} coding, used for (mostly forward) bytecode offset differences.
+	 */
+	static final Coding BRANCH5 = new Coding(5, 4, 2, false);
+
+	/**
+	 * The {@code UNSIGNED5} coding.
+	 */
+	static final Coding UNSIGNED5 = new Coding(5, 64, 0, false);
+
+	/**
+	 * The {@code UDELTA5} coding, the delta form of {@link #UNSIGNED5}.
+	 */
+	static final Coding UDELTA5 = new Coding(5, 64, 0, true);
+
+	/**
+	 * The {@code SIGNED5} coding.
+	 */
+	static final Coding SIGNED5 = new Coding(5, 64, 1, false);
+
+	/**
+	 * The {@code DELTA5} coding, the delta form of {@link #SIGNED5}.
+	 */
+	static final Coding DELTA5 = new Coding(5, 64, 1, true);
+
+	/**
+	 * The {@code MDELTA5} coding, used for the (mostly negative) differences between method descriptors.
+	 */
+	static final Coding MDELTA5 = new Coding(5, 64, 2, true);
+
+	/**
+	 * The meta-coding byte selecting an arbitrary (B, H, S, D) coding.
+	 */
+	private static final int META_ARBITRARY = 116;
+
+	/**
+	 * The largest meta-coding byte selecting one of the canonical codings.
+	 */
+	private static final int META_CANONICAL_MAXIMUM = 115;
+
+	/**
+	 * The meta-coding byte selecting the default coding of the band.
+	 */
+	private static final int META_DEFAULT = 0;
+
+	/**
+	 * The first meta-coding byte that is not valid.
+	 */
+	private static final int META_LIMIT = 189;
+
+	/**
+	 * The first meta-coding byte selecting a population coding. Every byte between this and the arbitrary coding
+	 * byte selects an adaptive coding.
+	 */
+	private static final int META_POPULATION = 141;
+
+	/**
+	 * The canonical codings, indexed by the meta-coding byte that selects them.
+	 */
+	private static final Coding[] CANONICAL = new Coding[META_CANONICAL_MAXIMUM + 1];
+
+	static {
+		int index = 1;
+		for (int length = 1; length <= 4; length++) {
+			CANONICAL[index++] = new Coding(length, 256, 0, false);
+			CANONICAL[index++] = new Coding(length, 256, 1, false);
+			CANONICAL[index++] = new Coding(length, 256, 0, true);
+			CANONICAL[index++] = new Coding(length, 256, 1, true);
+		}
+
+		int[] radices = { 4, 16, 32, 64, 128 };
+		for (boolean delta : new boolean[] { false, true }) {
+			for (int radix : radices) {
+				for (int sign = 0; sign <= 2; sign++) {
+					CANONICAL[index++] = new Coding(5, radix, sign, delta);
+				}
+			}
+		}
+
+		int[] subranges = { 192, 224, 240, 248, 252 };
+		int[] deltas = { 8, 16, 32, 64, 128, 192, 224, 240, 248 };
+		for (int length = 2; length <= 4; length++) {
+			for (int radix : subranges) {
+				CANONICAL[index++] = new Coding(length, radix, 0, false);
+			}
+
+			for (int radix : deltas) {
+				CANONICAL[index++] = new Coding(length, radix, 0, true);
+				CANONICAL[index++] = new Coding(length, radix, 1, true);
+			}
+		}
+	}
+
+	/**
+	 * Gets the coding with the specified (B, H) parameters, and no sign bits or delta.
+	 *
+	 * @param length The maximum amount of bytes in a value.
+	 * @param radix The radix.
+	 * @return The Coding.
+	 */
+	static Coding of(int length, int radix) {
+		return new Coding(length, radix, 0, false);
+	}
+
+	/**
+	 * Parses the meta-coding at the current position of the band headers.
+	 *
+	 * @param input The {@link PackInput} holding the band headers.
+	 * @param fallback The default coding of the band, selected by a meta-coding of zero.
+	 * @return The {@link CodingMethod}.
+	 * @throws IOException If the meta-coding is malformed.
+	 */
+	static CodingMethod parse(PackInput input, Coding fallback) throws IOException {
+		int op = input.nextMetaByte();
+
+		if (op == META_DEFAULT) {
+			return fallback;
+		} else if (op <= META_CANONICAL_MAXIMUM) {
+			return CANONICAL[op];
+		} else if (op == META_ARBITRARY) {
+			int flags = input.nextMetaByte(), radix = input.nextMetaByte() + 1;
+			boolean delta = (flags & 1) != 0;
+			int sign = flags >> 1 & 3, length = (flags >> 3) + 1;
+
+			if (sign > 2 || length > 5 || length == 1 && radix != 256 || length == 5 && radix == 256) {
+				throw new IOException("Invalid arbitrary coding: (" + length + ", " + radix + ", " + sign + ").");
+			}
+
+			return new Coding(length, radix, sign, delta);
+		} else if (op < META_POPULATION) {
+			return AdaptiveCoding.parse(input, op, fallback);
+		} else if (op < META_LIMIT) {
+			return PopulationCoding.parse(input, op, fallback);
+		}
+
+		throw new IOException("Invalid meta-coding: " + op + ".");
+	}
+
+	/**
+	 * Gets the amount of values that can be coded in at most the specified amount of bytes.
+	 *
+	 * @param length The maximum amount of bytes in a value (B).
+	 * @param radix The radix (H).
+	 * @param bytes The amount of bytes.
+	 * @return The amount of values.
+	 */
+	private static long codeRange(int length, int radix, int bytes) {
+		if (bytes == 0) {
+			return 0;
+		} else if (length == 1) {
+			return radix;
+		}
+
+		long sum = 0, power = 1;
+		for (int index = 1; index <= bytes; index++) {
+			sum += power;
+			power *= radix;
+		}
+
+		sum *= 256 - radix;
+		return bytes == length ? sum + power : sum;
+	}
+
+	/**
+	 * Gets the largest value that can be coded.
+	 *
+	 * @param length The maximum amount of bytes in a value (B).
+	 * @param radix The radix (H).
+	 * @param sign The amount of sign bits (S).
+	 * @return The largest value.
+	 */
+	private static int codeMaximum(int length, int radix, int sign) {
+		long range = codeRange(length, radix, length);
+		if (range == 0) {
+			return -1;
+		} else if (sign == 0 || range >= 1L << 32) {
+			return (int) Math.min(range - 1, Integer.MAX_VALUE);
+		}
+
+		long maximum = range - 1;
+		while (isNegative(maximum, sign)) {
+			maximum--;
+		}
+
+		if (maximum < 0) {
+			return -1;
+		}
+
+		int value = decodeSign((int) maximum, sign);
+		return value < 0 ? Integer.MAX_VALUE : value;
+	}
+
+	/**
+	 * Gets the smallest value that can be coded.
+	 *
+	 * @param length The maximum amount of bytes in a value (B).
+	 * @param radix The radix (H).
+	 * @param sign The amount of sign bits (S).
+	 * @return The smallest value.
+	 */
+	private static int codeMinimum(int length, int radix, int sign) {
+		long range = codeRange(length, radix, length);
+		if (range >= 1L << 32) {
+			return Integer.MIN_VALUE;
+		} else if (sign == 0) {
+			return 0;
+		}
+
+		long minimum = range - 1;
+		while (!isNegative(minimum, sign)) {
+			minimum--;
+		}
+
+		return minimum < 0 ? 0 : decodeSign((int) minimum, sign);
+	}
+
+	/**
+	 * Decodes the sign of the specified unsigned value.
+	 *
+	 * @param value The unsigned value.
+	 * @param sign The amount of sign bits (S).
+	 * @return The signed value.
+	 */
+	private static int decodeSign(int value, int sign) {
+		if (sign == 0) {
+			return value;
+		} else if ((value + 1 & (1 << sign) - 1) == 0) {
+			return ~(value >>> sign);
+		}
+
+		return value - (value >>> sign);
+	}
+
+	/**
+	 * Returns whether or not the specified unsigned value codes a negative value.
+	 *
+	 * @param value The unsigned value.
+	 * @param sign The amount of sign bits (S).
+	 * @return {@code true} if the value is negative, {@code false} if not.
+	 */
+	private static boolean isNegative(long value, int sign) {
+		return ((int) value + 1 & (1 << sign) - 1) == 0;
+	}
+
+	/**
+	 * Whether or not values are coded as the difference from the previous value (D).
+	 */
+	private final boolean delta;
+
+	/**
+	 * The maximum amount of bytes in a value (B).
+	 */
+	private final int length;
+
+	/**
+	 * The largest signed value.
+	 */
+	private final int maximum;
+
+	/**
+	 * The smallest signed value.
+	 */
+	private final int minimum;
+
+	/**
+	 * The radix (H).
+	 */
+	private final int radix;
+
+	/**
+	 * The amount of sign bits (S).
+	 */
+	private final int sign;
+
+	/**
+	 * Whether or not the coding cannot represent every int, in which case the running total of a delta coding is
+	 * reduced to the unsigned range.
+	 */
+	private final boolean subrange;
+
+	/**
+	 * The smallest byte value that indicates that another byte follows (L).
+	 */
+	private final int threshold;
+
+	/**
+	 * The largest unsigned value.
+	 */
+	private final int unsignedMaximum;
+
+	/**
+	 * The smallest unsigned value.
+	 */
+	private final int unsignedMinimum;
+
+	/**
+	 * Creates the Coding.
+	 *
+	 * @param length The maximum amount of bytes in a value (B).
+	 * @param radix The radix (H).
+	 * @param sign The amount of sign bits (S).
+	 * @param delta Whether or not values are coded as the difference from the previous value (D).
+	 */
+	private Coding(int length, int radix, int sign, boolean delta) {
+		this.length = length;
+		this.radix = radix;
+		this.sign = sign;
+		this.delta = delta;
+		threshold = 256 - radix;
+
+		minimum = codeMinimum(length, radix, sign);
+		maximum = codeMaximum(length, radix, sign);
+		unsignedMinimum = codeMinimum(length, radix, 0);
+		unsignedMaximum = codeMaximum(length, radix, 0);
+		subrange = maximum < Integer.MAX_VALUE && (long) maximum - minimum + 1 <= Integer.MAX_VALUE;
+	}
+
+	/**
+	 * Gets the maximum amount of bytes in a value (B).
+	 *
+	 * @return The length.
+	 */
+	public int getLength() {
+		return length;
+	}
+
+	/**
+	 * Gets the largest signed value.
+	 *
+	 * @return The maximum.
+	 */
+	public int getMaximum() {
+		return maximum;
+	}
+
+	/**
+	 * Gets the smallest signed value.
+	 *
+	 * @return The minimum.
+	 */
+	public int getMinimum() {
+		return minimum;
+	}
+
+	/**
+	 * Gets the amount of sign bits (S).
+	 *
+	 * @return The amount of sign bits.
+	 */
+	public int getSign() {
+		return sign;
+	}
+
+	/**
+	 * Gets the smallest byte value that indicates that another byte follows (L).
+	 *
+	 * @return The threshold.
+	 */
+	public int getThreshold() {
+		return threshold;
+	}
+
+	/**
+	 * Gets the largest unsigned value.
+	 *
+	 * @return The unsigned maximum.
+	 */
+	public int getUnsignedMaximum() {
+		return unsignedMaximum;
+	}
+
+	/**
+	 * Returns whether or not values are coded as the difference from the previous value.
+	 *
+	 * @return {@code true} if this is a delta coding, {@code false} if not.
+	 */
+	public boolean isDelta() {
+		return delta;
+	}
+
+	/**
+	 * Returns whether or not this coding cannot represent every int.
+	 *
+	 * @return {@code true} if this is a subrange coding, {@code false} if not.
+	 */
+	public boolean isSubrange() {
+		return subrange;
+	}
+
+	/**
+	 * Reads a single value, ignoring the delta.
+	 *
+	 * @param input The {@link PackInput} to read from.
+	 * @return The value.
+	 * @throws IOException If there is an error reading the value.
+	 */
+	public int read(PackInput input) throws IOException {
+		long sum = 0, multiplier = 1;
+
+		for (int index = 0; index < length; index++) {
+			int value = input.read();
+			sum += value * multiplier;
+
+			if (value < threshold) {
+				break;
+			}
+
+			multiplier *= radix;
+		}
+
+		return decodeSign((int) sum, sign);
+	}
+
+	@Override
+	public void readArray(PackInput input, int[] values, int start, int end) throws IOException {
+		if (!delta) {
+			for (int index = start; index < end; index++) {
+				values[index] = read(input);
+			}
+			return;
+		}
+
+		long state = 0;
+		for (int index = start; index < end; index++) {
+			state += read(input);
+
+			if (subrange) {
+				state = reduce(state);
+			}
+
+			values[index] = (int) state;
+		}
+	}
+
+	/**
+	 * Reduces the specified value to the unsigned range of this coding, by adding or subtracting a multiple of the
+	 * size of the range. This must only be called on a subrange coding.
+	 *
+	 * @param value The value.
+	 * @return The reduced value.
+	 */
+	public int reduce(long value) {
+		if (value == (int) value && value >= unsignedMinimum && value <= unsignedMaximum) {
+			return (int) value;
+		}
+
+		int range = maximum - minimum + 1;
+		value %= range;
+		return (int) (value < 0 ? value + range : value);
+	}
+
+}
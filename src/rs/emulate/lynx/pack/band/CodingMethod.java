@@ -0,0 +1,23 @@
+package rs.emulate.lynx.pack.band;
+
+import java.io.IOException;
+
+/**
+ * A method of coding the values of a band.
+ *
+ * @author Major
+ */
+interface CodingMethod {
+
+	/**
+	 * Reads values into the specified range of the array.
+	 *
+	 * @param input The {@link PackInput} to read from.
+	 * @param values The array to read the values into.
+	 * @param start The index of the first value to read (inclusive).
+	 * @param end The index of the last value to read (exclusive).
+	 * @throws IOException If there is an error reading the values.
+	 */
+	void readArray(PackInput input, int[] values, int start, int end) throws IOException;
+
+}
@@ -0,0 +1,549 @@
+package rs.emulate.lynx.pack.band;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The constant pool of a pack200 segment, which every class in the segment draws its own constant pool from. Entries
+ * are read from the {@code cp_bands} of the segment, and are shared by every class that refers to them.
+ *
+ * @author Major
+ */
+final class ConstantPool {
+
+	/**
+	 * The pseudo-tag of a reference to any entry, indexed in the order the entries were transmitted.
+	 */
+	static final int ALL = 50;
+
+	/**
+	 * The pseudo-tag of a reference to any entry that can be loaded by an {@code ldc} instruction.
+	 */
+	static final int LOADABLE_VALUE = 51;
+
+	/**
+	 * The pseudo-tag of a reference to any field, method, or interface method.
+	 */
+	static final int ANY_MEMBER = 52;
+
+	/**
+	 * The pseudo-tag of a reference whose tag is decided by the type of the field that owns it.
+	 */
+	static final int FIELD_SPECIFIC = 53;
+
+	/**
+	 * The tags of the entries in the {@link #ANY_MEMBER} group.
+	 */
+	private static final int[] ANY_MEMBER_TAGS = { Entry.FIELD, Entry.METHOD, Entry.INTERFACE_METHOD };
+
+	/**
+	 * The tags of the entries in the {@link #LOADABLE_VALUE} group.
+	 */
+	private static final int[] LOADABLE_VALUE_TAGS = { Entry.INTEGER, Entry.FLOAT, Entry.LONG, Entry.DOUBLE,
+			Entry.STRING, Entry.CLASS, Entry.METHOD_HANDLE, Entry.METHOD_TYPE };
+
+	/**
+	 * The name of every instance initialiser.
+	 */
+	private static final String INITIALISER = "<init>";
+
+	/**
+	 * Flattens a signature, inserting the name of each of its classes after the {@code L} that marks it.
+	 *
+	 * @param form The form of the signature, such as {@code (L;I)V}.
+	 * @param classes The class entries, in the order they appear in the form.
+	 * @param builder The {@link StringBuilder} to use, which is cleared first.
+	 * @return The flattened signature.
+	 */
+	private static String flatten(String form, Entry[] classes, StringBuilder builder) {
+		builder.setLength(0);
+		int next = 1;
+
+		for (int index = 0; index < form.length(); index++) {
+			char character = form.charAt(index);
+			builder.append(character);
+
+			if (character == 'L') {
+				builder.append(classes[next++].string());
+			}
+		}
+
+		return builder.toString();
+	}
+
+	/**
+	 * The band of the bootstrap method argument counts.
+	 */
+	private final Band bootstrapArgumentCounts = new Band("cp_BootstrapMethod_arg_count", Coding.UDELTA5);
+
+	/**
+	 * The band of the bootstrap method arguments.
+	 */
+	private final Band bootstrapArguments = new Band("cp_BootstrapMethod_arg", Coding.DELTA5);
+
+	/**
+	 * The buffer the characters of each {@code Utf8} are sewn together in.
+	 */
+	private char[] characters = new char[256];
+
+	/**
+	 * The classes of the segment, and any classes created afterwards, by name.
+	 */
+	private final Map<String, Entry> classes = new HashMap<>();
+
+	/**
+	 * The entries of the segment, indexed by tag.
+	 */
+	private final Entry[][] entries = new Entry[Entry.TAG_COUNT][];
+
+	/**
+	 * The first band of a pair, such as the high halves of longs or the classes of members.
+	 */
+	private final Band first = new Band("cp_first", Coding.DELTA5);
+
+	/**
+	 * The entries of each pseudo-tag group, created when first needed.
+	 */
+	private final Entry[][] groups = new Entry[FIELD_SPECIFIC - ALL][];
+
+	/**
+	 * The fields and methods of the segment, indexed by tag and then by class.
+	 */
+	private final Map<Entry, List<Entry>>[] members = createMemberMaps();
+
+	/**
+	 * The second band of a pair, such as the low halves of longs or the descriptors of members.
+	 */
+	private final Band second = new Band("cp_second", Coding.UDELTA5);
+
+	/**
+	 * The band of the characters of each long {@code Utf8} suffix, which is read once per suffix.
+	 */
+	private final Band utf8BigChars = new Band("cp_Utf8_big_chars", Coding.DELTA5);
+
+	/**
+	 * The band of the lengths of the long {@code Utf8} suffixes.
+	 */
+	private final Band utf8BigSuffixes = new Band("cp_Utf8_big_suffix", Coding.DELTA5);
+
+	/**
+	 * The band of the characters of the {@code Utf8} suffixes.
+	 */
+	private final Band utf8Chars = new Band("cp_Utf8_chars", Coding.CHAR3);
+
+	/**
+	 * The {@code Utf8} entries of the segment, and any created afterwards, by value.
+	 */
+	private final Map<String, Entry> utf8s = new HashMap<>();
+
+	/**
+	 * The band of the lengths of the {@code Utf8} suffixes.
+	 */
+	private final Band utf8Suffixes = new Band("cp_Utf8_suffix", Coding.UNSIGNED5);
+
+	/**
+	 * Gets the {@link Entry} with the specified tag (or pseudo-tag) and index.
+	 *
+	 * @param tag The tag.
+	 * @param index The index of the entry, among the entries with the tag.
+	 * @return The Entry.
+	 * @throws IOException If the index is out of range.
+	 */
+	public Entry get(int tag, int index) throws IOException {
+		Entry[] entries = tag >= ALL ? getGroup(tag) : this.entries[tag];
+		if (index < 0 || index >= entries.length) {
+			throw new IOException("Constant pool index " + index + " out of range for tag " + tag + ".");
+		}
+
+		return entries[index];
+	}
+
+	/**
+	 * Gets the class {@link Entry} with the specified name, creating it (outside of the segment pool) if the segment
+	 * does not contain it.
+	 *
+	 * @param name The name of the class.
+	 * @return The Entry.
+	 */
+	public Entry getClass(String name) {
+		Entry entry = classes.get(name);
+		if (entry == null) {
+			entry = new Entry(Entry.CLASS, null, 0, new Entry[] { getUtf8(name) });
+			classes.put(name, entry);
+		}
+
+		return entry;
+	}
+
+	/**
+	 * Gets the method reference to the specified instance initialiser of a class.
+	 *
+	 * @param owner The class that declares the initialiser.
+	 * @param index The index of the initialiser, among the initialisers of the class in the segment pool.
+	 * @return The method reference {@link Entry}.
+	 * @throws IOException If the class does not have that many initialisers.
+	 */
+	public Entry getInitialiser(Entry owner, int index) throws IOException {
+		int count = 0;
+		for (Entry method : getMembers(Entry.METHOD, owner)) {
+			if (method.references[1].references[0].value.equals(INITIALISER) && count++ == index) {
+				return method;
+			}
+		}
+
+		throw new IOException("Initialiser " + index + " out of range for class " + owner.string() + ".");
+	}
+
+	/**
+	 * Gets the member of the specified class with the specified index.
+	 *
+	 * @param tag The tag of the member: {@link Entry#FIELD} or {@link Entry#METHOD}.
+	 * @param owner The class that declares the member.
+	 * @param index The index of the member, among the members of the class with the same tag.
+	 * @return The member reference {@link Entry}.
+	 * @throws IOException If the index is out of range.
+	 */
+	public Entry getMember(int tag, Entry owner, int index) throws IOException {
+		List<Entry> members = getMembers(tag, owner);
+		if (index < 0 || index >= members.size()) {
+			throw new IOException("Member index " + index + " out of range for class " + owner.string() + ".");
+		}
+
+		return members.get(index);
+	}
+
+	/**
+	 * Gets the {@code Utf8} {@link Entry} with the specified value, creating it (outside of the segment pool) if the
+	 * segment does not contain it.
+	 *
+	 * @param value The value.
+	 * @return The Entry.
+	 */
+	public Entry getUtf8(String value) {
+		Entry entry = utf8s.get(value);
+		if (entry == null) {
+			entry = new Entry(Entry.UTF8, value, 0, Entry.NO_REFERENCES);
+			utf8s.put(value, entry);
+		}
+
+		return entry;
+	}
+
+	/**
+	 * Reads the constant pool of a segment, replacing the one read before.
+	 *
+	 * @param input The {@link PackInput} to read from.
+	 * @param counts The amount of entries with each tag, indexed by tag.
+	 * @throws IOException If there is an error reading the bands, or a reference is out of range.
+	 */
+	public void read(PackInput input, int[] counts) throws IOException {
+		classes.clear();
+		utf8s.clear();
+		members[Entry.FIELD].clear();
+		members[Entry.METHOD].clear();
+
+		for (int index = 0; index < groups.length; index++) {
+			groups[index] = null;
+		}
+
+		int key = 0;
+		for (int tag : Entry.TAGS_IN_ORDER) {
+			Entry[] entries = new Entry[counts[tag]];
+			this.entries[tag] = entries;
+
+			read(input, tag, entries);
+			for (Entry entry : entries) {
+				entry.key = key++;
+			}
+		}
+
+		for (Entry signature : entries[Entry.SIGNATURE]) {
+			if (signature.flattened.key < 0) { // Flattened signatures are ordered as the signature they were read as.
+				signature.flattened.key = signature.key;
+			}
+		}
+	}
+
+	/**
+	 * Creates the maps of members by class, for fields and methods.
+	 *
+	 * @return The maps, indexed by tag.
+	 */
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	private Map<Entry, List<Entry>>[] createMemberMaps() {
+		Map<Entry, List<Entry>>[] maps = new Map[Entry.METHOD + 1];
+		maps[Entry.FIELD] = new HashMap<>();
+		maps[Entry.METHOD] = new HashMap<>();
+		return maps;
+	}
+
+	/**
+	 * Gets the entries of the specified pseudo-tag group, in the order of their tags in {@link Entry#TAGS_IN_ORDER}.
+	 *
+	 * @param tag The pseudo-tag.
+	 * @return The entries.
+	 * @throws IOException If the pseudo-tag does not have a fixed group.
+	 */
+	private Entry[] getGroup(int tag) throws IOException {
+		if (tag >= FIELD_SPECIFIC) {
+			throw new IOException("Invalid constant pool group " + tag + ".");
+		}
+
+		Entry[] group = groups[tag - ALL];
+		if (group != null) {
+			return group;
+		}
+
+		int[] tags = tag == ALL ? Entry.TAGS_IN_ORDER : tag == LOADABLE_VALUE ? LOADABLE_VALUE_TAGS : ANY_MEMBER_TAGS;
+		int length = 0;
+		for (int member : tags) {
+			length += entries[member].length;
+		}
+
+		group = new Entry[length];
+		int position = 0;
+		for (int member : tags) {
+			Entry[] entries = this.entries[member];
+			System.arraycopy(entries, 0, group, position, entries.length);
+			position += entries.length;
+		}
+
+		return groups[tag - ALL] = group;
+	}
+
+	/**
+	 * Gets the members of the specified class with the specified tag, in the order they appear in the segment pool.
+	 *
+	 * @param tag The tag: {@link Entry#FIELD} or {@link Entry#METHOD}.
+	 * @param owner The class entry.
+	 * @return The {@link List} of member entries.
+	 */
+	private List<Entry> getMembers(int tag, Entry owner) {
+		Map<Entry, List<Entry>> map = members[tag];
+		if (map.isEmpty()) {
+			for (Entry member : entries[tag]) {
+				map.computeIfAbsent(member.references[0], owned -> new ArrayList<>()).add(member);
+			}
+		}
+
+		List<Entry> owned = map.get(owner);
+		return owned == null ? new ArrayList<>(0) : owned;
+	}
+
+	/**
+	 * Reads the entries with the specified tag.
+	 *
+	 * @param input The {@link PackInput} to read from.
+	 * @param tag The tag.
+	 * @param entries The array to read the entries into.
+	 * @throws IOException If there is an error reading the bands, or a reference is out of range.
+	 */
+	private void read(PackInput input, int tag, Entry[] entries) throws IOException {
+		int count = entries.length;
+
+		switch (tag) {
+			case Entry.UTF8:
+				readUtf8s(input, entries);
+				break;
+			case Entry.INTEGER:
+			case Entry.FLOAT:
+				second.read(input, count);
+				for (int index = 0; index < count; index++) {
+					entries[index] = new Entry(tag, null, second.next(), Entry.NO_REFERENCES);
+				}
+				break;
+			case Entry.LONG:
+			case Entry.DOUBLE:
+				second.read(input, count);
+				first.read(input, count);
+				for (int index = 0; index < count; index++) {
+					long bits = ((long) second.next() << 32) + (first.next() & 0xFFFF_FFFFL);
+					entries[index] = new Entry(tag, null, bits, Entry.NO_REFERENCES);
+				}
+				break;
+			case Entry.STRING:
+			case Entry.CLASS:
+				second.read(input, count);
+				for (int index = 0; index < count; index++) {
+					Entry entry = new Entry(tag, null, 0, new Entry[] { get(Entry.UTF8, second.next()) });
+					entries[index] = entry;
+
+					if (tag == Entry.CLASS) {
+						classes.put(entry.string(), entry);
+					}
+				}
+				break;
+			case Entry.SIGNATURE:
+				readSignatures(input, entries);
+				break;
+			case Entry.NAME_AND_TYPE:
+				readPairs(input, tag, Entry.UTF8, Entry.SIGNATURE, entries);
+				break;
+			case Entry.FIELD:
+			case Entry.METHOD:
+			case Entry.INTERFACE_METHOD:
+				readPairs(input, tag, Entry.CLASS, Entry.NAME_AND_TYPE, entries);
+				break;
+			case Entry.METHOD_HANDLE:
+				first.read(input, count);
+				second.read(input, count);
+				for (int index = 0; index < count; index++) {
+					int kind = first.next();
+					entries[index] = new Entry(tag, null, kind, new Entry[] { get(ANY_MEMBER, second.next()) });
+				}
+				break;
+			case Entry.METHOD_TYPE:
+				second.read(input, count);
+				for (int index = 0; index < count; index++) {
+					entries[index] = new Entry(tag, null, 0, new Entry[] { get(Entry.SIGNATURE, second.next()) });
+				}
+				break;
+			case Entry.BOOTSTRAP_METHOD:
+				first.read(input, count);
+				bootstrapArgumentCounts.read(input, count);
+				bootstrapArguments.read(input, bootstrapArgumentCounts.total());
+
+				for (int index = 0; index < count; index++) {
+					Entry[] references = new Entry[1 + bootstrapArgumentCounts.next()];
+					references[0] = get(Entry.METHOD_HANDLE, first.next());
+
+					for (int argument = 1; argument < references.length; argument++) {
+						references[argument] = get(LOADABLE_VALUE, bootstrapArguments.next());
+					}
+
+					entries[index] = new Entry(tag, null, 0, references);
+				}
+				break;
+			case Entry.INVOKE_DYNAMIC:
+				readPairs(input, tag, Entry.BOOTSTRAP_METHOD, Entry.NAME_AND_TYPE, entries);
+				break;
+			default:
+				throw new IllegalStateException("Unexpected constant pool tag " + tag + " - please report.");
+		}
+	}
+
+	/**
+	 * Reads entries that refer to a pair of other entries, such as name-and-types and member references.
+	 *
+	 * @param input The {@link PackInput} to read from.
+	 * @param tag The tag of the entries.
+	 * @param firstTag The tag of the first entry referred to.
+	 * @param secondTag The tag of the second entry referred to.
+	 * @param entries The array to read the entries into.
+	 * @throws IOException If there is an error reading the bands, or a reference is out of range.
+	 */
+	private void readPairs(PackInput input, int tag, int firstTag, int secondTag, Entry[] entries)
+			throws IOException {
+		int count = entries.length;
+		first.read(input, count);
+		second.read(input, count);
+
+		for (int index = 0; index < count; index++) {
+			Entry[] references = { get(firstTag, first.next()), get(secondTag, second.next()) };
+			entries[index] = new Entry(tag, null, 0, references);
+		}
+	}
+
+	/**
+	 * Reads the signatures, which refer to a form and to the class named by each {@code L} in the form.
+	 *
+	 * @param input The {@link PackInput} to read from.
+	 * @param entries The array to read the signatures into.
+	 * @throws IOException If there is an error reading the bands, or a reference is out of range.
+	 */
+	private void readSignatures(PackInput input, Entry[] entries) throws IOException {
+		int count = entries.length;
+		first.read(input, count);
+
+		int total = 0;
+		for (int index = 0; index < count; index++) {
+			String form = get(Entry.UTF8, first.get(index)).value;
+			for (int position = 0; position < form.length(); position++) {
+				if (form.charAt(position) == 'L') {
+					total++;
+				}
+			}
+		}
+
+		second.read(input, total);
+		StringBuilder builder = new StringBuilder();
+
+		for (int index = 0; index < count; index++) {
+			Entry form = get(Entry.UTF8, first.next());
+			int classes = 0;
+			for (int position = 0; position < form.value.length(); position++) {
+				if (form.value.charAt(position) == 'L') {
+					classes++;
+				}
+			}
+
+			Entry[] references = new Entry[1 + classes];
+			references[0] = form;
+			for (int component = 1; component <= classes; component++) {
+				references[component] = get(Entry.CLASS, second.next());
+			}
+
+			Entry signature = new Entry(Entry.SIGNATURE, null, 0, references);
+			signature.flattened = getUtf8(flatten(form.value, references, builder));
+			entries[index] = signature;
+		}
+	}
+
+	/**
+	 * Reads the {@code Utf8} entries. Each is transmitted as the length of the prefix it shares with the previous
+	 * entry, followed by the characters of the rest of it - either in the shared {@code cp_Utf8_chars} band, or (for
+	 * a long suffix) in a band of its own.
+	 *
+	 * @param input The {@link PackInput} to read from.
+	 * @param entries The array to read the entries into.
+	 * @throws IOException If there is an error reading the bands.
+	 */
+	private void readUtf8s(PackInput input, Entry[] entries) throws IOException {
+		int count = entries.length;
+		if (count == 0) {
+			return;
+		}
+
+		Band prefixes = first.read(input, Math.max(0, count - 2));
+		Band suffixes = utf8Suffixes.read(input, count - 1);
+		Band chars = utf8Chars.read(input, suffixes.total());
+		Band bigSuffixes = utf8BigSuffixes.read(input, suffixes.count(0));
+		Band bigChars = utf8BigChars;
+
+		int previous = 0;
+		for (int index = 0; index < count; index++) {
+			int prefix = index < 2 ? 0 : prefixes.next();
+			int suffix = index < 1 ? 0 : suffixes.next();
+			Band source = chars;
+
+			if (index >= 1 && suffix == 0) {
+				suffix = bigSuffixes.next();
+				source = suffix == 0 ? chars : bigChars.read(input, suffix);
+			}
+
+			if (prefix < 0 || prefix > previous || suffix < 0) {
+				throw new IOException("Invalid Utf8 prefix (" + prefix + ") or suffix (" + suffix + ").");
+			}
+
+			int length = prefix + suffix;
+			if (length > characters.length) {
+				char[] expanded = new char[Math.max(length, characters.length * 2)];
+				System.arraycopy(characters, 0, expanded, 0, prefix);
+				characters = expanded;
+			}
+
+			for (int position = prefix; position < length; position++) {
+				characters[position] = (char) source.next();
+			}
+
+			Entry entry = new Entry(Entry.UTF8, new String(characters, 0, length), 0, Entry.NO_REFERENCES);
+			utf8s.put(entry.value, entry);
+			entries[index] = entry;
+			previous = length;
+		}
+	}
+
+}
@@ -0,0 +1,189 @@
+package rs.emulate.lynx.pack.band;
+
+import java.util.Arrays;
+
+/**
+ * A growable store for the contents of every attribute and method body of a segment, with the constant pool
+ * references that must be patched into them once the constant pool of the owning class has been laid out. Contents and
+ * references are addressed by their position in the heap, so that no array is allocated per attribute.
+ *
+ * @author Major
+ */
+final class ContentHeap {
+
+	/**
+	 * The initial capacity of the heap, in bytes.
+	 */
+	private static final int INITIAL_CAPACITY = 64 * 1024;
+
+	/**
+	 * The initial capacity of the reference table.
+	 */
+	private static final int INITIAL_REFERENCES = 4 * 1024;
+
+	/**
+	 * The contents.
+	 */
+	private byte[] bytes = new byte[INITIAL_CAPACITY];
+
+	/**
+	 * The position of each reference in the heap.
+	 */
+	private int[] offsets = new int[INITIAL_REFERENCES];
+
+	/**
+	 * The amount of references.
+	 */
+	private int referenceCount;
+
+	/**
+	 * The entries referred to.
+	 */
+	private Entry[] references = new Entry[INITIAL_REFERENCES];
+
+	/**
+	 * The amount of bytes written.
+	 */
+	private int size;
+
+	/**
+	 * Whether or not each reference is two bytes wide, rather than one.
+	 */
+	private boolean[] wide = new boolean[INITIAL_REFERENCES];
+
+	/**
+	 * Records a reference to the specified entry at the current position, and reserves space for it.
+	 *
+	 * @param entry The {@link Entry}.
+	 * @param wide Whether the reference is two bytes wide, rather than one.
+	 */
+	public void addReference(Entry entry, boolean wide) {
+		if (referenceCount == references.length) {
+			int capacity = referenceCount * 2;
+			references = Arrays.copyOf(references, capacity);
+			offsets = Arrays.copyOf(offsets, capacity);
+			this.wide = Arrays.copyOf(this.wide, capacity);
+		}
+
+		references[referenceCount] = entry;
+		offsets[referenceCount] = size;
+		this.wide[referenceCount++] = wide;
+
+		write(0);
+		if (wide) {
+			write(0);
+		}
+	}
+
+	/**
+	 * Clears this heap, so that it can be reused for the next segment.
+	 */
+	public void clear() {
+		Arrays.fill(references, 0, referenceCount, null);
+		referenceCount = 0;
+		size = 0;
+	}
+
+	/**
+	 * Ensures that the specified amount of bytes can be written without growing the heap, and gets the backing array.
+	 *
+	 * @param length The amount of bytes.
+	 * @return The backing array, which is only valid until the heap next grows.
+	 */
+	public byte[] ensure(int length) {
+		if (size + length > bytes.length) {
+			bytes = Arrays.copyOf(bytes, Math.max(size + length, bytes.length * 2));
+		}
+
+		return bytes;
+	}
+
+	/**
+	 * Gets the backing array.
+	 *
+	 * @return The backing array, which is only valid until the heap next grows.
+	 */
+	public byte[] getBytes() {
+		return bytes;
+	}
+
+	/**
+	 * Gets the position of the reference with the specified index.
+	 *
+	 * @param index The index of the reference.
+	 * @return The position in the heap.
+	 */
+	public int getOffset(int index) {
+		return offsets[index];
+	}
+
+	/**
+	 * Gets the entry of the reference with the specified index.
+	 *
+	 * @param index The index of the reference.
+	 * @return The {@link Entry}.
+	 */
+	public Entry getReference(int index) {
+		return references[index];
+	}
+
+	/**
+	 * Returns whether or not the reference with the specified index is two bytes wide.
+	 *
+	 * @param index The index of the reference.
+	 * @return {@code true} if the reference is two bytes wide, {@code false} if it is one.
+	 */
+	public boolean isWide(int index) {
+		return wide[index];
+	}
+
+	/**
+	 * Gets the amount of references recorded.
+	 *
+	 * @return The amount of references.
+	 */
+	public int referenceCount() {
+		return referenceCount;
+	}
+
+	/**
+	 * Moves the current position to the specified position, after writing directly to the backing array.
+	 *
+	 * @param size The new position.
+	 */
+	public void setSize(int size) {
+		this.size = size;
+	}
+
+	/**
+	 * Gets the current position, which is the amount of bytes written.
+	 *
+	 * @return The size.
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Writes a single byte.
+	 *
+	 * @param value The byte.
+	 */
+	public void write(int value) {
+		ensure(1)[size++] = (byte) value;
+	}
+
+	/**
+	 * Writes an integer in big-endian order, with the specified amount of bytes.
+	 *
+	 * @param value The integer.
+	 * @param length The amount of bytes.
+	 */
+	public void write(int value, int length) {
+		byte[] bytes = ensure(length);
+		for (int shift = (length - 1) * 8; shift >= 0; shift -= 8) {
+			bytes[size++] = (byte) (value >>> shift);
+		}
+	}
+
+}
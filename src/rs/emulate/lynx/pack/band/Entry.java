@@ -0,0 +1,314 @@
+package rs.emulate.lynx.pack.band;
+
+/**
+ * An entry in the constant pool of a pack200 segment, and in the constant pools of the classes reconstructed from it.
+ *
+ * @author Major
+ */
+final class Entry implements Comparable<Entry> {
+
+	/**
+	 * The tag of a {@code CONSTANT_Utf8} entry.
+	 */
+	static final int UTF8 = 1;
+
+	/**
+	 * The tag of a {@code CONSTANT_Integer} entry.
+	 */
+	static final int INTEGER = 3;
+
+	/**
+	 * The tag of a {@code CONSTANT_Float} entry.
+	 */
+	static final int FLOAT = 4;
+
+	/**
+	 * The tag of a {@code CONSTANT_Long} entry.
+	 */
+	static final int LONG = 5;
+
+	/**
+	 * The tag of a {@code CONSTANT_Double} entry.
+	 */
+	static final int DOUBLE = 6;
+
+	/**
+	 * The tag of a {@code CONSTANT_Class} entry.
+	 */
+	static final int CLASS = 7;
+
+	/**
+	 * The tag of a {@code CONSTANT_String} entry.
+	 */
+	static final int STRING = 8;
+
+	/**
+	 * The tag of a {@code CONSTANT_Fieldref} entry.
+	 */
+	static final int FIELD = 9;
+
+	/**
+	 * The tag of a {@code CONSTANT_Methodref} entry.
+	 */
+	static final int METHOD = 10;
+
+	/**
+	 * The tag of a {@code CONSTANT_InterfaceMethodref} entry.
+	 */
+	static final int INTERFACE_METHOD = 11;
+
+	/**
+	 * The tag of a {@code CONSTANT_NameAndType} entry.
+	 */
+	static final int NAME_AND_TYPE = 12;
+
+	/**
+	 * The tag of a signature entry, which only exists in the segment: classes refer to its flattened {@code Utf8}.
+	 */
+	static final int SIGNATURE = 13;
+
+	/**
+	 * The tag of a {@code CONSTANT_MethodHandle} entry.
+	 */
+	static final int METHOD_HANDLE = 15;
+
+	/**
+	 * The tag of a {@code CONSTANT_MethodType} entry.
+	 */
+	static final int METHOD_TYPE = 16;
+
+	/**
+	 * The tag of a bootstrap method specifier, which classes write to their {@code BootstrapMethods} attribute.
+	 */
+	static final int BOOTSTRAP_METHOD = 17;
+
+	/**
+	 * The tag of a {@code CONSTANT_InvokeDynamic} entry.
+	 */
+	static final int INVOKE_DYNAMIC = 18;
+
+	/**
+	 * The amount of tags, including the unused ones.
+	 */
+	static final int TAG_COUNT = 19;
+
+	/**
+	 * The tags, in the order their entries are transmitted (and sorted).
+	 */
+	static final int[] TAGS_IN_ORDER = { UTF8, INTEGER, FLOAT, LONG, DOUBLE, STRING, CLASS, SIGNATURE, NAME_AND_TYPE,
+			FIELD, METHOD, INTERFACE_METHOD, METHOD_HANDLE, METHOD_TYPE, BOOTSTRAP_METHOD, INVOKE_DYNAMIC };
+
+	/**
+	 * The position of each tag in {@link #TAGS_IN_ORDER}, indexed by tag.
+	 */
+	private static final int[] TAG_ORDER = new int[TAG_COUNT];
+
+	/**
+	 * The empty array of references.
+	 */
+	static final Entry[] NO_REFERENCES = new Entry[0];
+
+	static {
+		for (int index = 0; index < TAGS_IN_ORDER.length; index++) {
+			TAG_ORDER[TAGS_IN_ORDER[index]] = index + 1;
+		}
+	}
+
+	/**
+	 * The index of this entry in the constant pool of the class being written, or {@code 0} if it is not part of it.
+	 */
+	int index;
+
+	/**
+	 * The untyped index of this entry in the segment constant pool, which decides the order of the constant pools of
+	 * reconstructed classes. Entries that are not part of the segment pool have a key of {@code -1}.
+	 */
+	int key = -1;
+
+	/**
+	 * The numeric value of this entry: the bits of a number, or the reference kind of a method handle.
+	 */
+	final long number;
+
+	/**
+	 * The entries this entry refers to.
+	 */
+	final Entry[] references;
+
+	/**
+	 * The mark of the last class whose constant pool this entry was added to.
+	 */
+	int stamp;
+
+	/**
+	 * The tag of this entry.
+	 */
+	final int tag;
+
+	/**
+	 * The value of this entry, if it is a {@code Utf8} (or the flattened form of a signature).
+	 */
+	final String value;
+
+	/**
+	 * The {@code Utf8} entry a signature is written as, or {@code null} if this is not a signature.
+	 */
+	Entry flattened;
+
+	/**
+	 * Creates the Entry.
+	 *
+	 * @param tag The tag.
+	 * @param value The string value, or {@code null}.
+	 * @param number The numeric value.
+	 * @param references The entries referred to.
+	 */
+	Entry(int tag, String value, long number, Entry[] references) {
+		this.tag = tag;
+		this.value = value;
+		this.number = number;
+		this.references = references;
+	}
+
+	/**
+	 * Gets the amount of local variable slots taken by the arguments of this method signature, excluding the receiver.
+	 *
+	 * @return The size of the arguments.
+	 */
+	public int argumentSize() {
+		String form = references[0].value;
+		int size = 0;
+
+		for (int index = 1, end = form.indexOf(')'); index < end; index++) {
+			char character = form.charAt(index);
+			if (character == ';') {
+				continue;
+			} else if (character == '[') {
+				while (form.charAt(index + 1) == '[') {
+					index++;
+				}
+
+				index++;
+				size++;
+			} else {
+				size += character == 'J' || character == 'D' ? 2 : 1;
+			}
+		}
+
+		return size;
+	}
+
+	@Override
+	public int compareTo(Entry other) {
+		if (tag != other.tag) {
+			return TAG_ORDER[tag] - TAG_ORDER[other.tag];
+		}
+
+		switch (tag) {
+			case UTF8:
+				return value.compareTo(other.value);
+			case INTEGER:
+				return Integer.compare((int) number, (int) other.number);
+			case FLOAT:
+				return Float.compare(Float.intBitsToFloat((int) number), Float.intBitsToFloat((int) other.number));
+			case LONG:
+				return Long.compare(number, other.number);
+			case DOUBLE:
+				return Double.compare(Double.longBitsToDouble(number), Double.longBitsToDouble(other.number));
+			case SIGNATURE:
+				return compareSignatures(other);
+			case NAME_AND_TYPE: // The type is the primary key, but is referred to second.
+				int comparison = references[1].compareTo(other.references[1]);
+				return comparison != 0 ? comparison : references[0].compareTo(other.references[0]);
+			case METHOD_HANDLE:
+				comparison = references[0].compareTo(other.references[0]);
+				return comparison != 0 ? comparison : Long.compare(number, other.number);
+			case BOOTSTRAP_METHOD:
+				return compareBootstrapMethods(other);
+			case INVOKE_DYNAMIC:
+				comparison = references[1].compareTo(other.references[1]);
+				return comparison != 0 ? comparison : references[0].compareTo(other.references[0]);
+			default:
+				for (int index = 0; index < references.length; index++) {
+					comparison = references[index].compareTo(other.references[index]);
+					if (comparison != 0) {
+						return comparison;
+					}
+				}
+
+				return 0;
+		}
+	}
+
+	/**
+	 * Gets the string value of this entry: the value of a {@code Utf8}, the name of a class or string, or the flattened
+	 * form of a signature.
+	 *
+	 * @return The string value.
+	 */
+	public String string() {
+		return value != null ? value : references[0].value;
+	}
+
+	/**
+	 * Returns whether or not this entry occupies two slots of a class constant pool.
+	 *
+	 * @return {@code true} if this entry is a {@code Long} or {@code Double}.
+	 */
+	public boolean isWide() {
+		return tag == LONG || tag == DOUBLE;
+	}
+
+	@Override
+	public String toString() {
+		return tag + ":" + (value != null ? value : references.length > 0 ? references[0].toString() : number);
+	}
+
+	/**
+	 * Compares this bootstrap method specifier to another, by argument count, then arguments, then method handle.
+	 *
+	 * @param other The other specifier.
+	 * @return The comparison.
+	 */
+	private int compareBootstrapMethods(Entry other) {
+		int arguments = references.length - 1, otherArguments = other.references.length - 1;
+		if (arguments != otherArguments) {
+			return arguments - otherArguments;
+		}
+
+		for (int index = 1; index <= arguments; index++) {
+			int comparison = references[index].compareTo(other.references[index]);
+			if (comparison != 0) {
+				return comparison;
+			}
+		}
+
+		return references[0].compareTo(other.references[0]);
+	}
+
+	/**
+	 * Compares this signature to another: field signatures first, then by amount of classes, then by each component
+	 * (from last to first).
+	 *
+	 * @param other The other signature.
+	 * @return The comparison.
+	 */
+	private int compareSignatures(Entry other) {
+		boolean method = references[0].value.startsWith("("), otherMethod = other.references[0].value.startsWith("(");
+		if (method != otherMethod) {
+			return method ? 1 : -1;
+		} else if (references.length != other.references.length) {
+			return references.length - other.references.length;
+		}
+
+		for (int index = references.length - 1; index >= 0; index--) {
+			int comparison = references[index].string().compareTo(other.references[index].string());
+			if (comparison != 0) {
+				return comparison;
+			}
+		}
+
+		return 0;
+	}
+
+}
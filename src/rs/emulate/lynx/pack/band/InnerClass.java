@@ -0,0 +1,63 @@
+package rs.emulate.lynx.pack.band;
+
+import java.util.Objects;
+
+/**
+ * An entry of an {@code InnerClasses} attribute, describing a class nested in another.
+ *
+ * @author Major
+ */
+final class InnerClass {
+
+	/**
+	 * The access flags of the nested class.
+	 */
+	final int flags;
+
+	/**
+	 * The simple name of the nested class, or {@code null} if it is anonymous.
+	 */
+	final Entry name;
+
+	/**
+	 * The class the nested class is a member of, or {@code null} if it is not a member.
+	 */
+	final Entry outerClass;
+
+	/**
+	 * The nested class.
+	 */
+	final Entry thisClass;
+
+	/**
+	 * Creates the InnerClass.
+	 *
+	 * @param thisClass The class {@link Entry} of the nested class.
+	 * @param outerClass The class Entry of the class the nested class is a member of, or {@code null}.
+	 * @param name The {@code Utf8} Entry of the simple name, or {@code null}.
+	 * @param flags The access flags.
+	 */
+	InnerClass(Entry thisClass, Entry outerClass, Entry name, int flags) {
+		this.thisClass = thisClass;
+		this.outerClass = outerClass;
+		this.name = name;
+		this.flags = flags;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (obj instanceof InnerClass) {
+			InnerClass other = (InnerClass) obj;
+			return thisClass == other.thisClass && outerClass == other.outerClass && name == other.name
+					&& flags == other.flags;
+		}
+
+		return false;
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hashCode(thisClass);
+	}
+
+}
@@ -0,0 +1,222 @@
+package rs.emulate.lynx.pack.band;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * A buffered source of the bytes of a pack200 archive. Bands are decoded straight out of the buffer, which is refilled
+ * from the underlying {@link InputStream} as it is drained, so the archive is never read into memory as a whole.
+ * <p>
+ * The first value of a band may be an escape that selects the coding of the rest of it, which can only be known after
+ * the value has been decoded - so the position can be marked before reading the value, and reset to the mark if it
+ * was not an escape after all. The input also holds the {@code band_headers} of the segment, which describe the codings
+ * selected by those escapes.
+ *
+ * @author Major
+ */
+final class PackInput {
+
+	/**
+	 * The size of the buffer, in bytes.
+	 */
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	/**
+	 * The buffer.
+	 */
+	private byte[] buffer = new byte[BUFFER_SIZE];
+
+	/**
+	 * The InputStream the archive is read from.
+	 */
+	private final InputStream input;
+
+	/**
+	 * The amount of valid bytes in the buffer.
+	 */
+	private int limit;
+
+	/**
+	 * The marked position in the buffer, or {@code -1} if there is no mark.
+	 */
+	private int mark = -1;
+
+	/**
+	 * The band headers of the current segment. The first element is a slot for an escape byte, which is pushed back
+	 * by {@link #pushMetaByte}.
+	 */
+	private byte[] metaCodings = new byte[1];
+
+	/**
+	 * The position of the next band header byte.
+	 */
+	private int metaPosition = 1;
+
+	/**
+	 * The position of the next byte in the buffer.
+	 */
+	private int position;
+
+	/**
+	 * Creates the PackInput.
+	 *
+	 * @param input The {@link InputStream} of the (de-gzipped) archive.
+	 */
+	public PackInput(InputStream input) {
+		this.input = input;
+	}
+
+	/**
+	 * Returns whether or not there are any more bytes in the archive.
+	 *
+	 * @return {@code true} if there are more bytes, {@code false} if not.
+	 * @throws IOException If there is an error reading from the archive.
+	 */
+	public boolean hasMore() throws IOException {
+		return position < limit || fill();
+	}
+
+	/**
+	 * Marks the current position, so that it may be returned to by {@link #reset}.
+	 */
+	public void mark() {
+		mark = position;
+	}
+
+	/**
+	 * Gets the next band header byte of the segment.
+	 *
+	 * @return The byte, as an unsigned value.
+	 * @throws IOException If the band headers have been exhausted.
+	 */
+	public int nextMetaByte() throws IOException {
+		if (metaPosition >= metaCodings.length) {
+			throw new EOFException("Band headers exhausted.");
+		}
+
+		return metaCodings[metaPosition++] & 0xFF;
+	}
+
+	/**
+	 * Gets the next band header byte of the segment, without consuming it.
+	 *
+	 * @return The byte, as an unsigned value, or {@code -1} if the band headers have been exhausted.
+	 */
+	public int peekMetaByte() {
+		return metaPosition < metaCodings.length ? metaCodings[metaPosition] & 0xFF : -1;
+	}
+
+	/**
+	 * Pushes the specified escape byte back onto the band headers, so that it is the next byte returned by
+	 * {@link #nextMetaByte}.
+	 *
+	 * @param value The byte.
+	 * @throws IllegalStateException If a byte has already been pushed back without being consumed.
+	 */
+	public void pushMetaByte(int value) {
+		if (metaPosition == 0) {
+			throw new IllegalStateException("Band header pushed back twice - please report.");
+		}
+
+		metaCodings[--metaPosition] = (byte) value;
+	}
+
+	/**
+	 * Reads a single byte.
+	 *
+	 * @return The byte, as an unsigned value.
+	 * @throws IOException If there is an error reading from the archive, or if the end of the archive has been
+	 *             reached.
+	 */
+	public int read() throws IOException {
+		if (position >= limit && !fill()) {
+			throw new EOFException("Unexpected end of pack200 archive.");
+		}
+
+		return buffer[position++] & 0xFF;
+	}
+
+	/**
+	 * Reads the specified amount of bytes into the array.
+	 *
+	 * @param bytes The byte array to read into.
+	 * @param offset The offset in the array to start writing at.
+	 * @param length The amount of bytes to read.
+	 * @throws IOException If there is an error reading from the archive, or if the end of the archive has been
+	 *             reached.
+	 */
+	public void read(byte[] bytes, int offset, int length) throws IOException {
+		while (length > 0) {
+			if (position >= limit && !fill()) {
+				throw new EOFException("Unexpected end of pack200 archive.");
+			}
+
+			int count = Math.min(length, limit - position);
+			System.arraycopy(buffer, position, bytes, offset, count);
+			position += count;
+			offset += count;
+			length -= count;
+		}
+	}
+
+	/**
+	 * Returns to the position marked by {@link #mark}, and clears the mark.
+	 */
+	public void reset() {
+		position = mark;
+		mark = -1;
+	}
+
+	/**
+	 * Sets the band headers of the current segment.
+	 *
+	 * @param headers The band headers, which are copied.
+	 */
+	public void setMetaCodings(byte[] headers) {
+		metaCodings = new byte[headers.length + 1];
+		System.arraycopy(headers, 0, metaCodings, 1, headers.length);
+		metaPosition = 1;
+	}
+
+	/**
+	 * Clears the mark, without returning to it.
+	 */
+	public void unmark() {
+		mark = -1;
+	}
+
+	/**
+	 * Refills the buffer, keeping any bytes after the mark.
+	 *
+	 * @return {@code true} if any bytes were read, {@code false} if the end of the archive has been reached.
+	 * @throws IOException If there is an error reading from the archive.
+	 */
+	private boolean fill() throws IOException {
+		int keep = mark == -1 ? limit : mark;
+		int kept = limit - keep;
+
+		if (kept == buffer.length) {
+			byte[] expanded = new byte[buffer.length * 2];
+			System.arraycopy(buffer, 0, expanded, 0, kept);
+			buffer = expanded;
+		} else if (keep > 0) {
+			System.arraycopy(buffer, keep, buffer, 0, kept);
+		}
+
+		position -= keep;
+		limit = kept;
+		if (mark != -1) {
+			mark = 0;
+		}
+
+		int read = input.read(buffer, limit, buffer.length - limit);
+		if (read <= 0) {
+			return false;
+		}
+
+		limit += read;
+		return true;
+	}
+
+}
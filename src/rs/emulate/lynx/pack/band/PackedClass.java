@@ -0,0 +1,84 @@
+package rs.emulate.lynx.pack.band;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A class in a pack200 segment, as read from the class bands and before its constant pool has been laid out.
+ *
+ * @author Major
+ */
+final class PackedClass extends AttributeHolder {
+
+	/**
+	 * The fields of this class.
+	 */
+	PackedMember[] fields;
+
+	/**
+	 * The entries of the local {@code InnerClasses} attribute transmitted for this class, or {@code null} if none was.
+	 */
+	List<InnerClass> innerClasses;
+
+	/**
+	 * The interfaces this class implements.
+	 */
+	final Entry[] interfaces;
+
+	/**
+	 * The entries loaded by single-byte {@code ldc} instructions, which must be at the start of the constant pool.
+	 */
+	List<Entry> loaded;
+
+	/**
+	 * The major version of the class file.
+	 */
+	int majorVersion;
+
+	/**
+	 * The methods of this class.
+	 */
+	PackedMember[] methods;
+
+	/**
+	 * The minor version of the class file.
+	 */
+	int minorVersion;
+
+	/**
+	 * The superclass of this class, or {@code null} if it has none.
+	 */
+	final Entry superClass;
+
+	/**
+	 * The class entry of this class.
+	 */
+	final Entry thisClass;
+
+	/**
+	 * Creates the PackedClass.
+	 *
+	 * @param thisClass The class {@link Entry} of the class.
+	 * @param superClass The class Entry of the superclass, or {@code null}.
+	 * @param interfaces The class Entries of the interfaces.
+	 */
+	PackedClass(Entry thisClass, Entry superClass, Entry[] interfaces) {
+		this.thisClass = thisClass;
+		this.superClass = superClass;
+		this.interfaces = interfaces;
+	}
+
+	/**
+	 * Records that the specified entry is loaded by a single-byte {@code ldc} instruction.
+	 *
+	 * @param entry The {@link Entry}.
+	 */
+	public void addLoaded(Entry entry) {
+		if (loaded == null) {
+			loaded = new ArrayList<>();
+		}
+
+		loaded.add(entry);
+	}
+
+}
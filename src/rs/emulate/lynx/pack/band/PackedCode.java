@@ -0,0 +1,148 @@
+package rs.emulate.lynx.pack.band;
+
+import java.util.Arrays;
+
+/**
+ * The body of a method: the {@code Code} attribute. The bytecode is held in the {@link ContentHeap} of the segment,
+ * along with the constant pool references in it.
+ *
+ * @author Major
+ */
+final class PackedCode extends AttributeHolder {
+
+	/**
+	 * The bytecode index at which each exception handler starts to catch, then stops, then the index of the handler
+	 * itself, for each handler.
+	 */
+	int[] handlers;
+
+	/**
+	 * The class caught by each exception handler, or {@code null} for any.
+	 */
+	Entry[] handlerClasses;
+
+	/**
+	 * The position in the heap after the bytecode.
+	 */
+	int end;
+
+	/**
+	 * The index of the first reference in the bytecode.
+	 */
+	int firstReference;
+
+	/**
+	 * The position of each instruction, followed by the length of the bytecode.
+	 */
+	private int[] instructions;
+
+	/**
+	 * The index after the last reference in the bytecode.
+	 */
+	int lastReference;
+
+	/**
+	 * The maximum amount of local variable slots, excluding those taken by the arguments until the method has been
+	 * read.
+	 */
+	int maxLocals;
+
+	/**
+	 * The maximum depth of the operand stack.
+	 */
+	int maxStack;
+
+	/**
+	 * The method this body belongs to.
+	 */
+	final PackedMember method;
+
+	/**
+	 * The position of the bytecode in the heap.
+	 */
+	int start;
+
+	/**
+	 * Creates the PackedCode.
+	 *
+	 * @param method The {@link PackedMember} the body belongs to.
+	 */
+	PackedCode(PackedMember method) {
+		this.method = method;
+	}
+
+	/**
+	 * Decodes a bytecode index from an instruction index, the inverse of {@link #encodeBci}.
+	 *
+	 * @param coded The coded index.
+	 * @return The bytecode index.
+	 */
+	public int decodeBci(int coded) {
+		int length = instructions.length, codeLength = instructions[length - 1];
+		if (coded <= 0 || coded > codeLength) {
+			return coded;
+		} else if (coded < length) {
+			return instructions[coded];
+		}
+
+		int index = Arrays.binarySearch(instructions, coded);
+		if (index < 0) {
+			index = -index - 1;
+		}
+
+		int key = coded - length;
+		while (instructions[index - 1] - (index - 1) > key) {
+			index--;
+		}
+
+		return key + index;
+	}
+
+	/**
+	 * Encodes a bytecode index as an instruction index: the index of the instruction that starts at it, or (for an
+	 * index in the middle of an instruction) a value past the last instruction index. Indices outside of the bytecode
+	 * are left as they are.
+	 *
+	 * @param bci The bytecode index.
+	 * @return The coded index.
+	 */
+	public int encodeBci(int bci) {
+		int length = instructions.length;
+		if (bci <= 0 || bci > instructions[length - 1]) {
+			return bci;
+		}
+
+		int index = Arrays.binarySearch(instructions, bci);
+		return index >= 0 ? index : length + bci + index + 1;
+	}
+
+	/**
+	 * Gets the amount of exception handlers.
+	 *
+	 * @return The amount of handlers.
+	 */
+	public int handlerCount() {
+		return handlerClasses.length;
+	}
+
+	/**
+	 * Gets the length of the bytecode.
+	 *
+	 * @return The length, in bytes.
+	 */
+	public int length() {
+		return end - start;
+	}
+
+	/**
+	 * Sets the position of each instruction.
+	 *
+	 * @param instructions The positions, relative to the start of the bytecode.
+	 * @param count The amount of instructions.
+	 */
+	public void setInstructions(int[] instructions, int count) {
+		this.instructions = Arrays.copyOf(instructions, count + 1);
+		this.instructions[count] = end - start;
+	}
+
+}
@@ -0,0 +1,45 @@
+package rs.emulate.lynx.pack.band;
+
+/**
+ * A field or method of a class in a pack200 segment.
+ *
+ * @author Major
+ */
+final class PackedMember extends AttributeHolder {
+
+	/**
+	 * The body of this method, or {@code null} if this is a field or has no body.
+	 */
+	PackedCode code;
+
+	/**
+	 * The name-and-type {@link Entry} of this member.
+	 */
+	final Entry descriptor;
+
+	/**
+	 * The class that declares this member.
+	 */
+	final PackedClass owner;
+
+	/**
+	 * Creates the PackedMember.
+	 *
+	 * @param owner The {@link PackedClass} that declares the member.
+	 * @param descriptor The name-and-type {@link Entry}.
+	 */
+	PackedMember(PackedClass owner, Entry descriptor) {
+		this.owner = owner;
+		this.descriptor = descriptor;
+	}
+
+	/**
+	 * Gets the type of this member: the flattened descriptor.
+	 *
+	 * @return The type.
+	 */
+	public String getType() {
+		return descriptor.references[1].flattened.value;
+	}
+
+}
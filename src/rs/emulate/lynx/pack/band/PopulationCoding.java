@@ -0,0 +1,228 @@
+package rs.emulate.lynx.pack.band;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * A population coding, which codes a band as a list of favoured values followed by a token for each value of the
+ * band: either the (one-based) index of a favoured value, or zero to indicate that the value is coded separately as
+ * an unfavoured value.
+ *
+ * @author Major
+ */
+final class PopulationCoding implements CodingMethod {
+
+	/**
+	 * The first meta-coding byte selecting a population coding.
+	 */
+	private static final int META_POPULATION = 141;
+
+	/**
+	 * The values of {@code L} used to select the token coding, indexed by the meta-coding. The first element indicates
+	 * that the token coding is specified explicitly.
+	 */
+	private static final int[] TOKEN_THRESHOLDS = { -1, 4, 8, 16, 32, 64, 128, 192, 224, 240, 248, 252 };
+
+	/**
+	 * Gets the smallest token coding with the specified threshold that can code every favoured value index.
+	 *
+	 * @param count The amount of favoured values.
+	 * @param threshold The threshold of the token coding ({@code L}).
+	 * @return The token {@link Coding}.
+	 * @throws IOException If no coding with the specified threshold can code the indices.
+	 */
+	private static Coding fitTokenCoding(int count, int threshold) throws IOException {
+		if (count < 256) {
+			return Coding.BYTE1;
+		}
+
+		Coding coding = Coding.of(5, 256 - threshold);
+		if (coding.getUnsignedMaximum() < count) {
+			throw new IOException("Too many favoured values (" + count + ") for a token threshold of " + threshold
+					+ ".");
+		}
+
+		for (int length = 4; length > 1; length--) {
+			Coding shorter = Coding.of(length, 256 - threshold);
+			if (shorter.getUnsignedMaximum() < count) {
+				break;
+			}
+
+			coding = shorter;
+		}
+
+		return coding;
+	}
+
+	/**
+	 * Returns whichever of the two specified values is closest to zero, preferring negative values to positive ones
+	 * of the same magnitude.
+	 *
+	 * @param first The first value.
+	 * @param second The second value.
+	 * @return The more central value.
+	 */
+	private static int moreCentral(int first, int second) {
+		int x = (first >> 31 ^ first << 1) - Integer.MIN_VALUE;
+		int y = (second >> 31 ^ second << 1) - Integer.MIN_VALUE;
+		return x < y ? first : second;
+	}
+
+	/**
+	 * Parses a population coding from the band headers.
+	 *
+	 * @param input The {@link PackInput} holding the band headers.
+	 * @param op The meta-coding byte that selected the population coding.
+	 * @param fallback The default coding of the band.
+	 * @return The PopulationCoding.
+	 * @throws IOException If the meta-coding is malformed.
+	 */
+	static PopulationCoding parse(PackInput input, int op, Coding fallback) throws IOException {
+		op -= META_POPULATION;
+		int thresholdIndex = op >> 2;
+
+		CodingMethod favoured = (op & 1) != 0 ? fallback : Coding.parse(input, fallback);
+		CodingMethod tokens = thresholdIndex == 0 ? Coding.parse(input, fallback) : null;
+		CodingMethod unfavoured = (op & 2) != 0 ? fallback : Coding.parse(input, fallback);
+
+		return new PopulationCoding(favoured, TOKEN_THRESHOLDS[thresholdIndex], tokens, unfavoured);
+	}
+
+	/**
+	 * The coding of the favoured values.
+	 */
+	private final CodingMethod favoured;
+
+	/**
+	 * The threshold of the token coding, or {@code -1} if the token coding is specified explicitly.
+	 */
+	private final int threshold;
+
+	/**
+	 * The coding of the tokens, or {@code null} if it is derived from the threshold and the amount of favoured
+	 * values.
+	 */
+	private final CodingMethod tokens;
+
+	/**
+	 * The coding of the unfavoured values.
+	 */
+	private final CodingMethod unfavoured;
+
+	/**
+	 * Creates the PopulationCoding.
+	 *
+	 * @param favoured The {@link CodingMethod} of the favoured values.
+	 * @param threshold The threshold of the token coding, or {@code -1}.
+	 * @param tokens The CodingMethod of the tokens, or {@code null}.
+	 * @param unfavoured The CodingMethod of the unfavoured values.
+	 */
+	private PopulationCoding(CodingMethod favoured, int threshold, CodingMethod tokens, CodingMethod unfavoured) {
+		this.favoured = favoured;
+		this.threshold = threshold;
+		this.tokens = tokens;
+		this.unfavoured = unfavoured;
+	}
+
+	@Override
+	public void readArray(PackInput input, int[] values, int start, int end) throws IOException {
+		int[] favouredValues = readFavouredValues(input);
+		int count = favouredValues[0];
+
+		CodingMethod tokens = this.tokens == null ? fitTokenCoding(count, threshold) : this.tokens;
+		tokens.readArray(input, values, start, end);
+
+		int head = 0, tail = -1, unfavouredCount = 0;
+		for (int index = start; index < end; index++) {
+			int token = values[index];
+
+			if (token == 0) { // Link the unfavoured slots together, and fill them in afterwards.
+				if (tail < 0) {
+					head = index;
+				} else {
+					values[tail] = index;
+				}
+
+				tail = index;
+				unfavouredCount++;
+			} else if (token < 0 || token > count) {
+				throw new IOException("Population token " + token + " out of range.");
+			} else {
+				values[index] = favouredValues[token];
+			}
+		}
+
+		if (unfavouredCount > 0) {
+			int[] unfavouredValues = new int[unfavouredCount];
+			unfavoured.readArray(input, unfavouredValues, 0, unfavouredCount);
+
+			for (int value : unfavouredValues) {
+				int next = values[head];
+				values[head] = value;
+				head = next;
+			}
+		}
+	}
+
+	/**
+	 * Reads the favoured values. The list ends with a repeat of either the previous value, or the value closest to
+	 * zero.
+	 *
+	 * @param input The {@link PackInput} to read from.
+	 * @return The favoured values, from index {@code 1}. The element at index {@code 0} is the amount of values.
+	 * @throws IOException If there is an error reading the values.
+	 */
+	private int[] readFavouredValues(PackInput input) throws IOException {
+		int[] values = new int[64];
+		int position = 1, minimum = Integer.MIN_VALUE, last = 0;
+
+		CodingMethod method = favoured;
+		while (method instanceof AdaptiveCoding) {
+			AdaptiveCoding run = (AdaptiveCoding) method;
+			int end = position + run.getLength();
+			if (end > values.length) {
+				values = Arrays.copyOf(values, Math.max(end, values.length * 2));
+			}
+
+			run.getHead().readArray(input, values, position, end);
+			while (position < end) {
+				last = values[position++];
+				minimum = moreCentral(minimum, last);
+			}
+
+			method = run.getTail();
+		}
+
+		if (!(method instanceof Coding)) {
+			throw new IOException("Favoured values must end with a simple coding.");
+		}
+
+		Coding coding = (Coding) method;
+		long state = 0;
+
+		while (true) {
+			int value;
+			if (coding.isDelta()) {
+				state += coding.read(input);
+				value = coding.isSubrange() ? coding.reduce(state) : (int) state;
+				state = value;
+			} else {
+				value = coding.read(input);
+			}
+
+			if (position > 1 && (value == last || value == minimum)) {
+				break;
+			} else if (position == values.length) {
+				values = Arrays.copyOf(values, values.length * 2);
+			}
+
+			values[position++] = value;
+			last = value;
+			minimum = moreCentral(minimum, value);
+		}
+
+		values[0] = position - 1;
+		return values;
+	}
+
+}
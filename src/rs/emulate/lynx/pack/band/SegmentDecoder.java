@@ -0,0 +1,1526 @@
+package rs.emulate.lynx.pack.band;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+
+/**
+ * Decodes the segments of a pack200 archive, reading the bands in the order they are transmitted and writing each
+ * file (and reconstructed class) to a {@link JarOutputStream} as soon as the segment has been read. The bands and
+ * buffers are reused for every segment, so a SegmentDecoder must only be used by a single thread.
+ *
+ * @author Major
+ */
+public final class SegmentDecoder {
+
+	/**
+	 * The magic number of a pack200 archive.
+	 */
+	private static final int MAGIC = 0xCAFED00D;
+
+	/**
+	 * The archive option indicating that the band headers and attribute definitions are transmitted.
+	 */
+	private static final int SPECIAL_FORMATS = 1;
+
+	/**
+	 * The archive option indicating that numeric constants are transmitted.
+	 */
+	private static final int CP_NUMBERS = 1 << 1;
+
+	/**
+	 * The archive option indicating that every method body has attribute flags, rather than only the long forms.
+	 */
+	private static final int ALL_CODE_FLAGS = 1 << 2;
+
+	/**
+	 * The archive option indicating that method handles, method types and bootstrap methods are transmitted.
+	 */
+	private static final int CP_EXTRAS = 1 << 3;
+
+	/**
+	 * The archive option indicating that the file counts (and sizes) are transmitted.
+	 */
+	private static final int FILE_HEADERS = 1 << 4;
+
+	/**
+	 * The archive option indicating that every file should be deflated.
+	 */
+	private static final int DEFLATE_HINT = 1 << 5;
+
+	/**
+	 * The archive option indicating that file modification times are transmitted.
+	 */
+	private static final int FILE_MODTIME = 1 << 6;
+
+	/**
+	 * The archive option indicating that file options are transmitted.
+	 */
+	private static final int FILE_OPTIONS = 1 << 7;
+
+	/**
+	 * The archive option indicating that the high words of file sizes are transmitted.
+	 */
+	private static final int FILE_SIZE_HI = 1 << 8;
+
+	/**
+	 * The shift of the archive option indicating that the holders of the class context have high flag words. The
+	 * options of the other contexts follow it, in order.
+	 */
+	private static final int FLAGS_HI_SHIFT = 9;
+
+	/**
+	 * The archive options that are not defined by any version of the format.
+	 */
+	private static final int UNKNOWN_OPTIONS = -1 << 13;
+
+	/**
+	 * The file option indicating that the file should be deflated.
+	 */
+	private static final int FILE_DEFLATE = 1;
+
+	/**
+	 * The file option indicating that the file is a class stub, standing in for the next class of the segment.
+	 */
+	private static final int FILE_STUB = 2;
+
+	/**
+	 * The access flag of a static method.
+	 */
+	private static final int ACC_STATIC = 0x8;
+
+	/**
+	 * The flag of an inner class whose outer class and name are transmitted, rather than implied by its name.
+	 */
+	private static final int LONG_FORM = 1 << 16;
+
+	/**
+	 * The index of the attribute flag indicating that a holder has overflow attributes.
+	 */
+	private static final int OVERFLOW = 16;
+
+	/**
+	 * The amount of attribute indices in a context without high flag words.
+	 */
+	private static final int INDEX_LIMIT = 32;
+
+	/**
+	 * The amount of attribute indices in a context with high flag words.
+	 */
+	private static final int INDEX_LIMIT_HI = 63;
+
+	/**
+	 * The supported archive versions, as pairs of major and minor versions.
+	 */
+	private static final int[] VERSIONS = { 150, 7, 160, 1, 170, 1, 171, 0 };
+
+	/**
+	 * The size of the buffer used to copy file contents.
+	 */
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	/**
+	 * The layout of an annotation element value.
+	 */
+	private static final String VALUE_LAYOUT = "[TB(66,67,73,83,90)[KIH](68)[KDH](70)[KFH](74)[KJH](99)[RSH](101)"
+			+ "[RSHRUH](115)[RUH](91)[NH[(0)]](64)[RSHNH[RUH(0)]]()[]]";
+
+	/**
+	 * The layout of an annotation.
+	 */
+	private static final String ANNOTATION_LAYOUT = "[RSHNH[RUH(1)]]";
+
+	/**
+	 * The layout of the {@code Runtime(In)VisibleAnnotations} attributes.
+	 */
+	private static final String ANNOTATIONS_LAYOUT = "[NH[(1)]]" + ANNOTATION_LAYOUT + VALUE_LAYOUT;
+
+	/**
+	 * The layout of the {@code Runtime(In)VisibleParameterAnnotations} attributes.
+	 */
+	private static final String PARAMETER_ANNOTATIONS_LAYOUT = "[NB[(1)]][NH[(1)]]" + ANNOTATION_LAYOUT
+			+ VALUE_LAYOUT;
+
+	/**
+	 * The layout of the {@code Runtime(In)VisibleTypeAnnotations} attributes.
+	 */
+	private static final String TYPE_ANNOTATIONS_LAYOUT = "[NH[(1)(2)(3)]][TB(0-1)[B](16)[FH](17-18)[BB](19-21)[]"
+			+ "(22)[B](23)[H](64-65)[NH[PHOHH]](66)[H](67-70)[PH](71-75)[PHB]()[]][NB[BB]]" + ANNOTATION_LAYOUT
+			+ VALUE_LAYOUT;
+
+	/**
+	 * The layout of the {@code StackMapTable} attribute.
+	 */
+	private static final String STACK_MAP_LAYOUT = "[NH[(1)]][TB(64-127)[(2)](247)[(1)(2)](248-251)[(1)](252)"
+			+ "[(1)(2)](253)[(1)(2)(2)](254)[(1)(2)(2)(2)](255)[(1)NH[(2)]NH[(2)]]()[]][H][TB(7)[RCH](8)[PH]()[]]";
+
+	/**
+	 * The layout of a local variable table.
+	 */
+	private static final String LOCAL_VARIABLES_LAYOUT = "NH[PHOHRUHRSHH]";
+
+	/**
+	 * Creates the bands of the specified kind for every attribute context.
+	 *
+	 * @param kind The kind of band, which is appended to the name of the context.
+	 * @return The bands, indexed by context.
+	 */
+	private static Band[] createBands(String kind) {
+		Band[] bands = new Band[AttributeLayout.CONTEXT_COUNT];
+		for (int context = 0; context < bands.length; context++) {
+			bands[context] = new Band(AttributeLayout.CONTEXT_NAMES[context] + "_" + kind, Coding.UNSIGNED5);
+		}
+
+		return bands;
+	}
+
+	/**
+	 * Returns whether or not the specified part of a string consists only of decimal digits.
+	 *
+	 * @param string The string.
+	 * @param start The start of the part, inclusive.
+	 * @param end The end of the part, exclusive.
+	 * @return {@code true} if the part is not empty and only contains digits.
+	 */
+	private static boolean isDigits(String string, int start, int end) {
+		if (start == end) {
+			return false;
+		}
+
+		for (int index = start; index < end; index++) {
+			char character = string.charAt(index);
+			if (character < '0' || character > '9') {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	/**
+	 * Finds the last character before the specified position that may separate an inner class from its outer class:
+	 * any punctuation up to and including {@code '-'} (most commonly {@code '$'}).
+	 *
+	 * @param name The class name.
+	 * @param position The position to search back from.
+	 * @return The index of the separator, or {@code -1} if there is none.
+	 */
+	private static int lastDollar(String name, int position) {
+		for (int index = position - 1; index >= 0; index--) {
+			if (name.charAt(index) <= '-') {
+				return index;
+			}
+		}
+
+		return -1;
+	}
+
+	/**
+	 * Finds the last character before the specified position that is a package separator ({@code '.'} or
+	 * {@code '/'}).
+	 *
+	 * @param name The class name.
+	 * @param position The position to search back from.
+	 * @return The index of the separator, or {@code -1} if there is none.
+	 */
+	private static int lastSeparator(String name, int position) {
+		for (int index = position - 1; index >= 0; index--) {
+			char character = name.charAt(index);
+			if (character == '.' || character == '/') {
+				return index;
+			}
+		}
+
+		return -1;
+	}
+
+	/**
+	 * Gets the source file name implied by the name of a class: its simple name, up to the first inner class
+	 * separator, with a {@code .java} extension.
+	 *
+	 * @param name The class name.
+	 * @return The source file name.
+	 */
+	private static String obviousSourceFile(String name) {
+		name = name.substring(lastSeparator(name, name.length()) + 1);
+		int cutoff = name.length();
+
+		while (cutoff > 0) {
+			int dollar = lastDollar(name, cutoff - 1);
+			if (dollar < 0) {
+				break;
+			}
+
+			cutoff = dollar;
+		}
+
+		return name.substring(0, cutoff) + ".java";
+	}
+
+	/**
+	 * The backward call counts of each context.
+	 */
+	private final Band[] attributeCalls = createBands("attr_calls");
+
+	/**
+	 * The overflow attribute counts of each context.
+	 */
+	private final Band[] attributeCounts = createBands("attr_count");
+
+	/**
+	 * The attribute definition headers: the context and index of each definition.
+	 */
+	private final Band attributeHeaders = new Band("attr_definition_headers", Coding.BYTE1);
+
+	/**
+	 * The overflow attribute indices of each context.
+	 */
+	private final Band[] attributeIndexes = createBands("attr_indexes");
+
+	/**
+	 * The attribute definition layouts.
+	 */
+	private final Band attributeLayouts = new Band("attr_definition_layout", Coding.UNSIGNED5);
+
+	/**
+	 * The attribute definition names.
+	 */
+	private final Band attributeNames = new Band("attr_definition_name", Coding.UNSIGNED5);
+
+	/**
+	 * The buffer used to copy file contents.
+	 */
+	private byte[] buffer = new byte[BUFFER_SIZE];
+
+	/**
+	 * The decoder of the bytecode bands.
+	 */
+	private final BytecodeDecoder bytecodes;
+
+	/**
+	 * The classes of the segment, in order.
+	 */
+	private final List<PackedClass> classes = new ArrayList<>();
+
+	/**
+	 * The field counts of the classes.
+	 */
+	private final Band classFieldCounts = new Band("class_field_count", Coding.DELTA5);
+
+	/**
+	 * The interface counts of the classes.
+	 */
+	private final Band classInterfaceCounts = new Band("class_interface_count", Coding.DELTA5);
+
+	/**
+	 * The interfaces of the classes.
+	 */
+	private final Band classInterfaces = new Band("class_interface", Coding.DELTA5);
+
+	/**
+	 * The method counts of the classes.
+	 */
+	private final Band classMethodCounts = new Band("class_method_count", Coding.DELTA5);
+
+	/**
+	 * The superclasses of the classes.
+	 */
+	private final Band classSupers = new Band("class_super", Coding.DELTA5);
+
+	/**
+	 * The classes themselves.
+	 */
+	private final Band classThis = new Band("class_this", Coding.DELTA5);
+
+	/**
+	 * The layout of the {@code Code} attribute in the current segment.
+	 */
+	private AttributeLayout codeLayout;
+
+	/**
+	 * The method bodies of the segment, in order.
+	 */
+	private final List<PackedCode> codes = new ArrayList<>();
+
+	/**
+	 * The layout of the {@code ConstantValue} attribute in the current segment.
+	 */
+	private AttributeLayout constantValueLayout;
+
+	/**
+	 * The checksum of the file being stored.
+	 */
+	private final CRC32 crc = new CRC32();
+
+	/**
+	 * The default modification time of the files in the current segment, in seconds.
+	 */
+	private int defaultModtime;
+
+	/**
+	 * The default options of the files in the current segment.
+	 */
+	private int defaultOptions;
+
+	/**
+	 * The attribute indices that were explicitly defined in the current segment, for each context.
+	 */
+	private final long[] defined = new long[AttributeLayout.CONTEXT_COUNT];
+
+	/**
+	 * The name-and-type descriptors of the fields.
+	 */
+	private final Band fieldDescriptors = new Band("field_descr", Coding.DELTA5);
+
+	/**
+	 * The fields of the current segment, in order.
+	 */
+	private final List<PackedMember> fields = new ArrayList<>();
+
+	/**
+	 * The modification times of the files, relative to the default.
+	 */
+	private final Band fileModtimes = new Band("file_modtime", Coding.DELTA5);
+
+	/**
+	 * The names of the files.
+	 */
+	private final Band fileNames = new Band("file_name", Coding.UNSIGNED5);
+
+	/**
+	 * The options of the files.
+	 */
+	private final Band fileOptions = new Band("file_options", Coding.UNSIGNED5);
+
+	/**
+	 * The high words of the file sizes.
+	 */
+	private final Band fileSizesHi = new Band("file_size_hi", Coding.UNSIGNED5);
+
+	/**
+	 * The low words of the file sizes.
+	 */
+	private final Band fileSizesLo = new Band("file_size_lo", Coding.UNSIGNED5);
+
+	/**
+	 * The method bodies that have attribute flags.
+	 */
+	private final List<PackedCode> flaggedCodes = new ArrayList<>();
+
+	/**
+	 * The attribute flag bits of each context.
+	 */
+	private final long[] flagMasks = new long[AttributeLayout.CONTEXT_COUNT];
+
+	/**
+	 * The high flag words of each context.
+	 */
+	private final Band[] flagsHi = createBands("flags_hi");
+
+	/**
+	 * The low flag words of each context.
+	 */
+	private final Band[] flagsLo = createBands("flags_lo");
+
+	/**
+	 * The inner classes of the current segment, by nested class.
+	 */
+	private final Map<Entry, InnerClass> globalInnerClasses = new HashMap<>();
+
+	/**
+	 * The catch offsets of the exception handlers.
+	 */
+	private final Band handlerCatches = new Band("code_handler_catch_PO", Coding.BRANCH5);
+
+	/**
+	 * The caught classes of the exception handlers.
+	 */
+	private final Band handlerClasses = new Band("code_handler_class_RCN", Coding.UNSIGNED5);
+
+	/**
+	 * The exception handler counts of the long-form method bodies.
+	 */
+	private final Band handlerCounts = new Band("code_handler_count", Coding.UNSIGNED5);
+
+	/**
+	 * The end offsets of the exception handlers.
+	 */
+	private final Band handlerEnds = new Band("code_handler_end_PO", Coding.BRANCH5);
+
+	/**
+	 * The start indices of the exception handlers.
+	 */
+	private final Band handlerStarts = new Band("code_handler_start_P", Coding.BCI5);
+
+	/**
+	 * The headers of the method bodies.
+	 */
+	private final Band headers = new Band("code_headers", Coding.BYTE1);
+
+	/**
+	 * The heap holding the contents of the attributes and method bodies of the current segment.
+	 */
+	private final ContentHeap heap = new ContentHeap();
+
+	/**
+	 * The flags of the global inner classes.
+	 */
+	private final Band icFlags = new Band("ic_flags", Coding.UNSIGNED5);
+
+	/**
+	 * The names of the long-form global inner classes.
+	 */
+	private final Band icNames = new Band("ic_name", Coding.DELTA5);
+
+	/**
+	 * The outer classes of the long-form global inner classes.
+	 */
+	private final Band icOuterClasses = new Band("ic_outer_class", Coding.DELTA5);
+
+	/**
+	 * The nested classes of the global inner classes.
+	 */
+	private final Band icThisClasses = new Band("ic_this_class", Coding.UDELTA5);
+
+	/**
+	 * The global inner classes of the current segment, in the order they were transmitted.
+	 */
+	private final List<InnerClass> innerClasses = new ArrayList<>();
+
+	/**
+	 * The layout of the {@code InnerClasses} attribute in the current segment.
+	 */
+	private AttributeLayout innerClassesLayout;
+
+	/**
+	 * The local inner class counts of the classes with an {@code InnerClasses} attribute.
+	 */
+	private final Band innerCounts = new Band("class_InnerClasses_N", Coding.UNSIGNED5);
+
+	/**
+	 * The flags of the local inner classes.
+	 */
+	private final Band innerFlags = new Band("class_InnerClasses_F", Coding.UNSIGNED5);
+
+	/**
+	 * The names of the local inner classes with explicit flags.
+	 */
+	private final Band innerNames = new Band("class_InnerClasses_name_RUN", Coding.UNSIGNED5);
+
+	/**
+	 * The outer classes of the local inner classes with explicit flags.
+	 */
+	private final Band innerOuterClasses = new Band("class_InnerClasses_outer_RCN", Coding.UNSIGNED5);
+
+	/**
+	 * The nested classes of the local inner classes.
+	 */
+	private final Band innerThisClasses = new Band("class_InnerClasses_RC", Coding.UNSIGNED5);
+
+	/**
+	 * The input of the archive.
+	 */
+	private final PackInput input;
+
+	/**
+	 * The attribute layouts of the current segment, indexed by context and then by attribute index.
+	 */
+	private final List<List<AttributeLayout>> layouts = new ArrayList<>(AttributeLayout.CONTEXT_COUNT);
+
+	/**
+	 * The default major version of the classes in the current segment.
+	 */
+	private int majorVersion;
+
+	/**
+	 * The maximum local variable counts of the long-form method bodies, excluding the arguments.
+	 */
+	private final Band maxLocals = new Band("code_max_na_locals", Coding.UNSIGNED5);
+
+	/**
+	 * The maximum stack sizes of the long-form method bodies.
+	 */
+	private final Band maxStacks = new Band("code_max_stack", Coding.UNSIGNED5);
+
+	/**
+	 * The name-and-type descriptors of the methods.
+	 */
+	private final Band methodDescriptors = new Band("method_descr", Coding.MDELTA5);
+
+	/**
+	 * The methods of the current segment, in order.
+	 */
+	private final List<PackedMember> methods = new ArrayList<>();
+
+	/**
+	 * The default minor version of the classes in the current segment.
+	 */
+	private int minorVersion;
+
+	/**
+	 * The archive options of the current segment.
+	 */
+	private int options;
+
+	/**
+	 * The overflow flag bit of each context, or {@code 0} if the overflow index was redefined.
+	 */
+	private final long[] overflowMasks = new long[AttributeLayout.CONTEXT_COUNT];
+
+	/**
+	 * The constant pool of the current segment.
+	 */
+	private final ConstantPool pool = new ConstantPool();
+
+	/**
+	 * The layout of the {@code SourceFile} attribute in the current segment.
+	 */
+	private AttributeLayout sourceFileLayout;
+
+	/**
+	 * The layout of the {@code .ClassFile.version} attribute in the current segment.
+	 */
+	private AttributeLayout versionLayout;
+
+	/**
+	 * The writer of the reconstructed classes.
+	 */
+	private final ClassWriter writer;
+
+	/**
+	 * Creates the SegmentDecoder.
+	 *
+	 * @param input The {@link PackInput} of the archive.
+	 */
+	public SegmentDecoder(PackInput input) {
+		this.input = input;
+		bytecodes = new BytecodeDecoder(pool, heap);
+		writer = new ClassWriter(pool, heap, innerClasses, globalInnerClasses);
+
+		for (int context = 0; context < AttributeLayout.CONTEXT_COUNT; context++) {
+			layouts.add(new ArrayList<>(INDEX_LIMIT_HI));
+		}
+	}
+
+	/**
+	 * Decodes the next segment of the archive, writing its files to the specified {@link JarOutputStream}.
+	 *
+	 * @param output The JarOutputStream.
+	 * @throws IOException If there is an error reading the segment, or it is malformed.
+	 */
+	public void decode(JarOutputStream output) throws IOException {
+		int magic = 0;
+		for (int index = 0; index < Integer.BYTES; index++) {
+			magic = magic << 8 | input.read();
+		}
+
+		if (magic != MAGIC) {
+			throw new IOException("Invalid pack200 magic number.");
+		}
+
+		try {
+			int[] counts = readHeader();
+			readAttributeDefinitions(counts[0]);
+			readInnerClasses(counts[1]);
+			readClasses(counts[2]);
+
+			bytecodes.decode(input, codes);
+			readAttributes(AttributeLayout.CODE, flaggedCodes);
+			decodeHandlers();
+			readFiles(output, counts[3]);
+		} finally {
+			clear();
+		}
+	}
+
+	/**
+	 * Returns whether or not another segment follows the one last decoded.
+	 *
+	 * @return {@code true} if the next bytes of the archive are the magic number of a segment.
+	 * @throws IOException If there is an error reading from the archive.
+	 */
+	public boolean hasNextSegment() throws IOException {
+		input.mark();
+
+		try {
+			for (int shift = 24; shift >= 0; shift -= 8) {
+				if (!input.hasMore() || input.read() != (MAGIC >>> shift & 0xFF)) {
+					return false;
+				}
+			}
+
+			return true;
+		} finally {
+			input.reset();
+		}
+	}
+
+	/**
+	 * Clears the state of the segment last decoded, so that nothing is retained until the next one.
+	 */
+	private void clear() {
+		classes.clear();
+		codes.clear();
+		fields.clear();
+		flaggedCodes.clear();
+		globalInnerClasses.clear();
+		heap.clear();
+		innerClasses.clear();
+		methods.clear();
+	}
+
+	/**
+	 * Counts the attributes of the specified holders, and reads the bands of their layouts.
+	 *
+	 * @param context The attribute context.
+	 * @param holders The {@link AttributeHolder}s, whose flags are read from the flag bands.
+	 * @throws IOException If there is an error reading the bands, or an attribute index is undefined.
+	 */
+	private void countAttributes(int context, List<? extends AttributeHolder> holders) throws IOException {
+		int count = holders.size();
+		boolean high = (options & 1 << FLAGS_HI_SHIFT + context) != 0;
+		Band flagsHi = this.flagsHi[context].read(input, high ? count : 0);
+		Band flagsLo = this.flagsLo[context].read(input, count);
+
+		long mask = flagMasks[context], overflowMask = overflowMasks[context];
+		int overflowing = 0;
+		for (int index = 0; index < count; index++) {
+			if ((flagsLo.get(index) & overflowMask) != 0) {
+				overflowing++;
+			}
+		}
+
+		Band counts = attributeCounts[context].read(input, overflowing);
+		Band indexes = attributeIndexes[context].read(input, counts.total());
+		List<AttributeLayout> layouts = this.layouts.get(context);
+
+		for (int index = 0; index < count; index++) {
+			AttributeHolder holder = holders.get(index);
+			int flags = flagsLo.get(index);
+			long bits = flags & mask & 0xFFFFFFFFL;
+			holder.flags = flags - (int) bits;
+
+			if (high) {
+				bits += (long) flagsHi.get(index) << 32;
+			}
+
+			if (bits == 0) {
+				continue;
+			}
+
+			long overflow = bits & overflowMask;
+			bits -= overflow;
+
+			int overflowCount = overflow != 0 ? counts.next() : 0;
+			Attribute[] attributes = new Attribute[Long.bitCount(bits) + overflowCount];
+			int attribute = 0;
+
+			for (; bits != 0; bits &= bits - 1) {
+				attributes[attribute++] = createAttribute(context, layouts, Long.numberOfTrailingZeros(bits));
+			}
+
+			while (attribute < attributes.length) {
+				attributes[attribute++] = createAttribute(context, layouts, indexes.next());
+			}
+
+			holder.attributes = attributes;
+		}
+
+		int calls = 0;
+		for (int pass = 0; pass < 2; pass++) {
+			for (AttributeLayout layout : layouts) {
+				if (layout != null && layout.isPredefined() == (pass == 0) && layout.getTotal() > 0) {
+					calls += layout.countBackwardCallables();
+				}
+			}
+		}
+
+		Band callBand = attributeCalls[context].read(input, calls);
+		for (int pass = 0; pass < 2; pass++) {
+			for (AttributeLayout layout : layouts) {
+				if (layout == null || layout.isPredefined() != (pass == 0)) {
+					continue;
+				} else if (layout == innerClassesLayout) {
+					innerCounts.read(input, layout.getTotal());
+					int tuples = innerCounts.total();
+
+					innerThisClasses.read(input, tuples);
+					innerFlags.read(input, tuples);
+					tuples -= innerFlags.count(0);
+
+					innerOuterClasses.read(input, tuples);
+					innerNames.read(input, tuples);
+				} else if (layout.getTotal() > 0) {
+					layout.readBands(input, callBand);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Creates an attribute with the layout at the specified index, counting it.
+	 *
+	 * @param context The attribute context.
+	 * @param layouts The layouts of the context.
+	 * @param index The attribute index.
+	 * @return The {@link Attribute}.
+	 * @throws IOException If no layout is defined at the index.
+	 */
+	private Attribute createAttribute(int context, List<AttributeLayout> layouts, int index) throws IOException {
+		AttributeLayout layout = index >= 0 && index < layouts.size() ? layouts.get(index) : null;
+		if (layout == null) {
+			throw new IOException("Unknown attribute index " + index + " for " + AttributeLayout.CONTEXT_NAMES[context]
+					+ " attribute.");
+		}
+
+		layout.count();
+		return new Attribute(layout);
+	}
+
+	/**
+	 * Decodes the bytecode indices of the exception handlers, which can only be done once the bytecode has been
+	 * expanded. The end and catch offsets are relative to the coded index before them.
+	 */
+	private void decodeHandlers() {
+		for (PackedCode code : codes) {
+			int[] handlers = code.handlers;
+
+			for (int index = 0; index < handlers.length; index += 3) {
+				int sum = handlers[index];
+				handlers[index] = code.decodeBci(sum);
+
+				sum += handlers[index + 1];
+				handlers[index + 1] = code.decodeBci(sum);
+
+				sum += handlers[index + 2];
+				handlers[index + 2] = code.decodeBci(sum);
+			}
+		}
+	}
+
+	/**
+	 * Defines a predefined attribute layout.
+	 *
+	 * @param context The attribute context.
+	 * @param index The attribute index.
+	 * @param name The name of the attribute.
+	 * @param layout The layout.
+	 * @return The {@link AttributeLayout}.
+	 * @throws IOException If the layout is malformed.
+	 */
+	private AttributeLayout define(int context, int index, String name, String layout) throws IOException {
+		AttributeLayout definition = AttributeLayout.create(context, name, layout, true);
+		layouts.get(context).set(index, definition);
+		flagMasks[context] |= 1L << index;
+		return definition;
+	}
+
+	/**
+	 * Gets the literal tag of the {@code ConstantValue} attribute of the specified field.
+	 *
+	 * @param field The field {@link PackedMember}.
+	 * @return The tag of the constant.
+	 * @throws IOException If the field cannot have a constant value.
+	 */
+	private int literalTag(PackedMember field) throws IOException {
+		String type = field.getType();
+		switch (type.charAt(0)) {
+			case 'B':
+			case 'C':
+			case 'I':
+			case 'S':
+			case 'Z':
+				return Entry.INTEGER;
+			case 'D':
+				return Entry.DOUBLE;
+			case 'F':
+				return Entry.FLOAT;
+			case 'J':
+				return Entry.LONG;
+			case 'L':
+				return Entry.STRING;
+			default:
+				throw new IOException("Field of type " + type + " cannot have a constant value.");
+		}
+	}
+
+	/**
+	 * Gets the entry with the specified tag and nullable index, where {@code 0} is {@code null}.
+	 *
+	 * @param tag The tag.
+	 * @param index The index, plus one.
+	 * @return The {@link Entry}, or {@code null}.
+	 * @throws IOException If the index is out of range.
+	 */
+	private Entry nullable(int tag, int index) throws IOException {
+		return index == 0 ? null : pool.get(tag, index - 1);
+	}
+
+	/**
+	 * Parses the implied outer class and name of a short-form inner class, from the name of the nested class.
+	 *
+	 * @param thisClass The nested class {@link Entry}.
+	 * @param flags The flags of the inner class.
+	 * @return The {@link InnerClass}.
+	 * @throws IOException If the name of the nested class is not that of an inner class.
+	 */
+	private InnerClass parseInnerClass(Entry thisClass, int flags) throws IOException {
+		String name = thisClass.string();
+		int length = name.length();
+		int packageLength = lastSeparator(name, length) + 1;
+		int dollar = lastDollar(name, length);
+
+		if (dollar < packageLength) {
+			throw new IOException("Short-form inner class " + name + " has no outer class.");
+		}
+
+		int outerDollar;
+		String simple;
+		boolean numbered;
+
+		if (isDigits(name, dollar + 1, length)) { // <outer>$<number>
+			outerDollar = dollar;
+			simple = null;
+			numbered = true;
+		} else if ((outerDollar = lastDollar(name, dollar - 1)) > packageLength
+				&& isDigits(name, outerDollar + 1, dollar)) { // <outer>$<number>$<name>
+			simple = name.substring(dollar + 1);
+			numbered = true;
+		} else { // <outer>$<name>
+			outerDollar = dollar;
+			simple = name.substring(dollar + 1);
+			numbered = false;
+		}
+
+		Entry outer = numbered ? null : pool.getClass(name.substring(0, outerDollar));
+		return new InnerClass(thisClass, outer, simple == null ? null : pool.getUtf8(simple), flags);
+	}
+
+	/**
+	 * Defines the predefined attribute layouts of the current segment, and reads the layouts defined by the archive.
+	 *
+	 * @param count The amount of attribute definitions.
+	 * @throws IOException If there is an error reading the bands, or a definition is malformed.
+	 */
+	private void readAttributeDefinitions(int count) throws IOException {
+		for (int context = 0; context < AttributeLayout.CONTEXT_COUNT; context++) {
+			boolean high = (options & 1 << FLAGS_HI_SHIFT + context) != 0;
+			List<AttributeLayout> layouts = this.layouts.get(context);
+			layouts.clear();
+
+			for (int index = high ? INDEX_LIMIT_HI : INDEX_LIMIT; index > 0; index--) {
+				layouts.add(null);
+			}
+
+			defined[context] = 0;
+			flagMasks[context] = 0;
+			overflowMasks[context] = 1L << OVERFLOW;
+			define(context, OVERFLOW, ".Overflow", "");
+		}
+
+		sourceFileLayout = define(AttributeLayout.CLASS, 17, "SourceFile", "RUNH");
+		define(AttributeLayout.CLASS, 18, "EnclosingMethod", "RCHRDNH");
+		innerClassesLayout = define(AttributeLayout.CLASS, 23, "InnerClasses", "");
+		versionLayout = define(AttributeLayout.CLASS, 24, ".ClassFile.version", "HH");
+
+		constantValueLayout = define(AttributeLayout.FIELD, 17, "ConstantValue", "KQH");
+
+		codeLayout = define(AttributeLayout.METHOD, 17, "Code", "");
+		define(AttributeLayout.METHOD, 18, "Exceptions", "NH[RCH]");
+		define(AttributeLayout.METHOD, 23, "RuntimeVisibleParameterAnnotations", PARAMETER_ANNOTATIONS_LAYOUT);
+		define(AttributeLayout.METHOD, 24, "RuntimeInvisibleParameterAnnotations", PARAMETER_ANNOTATIONS_LAYOUT);
+		define(AttributeLayout.METHOD, 25, "AnnotationDefault", VALUE_LAYOUT);
+		define(AttributeLayout.METHOD, 26, "MethodParameters", "NB[RUNHFH]");
+
+		for (int context = AttributeLayout.CLASS; context <= AttributeLayout.METHOD; context++) {
+			define(context, 19, "Signature", "RSH");
+			define(context, 20, "Deprecated", "");
+			define(context, 21, "RuntimeVisibleAnnotations", ANNOTATIONS_LAYOUT);
+			define(context, 22, "RuntimeInvisibleAnnotations", ANNOTATIONS_LAYOUT);
+		}
+
+		define(AttributeLayout.CODE, 0, "StackMapTable", STACK_MAP_LAYOUT);
+		define(AttributeLayout.CODE, 1, "LineNumberTable", "NH[PHH]");
+		define(AttributeLayout.CODE, 2, "LocalVariableTable", LOCAL_VARIABLES_LAYOUT);
+		define(AttributeLayout.CODE, 3, "LocalVariableTypeTable", LOCAL_VARIABLES_LAYOUT);
+
+		for (int context = 0; context < AttributeLayout.CONTEXT_COUNT; context++) {
+			define(context, 27, "RuntimeVisibleTypeAnnotations", TYPE_ANNOTATIONS_LAYOUT);
+			define(context, 28, "RuntimeInvisibleTypeAnnotations", TYPE_ANNOTATIONS_LAYOUT);
+		}
+
+		attributeHeaders.read(input, count);
+		attributeNames.read(input, count);
+		attributeLayouts.read(input, count);
+
+		for (int definition = 0; definition < count; definition++) {
+			int header = attributeHeaders.next();
+			int context = header & 3, index = (header >> 2) - 1;
+			String name = pool.get(Entry.UTF8, attributeNames.next()).value;
+			String layout = pool.get(Entry.UTF8, attributeLayouts.next()).value;
+
+			AttributeLayout created = AttributeLayout.create(context, name, layout, false);
+			List<AttributeLayout> layouts = this.layouts.get(context);
+
+			if (index == -1) {
+				layouts.add(created);
+				continue;
+			} else if (index >= layouts.size()) {
+				throw new IOException("Attribute index " + index + " out of range for " + name + ".");
+			}
+
+			long bit = 1L << index;
+			if ((this.defined[context] & bit) != 0) {
+				throw new IOException("Attribute index " + index + " defined twice for " + name + ".");
+			}
+
+			this.defined[context] |= bit;
+			flagMasks[context] |= bit;
+			layouts.set(index, created);
+		}
+
+		for (int context = 0; context < AttributeLayout.CONTEXT_COUNT; context++) {
+			overflowMasks[context] &= ~defined[context];
+		}
+	}
+
+	/**
+	 * Writes the contents of the attributes of the specified holders to the heap, consuming the values of the bands
+	 * read by {@link #countAttributes}.
+	 *
+	 * @param context The attribute context.
+	 * @param holders The {@link AttributeHolder}s.
+	 * @throws IOException If a band is exhausted, or a value is out of range.
+	 */
+	private void readAttributes(int context, List<? extends AttributeHolder> holders) throws IOException {
+		for (AttributeHolder holder : holders) {
+			for (Attribute attribute : holder.attributes) {
+				AttributeLayout layout = attribute.layout;
+
+				if (layout == innerClassesLayout) {
+					readLocalInnerClasses((PackedClass) holder);
+					continue;
+				} else if (layout.isEmpty()) {
+					continue;
+				}
+
+				attribute.start = heap.size();
+				attribute.firstReference = heap.referenceCount();
+
+				int literal = layout == constantValueLayout ? literalTag((PackedMember) holder) : 0;
+				layout.unparse(heap, pool, literal, context == AttributeLayout.CODE ? (PackedCode) holder : null);
+
+				attribute.end = heap.size();
+				attribute.lastReference = heap.referenceCount();
+			}
+		}
+	}
+
+	/**
+	 * Reads the class bands, and the member and method body bands within them.
+	 *
+	 * @param count The amount of classes.
+	 * @throws IOException If there is an error reading the bands, or they are malformed.
+	 */
+	private void readClasses(int count) throws IOException {
+		classThis.read(input, count);
+		classSupers.read(input, count);
+		classInterfaceCounts.read(input, count);
+		classInterfaces.read(input, classInterfaceCounts.total());
+
+		for (int index = 0; index < count; index++) {
+			Entry thisClass = pool.get(Entry.CLASS, classThis.next());
+			Entry superClass = pool.get(Entry.CLASS, classSupers.next());
+			Entry[] interfaces = new Entry[classInterfaceCounts.next()];
+
+			for (int implemented = 0; implemented < interfaces.length; implemented++) {
+				interfaces[implemented] = pool.get(Entry.CLASS, classInterfaces.next());
+			}
+
+			PackedClass cls = new PackedClass(thisClass, superClass == thisClass ? null : superClass, interfaces);
+			cls.minorVersion = minorVersion;
+			cls.majorVersion = majorVersion;
+			classes.add(cls);
+		}
+
+		classFieldCounts.read(input, count);
+		classMethodCounts.read(input, count);
+
+		fieldDescriptors.read(input, classFieldCounts.total());
+		for (PackedClass cls : classes) {
+			cls.fields = readMembers(cls, classFieldCounts.next(), fieldDescriptors, fields);
+		}
+		countAttributes(AttributeLayout.FIELD, fields);
+		readAttributes(AttributeLayout.FIELD, fields);
+
+		methodDescriptors.read(input, classMethodCounts.total());
+		for (PackedClass cls : classes) {
+			cls.methods = readMembers(cls, classMethodCounts.next(), methodDescriptors, methods);
+		}
+		countAttributes(AttributeLayout.METHOD, methods);
+		readAttributes(AttributeLayout.METHOD, methods);
+
+		for (PackedMember method : methods) {
+			for (Attribute attribute : method.attributes) {
+				if (attribute.layout == codeLayout) {
+					method.code = new PackedCode(method);
+					codes.add(method.code);
+					break;
+				}
+			}
+		}
+
+		countAttributes(AttributeLayout.CLASS, classes);
+		readAttributes(AttributeLayout.CLASS, classes);
+		for (PackedClass cls : classes) {
+			readSpecialAttributes(cls);
+		}
+
+		readCodeHeaders();
+	}
+
+	/**
+	 * Reads the method body headers, exception handlers and method body attribute bands.
+	 *
+	 * @throws IOException If there is an error reading the bands, or they are malformed.
+	 */
+	private void readCodeHeaders() throws IOException {
+		int count = codes.size(), longForms = 0;
+		headers.read(input, count);
+
+		for (int index = 0; index < count; index++) {
+			if (headers.get(index) == 0) {
+				longForms++;
+			}
+		}
+
+		maxStacks.read(input, longForms);
+		maxLocals.read(input, longForms);
+		handlerCounts.read(input, longForms);
+
+		boolean allFlagged = (options & ALL_CODE_FLAGS) != 0;
+		int handlers = 0;
+
+		for (int index = 0; index < count; index++) {
+			PackedCode code = codes.get(index);
+			int header = headers.get(index), locals, handlerCount;
+
+			if (header == 0) {
+				code.maxStack = maxStacks.next();
+				locals = maxLocals.next();
+				handlerCount = handlerCounts.next();
+			} else {
+				int base, limit;
+				if (header < 145) {
+					handlerCount = 0;
+					base = 1;
+					limit = 12;
+				} else if (header < 209) {
+					handlerCount = 1;
+					base = 145;
+					limit = 8;
+				} else {
+					handlerCount = 2;
+					base = 209;
+					limit = 7;
+				}
+
+				code.maxStack = (header - base) % limit;
+				locals = (header - base) / limit;
+			}
+
+			if (header == 0 || allFlagged) {
+				flaggedCodes.add(code);
+			}
+
+			PackedMember method = code.method;
+			code.maxLocals = locals + method.descriptor.references[1].argumentSize()
+					+ ((method.flags & ACC_STATIC) != 0 ? 0 : 1);
+			code.handlers = new int[handlerCount * 3];
+			code.handlerClasses = new Entry[handlerCount];
+			handlers += handlerCount;
+		}
+
+		handlerStarts.read(input, handlers);
+		handlerEnds.read(input, handlers);
+		handlerCatches.read(input, handlers);
+		handlerClasses.read(input, handlers);
+
+		for (PackedCode code : codes) {
+			int[] triples = code.handlers;
+
+			for (int handler = 0; handler < code.handlerClasses.length; handler++) {
+				code.handlerClasses[handler] = nullable(Entry.CLASS, handlerClasses.next());
+				triples[handler * 3] = handlerStarts.next();
+				triples[handler * 3 + 1] = handlerEnds.next();
+				triples[handler * 3 + 2] = handlerCatches.next();
+			}
+		}
+
+		countAttributes(AttributeLayout.CODE, flaggedCodes);
+	}
+
+	/**
+	 * Reads the file bands, and writes each file (or the class it stands in for) to the specified
+	 * {@link JarOutputStream}, followed by the classes that have no file.
+	 *
+	 * @param output The JarOutputStream.
+	 * @param count The amount of files.
+	 * @throws IOException If there is an error reading the bands or file contents, or writing a file.
+	 */
+	private void readFiles(JarOutputStream output, int count) throws IOException {
+		boolean high = (options & FILE_SIZE_HI) != 0, modtimes = (options & FILE_MODTIME) != 0;
+		boolean optional = (options & FILE_OPTIONS) != 0;
+
+		fileNames.read(input, count);
+		fileSizesHi.read(input, high ? count : 0);
+		fileSizesLo.read(input, count);
+		fileModtimes.read(input, modtimes ? count : 0);
+		fileOptions.read(input, optional ? count : 0);
+
+		int nextClass = 0;
+		for (int index = 0; index < count; index++) {
+			String name = pool.get(Entry.UTF8, fileNames.next()).value;
+			long size = fileSizesLo.next() & 0xFFFFFFFFL;
+			if (high) {
+				size += (long) fileSizesHi.next() << 32;
+			}
+
+			int modtime = defaultModtime + (modtimes ? fileModtimes.next() : 0);
+			int options = defaultOptions | (optional ? fileOptions.next() : 0);
+
+			if ((options & FILE_STUB) == 0) {
+				writeFile(output, name, size, modtime, options);
+				continue;
+			} else if (nextClass == classes.size()) {
+				throw new IOException("Class stub " + name + " has no class.");
+			}
+
+			skip(size);
+			PackedClass cls = classes.get(nextClass++);
+			writeClass(output, name.isEmpty() ? cls.thisClass.string() + ".class" : name, modtime, options, cls);
+		}
+
+		while (nextClass < classes.size()) {
+			PackedClass cls = classes.get(nextClass++);
+			writeClass(output, cls.thisClass.string() + ".class", defaultModtime, FILE_STUB, cls);
+		}
+	}
+
+	/**
+	 * Reads the archive header of the current segment, then its band headers and constant pool.
+	 *
+	 * @return The amount of attribute definitions, inner classes, classes and files, in that order.
+	 * @throws IOException If there is an error reading the header, or it is malformed.
+	 */
+	private int[] readHeader() throws IOException {
+		int minor = Coding.UNSIGNED5.read(input), major = Coding.UNSIGNED5.read(input);
+		boolean supported = false;
+
+		for (int index = 0; index < VERSIONS.length; index += 2) {
+			supported |= VERSIONS[index] == major && VERSIONS[index + 1] == minor;
+		}
+
+		if (!supported) {
+			throw new IOException("Unsupported pack200 version " + major + "." + minor + ".");
+		}
+
+		options = Coding.UNSIGNED5.read(input);
+		if ((options & UNKNOWN_OPTIONS) != 0) {
+			throw new IOException("Unknown archive options " + Integer.toHexString(options) + ".");
+		}
+
+		int files = 0, bandHeaders = 0, definitions = 0;
+		defaultModtime = 0;
+
+		if ((options & FILE_HEADERS) != 0) {
+			Coding.UNSIGNED5.read(input); // The archive size is only needed to read past the archive.
+			Coding.UNSIGNED5.read(input);
+			Coding.UNSIGNED5.read(input); // Nor is the amount of following segments.
+			defaultModtime = Coding.UNSIGNED5.read(input);
+			files = Coding.UNSIGNED5.read(input);
+		}
+
+		if ((options & SPECIAL_FORMATS) != 0) {
+			bandHeaders = Coding.UNSIGNED5.read(input);
+			definitions = Coding.UNSIGNED5.read(input);
+		}
+
+		int[] counts = new int[Entry.TAG_COUNT];
+		for (int tag : Entry.TAGS_IN_ORDER) {
+			switch (tag) {
+				case Entry.INTEGER:
+				case Entry.FLOAT:
+				case Entry.LONG:
+				case Entry.DOUBLE:
+					if ((options & CP_NUMBERS) == 0) {
+						continue;
+					}
+					break;
+				case Entry.METHOD_HANDLE:
+				case Entry.METHOD_TYPE:
+				case Entry.BOOTSTRAP_METHOD:
+				case Entry.INVOKE_DYNAMIC:
+					if ((options & CP_EXTRAS) == 0) {
+						continue;
+					}
+					break;
+			}
+
+			counts[tag] = Coding.UNSIGNED5.read(input);
+		}
+
+		int innerClassCount = Coding.UNSIGNED5.read(input);
+		minorVersion = (short) Coding.UNSIGNED5.read(input);
+		majorVersion = (short) Coding.UNSIGNED5.read(input);
+		int classCount = Coding.UNSIGNED5.read(input);
+		defaultOptions = (options & DEFLATE_HINT) != 0 ? FILE_DEFLATE : 0;
+
+		byte[] headers = new byte[bandHeaders];
+		input.read(headers, 0, bandHeaders);
+		input.setMetaCodings(headers);
+
+		pool.read(input, counts);
+		return new int[] { definitions, innerClassCount, classCount, files };
+	}
+
+	/**
+	 * Reads the global inner class bands.
+	 *
+	 * @param count The amount of inner classes.
+	 * @throws IOException If there is an error reading the bands, or an inner class is malformed.
+	 */
+	private void readInnerClasses(int count) throws IOException {
+		icThisClasses.read(input, count);
+		icFlags.read(input, count);
+
+		int longForms = 0;
+		for (int index = 0; index < count; index++) {
+			if ((icFlags.get(index) & LONG_FORM) != 0) {
+				longForms++;
+			}
+		}
+
+		icOuterClasses.read(input, longForms);
+		icNames.read(input, longForms);
+
+		for (int index = 0; index < count; index++) {
+			Entry thisClass = pool.get(Entry.CLASS, icThisClasses.next());
+			int flags = icFlags.next();
+			InnerClass inner;
+
+			if ((flags & LONG_FORM) != 0) {
+				Entry outer = nullable(Entry.CLASS, icOuterClasses.next());
+				inner = new InnerClass(thisClass, outer, nullable(Entry.UTF8, icNames.next()), flags & ~LONG_FORM);
+			} else {
+				inner = parseInnerClass(thisClass, flags);
+			}
+
+			innerClasses.add(inner);
+			globalInnerClasses.put(thisClass, inner);
+		}
+	}
+
+	/**
+	 * Reads the local {@code InnerClasses} attribute of the specified class.
+	 *
+	 * @param cls The {@link PackedClass}.
+	 * @throws IOException If a band is exhausted, or a copied inner class is not a global one.
+	 */
+	private void readLocalInnerClasses(PackedClass cls) throws IOException {
+		int count = innerCounts.next();
+		List<InnerClass> local = new ArrayList<>(count);
+
+		for (int index = 0; index < count; index++) {
+			Entry thisClass = pool.get(Entry.CLASS, innerThisClasses.next());
+			int flags = innerFlags.next();
+
+			if (flags == 0) { // Copies the global inner class.
+				InnerClass global = globalInnerClasses.get(thisClass);
+				if (global == null) {
+					throw new IOException("Inner class " + thisClass.string() + " is not a global inner class.");
+				}
+
+				local.add(global);
+			} else {
+				Entry outer = nullable(Entry.CLASS, innerOuterClasses.next());
+				Entry name = nullable(Entry.UTF8, innerNames.next());
+				local.add(new InnerClass(thisClass, outer, name, flags == LONG_FORM ? 0 : flags));
+			}
+		}
+
+		cls.innerClasses = local;
+	}
+
+	/**
+	 * Reads the specified amount of members of a class.
+	 *
+	 * @param owner The {@link PackedClass} that declares the members.
+	 * @param count The amount of members.
+	 * @param descriptors The {@link Band} of name-and-type descriptors.
+	 * @param members The list of every member of the same kind in the segment, which the members are added to.
+	 * @return The {@link PackedMember}s.
+	 * @throws IOException If a band is exhausted, or a descriptor is out of range.
+	 */
+	private PackedMember[] readMembers(PackedClass owner, int count, Band descriptors, List<PackedMember> members)
+			throws IOException {
+		PackedMember[] declared = new PackedMember[count];
+		for (int index = 0; index < count; index++) {
+			declared[index] = new PackedMember(owner, pool.get(Entry.NAME_AND_TYPE, descriptors.next()));
+			members.add(declared[index]);
+		}
+
+		return declared;
+	}
+
+	/**
+	 * Applies the attributes of the specified class that are not written as they are: the class file version, and a
+	 * {@code SourceFile} attribute whose name is implied by the name of the class.
+	 *
+	 * @param cls The {@link PackedClass}.
+	 */
+	private void readSpecialAttributes(PackedClass cls) {
+		Attribute[] attributes = cls.attributes;
+		Attribute version = null;
+
+		for (Attribute attribute : attributes) {
+			if (attribute.layout == versionLayout && version == null) {
+				version = attribute;
+			} else if (attribute.layout == sourceFileLayout && attribute.firstReference == attribute.lastReference) {
+				attribute.start = heap.size();
+				attribute.firstReference = heap.referenceCount();
+				heap.addReference(pool.getUtf8(obviousSourceFile(cls.thisClass.string())), true);
+				attribute.end = heap.size();
+				attribute.lastReference = heap.referenceCount();
+			}
+		}
+
+		if (version == null) {
+			return;
+		}
+
+		byte[] bytes = heap.getBytes();
+		cls.minorVersion = (bytes[version.start] & 0xFF) << 8 | bytes[version.start + 1] & 0xFF;
+		cls.majorVersion = (bytes[version.start + 2] & 0xFF) << 8 | bytes[version.start + 3] & 0xFF;
+
+		Attribute[] remaining = new Attribute[attributes.length - 1];
+		for (int index = 0, position = 0; index < attributes.length; index++) {
+			if (attributes[index] != version) {
+				remaining[position++] = attributes[index];
+			}
+		}
+
+		cls.attributes = remaining;
+	}
+
+	/**
+	 * Skips the specified amount of file contents.
+	 *
+	 * @param length The amount of bytes.
+	 * @throws IOException If the archive ends first.
+	 */
+	private void skip(long length) throws IOException {
+		while (length > 0) {
+			int chunk = (int) Math.min(length, buffer.length);
+			input.read(buffer, 0, chunk);
+			length -= chunk;
+		}
+	}
+
+	/**
+	 * Reconstructs the specified class, and writes it to the {@link JarOutputStream}.
+	 *
+	 * @param output The JarOutputStream.
+	 * @param name The name of the file.
+	 * @param modtime The modification time of the file, in seconds.
+	 * @param options The options of the file.
+	 * @param cls The {@link PackedClass}.
+	 * @throws IOException If the class cannot be reconstructed, or there is an error writing it.
+	 */
+	private void writeClass(JarOutputStream output, String name, int modtime, int options, PackedClass cls)
+			throws IOException {
+		int length = writer.write(cls);
+		writeEntry(output, name, modtime, options, writer.getBytes(), length);
+	}
+
+	/**
+	 * Writes an entry with the specified contents to the {@link JarOutputStream}. The size of the entry is always
+	 * declared, so a {@link rs.emulate.lynx.pack.ClassCollector} can allocate exactly that much in its arena.
+	 *
+	 * @param output The JarOutputStream.
+	 * @param name The name of the entry.
+	 * @param modtime The modification time of the entry, in seconds.
+	 * @param options The options of the file, which decide whether it is deflated or stored.
+	 * @param bytes The buffer holding the contents.
+	 * @param length The length of the contents.
+	 * @throws IOException If there is an error writing the entry.
+	 */
+	private void writeEntry(JarOutputStream output, String name, int modtime, int options, byte[] bytes, int length)
+			throws IOException {
+		JarEntry entry = new JarEntry(name);
+		entry.setTime(modtime * 1000L);
+		entry.setSize(length);
+
+		if ((options & FILE_DEFLATE) == 0) {
+			crc.reset();
+			crc.update(bytes, 0, length);
+
+			entry.setMethod(ZipEntry.STORED);
+			entry.setCrc(crc.getValue());
+		} else {
+			entry.setMethod(ZipEntry.DEFLATED);
+		}
+
+		output.putNextEntry(entry);
+		output.write(bytes, 0, length);
+		output.closeEntry();
+	}
+
+	/**
+	 * Copies a file from the archive to the {@link JarOutputStream}. Deflated files are streamed; stored files are
+	 * buffered, as their checksum must precede their contents.
+	 *
+	 * @param output The JarOutputStream.
+	 * @param name The name of the file.
+	 * @param size The size of the file.
+	 * @param modtime The modification time of the file, in seconds.
+	 * @param options The options of the file.
+	 * @throws IOException If there is an error reading or writing the file.
+	 */
+	private void writeFile(JarOutputStream output, String name, long size, int modtime, int options)
+			throws IOException {
+		if ((options & FILE_DEFLATE) == 0) {
+			if (size > Integer.MAX_VALUE - 8) {
+				throw new IOException("Stored file " + name + " is too large.");
+			} else if (size > buffer.length) {
+				buffer = new byte[(int) size];
+			}
+
+			input.read(buffer, 0, (int) size);
+			writeEntry(output, name, modtime, options, buffer, (int) size);
+			return;
+		}
+
+		JarEntry entry = new JarEntry(name);
+		entry.setTime(modtime * 1000L);
+		entry.setMethod(ZipEntry.DEFLATED);
+		entry.setSize(size);
+		output.putNextEntry(entry);
+
+		for (long remaining = size; remaining > 0;) {
+			int chunk = (int) Math.min(remaining, buffer.length);
+			input.read(buffer, 0, chunk);
+			output.write(buffer, 0, chunk);
+			remaining -= chunk;
+		}
+
+		output.closeEntry();
+	}
+
+}
@@ -0,0 +1,4 @@
+/**
+ * Contains classes for decoding the bands of pack200 archives directly into class files.
+ */
+package rs.emulate.lynx.pack.band;
\ No newline at end of file
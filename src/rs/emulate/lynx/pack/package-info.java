@@ -0,0 +1,4 @@
+/**
+ * Contains classes for packing and unpacking pack200 archives.
+ */
+package rs.emulate.lynx.pack;
\ No newline at end of file
@@ -0,0 +1,383 @@
+package rs.emulate.lynx.pipeline;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * A bounded, single-writer single-reader pipe between two threads. Data is passed through a fixed set of chunks that
+ * are recycled once they have been read: when every chunk is full, the writer blocks until the reader catches up, so
+ * the amount of memory used by the pipe never grows.
+ * <p>
+ * The time each side spends blocked waiting for the other is recorded, so that a slow stage can be identified.
+ *
+ * @author Major
+ */
+public final class Pipe {
+
+	/**
+	 * A chunk of data in the pipe.
+	 */
+	private static final class Chunk {
+
+		/**
+		 * The data of this chunk.
+		 */
+		private final byte[] data;
+
+		/**
+		 * The amount of bytes of data in this chunk.
+		 */
+		private int length;
+
+		/**
+		 * Creates the Chunk.
+		 *
+		 * @param size The size of the chunk, in bytes.
+		 */
+		private Chunk(int size) {
+			data = new byte[size];
+		}
+
+	}
+
+	/**
+	 * The reading side of the pipe.
+	 */
+	private final class Source extends InputStream {
+
+		/**
+		 * The chunk being read, or {@code null} if a new chunk must be taken.
+		 */
+		private Chunk current;
+
+		/**
+		 * Whether or not the end of the pipe has been reached.
+		 */
+		private boolean finished;
+
+		/**
+		 * The position in the current chunk.
+		 */
+		private int position;
+
+		@Override
+		public void close() {
+			abort();
+		}
+
+		@Override
+		public int read() throws IOException {
+			if (!next()) {
+				return -1;
+			}
+
+			int value = current.data[position++] & 0xFF;
+			release();
+			return value;
+		}
+
+		@Override
+		public int read(byte[] bytes, int offset, int length) throws IOException {
+			if (length == 0) {
+				return 0;
+			} else if (!next()) {
+				return -1;
+			}
+
+			int count = Math.min(length, current.length - position);
+			System.arraycopy(current.data, position, bytes, offset, count);
+			position += count;
+
+			release();
+			return count;
+		}
+
+		/**
+		 * Ensures that there is a chunk to read from, taking the next one if necessary.
+		 *
+		 * @return {@code true} if there is data to read, {@code false} if the end of the pipe has been reached.
+		 * @throws IOException If the writer failed, or if the current thread was interrupted.
+		 */
+		private boolean next() throws IOException {
+			if (finished) {
+				return false;
+			} else if (current != null) {
+				return true;
+			}
+
+			Chunk chunk = take(full, true);
+			if (chunk == END) {
+				finished = true;
+
+				Throwable cause = failure;
+				if (cause != null) {
+					throw new IOException("The " + name + " pipe's writer failed.", cause);
+				}
+
+				return false;
+			}
+
+			current = chunk;
+			position = 0;
+			return true;
+		}
+
+		/**
+		 * Returns the current chunk to the writer, if it has been read completely.
+		 */
+		private void release() {
+			if (position == current.length) {
+				free.offer(current);
+				current = null;
+			}
+		}
+
+	}
+
+	/**
+	 * The writing side of the pipe.
+	 */
+	private final class Sink extends OutputStream {
+
+		/**
+		 * Whether or not this sink has been closed.
+		 */
+		private boolean closed;
+
+		/**
+		 * The chunk being written, or {@code null} if a new chunk must be taken.
+		 */
+		private Chunk current;
+
+		@Override
+		public void close() throws IOException {
+			if (closed) {
+				return;
+			}
+
+			flush();
+			closed = true;
+			full.offer(END); // There is always room, as the queue can hold every chunk and the end marker.
+		}
+
+		@Override
+		public void flush() throws IOException {
+			if (current != null && current.length > 0) {
+				put(current);
+				current = null;
+			}
+		}
+
+		@Override
+		public void write(byte[] bytes, int offset, int length) throws IOException {
+			while (length > 0) {
+				if (current == null) {
+					current = acquire();
+				}
+
+				int count = Math.min(length, current.data.length - current.length);
+				System.arraycopy(bytes, offset, current.data, current.length, count);
+				current.length += count;
+				offset += count;
+				length -= count;
+
+				if (current.length == current.data.length) {
+					put(current);
+					current = null;
+				}
+			}
+		}
+
+		@Override
+		public void write(int value) throws IOException {
+			write(new byte[] { (byte) value }, 0, 1);
+		}
+
+		/**
+		 * Takes an empty chunk, blocking until the reader has released one.
+		 *
+		 * @return The chunk.
+		 * @throws IOException If the reader has closed the pipe, or if the current thread was interrupted.
+		 */
+		private Chunk acquire() throws IOException {
+			if (closed) {
+				throw new IOException("The " + name + " pipe has been closed.");
+			}
+
+			Chunk chunk = take(free, false);
+			if (aborted) {
+				throw new IOException("The " + name + " pipe was closed by its reader.");
+			}
+
+			chunk.length = 0;
+			return chunk;
+		}
+
+		/**
+		 * Passes the specified chunk to the reader.
+		 *
+		 * @param chunk The chunk.
+		 * @throws IOException If the reader has closed the pipe.
+		 */
+		private void put(Chunk chunk) throws IOException {
+			if (aborted) {
+				throw new IOException("The " + name + " pipe was closed by its reader.");
+			}
+
+			full.offer(chunk); // Never blocks, as the queue can hold every chunk.
+		}
+
+	}
+
+	/**
+	 * The marker chunk indicating the end of the pipe (or that the reader has closed it).
+	 */
+	private static final Chunk END = new Chunk(0);
+
+	/**
+	 * Whether or not the reader has closed this pipe.
+	 */
+	private volatile boolean aborted;
+
+	/**
+	 * The failure of the writer, or {@code null} if it has not failed.
+	 */
+	private volatile Throwable failure;
+
+	/**
+	 * The BlockingQueue of empty chunks, waiting to be written.
+	 */
+	private final BlockingQueue<Chunk> free;
+
+	/**
+	 * The BlockingQueue of full chunks, waiting to be read.
+	 */
+	private final BlockingQueue<Chunk> full;
+
+	/**
+	 * The name of this pipe.
+	 */
+	private final String name;
+
+	/**
+	 * The time the reader has spent waiting for data, in nanoseconds.
+	 */
+	private volatile long readerIdle;
+
+	/**
+	 * The reading side of this pipe.
+	 */
+	private final Source source = new Source();
+
+	/**
+	 * The writing side of this pipe.
+	 */
+	private final Sink sink = new Sink();
+
+	/**
+	 * The time the writer has spent waiting for an empty chunk, in nanoseconds.
+	 */
+	private volatile long writerIdle;
+
+	/**
+	 * Creates the Pipe.
+	 *
+	 * @param name The name of the pipe, for error messages.
+	 * @param chunks The amount of chunks in the pipe.
+	 * @param size The size of each chunk, in bytes.
+	 */
+	public Pipe(String name, int chunks, int size) {
+		this.name = name;
+		free = new ArrayBlockingQueue<>(chunks + 1);
+		full = new ArrayBlockingQueue<>(chunks + 1);
+
+		for (int index = 0; index < chunks; index++) {
+			free.add(new Chunk(size));
+		}
+	}
+
+	/**
+	 * Closes this pipe from the reading side, causing any further writes to fail.
+	 */
+	public void abort() {
+		aborted = true;
+		free.offer(END); // Wake the writer, if it is waiting for a chunk.
+	}
+
+	/**
+	 * Closes this pipe from the writing side, due to the specified failure. The reader will receive an
+	 * {@link IOException} caused by the failure once it has read the data already written.
+	 *
+	 * @param cause The cause of the failure.
+	 */
+	public void fail(Throwable cause) {
+		failure = cause;
+		full.offer(END);
+	}
+
+	/**
+	 * Gets the time the reader has spent waiting for data, in nanoseconds.
+	 *
+	 * @return The time.
+	 */
+	public long getReaderIdle() {
+		return readerIdle;
+	}
+
+	/**
+	 * Gets the reading side of this pipe. Closing it closes the pipe, causing any further writes to fail.
+	 *
+	 * @return The {@link InputStream}.
+	 */
+	public InputStream getSource() {
+		return source;
+	}
+
+	/**
+	 * Gets the writing side of this pipe. Closing it marks the end of the data.
+	 *
+	 * @return The {@link OutputStream}.
+	 */
+	public OutputStream getSink() {
+		return sink;
+	}
+
+	/**
+	 * Gets the time the writer has spent waiting for an empty chunk, in nanoseconds.
+	 *
+	 * @return The time.
+	 */
+	public long getWriterIdle() {
+		return writerIdle;
+	}
+
+	/**
+	 * Takes a chunk from the specified queue, recording the time spent waiting.
+	 *
+	 * @param queue The {@link BlockingQueue} to take from.
+	 * @param reader Whether the reader (rather than the writer) is waiting.
+	 * @return The chunk.
+	 * @throws IOException If the current thread was interrupted.
+	 */
+	private Chunk take(BlockingQueue<Chunk> queue, boolean reader) throws IOException {
+		long start = System.nanoTime();
+
+		try {
+			return queue.take();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while waiting on the " + name + " pipe.", e);
+		} finally {
+			long idle = System.nanoTime() - start;
+			if (reader) {
+				readerIdle += idle;
+			} else {
+				writerIdle += idle;
+			}
+		}
+	}
+
+}
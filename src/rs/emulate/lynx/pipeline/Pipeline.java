@@ -0,0 +1,279 @@
+package rs.emulate.lynx.pipeline;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A sequence of stages that transform a stream of data, each of which runs on its own thread. Adjacent stages are
+ * connected by a bounded {@link Pipe}, so a fast stage is held back by a slow one rather than buffering without limit.
+ * <p>
+ * The output of the final stage is consumed on the calling thread, via the {@link InputStream} returned by
+ * {@link #start}. Once it has been consumed, {@link #await} waits for the stages to finish, and {@link #report} prints
+ * how long each stage spent running and how long it spent idle (waiting on the stage before or after it).
+ *
+ * @author Major
+ */
+public final class Pipeline {
+
+	/**
+	 * A single stage of the pipeline.
+	 */
+	@FunctionalInterface
+	public interface Stage {
+
+		/**
+		 * Runs this stage, transforming the data read from the specified {@link InputStream} and writing it to the
+		 * {@link OutputStream}. Neither stream should be closed.
+		 *
+		 * @param input The InputStream.
+		 * @param output The OutputStream.
+		 * @throws Exception If there is an error running the stage.
+		 */
+		void run(InputStream input, OutputStream output) throws Exception;
+
+	}
+
+	/**
+	 * A stage that has been added to the pipeline, along with its thread and timings.
+	 */
+	private static final class Worker implements Runnable {
+
+		/**
+		 * The time this stage took, in nanoseconds.
+		 */
+		private volatile long elapsed;
+
+		/**
+		 * The failure of this stage, or {@code null} if it has not failed.
+		 */
+		private volatile Throwable failure;
+
+		/**
+		 * The InputStream this stage reads from.
+		 */
+		private final InputStream input;
+
+		/**
+		 * The Pipe this stage reads from, or {@code null} if it is the first stage.
+		 */
+		private final Pipe inputPipe;
+
+		/**
+		 * The name of this stage.
+		 */
+		private final String name;
+
+		/**
+		 * The Pipe this stage writes to.
+		 */
+		private final Pipe output;
+
+		/**
+		 * The Stage.
+		 */
+		private final Stage stage;
+
+		/**
+		 * The Thread this stage runs on.
+		 */
+		private final Thread thread;
+
+		/**
+		 * Creates the Worker.
+		 *
+		 * @param name The name of the stage.
+		 * @param stage The {@link Stage}.
+		 * @param input The {@link InputStream} to read from.
+		 * @param inputPipe The {@link Pipe} to read from, or {@code null} if this is the first stage.
+		 * @param output The Pipe to write to.
+		 */
+		private Worker(String name, Stage stage, InputStream input, Pipe inputPipe, Pipe output) {
+			this.name = name;
+			this.stage = stage;
+			this.input = input;
+			this.inputPipe = inputPipe;
+			this.output = output;
+
+			thread = new Thread(this, "Pipeline-" + name);
+			thread.setDaemon(true);
+		}
+
+		/**
+		 * Gets the time this stage spent idle, in nanoseconds.
+		 *
+		 * @return The time.
+		 */
+		private long getIdle() {
+			long idle = output.getWriterIdle();
+			return (inputPipe == null) ? idle : idle + inputPipe.getReaderIdle();
+		}
+
+		@Override
+		public void run() {
+			long start = System.nanoTime();
+
+			try {
+				OutputStream sink = output.getSink();
+				stage.run(input, sink);
+				sink.close();
+
+				if (inputPipe != null) { // Drain anything the stage didn't need, so the previous stage can finish.
+					byte[] buffer = new byte[DRAIN_BUFFER_SIZE];
+					while (input.read(buffer, 0, buffer.length) != -1) {
+						// Discard the remaining data.
+					}
+				}
+			} catch (Throwable t) {
+				failure = t;
+				output.fail(t);
+
+				if (inputPipe != null) {
+					inputPipe.abort(); // Stop the previous stage, which would otherwise block writing to this one.
+				}
+			} finally {
+				elapsed = System.nanoTime() - start;
+			}
+		}
+
+	}
+
+	/**
+	 * The size of the buffer used when draining the input of a stage that has finished, in bytes.
+	 */
+	private static final int DRAIN_BUFFER_SIZE = 8 * 1024;
+
+	/**
+	 * The amount of chunks in each pipe.
+	 */
+	private final int chunks;
+
+	/**
+	 * The size of each chunk, in bytes.
+	 */
+	private final int chunkSize;
+
+	/**
+	 * The InputStream read by the first stage.
+	 */
+	private final InputStream source;
+
+	/**
+	 * The List of stages, in order.
+	 */
+	private final List<Worker> workers = new ArrayList<>();
+
+	/**
+	 * Creates the Pipeline.
+	 *
+	 * @param source The {@link InputStream} read by the first stage. It is not closed by the pipeline.
+	 * @param chunks The amount of chunks in the pipe between each stage.
+	 * @param chunkSize The size of each chunk, in bytes.
+	 */
+	public Pipeline(InputStream source, int chunks, int chunkSize) {
+		this.source = source;
+		this.chunks = chunks;
+		this.chunkSize = chunkSize;
+	}
+
+	/**
+	 * Adds a stage to the end of this pipeline.
+	 *
+	 * @param name The name of the stage.
+	 * @param stage The {@link Stage}.
+	 * @return This Pipeline.
+	 */
+	public Pipeline add(String name, Stage stage) {
+		Pipe previous = workers.isEmpty() ? null : workers.get(workers.size() - 1).output;
+		InputStream input = (previous == null) ? source : previous.getSource();
+
+		workers.add(new Worker(name, stage, input, previous, new Pipe(name, chunks, chunkSize)));
+		return this;
+	}
+
+	/**
+	 * Closes the output of the final stage, causing every stage to stop (with an error) if it has not yet finished.
+	 * Used when the output will not be consumed, e.g. because the consumer failed.
+	 */
+	public void abort() {
+		if (!workers.isEmpty()) {
+			workers.get(workers.size() - 1).output.abort();
+		}
+	}
+
+	/**
+	 * Waits for every stage to finish, rethrowing the first failure (in pipeline order).
+	 *
+	 * @throws IOException If a stage failed, or if the current thread was interrupted.
+	 */
+	public void await() throws IOException {
+		try {
+			for (Worker worker : workers) {
+				worker.thread.join();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while waiting for the pipeline to finish.", e);
+		}
+
+		for (Worker worker : workers) {
+			Throwable cause = worker.failure;
+			if (cause instanceof IOException) {
+				throw (IOException) cause;
+			} else if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			} else if (cause != null) {
+				throw new IOException("The " + worker.name + " stage failed.", cause);
+			}
+		}
+	}
+
+	/**
+	 * Prints how long each stage ran for, and how long it spent idle. The final line describes the consumer, i.e. the
+	 * thread that read the output of the pipeline.
+	 *
+	 * @param consumer The name of the consumer.
+	 * @param elapsed The time the consumer took, in nanoseconds.
+	 */
+	public void report(String consumer, long elapsed) {
+		for (Worker worker : workers) {
+			print(worker.name, worker.elapsed, worker.getIdle());
+		}
+
+		if (!workers.isEmpty()) {
+			print(consumer, elapsed, workers.get(workers.size() - 1).output.getReaderIdle());
+		}
+	}
+
+	/**
+	 * Starts every stage.
+	 *
+	 * @return The {@link InputStream} of the output of the final stage. Closing it aborts the pipeline.
+	 */
+	public InputStream start() {
+		if (workers.isEmpty()) {
+			return source;
+		}
+
+		for (Worker worker : workers) {
+			worker.thread.start();
+		}
+
+		return workers.get(workers.size() - 1).output.getSource();
+	}
+
+	/**
+	 * Prints the timings of a single stage.
+	 *
+	 * @param name The name of the stage.
+	 * @param elapsed The time the stage took, in nanoseconds.
+	 * @param idle The time the stage spent idle, in nanoseconds.
+	 */
+	private void print(String name, long elapsed, long idle) {
+		System.out.println(String.format("Stage %s: ran for %.2fs, idle for %.2fs.", name, (elapsed - idle) / 1e9,
+				idle / 1e9));
+	}
+
+}
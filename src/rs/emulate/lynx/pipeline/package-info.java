@@ -0,0 +1,4 @@
+/**
+ * Contains classes for running a sequence of stream transformations concurrently.
+ */
+package rs.emulate.lynx.pipeline;
\ No newline at end of file
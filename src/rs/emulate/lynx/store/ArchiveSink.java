@@ -0,0 +1,88 @@
+package rs.emulate.lynx.store;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+
+import rs.emulate.lynx.output.OutputSink;
+
+/**
+ * An {@link OutputSink} that adds the classes of a revision to a {@link RevisionArchive}. Deltas can only be encoded
+ * once the whole revision is known, so the classes are collected as they are written to the sink, and then encoded
+ * concurrently when it finishes.
+ *
+ * @author Major
+ */
+public final class ArchiveSink implements OutputSink {
+
+	/**
+	 * The RevisionArchive.
+	 */
+	private final RevisionArchive archive;
+
+	/**
+	 * The Map of class names to the ByteBuffers containing the classes.
+	 */
+	private final Map<String, ByteBuffer> classes = new TreeMap<>();
+
+	/**
+	 * The ForkJoinPool classes are encoded on.
+	 */
+	private final ForkJoinPool pool;
+
+	/**
+	 * The name of the revision.
+	 */
+	private final String revision;
+
+	/**
+	 * Creates the ArchiveSink.
+	 *
+	 * @param archive The {@link RevisionArchive} to add the revision to.
+	 * @param revision The name of the revision.
+	 * @param pool The {@link ForkJoinPool} to encode classes on.
+	 */
+	public ArchiveSink(RevisionArchive archive, String revision, ForkJoinPool pool) {
+		this.archive = archive;
+		this.revision = revision;
+		this.pool = pool;
+	}
+
+	@Override
+	public void finish() throws IOException {
+		long start = System.nanoTime();
+		Map<String, byte[]> data = new TreeMap<>();
+
+		for (Map.Entry<String, ByteBuffer> entry : classes.entrySet()) {
+			ByteBuffer buffer = entry.getValue();
+			byte[] bytes = new byte[buffer.remaining()];
+			buffer.get(bytes);
+			data.put(entry.getKey(), bytes);
+		}
+
+		Path path = archive.add(revision, data, pool);
+		if (path == null) {
+			System.out.println("Revision " + revision + " is already archived.");
+			return;
+		}
+
+		double elapsed = (System.nanoTime() - start) / 1e9;
+		System.out.println(String.format("Archived revision %s in %.2fs (%d KiB).", revision, elapsed,
+				Files.size(path) / 1024));
+	}
+
+	@Override
+	public String getName() {
+		return "archive";
+	}
+
+	@Override
+	public void write(String name, ByteBuffer data) {
+		classes.put(name, data.duplicate());
+	}
+
+}
@@ -0,0 +1,295 @@
+package rs.emulate.lynx.store;
+
+import java.io.ByteArrayOutputStream;
+
+/**
+ * Encodes and applies binary deltas between two versions of a class. A delta is a sequence of operations that either
+ * copy a range of bytes from the base version or insert literal bytes, so a class that only gained a constant or
+ * changed a few instructions is encoded as a few copies of the unchanged constant pool and code around a small
+ * insertion.
+ * <p>
+ * Matches are found by indexing the base version in blocks of {@link #BLOCK_SIZE} bytes with a rolling hash, then
+ * extending each match in both directions. A delta starts with the length of the target as a variable-length integer,
+ * followed by the operations, each of which is a tag byte followed by variable-length integers:
+ * <ul>
+ * <li>{@code COPY offset length}: copies {@code length} bytes of the base from {@code offset}.</li>
+ * <li>{@code INSERT length bytes...}: inserts the {@code length} bytes that follow.</li>
+ * </ul>
+ *
+ * @author Major
+ */
+public final class Delta {
+
+	/**
+	 * The size of the blocks the base version is indexed in, which is also the shortest match that is copied.
+	 */
+	public static final int BLOCK_SIZE = 16;
+
+	/**
+	 * The tag of a copy operation.
+	 */
+	private static final int COPY = 0;
+
+	/**
+	 * The multiplier of the rolling hash.
+	 */
+	private static final int HASH_MULTIPLIER = 31;
+
+	/**
+	 * The value the byte leaving the window is multiplied by when the rolling hash is updated:
+	 * {@code HASH_MULTIPLIER ^ BLOCK_SIZE}.
+	 */
+	private static final int HASH_REMOVAL;
+
+	/**
+	 * The tag of an insert operation.
+	 */
+	private static final int INSERT = 1;
+
+	static {
+		int removal = 1;
+		for (int index = 0; index < BLOCK_SIZE; index++) {
+			removal *= HASH_MULTIPLIER;
+		}
+
+		HASH_REMOVAL = removal;
+	}
+
+	/**
+	 * Applies the specified delta to the specified base version.
+	 *
+	 * @param base The base version.
+	 * @param delta The delta, as returned by {@link #encode}.
+	 * @return The target version.
+	 * @throws IllegalArgumentException If the delta is malformed, or was not encoded against the base version.
+	 */
+	public static byte[] apply(byte[] base, byte[] delta) {
+		int[] position = { 0 };
+		byte[] target = new byte[readVarInt(delta, position)];
+		int written = 0;
+
+		while (position[0] < delta.length) {
+			int tag = delta[position[0]++];
+
+			if (tag == COPY) {
+				int offset = readVarInt(delta, position);
+				int length = readVarInt(delta, position);
+				check(offset, length, base.length, written, target.length);
+				System.arraycopy(base, offset, target, written, length);
+				written += length;
+			} else if (tag == INSERT) {
+				int length = readVarInt(delta, position);
+				int offset = position[0];
+				check(offset, length, delta.length, written, target.length);
+				System.arraycopy(delta, offset, target, written, length);
+				position[0] += length;
+				written += length;
+			} else {
+				throw new IllegalArgumentException("Unrecognised delta operation " + tag + ".");
+			}
+		}
+
+		if (written != target.length) {
+			throw new IllegalArgumentException("Delta produced " + written + " bytes, expected " + target.length + ".");
+		}
+
+		return target;
+	}
+
+	/**
+	 * Encodes the delta from the specified base version to the specified target version.
+	 *
+	 * @param base The base version.
+	 * @param target The target version.
+	 * @return The delta.
+	 */
+	public static byte[] encode(byte[] base, byte[] target) {
+		ByteArrayOutputStream delta = new ByteArrayOutputStream(Math.max(32, target.length / 8));
+		writeVarInt(delta, target.length);
+
+		int[] index = index(base);
+		int mask = index.length - 1;
+		int literal = 0; // The start of the bytes that have not yet been copied or inserted.
+		int position = 0;
+		int hash = (target.length >= BLOCK_SIZE) ? hash(target, 0) : 0;
+
+		while (position + BLOCK_SIZE <= target.length) {
+			int candidate = (index.length == 0) ? -1 : index[hash & mask] - 1;
+
+			if (candidate >= 0 && matches(base, candidate, target, position)) {
+				int start = position;
+				int source = candidate;
+				while (start > literal && source > 0 && base[source - 1] == target[start - 1]) {
+					start--;
+					source--;
+				}
+
+				int end = position + BLOCK_SIZE;
+				int sourceEnd = candidate + BLOCK_SIZE;
+				while (end < target.length && sourceEnd < base.length && base[sourceEnd] == target[end]) {
+					end++;
+					sourceEnd++;
+				}
+
+				writeInsert(delta, target, literal, start);
+				delta.write(COPY);
+				writeVarInt(delta, source);
+				writeVarInt(delta, end - start);
+
+				literal = position = end;
+				if (position + BLOCK_SIZE <= target.length) {
+					hash = hash(target, position);
+				}
+			} else {
+				if (position + BLOCK_SIZE < target.length) {
+					hash = hash * HASH_MULTIPLIER + target[position + BLOCK_SIZE] - target[position] * HASH_REMOVAL;
+				}
+
+				position++;
+			}
+		}
+
+		writeInsert(delta, target, literal, target.length);
+		return delta.toByteArray();
+	}
+
+	/**
+	 * Checks that an operation reads from and writes to valid ranges.
+	 *
+	 * @param offset The offset the operation reads from.
+	 * @param length The length of the operation.
+	 * @param available The length of the array the operation reads from.
+	 * @param written The amount of bytes of the target written so far.
+	 * @param size The size of the target.
+	 * @throws IllegalArgumentException If either range is invalid.
+	 */
+	private static void check(int offset, int length, int available, int written, int size) {
+		if (offset < 0 || length < 0 || offset > available - length || written > size - length) {
+			throw new IllegalArgumentException("Delta operation out of bounds (offset " + offset + ", length " + length
+					+ ").");
+		}
+	}
+
+	/**
+	 * Computes the hash of the block starting at the specified offset.
+	 *
+	 * @param data The data.
+	 * @param offset The offset of the block.
+	 * @return The hash.
+	 */
+	private static int hash(byte[] data, int offset) {
+		int hash = 0;
+		for (int index = offset; index < offset + BLOCK_SIZE; index++) {
+			hash = hash * HASH_MULTIPLIER + data[index];
+		}
+
+		return hash;
+	}
+
+	/**
+	 * Indexes the blocks of the specified base version, returning a direct-mapped table of block offsets (plus one,
+	 * so that zero marks an empty slot) indexed by hash. Later blocks replace earlier ones with the same hash.
+	 *
+	 * @param base The base version.
+	 * @return The table, whose length is a power of two (or zero, if the base is shorter than a block).
+	 */
+	private static int[] index(byte[] base) {
+		int blocks = base.length / BLOCK_SIZE;
+		if (blocks == 0) {
+			return new int[0];
+		}
+
+		int[] index = new int[Integer.highestOneBit(blocks * 2 - 1) << 1];
+		int mask = index.length - 1;
+
+		for (int block = 0; block < blocks; block++) {
+			int offset = block * BLOCK_SIZE;
+			index[hash(base, offset) & mask] = offset + 1;
+		}
+
+		return index;
+	}
+
+	/**
+	 * Returns whether or not the blocks starting at the specified offsets are equal.
+	 *
+	 * @param base The base version.
+	 * @param source The offset of the block in the base version.
+	 * @param target The target version.
+	 * @param position The offset of the block in the target version.
+	 * @return {@code true} if the blocks are equal, {@code false} if not.
+	 */
+	private static boolean matches(byte[] base, int source, byte[] target, int position) {
+		for (int index = 0; index < BLOCK_SIZE; index++) {
+			if (base[source + index] != target[position + index]) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	/**
+	 * Reads a variable-length integer.
+	 *
+	 * @param data The data to read from.
+	 * @param position The single-element array containing the position to read from, which is advanced.
+	 * @return The integer.
+	 * @throws IllegalArgumentException If the integer is truncated or too long.
+	 */
+	private static int readVarInt(byte[] data, int[] position) {
+		int value = 0;
+		for (int shift = 0; shift < Integer.SIZE; shift += 7) {
+			if (position[0] >= data.length) {
+				throw new IllegalArgumentException("Truncated delta.");
+			}
+
+			int next = data[position[0]++];
+			value |= (next & 0x7F) << shift;
+			if ((next & 0x80) == 0) {
+				return value;
+			}
+		}
+
+		throw new IllegalArgumentException("Malformed variable-length integer in delta.");
+	}
+
+	/**
+	 * Writes an insert operation containing the specified range of the target, if the range is not empty.
+	 *
+	 * @param delta The {@link ByteArrayOutputStream} of the delta.
+	 * @param target The target version.
+	 * @param start The start of the range (inclusive).
+	 * @param end The end of the range (exclusive).
+	 */
+	private static void writeInsert(ByteArrayOutputStream delta, byte[] target, int start, int end) {
+		if (start < end) {
+			delta.write(INSERT);
+			writeVarInt(delta, end - start);
+			delta.write(target, start, end - start);
+		}
+	}
+
+	/**
+	 * Writes a non-negative variable-length integer, seven bits per byte.
+	 *
+	 * @param delta The {@link ByteArrayOutputStream} of the delta.
+	 * @param value The integer.
+	 */
+	private static void writeVarInt(ByteArrayOutputStream delta, int value) {
+		while ((value & ~0x7F) != 0) {
+			delta.write((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+
+		delta.write(value);
+	}
+
+	/**
+	 * Sole private constructor to prevent instantiation.
+	 */
+	private Delta() {
+
+	}
+
+}
@@ -0,0 +1,227 @@
+package rs.emulate.lynx.store;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import rs.emulate.lynx.output.HashManifest;
+import rs.emulate.lynx.output.OutputSink;
+
+/**
+ * A content-addressed store of classes. Each distinct class is stored once, as an object named by its SHA-256 hash,
+ * and each revision is stored as a {@link HashManifest} of class names to hashes; a class that is unchanged between
+ * revisions therefore takes no additional space.
+ * <p>
+ * Objects are stored under {@code objects/}, in a directory named by the first two digits of their hash (so that no
+ * directory grows too large), and manifests are stored under {@code revisions/}. The store can be written to by
+ * several threads at once.
+ *
+ * @author Major
+ */
+public final class ObjectStore {
+
+	/**
+	 * The extension of revision manifests.
+	 */
+	private static final String MANIFEST_EXTENSION = ".sha256";
+
+	/**
+	 * The length of the names of the directories that objects are sharded into.
+	 */
+	private static final int SHARD_LENGTH = 2;
+
+	/**
+	 * Moves the specified temporary file to the specified {@link Path}, atomically if supported.
+	 *
+	 * @param temporary The Path of the temporary file.
+	 * @param path The Path to move the file to.
+	 * @throws IOException If the file could not be moved.
+	 */
+	private static void move(Path temporary, Path path) throws IOException {
+		try {
+			Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (AtomicMoveNotSupportedException e) {
+			Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+
+	/**
+	 * The directory the objects are stored in.
+	 */
+	private final Path objects;
+
+	/**
+	 * The directory the revision manifests are stored in.
+	 */
+	private final Path revisions;
+
+	/**
+	 * Opens the ObjectStore, creating its directories if they do not exist.
+	 *
+	 * @param root The {@link Path} to the root directory of the store.
+	 * @throws IOException If the directories could not be created.
+	 */
+	public ObjectStore(Path root) throws IOException {
+		this.objects = Files.createDirectories(root.resolve("objects"));
+		this.revisions = Files.createDirectories(root.resolve("revisions"));
+	}
+
+	/**
+	 * Returns whether or not this store contains the object with the specified hash.
+	 *
+	 * @param hash The hash of the object.
+	 * @return {@code true} if the object is stored, {@code false} if not.
+	 */
+	public boolean contains(String hash) {
+		return Files.exists(locate(hash));
+	}
+
+	/**
+	 * Returns whether or not this store contains the revision with the specified name.
+	 *
+	 * @param revision The name of the revision.
+	 * @return {@code true} if the manifest of the revision is stored, {@code false} if not.
+	 */
+	public boolean containsRevision(String revision) {
+		return Files.exists(locateRevision(revision));
+	}
+
+	/**
+	 * Gets the names of the revisions in this store, in order.
+	 *
+	 * @return The {@link List} of names.
+	 * @throws IOException If there is an error listing the revisions.
+	 */
+	public List<String> getRevisions() throws IOException {
+		List<String> names = new ArrayList<>();
+
+		try (DirectoryStream<Path> stream = Files.newDirectoryStream(revisions, "*" + MANIFEST_EXTENSION)) {
+			for (Path path : stream) {
+				String name = path.getFileName().toString();
+				names.add(name.substring(0, name.length() - MANIFEST_EXTENSION.length()));
+			}
+		}
+
+		Collections.sort(names);
+		return names;
+	}
+
+	/**
+	 * Gets the {@link Path} of the object with the specified hash. The object may not exist.
+	 *
+	 * @param hash The hash of the object.
+	 * @return The Path.
+	 */
+	public Path locate(String hash) {
+		return objects.resolve(hash.substring(0, SHARD_LENGTH)).resolve(hash.substring(SHARD_LENGTH));
+	}
+
+	/**
+	 * Gets the {@link Path} of the manifest of the revision with the specified name. The manifest may not exist.
+	 *
+	 * @param revision The name of the revision.
+	 * @return The Path.
+	 */
+	private Path locateRevision(String revision) {
+		return revisions.resolve(revision + MANIFEST_EXTENSION);
+	}
+
+	/**
+	 * Materialises the revision with the specified name, writing each of its classes to the specified
+	 * {@link OutputSink} (e.g. a directory or jar sink) and then finishing it.
+	 *
+	 * @param revision The name of the revision.
+	 * @param sink The OutputSink.
+	 * @return The amount of classes written.
+	 * @throws IOException If the revision or one of its objects is not stored, or if there is an error writing the
+	 *             classes.
+	 */
+	public int materialize(String revision, OutputSink sink) throws IOException {
+		HashManifest manifest = readRevision(revision);
+		for (String name : manifest.getNames()) {
+			sink.write(name, read(manifest.get(name)));
+		}
+
+		sink.finish();
+		return manifest.size();
+	}
+
+	/**
+	 * Stores the specified object, if it is not already stored. The object is written to a temporary file that is
+	 * then moved into place, so a partially-written object is never visible, and several threads may store the same
+	 * object at once.
+	 *
+	 * @param hash The hash of the object, as returned by {@link HashManifest#hash}.
+	 * @param data The {@link ByteBuffer} containing the object. Its position is not changed.
+	 * @return {@code true} if the object was stored, {@code false} if it was already stored.
+	 * @throws IOException If there is an error writing the object.
+	 */
+	public boolean put(String hash, ByteBuffer data) throws IOException {
+		Path path = locate(hash);
+		if (Files.exists(path)) {
+			return false;
+		}
+
+		Path shard = Files.createDirectories(path.getParent());
+		Path temporary = Files.createTempFile(shard, hash, ".tmp");
+
+		try {
+			try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+				ByteBuffer buffer = data.duplicate();
+				while (buffer.hasRemaining()) {
+					channel.write(buffer);
+				}
+			}
+
+			move(temporary, path);
+		} finally {
+			Files.deleteIfExists(temporary);
+		}
+
+		return true;
+	}
+
+	/**
+	 * Stores the manifest of the revision with the specified name, replacing any existing manifest. Every object in
+	 * the manifest must already be stored.
+	 *
+	 * @param revision The name of the revision.
+	 * @param manifest The {@link HashManifest} of the revision.
+	 * @throws IOException If there is an error writing the manifest.
+	 */
+	public void putRevision(String revision, HashManifest manifest) throws IOException {
+		manifest.write(locateRevision(revision));
+	}
+
+	/**
+	 * Reads the object with the specified hash.
+	 *
+	 * @param hash The hash of the object.
+	 * @return The {@link ByteBuffer} containing the object.
+	 * @throws IOException If the object is not stored, or could not be read.
+	 */
+	public ByteBuffer read(String hash) throws IOException {
+		return ByteBuffer.wrap(Files.readAllBytes(locate(hash)));
+	}
+
+	/**
+	 * Reads the manifest of the revision with the specified name.
+	 *
+	 * @param revision The name of the revision.
+	 * @return The {@link HashManifest}.
+	 * @throws IOException If the revision is not stored, or its manifest could not be read.
+	 */
+	public HashManifest readRevision(String revision) throws IOException {
+		return HashManifest.read(locateRevision(revision));
+	}
+
+}
@@ -0,0 +1,452 @@
+package rs.emulate.lynx.store;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import rs.emulate.lynx.output.OutputSink;
+
+/**
+ * An archive of the revision history of the client, in which each revision is stored as a set of binary
+ * {@link Delta}s against the revision before it. Most classes that change between revisions change very little, so a
+ * revision typically takes a small fraction of the space of a full copy.
+ * <p>
+ * Every {@code interval} revisions, a full snapshot is stored instead, so reconstructing any revision applies at most
+ * {@code interval - 1} sets of deltas. Each revision is a deflated file in the archive directory, and the name of the
+ * latest revision is kept in the {@code HEAD} file; revisions are always added on top of it.
+ *
+ * @author Major
+ */
+public final class RevisionArchive {
+
+	/**
+	 * An entry in a revision.
+	 */
+	private static final class Entry {
+
+		/**
+		 * The data of the entry: a delta, the whole class, or empty.
+		 */
+		private final byte[] data;
+
+		/**
+		 * The Kind of the entry.
+		 */
+		private final Kind kind;
+
+		/**
+		 * Creates the Entry.
+		 *
+		 * @param kind The {@link Kind} of the entry.
+		 * @param data The data of the entry.
+		 */
+		private Entry(Kind kind, byte[] data) {
+			this.kind = kind;
+			this.data = data;
+		}
+
+	}
+
+	/**
+	 * The kind of an entry in a revision.
+	 */
+	private enum Kind {
+
+		/**
+		 * The entry contains a delta against the class with the same name in the base revision.
+		 */
+		DELTA,
+
+		/**
+		 * The entry contains the whole class.
+		 */
+		FULL,
+
+		/**
+		 * The class is identical to the class with the same name in the base revision.
+		 */
+		SAME;
+
+	}
+
+	/**
+	 * A revision, as it is stored in the archive.
+	 */
+	private static final class Revision {
+
+		/**
+		 * The name of the base revision, or {@code null} if this revision is a snapshot.
+		 */
+		private final String base;
+
+		/**
+		 * The amount of revisions since the last snapshot.
+		 */
+		private final int depth;
+
+		/**
+		 * The Map of class names to entries, in name order.
+		 */
+		private final Map<String, Entry> entries;
+
+		/**
+		 * Creates the Revision.
+		 *
+		 * @param base The name of the base revision, or {@code null} if the revision is a snapshot.
+		 * @param depth The amount of revisions since the last snapshot.
+		 * @param entries The {@link Map} of class names to entries.
+		 */
+		private Revision(String base, int depth, Map<String, Entry> entries) {
+			this.base = base;
+			this.depth = depth;
+			this.entries = entries;
+		}
+
+	}
+
+	/**
+	 * The default amount of revisions between snapshots.
+	 */
+	public static final int DEFAULT_INTERVAL = 16;
+
+	/**
+	 * The empty byte array.
+	 */
+	private static final byte[] EMPTY = new byte[0];
+
+	/**
+	 * The extension of revision files.
+	 */
+	private static final String EXTENSION = ".lda";
+
+	/**
+	 * The magic number at the start of each revision file.
+	 */
+	private static final int MAGIC = 0x4C444131; // "LDA1"
+
+	/**
+	 * Creates the {@link Entry} of the specified class.
+	 *
+	 * @param base The class in the base revision, or {@code null} if it is not in the base revision.
+	 * @param data The class.
+	 * @return The Entry.
+	 */
+	private static Entry encode(byte[] base, byte[] data) {
+		if (base == null) {
+			return new Entry(Kind.FULL, data);
+		} else if (Arrays.equals(base, data)) {
+			return new Entry(Kind.SAME, EMPTY);
+		}
+
+		byte[] delta = Delta.encode(base, data);
+		return (delta.length < data.length) ? new Entry(Kind.DELTA, delta) : new Entry(Kind.FULL, data);
+	}
+
+	/**
+	 * The directory the revisions are stored in.
+	 */
+	private final Path directory;
+
+	/**
+	 * The amount of revisions between snapshots.
+	 */
+	private final int interval;
+
+	/**
+	 * Opens the RevisionArchive, creating its directory if it does not exist.
+	 *
+	 * @param directory The {@link Path} to the directory of the archive.
+	 * @param interval The amount of revisions between snapshots.
+	 * @throws IOException If the directory could not be created.
+	 */
+	public RevisionArchive(Path directory, int interval) throws IOException {
+		if (interval < 1) {
+			throw new IllegalArgumentException("Snapshot interval must be at least one.");
+		}
+
+		this.directory = Files.createDirectories(directory);
+		this.interval = interval;
+	}
+
+	/**
+	 * Adds the specified revision to the archive, on top of the latest revision. If the revision does not follow a
+	 * snapshot by {@code interval} revisions or more, each of its classes is encoded against the latest revision
+	 * concurrently, on the specified {@link ForkJoinPool}.
+	 *
+	 * @param revision The name of the revision.
+	 * @param classes The {@link Map} of class names to classes.
+	 * @param pool The ForkJoinPool to encode classes on.
+	 * @return The {@link Path} of the revision file, or {@code null} if the archive already contains the revision.
+	 * @throws IOException If there is an error reading the latest revision or writing the new one.
+	 */
+	public Path add(String revision, Map<String, byte[]> classes, ForkJoinPool pool) throws IOException {
+		if (contains(revision)) {
+			return null;
+		}
+
+		String head = getHead();
+		int depth = (head == null) ? interval : load(head).depth + 1;
+		String base = (depth >= interval) ? null : head;
+		Map<String, byte[]> previous = (base == null) ? new TreeMap<>() : read(base);
+
+		Map<String, ForkJoinTask<Entry>> tasks = new TreeMap<>();
+		try {
+			for (Map.Entry<String, byte[]> entry : classes.entrySet()) {
+				byte[] last = previous.get(entry.getKey());
+				byte[] data = entry.getValue();
+				tasks.put(entry.getKey(), pool.submit(() -> encode(last, data)));
+			}
+
+			Map<String, Entry> entries = new LinkedHashMap<>();
+			for (Map.Entry<String, ForkJoinTask<Entry>> task : tasks.entrySet()) {
+				entries.put(task.getKey(), await(task.getValue()));
+			}
+
+			Path path = locate(revision);
+			write(path, new Revision(base, (base == null) ? 0 : depth, entries));
+
+			Path temporary = directory.resolve("HEAD.tmp");
+			Files.write(temporary, revision.getBytes(StandardCharsets.UTF_8));
+			move(temporary, directory.resolve("HEAD"));
+			return path;
+		} finally {
+			for (ForkJoinTask<Entry> task : tasks.values()) {
+				task.cancel(false); // Does nothing to tasks that have completed.
+			}
+		}
+	}
+
+	/**
+	 * Returns whether or not this archive contains the revision with the specified name.
+	 *
+	 * @param revision The name of the revision.
+	 * @return {@code true} if the revision is archived, {@code false} if not.
+	 */
+	public boolean contains(String revision) {
+		return Files.exists(locate(revision));
+	}
+
+	/**
+	 * Gets the name of the latest revision in this archive.
+	 *
+	 * @return The name, or {@code null} if the archive is empty.
+	 * @throws IOException If there is an error reading the name.
+	 */
+	public String getHead() throws IOException {
+		Path head = directory.resolve("HEAD");
+		if (!Files.exists(head)) {
+			return null;
+		}
+
+		String name = new String(Files.readAllBytes(head), StandardCharsets.UTF_8).trim();
+		return contains(name) ? name : null;
+	}
+
+	/**
+	 * Materialises the revision with the specified name, writing each of its classes to the specified
+	 * {@link OutputSink} and then finishing it.
+	 *
+	 * @param revision The name of the revision.
+	 * @param sink The OutputSink.
+	 * @return The amount of classes written.
+	 * @throws IOException If the revision (or one it is based on) is not archived, or if there is an error writing
+	 *             the classes.
+	 */
+	public int materialize(String revision, OutputSink sink) throws IOException {
+		Map<String, byte[]> classes = read(revision);
+		for (Map.Entry<String, byte[]> entry : classes.entrySet()) {
+			sink.write(entry.getKey(), ByteBuffer.wrap(entry.getValue()));
+		}
+
+		sink.finish();
+		return classes.size();
+	}
+
+	/**
+	 * Reconstructs the revision with the specified name, by loading the snapshot it is based on and applying each set
+	 * of deltas since the snapshot in turn.
+	 *
+	 * @param revision The name of the revision.
+	 * @return The {@link SortedMap} of class names to classes.
+	 * @throws IOException If the revision (or one it is based on) is not archived, or is malformed.
+	 */
+	public SortedMap<String, byte[]> read(String revision) throws IOException {
+		Deque<Revision> chain = new ArrayDeque<>();
+		for (String name = revision; name != null; name = chain.peek().base) {
+			Revision next = load(name);
+			if (!chain.isEmpty() && next.depth != chain.peek().depth - 1) {
+				throw new IOException("Revision " + name + " is at the wrong depth to be the base of its successor.");
+			}
+
+			chain.push(next);
+		}
+
+		SortedMap<String, byte[]> classes = new TreeMap<>();
+		for (Revision next : chain) {
+			SortedMap<String, byte[]> current = new TreeMap<>();
+
+			for (Map.Entry<String, Entry> entry : next.entries.entrySet()) {
+				String name = entry.getKey();
+				Entry value = entry.getValue();
+				byte[] base = classes.get(name);
+
+				if (value.kind != Kind.FULL && base == null) {
+					throw new IOException("Revision " + revision + " refers to " + name + ", which its base lacks.");
+				}
+
+				try {
+					current.put(name, (value.kind == Kind.FULL) ? value.data
+							: (value.kind == Kind.SAME) ? base : Delta.apply(base, value.data));
+				} catch (IllegalArgumentException e) {
+					throw new IOException("Malformed delta for " + name + ".", e);
+				}
+			}
+
+			classes = current;
+		}
+
+		return classes;
+	}
+
+	/**
+	 * Waits for the specified {@link ForkJoinTask} to complete, returning its result.
+	 *
+	 * @param task The ForkJoinTask.
+	 * @return The result.
+	 * @throws IOException If the current thread was interrupted.
+	 */
+	private <T> T await(ForkJoinTask<T> task) throws IOException {
+		try {
+			return task.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while waiting for classes to be encoded.", e);
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+
+			throw new IOException("Error encoding classes.", cause);
+		}
+	}
+
+	/**
+	 * Loads the revision with the specified name, without applying its deltas.
+	 *
+	 * @param revision The name of the revision.
+	 * @return The {@link Revision}.
+	 * @throws IOException If the revision is not archived, or is malformed.
+	 */
+	private Revision load(String revision) throws IOException {
+		try (DataInputStream input = new DataInputStream(new BufferedInputStream(new InflaterInputStream(
+				Files.newInputStream(locate(revision)))))) {
+			if (input.readInt() != MAGIC) {
+				throw new IOException("Revision " + revision + " is not a revision file.");
+			}
+
+			String base = input.readBoolean() ? input.readUTF() : null;
+			int depth = input.readInt();
+			int count = input.readInt();
+			Kind[] kinds = Kind.values();
+
+			Map<String, Entry> entries = new LinkedHashMap<>();
+			for (int index = 0; index < count; index++) {
+				String name = input.readUTF();
+				int kind = input.readUnsignedByte();
+				if (kind >= kinds.length) {
+					throw new IOException("Unrecognised entry kind " + kind + " in revision " + revision + ".");
+				}
+
+				byte[] data = new byte[input.readInt()];
+				input.readFully(data);
+				entries.put(name, new Entry(kinds[kind], data));
+			}
+
+			return new Revision(base, depth, entries);
+		}
+	}
+
+	/**
+	 * Gets the {@link Path} of the file of the revision with the specified name. The file may not exist.
+	 *
+	 * @param revision The name of the revision.
+	 * @return The Path.
+	 */
+	private Path locate(String revision) {
+		return directory.resolve(revision + EXTENSION);
+	}
+
+	/**
+	 * Moves the specified temporary file to the specified {@link Path}, atomically if supported.
+	 *
+	 * @param temporary The Path of the temporary file.
+	 * @param path The Path to move the file to.
+	 * @throws IOException If the file could not be moved.
+	 */
+	private void move(Path temporary, Path path) throws IOException {
+		try {
+			Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (AtomicMoveNotSupportedException e) {
+			Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+
+	/**
+	 * Writes the specified {@link Revision} to the specified {@link Path}, via a temporary file.
+	 *
+	 * @param path The Path.
+	 * @param revision The Revision.
+	 * @throws IOException If there is an error writing the revision.
+	 */
+	private void write(Path path, Revision revision) throws IOException {
+		Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+		Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+
+		try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new DeflaterOutputStream(
+				Files.newOutputStream(temporary), deflater)))) {
+			output.writeInt(MAGIC);
+			output.writeBoolean(revision.base != null);
+			if (revision.base != null) {
+				output.writeUTF(revision.base);
+			}
+
+			output.writeInt(revision.depth);
+			output.writeInt(revision.entries.size());
+
+			for (Map.Entry<String, Entry> entry : revision.entries.entrySet()) {
+				Entry value = entry.getValue();
+				output.writeUTF(entry.getKey());
+				output.writeByte(value.kind.ordinal());
+				output.writeInt(value.data.length);
+				output.write(value.data);
+			}
+		} finally {
+			deflater.end();
+		}
+
+		move(temporary, path);
+	}
+
+}
@@ -0,0 +1,383 @@
+package rs.emulate.lynx.store;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.JarOutputStream;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import rs.emulate.lynx.output.HashManifest;
+import rs.emulate.lynx.output.OutputSink;
+import rs.emulate.lynx.pack.ClassArena;
+import rs.emulate.lynx.pack.ClassCollector;
+import rs.emulate.lynx.pack.Packer;
+import rs.emulate.lynx.pack.Packers;
+import rs.emulate.lynx.pack.SegmentedUnpacker;
+import rs.emulate.lynx.pack.Unpackers;
+
+/**
+ * Compacts old revisions, replacing the loose class files and {@code client.jar} file of each with a single pack200
+ * archive, which is far smaller. A compacted revision is restored (by unpacking the archive again) when it is next
+ * requested.
+ * <p>
+ * Compaction runs in the background on a small, fixed amount of threads, and should only be started once a fetch has
+ * written its classes, so that the two never compete. The threads are given the minimum priority, but nothing relies
+ * on it: most operating systems (including Linux, by default) ignore Java thread priorities. Every archive is unpacked
+ * and checked against the classes it replaces before anything is deleted: a revision that does not survive the round
+ * trip is left as it is.
+ * <p>
+ * A revision can be {@link #exclude excluded} at any time. Each revision has a lock that is held from the final check
+ * for exclusion until its loose classes have been deleted, so a revision is either excluded before that check or
+ * only once it has been compacted completely, and never while its classes are half-deleted.
+ *
+ * @author Major
+ */
+public final class RevisionCompactor {
+
+	/**
+	 * The name of the archive a revision is compacted into.
+	 */
+	public static final String ARCHIVE_NAME = "classes.pack.gz";
+
+	/**
+	 * The name of the directory of the classes of a revision.
+	 */
+	private static final String CLASS_DIRECTORY = "bin";
+
+	/**
+	 * The name of the jar of the classes of a revision.
+	 */
+	private static final String JAR_NAME = "client.jar";
+
+	/**
+	 * The logger for this class.
+	 */
+	private static final Logger logger = Logger.getLogger(RevisionCompactor.class.getSimpleName());
+
+	/**
+	 * Deletes the specified directory, and everything in it.
+	 *
+	 * @param directory The {@link Path} of the directory.
+	 * @throws IOException If there is an error deleting the directory.
+	 */
+	private static void delete(Path directory) throws IOException {
+		List<Path> paths;
+		try (Stream<Path> stream = Files.walk(directory)) {
+			paths = stream.sorted(Comparator.reverseOrder()).collect(Collectors.toList());
+		}
+
+		for (Path path : paths) {
+			Files.delete(path);
+		}
+	}
+
+	/**
+	 * Returns whether or not the revision in the specified directory has been compacted.
+	 *
+	 * @param revision The {@link Path} to the directory of the revision.
+	 * @return {@code true} if the revision has been compacted, {@code false} if not.
+	 */
+	public static boolean isCompacted(Path revision) {
+		return Files.exists(revision.resolve(ARCHIVE_NAME));
+	}
+
+	/**
+	 * Reads the class files in the specified directory.
+	 *
+	 * @param directory The {@link Path} of the directory.
+	 * @return The {@link Map} of class names (relative to the directory, with {@code /} separators) to classes, in
+	 *         name order.
+	 * @throws IOException If there is an error reading the classes.
+	 */
+	private static Map<String, byte[]> readClasses(Path directory) throws IOException {
+		List<Path> files;
+		try (Stream<Path> stream = Files.walk(directory)) {
+			files = stream.filter(Files::isRegularFile).collect(Collectors.toList());
+		}
+
+		Map<String, byte[]> classes = new TreeMap<>();
+		for (Path file : files) {
+			String name = directory.relativize(file).toString().replace(file.getFileSystem().getSeparator(), "/");
+			classes.put(name, Files.readAllBytes(file));
+		}
+
+		return classes;
+	}
+
+	/**
+	 * Restores the compacted revision in the specified directory, unpacking its archive and writing each class to the
+	 * specified {@link OutputSink} (e.g. the sinks of its {@code client.jar} file and {@code bin} directory). If the
+	 * sink rewrites the {@code bin} directory, the archive is deleted once the sink has finished, so the revision is
+	 * only compacted again once it is old enough; otherwise (e.g. if the classes are only streamed elsewhere) the
+	 * archive is kept.
+	 *
+	 * @param revision The {@link Path} to the directory of the revision.
+	 * @param sink The OutputSink.
+	 * @param delete Whether or not the archive should be deleted once the sink has finished.
+	 * @return The amount of classes restored.
+	 * @throws IOException If there is an error unpacking the archive or writing the classes.
+	 */
+	public static int restore(Path revision, OutputSink sink, boolean delete) throws IOException {
+		Path archive = revision.resolve(ARCHIVE_NAME);
+		ClassArena classes;
+
+		try (InputStream input = new GZIPInputStream(new BufferedInputStream(Files.newInputStream(archive)))) {
+			classes = new SegmentedUnpacker(ForkJoinPool.commonPool()).unpack(input);
+		}
+
+		for (Map.Entry<String, ByteBuffer> entry : classes.entrySet()) {
+			sink.write(entry.getKey(), entry.getValue());
+		}
+
+		sink.finish();
+		if (delete) {
+			Files.delete(archive);
+		}
+
+		return classes.size();
+	}
+
+	/**
+	 * The minimum age of a revision that is compacted.
+	 */
+	private final Duration age;
+
+	/**
+	 * The Set of names of revisions that must not be compacted.
+	 */
+	private final Set<String> excluded = ConcurrentHashMap.newKeySet();
+
+	/**
+	 * The Map of revision names to the locks held while they are excluded or committed to being compacted.
+	 */
+	private final Map<String, Object> locks = new ConcurrentHashMap<>();
+
+	/**
+	 * The directory containing the revisions.
+	 */
+	private final Path root;
+
+	/**
+	 * The amount of threads revisions are compacted on.
+	 */
+	private final int threads;
+
+	/**
+	 * Creates the RevisionCompactor.
+	 *
+	 * @param root The {@link Path} to the directory containing the revisions.
+	 * @param age The minimum age of a revision that is compacted, measured from when its classes were last written.
+	 * @param threads The amount of threads revisions are compacted on.
+	 */
+	public RevisionCompactor(Path root, Duration age, int threads) {
+		if (threads < 1) {
+			throw new IllegalArgumentException("Must compact with at least one thread.");
+		}
+
+		this.root = root;
+		this.age = age;
+		this.threads = threads;
+	}
+
+	/**
+	 * Compacts the revision in the specified directory.
+	 *
+	 * @param revision The {@link Path} to the directory of the revision.
+	 * @param packer The {@link Packer} to pack the classes with.
+	 * @return {@code true} if the revision was compacted, {@code false} if its classes did not survive the round trip
+	 *         through the pack200 format, or if it was excluded while it was being packed.
+	 * @throws IOException If there is an error reading the classes or writing the archive.
+	 */
+	public boolean compact(Path revision, Packer packer) throws IOException {
+		String name = revision.getFileName().toString();
+		Path directory = revision.resolve(CLASS_DIRECTORY);
+		Map<String, byte[]> classes = readClasses(directory);
+
+		Path archive = revision.resolve(ARCHIVE_NAME);
+		Path temporary = revision.resolve(ARCHIVE_NAME + ".tmp");
+		Path jar = revision.resolve(JAR_NAME + ".tmp"); // Packers read a jar file, which client.jar may not match.
+
+		try {
+			try (JarOutputStream output = new JarOutputStream(Files.newOutputStream(jar))) {
+				output.setLevel(Deflater.NO_COMPRESSION); // Only read back by the packer.
+				for (Map.Entry<String, byte[]> entry : classes.entrySet()) {
+					output.putNextEntry(new JarEntry(entry.getKey()));
+					output.write(entry.getValue());
+					output.closeEntry();
+				}
+			}
+
+			try (JarFile input = new JarFile(jar.toFile());
+					OutputStream output = new GZIPOutputStream(new BufferedOutputStream(Files.newOutputStream(
+							temporary)))) {
+				packer.pack(input, output);
+			}
+
+			if (!verify(temporary, classes)) {
+				return false;
+			}
+
+			synchronized (lock(name)) {
+				if (excluded.contains(name)) {
+					return false;
+				}
+
+				Files.move(temporary, archive, StandardCopyOption.REPLACE_EXISTING);
+				delete(directory);
+				Files.deleteIfExists(revision.resolve(JAR_NAME));
+			}
+		} finally {
+			Files.deleteIfExists(temporary);
+			Files.deleteIfExists(jar);
+		}
+
+		return true;
+	}
+
+	/**
+	 * Excludes the revision with the specified name from compaction. If the revision is being compacted, this waits
+	 * until it has either been left as it is or been compacted completely; in the latter case, it must be
+	 * {@link #restore restored} before its loose classes can be used.
+	 *
+	 * @param revision The name of the revision.
+	 */
+	public void exclude(String revision) {
+		synchronized (lock(revision)) {
+			excluded.add(revision);
+		}
+	}
+
+	/**
+	 * Starts compacting every revision that is old enough, has not been compacted yet, and has not been excluded, in
+	 * the background. Any revision that is about to be used should be excluded before this is called. The threads are
+	 * not daemon threads, so the application does not exit until compaction has finished.
+	 *
+	 * @return The amount of revisions that will be compacted.
+	 * @throws IOException If there is an error listing the revisions.
+	 */
+	public int start() throws IOException {
+		FileTime cutoff = FileTime.from(Instant.now().minus(age));
+		List<Path> revisions = new ArrayList<>();
+
+		try (DirectoryStream<Path> stream = Files.newDirectoryStream(root, Files::isDirectory)) {
+			for (Path revision : stream) {
+				Path classes = revision.resolve(CLASS_DIRECTORY);
+				if (excluded.contains(revision.getFileName().toString()) || isCompacted(revision)
+						|| !Files.isDirectory(classes)) {
+					continue;
+				}
+
+				Path manifest = HashManifest.locate(classes);
+				Path written = Files.exists(manifest) ? manifest : classes;
+				if (Files.getLastModifiedTime(written).compareTo(cutoff) < 0) {
+					revisions.add(revision);
+				}
+			}
+		}
+
+		if (revisions.isEmpty()) {
+			return 0;
+		}
+
+		Packer packer = Packers.create();
+		AtomicInteger count = new AtomicInteger();
+		ExecutorService executor = Executors.newFixedThreadPool(threads, runnable -> {
+			Thread thread = new Thread(runnable, "RevisionCompactor-" + count.incrementAndGet());
+			thread.setPriority(Thread.MIN_PRIORITY); // A hint only: compaction must not start during a fetch.
+			return thread;
+		});
+
+		for (Path revision : revisions) {
+			executor.execute(() -> {
+				String name = revision.getFileName().toString();
+				try {
+					if (excluded.contains(name)) {
+						return;
+					} else if (compact(revision, packer)) {
+						long size = Files.size(revision.resolve(ARCHIVE_NAME));
+						System.out.println("Compacted revision " + name + " (" + size / 1024 + " KiB).");
+					} else if (!excluded.contains(name)) {
+						System.out.println("Revision " + name + " does not survive a pack200 round trip, so was not "
+								+ "compacted.");
+					}
+				} catch (IOException | RuntimeException e) {
+					logger.log(Level.WARNING, "Error compacting revision " + name + ".", e);
+				}
+			});
+		}
+
+		executor.shutdown(); // The threads stop once every revision has been compacted.
+		return revisions.size();
+	}
+
+	/**
+	 * Gets the lock of the revision with the specified name.
+	 *
+	 * @param revision The name of the revision.
+	 * @return The lock.
+	 */
+	private Object lock(String revision) {
+		return locks.computeIfAbsent(revision, name -> new Object());
+	}
+
+	/**
+	 * Checks that the specified archive unpacks to exactly the specified classes.
+	 *
+	 * @param archive The {@link Path} of the archive.
+	 * @param classes The {@link Map} of class names to classes.
+	 * @return {@code true} if the archive contains the classes, {@code false} if not.
+	 * @throws IOException If there is an error unpacking the archive.
+	 */
+	private boolean verify(Path archive, Map<String, byte[]> classes) throws IOException {
+		ClassArena unpacked;
+		try (InputStream input = new GZIPInputStream(new BufferedInputStream(Files.newInputStream(archive)));
+				ClassCollector collector = new ClassCollector()) {
+			Unpackers.create().unpack(input, collector);
+			collector.finish();
+			unpacked = collector.getClasses().freeze();
+		}
+
+		if (unpacked.size() != classes.size()) {
+			return false;
+		}
+
+		for (Map.Entry<String, byte[]> entry : classes.entrySet()) {
+			ByteBuffer data = unpacked.get(entry.getKey());
+			if (data == null || !data.equals(ByteBuffer.wrap(entry.getValue()))) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+}
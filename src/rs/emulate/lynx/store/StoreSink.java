@@ -0,0 +1,147 @@
+package rs.emulate.lynx.store;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import rs.emulate.lynx.output.ClassHashes;
+import rs.emulate.lynx.output.HashManifest;
+import rs.emulate.lynx.output.OutputSink;
+
+/**
+ * An {@link OutputSink} that adds the classes of a revision to an {@link ObjectStore}. Each class is hashed and (if it
+ * is not already stored) written on a {@link ForkJoinPool} as soon as it is passed to the sink, so hashing runs in
+ * parallel with itself and with the other sinks; the manifest of the revision is stored once every class has been.
+ * Hashes come from {@link ClassHashes}, so a class already hashed by another sink is not hashed again.
+ *
+ * @author Major
+ */
+public final class StoreSink implements OutputSink {
+
+	/**
+	 * The amount of classes that were not already stored.
+	 */
+	private final AtomicInteger added = new AtomicInteger();
+
+	/**
+	 * The amount of bytes of classes that were not already stored.
+	 */
+	private final AtomicLong bytes = new AtomicLong();
+
+	/**
+	 * The ClassHashes the hash of each class is taken from.
+	 */
+	private final ClassHashes hasher;
+
+	/**
+	 * The Map of class names to hashes.
+	 */
+	private final Map<String, String> hashes = new ConcurrentHashMap<>();
+
+	/**
+	 * The ForkJoinPool classes are hashed and stored on.
+	 */
+	private final ForkJoinPool pool;
+
+	/**
+	 * The name of the revision.
+	 */
+	private final String revision;
+
+	/**
+	 * The ObjectStore.
+	 */
+	private final ObjectStore store;
+
+	/**
+	 * The List of tasks storing the classes.
+	 */
+	private final List<ForkJoinTask<?>> tasks = new ArrayList<>();
+
+	/**
+	 * Creates the StoreSink.
+	 *
+	 * @param store The {@link ObjectStore} to add the classes to.
+	 * @param revision The name of the revision.
+	 * @param pool The {@link ForkJoinPool} to hash and store classes on.
+	 * @param hasher The {@link ClassHashes} to take the hash of each class from, which may be shared with other sinks.
+	 */
+	public StoreSink(ObjectStore store, String revision, ForkJoinPool pool, ClassHashes hasher) {
+		this.store = store;
+		this.revision = revision;
+		this.pool = pool;
+		this.hasher = hasher;
+	}
+
+	/**
+	 * Waits for every class to be stored, then stores the manifest of the revision.
+	 */
+	@Override
+	public void finish() throws IOException {
+		try {
+			for (ForkJoinTask<?> task : tasks) {
+				await(task);
+			}
+		} finally {
+			for (ForkJoinTask<?> task : tasks) {
+				task.cancel(false); // Does nothing to tasks that have completed.
+			}
+		}
+
+		store.putRevision(revision, new HashManifest(hashes));
+		System.out.println(String.format("Stored revision %s: %d classes, %d new (%d KiB).", revision, hashes.size(),
+				added.get(), bytes.get() / 1024));
+	}
+
+	@Override
+	public String getName() {
+		return "store";
+	}
+
+	@Override
+	public void write(String name, ByteBuffer data) {
+		tasks.add(pool.submit(() -> {
+			String hash = hasher.get(name, data);
+			if (store.put(hash, data)) {
+				added.incrementAndGet();
+				bytes.addAndGet(data.remaining());
+			}
+
+			hashes.put(name, hash);
+			return null;
+		}));
+	}
+
+	/**
+	 * Waits for the specified {@link ForkJoinTask} to complete, rethrowing any exception thrown by it.
+	 *
+	 * @param task The ForkJoinTask.
+	 * @throws IOException If the task threw an I/O exception, or if the current thread was interrupted.
+	 */
+	private void await(ForkJoinTask<?> task) throws IOException {
+		try {
+			task.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while waiting for classes to be stored.", e);
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof IOException) {
+				throw (IOException) cause;
+			} else if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+
+			throw new IOException("Error storing classes.", cause);
+		}
+	}
+
+}
@@ -0,0 +1,4 @@
+/**
+ * Contains classes for storing the classes of each revision by their content.
+ */
+package rs.emulate.lynx.store;
\ No newline at end of file
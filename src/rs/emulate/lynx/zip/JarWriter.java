@@ -0,0 +1,526 @@
+package rs.emulate.lynx.zip;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+
+/**
+ * Writes a jar file, compressing its entries concurrently on a {@link ForkJoinPool}. Each entry starts compressing as
+ * soon as it is {@link #add added}; once every entry has been added, {@link #finish} assembles the file in entry order
+ * as each entry becomes ready. The CRC and sizes of each entry are computed before it is written, so the local headers
+ * contain them directly (rather than being followed by a data descriptor).
+ * <p>
+ * The data of each entry is read from a {@link ByteBuffer}, which may be direct or a slice. Entries may also be
+ * {@link #STORED stored} rather than deflated, producing a larger jar that is faster to load. Zip64 is not supported.
+ * <p>
+ * In reproducible mode, entries are sorted by name and given a fixed timestamp, so identical entries always produce an
+ * identical jar (when written by the same version of the JDK, whose zlib determines the deflated data).
+ *
+ * @author Major
+ */
+public final class JarWriter {
+
+	/**
+	 * An entry that has been compressed, and is ready to be written.
+	 */
+	private static final class CompressedEntry {
+
+		/**
+		 * The CRC-32 of the uncompressed data.
+		 */
+		private final int crc;
+
+		/**
+		 * The compressed data.
+		 */
+		private final ByteBuffer data;
+
+		/**
+		 * The compression method.
+		 */
+		private final int method;
+
+		/**
+		 * The size of the uncompressed data, in bytes.
+		 */
+		private final int size;
+
+		/**
+		 * Creates the CompressedEntry.
+		 *
+		 * @param method The compression method.
+		 * @param crc The CRC-32 of the uncompressed data.
+		 * @param size The size of the uncompressed data, in bytes.
+		 * @param data The compressed data.
+		 */
+		private CompressedEntry(int method, int crc, int size, ByteBuffer data) {
+			this.method = method;
+			this.crc = crc;
+			this.size = size;
+			this.data = data;
+		}
+
+	}
+
+	/**
+	 * The default compression level, which is the level {@link Deflater#DEFAULT_COMPRESSION} selects.
+	 */
+	public static final int DEFAULT_LEVEL = 6;
+
+	/**
+	 * The compression level indicating that entries should be stored, rather than deflated.
+	 */
+	public static final int STORED = -1;
+
+	/**
+	 * The name of the jar index entry.
+	 */
+	public static final String INDEX_NAME = "META-INF/INDEX.LIST";
+
+	/**
+	 * The version of the zip format needed to extract a deflated entry.
+	 */
+	private static final int DEFLATED_VERSION = 20;
+
+	/**
+	 * The earliest time that can be represented in the MS-DOS format (1980-01-01 00:00:00), which is used as the time
+	 * of every entry in reproducible mode.
+	 */
+	private static final int EARLIEST_DOS_TIME = (1 << 21) | (1 << 16);
+
+	/**
+	 * The extra field marking the first entry of a jar file (as written by {@link java.util.jar.JarOutputStream}).
+	 */
+	private static final byte[] JAR_MAGIC = { (byte) 0xFE, (byte) 0xCA, 0, 0 };
+
+	/**
+	 * The maximum amount of entries in a zip file without zip64.
+	 */
+	private static final int MAXIMUM_ENTRIES = 0xFFFF;
+
+	/**
+	 * The maximum offset of an entry in a zip file without zip64.
+	 */
+	private static final long MAXIMUM_OFFSET = 0xFFFFFFFFL;
+
+	/**
+	 * The empty extra field.
+	 */
+	private static final byte[] NO_EXTRA = new byte[0];
+
+	/**
+	 * The version of the zip format needed to extract a stored entry.
+	 */
+	private static final int STORED_VERSION = 10;
+
+	/**
+	 * The general purpose flag indicating that the entry name is encoded in UTF-8.
+	 */
+	private static final int UTF8_FLAG = 1 << 11;
+
+	/**
+	 * Compresses the specified {@link ByteBuffer}, computing its CRC-32.
+	 *
+	 * @param buffer The ByteBuffer. Its position is not changed.
+	 * @param level The compression level, or {@link #STORED}.
+	 * @return The CompressedEntry.
+	 */
+	private static CompressedEntry compress(ByteBuffer buffer, int level) {
+		ByteBuffer data = buffer.duplicate();
+		int size = data.remaining();
+
+		CRC32 crc = new CRC32();
+		crc.update(data.duplicate());
+
+		if (level == STORED) {
+			return new CompressedEntry(ZipEntry.STORED, (int) crc.getValue(), size, data);
+		}
+
+		Deflater deflater = new Deflater(level, true);
+		try {
+			deflater.setInput(data);
+			deflater.finish();
+
+			byte[] compressed = new byte[Math.max(64, size / 2)];
+			int length = 0;
+
+			while (!deflater.finished()) {
+				if (length == compressed.length) {
+					compressed = Arrays.copyOf(compressed, compressed.length * 2);
+				}
+
+				length += deflater.deflate(compressed, length, compressed.length - length);
+			}
+
+			return new CompressedEntry(ZipEntry.DEFLATED, (int) crc.getValue(), size,
+					ByteBuffer.wrap(compressed, 0, length));
+		} finally {
+			deflater.end();
+		}
+	}
+
+	/**
+	 * Creates the jar index, which lists the packages in the jar so that a class loader can find the jar containing
+	 * a class without opening every jar on the classpath.
+	 *
+	 * @param jar The name of the jar file.
+	 * @param names The {@link Collection} of entry names.
+	 * @return The {@link ByteBuffer} containing the index.
+	 */
+	private static ByteBuffer createIndex(String jar, Collection<String> names) {
+		Set<String> packages = new TreeSet<>();
+		for (String name : names) {
+			if (!name.startsWith("META-INF/")) {
+				int separator = name.lastIndexOf('/');
+				packages.add((separator == -1) ? name : name.substring(0, separator));
+			}
+		}
+
+		StringBuilder index = new StringBuilder("JarIndex-Version: 1.0\n\n").append(jar).append('\n');
+		for (String name : packages) {
+			index.append(name).append('\n');
+		}
+
+		index.append('\n');
+		return ByteBuffer.wrap(index.toString().getBytes(StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * Converts the specified time to the MS-DOS format used by zip files, with the time in the low 16 bits and the
+	 * date in the high 16 bits.
+	 *
+	 * @param time The time, in milliseconds since the epoch.
+	 * @return The MS-DOS date and time.
+	 */
+	private static int dosTime(long time) {
+		LocalDateTime date = LocalDateTime.ofInstant(Instant.ofEpochMilli(time), ZoneId.systemDefault());
+		if (date.getYear() < 1980) {
+			return EARLIEST_DOS_TIME;
+		}
+
+		return (date.getYear() - 1980) << 25 | date.getMonthValue() << 21 | date.getDayOfMonth() << 16
+				| date.getHour() << 11 | date.getMinute() << 5 | date.getSecond() >> 1;
+	}
+
+	/**
+	 * Writes the remaining data of the specified {@link ByteBuffer} to the {@link WritableByteChannel}.
+	 *
+	 * @param channel The WritableByteChannel.
+	 * @param buffer The ByteBuffer.
+	 * @throws IOException If there is an error writing the data.
+	 */
+	private static void write(WritableByteChannel channel, ByteBuffer buffer) throws IOException {
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+	}
+
+	/**
+	 * The WritableByteChannel the jar is written to, or {@code null} if it is written to a file.
+	 */
+	private final WritableByteChannel channel;
+
+	/**
+	 * Whether or not this JarWriter has finished.
+	 */
+	private boolean finished;
+
+	/**
+	 * Whether or not a jar index is written.
+	 */
+	private final boolean indexed;
+
+	/**
+	 * The Path of the jar file, or {@code null} if the jar is written to a channel.
+	 */
+	private final Path jar;
+
+	/**
+	 * The name of the jar, which is recorded in the jar index.
+	 */
+	private final String jarName;
+
+	/**
+	 * The compression level, or {@link #STORED}.
+	 */
+	private final int level;
+
+	/**
+	 * The ForkJoinPool entries are compressed on.
+	 */
+	private final ForkJoinPool pool;
+
+	/**
+	 * Whether or not the jar is written in reproducible mode.
+	 */
+	private final boolean reproducible;
+
+	/**
+	 * The Map of entry names to the tasks compressing them, in the order the entries were added.
+	 */
+	private final Map<String, ForkJoinTask<CompressedEntry>> tasks = new LinkedHashMap<>();
+
+	/**
+	 * Creates the JarWriter, which writes entries in the order they are added, with the current time, and without a
+	 * jar index.
+	 *
+	 * @param jar The {@link Path} of the jar file. It is replaced if it already exists.
+	 * @param pool The {@link ForkJoinPool} to compress entries on.
+	 * @param level The compression level (from {@code 0} to {@code 9}), or {@link #STORED}.
+	 * @throws IllegalArgumentException If the compression level is invalid.
+	 */
+	public JarWriter(Path jar, ForkJoinPool pool, int level) {
+		this(jar, pool, level, false, false);
+	}
+
+	/**
+	 * Creates the JarWriter.
+	 *
+	 * @param jar The {@link Path} of the jar file. It is replaced if it already exists.
+	 * @param pool The {@link ForkJoinPool} to compress entries on.
+	 * @param level The compression level (from {@code 0} to {@code 9}), or {@link #STORED}.
+	 * @param reproducible Whether or not the jar should be written in reproducible mode.
+	 * @param indexed Whether or not a jar index ({@link #INDEX_NAME}) should be written.
+	 * @throws IllegalArgumentException If the compression level is invalid.
+	 */
+	public JarWriter(Path jar, ForkJoinPool pool, int level, boolean reproducible, boolean indexed) {
+		this(jar.getFileName().toString(), jar, null, pool, level, reproducible, indexed);
+	}
+
+	/**
+	 * Creates the JarWriter, which writes the jar to a {@link WritableByteChannel} (such as standard output) rather
+	 * than a file. The channel is not closed when the JarWriter finishes.
+	 *
+	 * @param name The name of the jar, which is recorded in the jar index.
+	 * @param channel The WritableByteChannel to write the jar to.
+	 * @param pool The {@link ForkJoinPool} to compress entries on.
+	 * @param level The compression level (from {@code 0} to {@code 9}), or {@link #STORED}.
+	 * @param reproducible Whether or not the jar should be written in reproducible mode.
+	 * @param indexed Whether or not a jar index ({@link #INDEX_NAME}) should be written.
+	 * @throws IllegalArgumentException If the compression level is invalid.
+	 */
+	public JarWriter(String name, WritableByteChannel channel, ForkJoinPool pool, int level, boolean reproducible,
+			boolean indexed) {
+		this(name, null, channel, pool, level, reproducible, indexed);
+	}
+
+	/**
+	 * Creates the JarWriter.
+	 *
+	 * @param name The name of the jar, which is recorded in the jar index.
+	 * @param jar The {@link Path} of the jar file, or {@code null} if the jar is written to a channel.
+	 * @param channel The {@link WritableByteChannel} to write the jar to, or {@code null} if it is written to a file.
+	 * @param pool The {@link ForkJoinPool} to compress entries on.
+	 * @param level The compression level (from {@code 0} to {@code 9}), or {@link #STORED}.
+	 * @param reproducible Whether or not the jar should be written in reproducible mode.
+	 * @param indexed Whether or not a jar index ({@link #INDEX_NAME}) should be written.
+	 * @throws IllegalArgumentException If the compression level is invalid.
+	 */
+	private JarWriter(String name, Path jar, WritableByteChannel channel, ForkJoinPool pool, int level,
+			boolean reproducible, boolean indexed) {
+		if (level != STORED && (level < Deflater.NO_COMPRESSION || level > Deflater.BEST_COMPRESSION)) {
+			throw new IllegalArgumentException("Invalid compression level " + level + ".");
+		}
+
+		this.jarName = name;
+		this.jar = jar;
+		this.channel = channel;
+		this.pool = pool;
+		this.level = level;
+		this.reproducible = reproducible;
+		this.indexed = indexed;
+	}
+
+	/**
+	 * Adds an entry to the jar, and starts compressing it. Any entry already added with the same name is replaced.
+	 *
+	 * @param name The name of the entry.
+	 * @param data The {@link ByteBuffer} containing the data of the entry. Its position is not changed, and it must
+	 *            not be modified until this JarWriter has finished.
+	 */
+	public void add(String name, ByteBuffer data) {
+		if (finished) {
+			throw new IllegalStateException("Cannot add entries to a JarWriter that has finished.");
+		}
+
+		ByteBuffer buffer = data.duplicate();
+		ForkJoinTask<CompressedEntry> previous = tasks.put(name, pool.submit(() -> compress(buffer, level)));
+		if (previous != null) {
+			previous.cancel(false);
+		}
+	}
+
+	/**
+	 * Adds every entry in the specified {@link Map} to the jar.
+	 *
+	 * @param entries The Map of entry names to {@link ByteBuffer}s containing their data.
+	 */
+	public void addAll(Map<String, ByteBuffer> entries) {
+		for (Entry<String, ByteBuffer> entry : entries.entrySet()) {
+			add(entry.getKey(), entry.getValue());
+		}
+	}
+
+	/**
+	 * Finishes the jar, writing the entries that have been added. They are written in the order they were added, or
+	 * sorted by name in reproducible mode. If a jar index is written, it replaces any index entry that was added.
+	 *
+	 * @throws IOException If there is an error writing the jar file, or if it would require zip64.
+	 */
+	public void finish() throws IOException {
+		if (finished) {
+			throw new IllegalStateException("The JarWriter has already finished.");
+		}
+
+		finished = true;
+		try {
+			if (indexed) {
+				ForkJoinTask<CompressedEntry> previous = tasks.remove(INDEX_NAME);
+				if (previous != null) {
+					previous.cancel(false);
+				}
+
+				ByteBuffer index = createIndex(jarName, tasks.keySet());
+				tasks.put(INDEX_NAME, pool.submit(() -> compress(index, level)));
+			}
+
+			Map<String, ForkJoinTask<CompressedEntry>> ordered = reproducible ? new TreeMap<>(tasks) : tasks;
+			write(ordered);
+		} finally {
+			for (ForkJoinTask<CompressedEntry> task : tasks.values()) {
+				task.cancel(false); // Does nothing to tasks that have completed.
+			}
+
+			tasks.clear();
+		}
+	}
+
+	/**
+	 * Waits for the specified task to finish, rethrowing any exception it threw.
+	 *
+	 * @param task The {@link ForkJoinTask} compressing an entry.
+	 * @return The CompressedEntry.
+	 * @throws IOException If the current thread was interrupted, or if the task threw a checked exception.
+	 */
+	private CompressedEntry await(ForkJoinTask<CompressedEntry> task) throws IOException {
+		try {
+			return task.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while waiting for an entry to be compressed.", e);
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+
+			throw new IOException("Error compressing an entry.", cause);
+		}
+	}
+
+	/**
+	 * Writes the jar file.
+	 *
+	 * @param entries The {@link Map} of entry names to the tasks compressing them, in the order they are written.
+	 * @throws IOException If there is an error writing the jar file, or if it would require zip64.
+	 */
+	private void write(Map<String, ForkJoinTask<CompressedEntry>> entries) throws IOException {
+		int count = entries.size();
+		if (count > MAXIMUM_ENTRIES) {
+			throw new IOException("Jar files with more than " + MAXIMUM_ENTRIES + " entries are not supported.");
+		}
+
+		List<byte[]> names = new ArrayList<>(count);
+		int centralSize = 0;
+
+		for (String entry : entries.keySet()) {
+			byte[] name = entry.getBytes(StandardCharsets.UTF_8);
+			names.add(name);
+
+			int extra = (names.size() == 1) ? JAR_MAGIC.length : 0;
+			centralSize += ZipConstants.CENTRAL_HEADER_LENGTH + name.length + extra;
+		}
+
+		ByteBuffer central = ByteBuffer.allocate(centralSize + ZipConstants.END_HEADER_LENGTH)
+				.order(ByteOrder.LITTLE_ENDIAN);
+		int time = reproducible ? EARLIEST_DOS_TIME : dosTime(System.currentTimeMillis());
+		long offset = 0;
+		int index = 0;
+
+		WritableByteChannel channel = (this.channel != null) ? this.channel : FileChannel.open(jar,
+				StandardOpenOption.WRITE, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+
+		try {
+			for (ForkJoinTask<CompressedEntry> task : entries.values()) {
+				CompressedEntry entry = await(task);
+				byte[] name = names.get(index);
+				byte[] extra = (index == 0) ? JAR_MAGIC : NO_EXTRA;
+				int version = (entry.method == ZipEntry.STORED) ? STORED_VERSION : DEFLATED_VERSION;
+				int compressedSize = entry.data.remaining();
+
+				if (offset > MAXIMUM_OFFSET) {
+					throw new IOException("Jar files larger than 4 GiB are not supported.");
+				}
+
+				ByteBuffer header = ByteBuffer.allocate(ZipConstants.LOCAL_HEADER_LENGTH + name.length + extra.length)
+						.order(ByteOrder.LITTLE_ENDIAN);
+				header.putInt(ZipConstants.LOCAL_HEADER_SIGNATURE).putShort((short) version);
+				header.putShort((short) UTF8_FLAG).putShort((short) entry.method).putInt(time).putInt(entry.crc);
+				header.putInt(compressedSize).putInt(entry.size).putShort((short) name.length);
+				header.putShort((short) extra.length).put(name).put(extra).flip();
+
+				central.putInt(ZipConstants.CENTRAL_HEADER_SIGNATURE).putShort((short) version);
+				central.putShort((short) version).putShort((short) UTF8_FLAG).putShort((short) entry.method);
+				central.putInt(time).putInt(entry.crc).putInt(compressedSize).putInt(entry.size);
+				central.putShort((short) name.length).putShort((short) extra.length).putShort((short) 0);
+				central.putShort((short) 0).putShort((short) 0).putInt(0).putInt((int) offset);
+				central.put(name).put(extra);
+
+				write(channel, header);
+				write(channel, entry.data);
+
+				offset += header.capacity() + compressedSize;
+				index++;
+			}
+
+			if (offset > MAXIMUM_OFFSET) {
+				throw new IOException("Jar files larger than 4 GiB are not supported.");
+			}
+
+			central.putInt(ZipConstants.END_HEADER_SIGNATURE).putShort((short) 0).putShort((short) 0);
+			central.putShort((short) count).putShort((short) count).putInt(centralSize).putInt((int) offset);
+			central.putShort((short) 0).flip();
+
+			write(channel, central);
+		} finally {
+			if (channel != this.channel) {
+				channel.close();
+			}
+		}
+	}
+
+}
\ No newline at end of file
@@ -0,0 +1,313 @@
+package rs.emulate.lynx.zip;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipEntry;
+
+/**
+ * A read-only zip file that is memory-mapped, rather than read through streams. The central directory is parsed
+ * directly from the mapped buffer, and the data of each entry is returned as a {@link ByteBuffer}: a slice of the
+ * mapping for stored entries, or a direct buffer inflated straight from the mapping for deflated ones. The data of an
+ * entry is therefore never copied through a heap array.
+ * <p>
+ * Zip64 archives are not supported.
+ *
+ * @author Major
+ */
+public final class MappedZipFile implements Closeable {
+
+	/**
+	 * An entry in the central directory.
+	 */
+	private static final class Entry {
+
+		/**
+		 * The compressed size of the entry, in bytes.
+		 */
+		private final int compressedSize;
+
+		/**
+		 * The offset of the entry's local header.
+		 */
+		private final int headerOffset;
+
+		/**
+		 * The compression method of the entry.
+		 */
+		private final int method;
+
+		/**
+		 * The uncompressed size of the entry, in bytes.
+		 */
+		private final int size;
+
+		/**
+		 * Creates the Entry.
+		 *
+		 * @param method The compression method.
+		 * @param compressedSize The compressed size, in bytes.
+		 * @param size The uncompressed size, in bytes.
+		 * @param headerOffset The offset of the local header.
+		 */
+		private Entry(int method, int compressedSize, int size, int headerOffset) {
+			this.method = method;
+			this.compressedSize = compressedSize;
+			this.size = size;
+			this.headerOffset = headerOffset;
+		}
+
+	}
+
+	/**
+	 * The maximum length of the archive comment, in bytes.
+	 */
+	private static final int MAXIMUM_COMMENT_LENGTH = 0xFFFF;
+
+	/**
+	 * The value of a 32-bit field that indicates the real value is in a zip64 extra field.
+	 */
+	private static final long ZIP64_MAGIC = 0xFFFFFFFFL;
+
+	/**
+	 * Finds the offset of the end of central directory record in the specified buffer.
+	 *
+	 * @param buffer The {@link ByteBuffer} of the zip file.
+	 * @return The offset.
+	 * @throws IOException If the record could not be found.
+	 */
+	private static int findEndHeader(ByteBuffer buffer) throws IOException {
+		int last = buffer.limit() - ZipConstants.END_HEADER_LENGTH;
+		int first = Math.max(0, last - MAXIMUM_COMMENT_LENGTH);
+
+		for (int offset = last; offset >= first; offset--) {
+			if (buffer.getInt(offset) == ZipConstants.END_HEADER_SIGNATURE) {
+				return offset;
+			}
+		}
+
+		throw new IOException("Not a zip file: the end of central directory record could not be found.");
+	}
+
+	/**
+	 * Reads an unsigned 16-bit value from the specified buffer.
+	 *
+	 * @param buffer The {@link ByteBuffer}.
+	 * @param offset The offset of the value.
+	 * @return The value.
+	 */
+	private static int getUnsignedShort(ByteBuffer buffer, int offset) {
+		return buffer.getShort(offset) & 0xFFFF;
+	}
+
+	/**
+	 * Reads an unsigned 32-bit value from the specified buffer, which must fit in an {@code int}.
+	 *
+	 * @param buffer The {@link ByteBuffer}.
+	 * @param offset The offset of the value.
+	 * @return The value.
+	 * @throws IOException If the value is too large, i.e. the archive is a zip64 archive.
+	 */
+	private static int getUnsignedInt(ByteBuffer buffer, int offset) throws IOException {
+		long value = buffer.getInt(offset) & 0xFFFFFFFFL;
+		if (value == ZIP64_MAGIC || value > Integer.MAX_VALUE) {
+			throw new IOException("Zip64 archives are not supported.");
+		}
+
+		return (int) value;
+	}
+
+	/**
+	 * The FileChannel of the zip file.
+	 */
+	private final FileChannel channel;
+
+	/**
+	 * The Map of entry names to entries, in central directory order.
+	 */
+	private final Map<String, Entry> entries;
+
+	/**
+	 * The mapped zip file, in little-endian order.
+	 */
+	private final ByteBuffer mapping;
+
+	/**
+	 * Opens the MappedZipFile.
+	 *
+	 * @param path The {@link Path} to the zip file.
+	 * @throws IOException If the file could not be mapped, or if it is not a valid zip file.
+	 */
+	public MappedZipFile(Path path) throws IOException {
+		channel = FileChannel.open(path, StandardOpenOption.READ);
+
+		try {
+			long length = channel.size();
+			if (length > Integer.MAX_VALUE) {
+				throw new IOException("Zip files larger than 2 GiB are not supported.");
+			}
+
+			MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+			mapping = mapped.order(ByteOrder.LITTLE_ENDIAN);
+			entries = readCentralDirectory();
+		} catch (IOException | RuntimeException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Closes the underlying file. Buffers already returned by this zip file remain valid, as the mapping is only
+	 * released once it is no longer referenced.
+	 */
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+
+	/**
+	 * Returns whether or not this zip file contains an entry with the specified name.
+	 *
+	 * @param name The name of the entry.
+	 * @return {@code true} if the entry exists, {@code false} if not.
+	 */
+	public boolean contains(String name) {
+		return entries.containsKey(name);
+	}
+
+	/**
+	 * Gets the names of the entries in this zip file, in central directory order.
+	 *
+	 * @return The {@link Set} of names.
+	 */
+	public Set<String> getNames() {
+		return Collections.unmodifiableSet(entries.keySet());
+	}
+
+	/**
+	 * Reads the data of the entry with the specified name. Stored entries are returned as a read-only slice of the
+	 * mapping; deflated entries are inflated into a new direct buffer.
+	 *
+	 * @param name The name of the entry.
+	 * @return The {@link ByteBuffer} containing the data.
+	 * @throws IOException If the entry does not exist, is malformed, or uses an unsupported compression method.
+	 */
+	public ByteBuffer read(String name) throws IOException {
+		Entry entry = entries.get(name);
+		if (entry == null) {
+			throw new IOException("The zip file does not contain " + name + ".");
+		}
+
+		ByteBuffer data = slice(entry);
+		if (entry.method == ZipEntry.STORED) {
+			return data;
+		} else if (entry.method != ZipEntry.DEFLATED) {
+			throw new IOException("Unsupported compression method " + entry.method + " for " + name + ".");
+		}
+
+		ByteBuffer inflated = ByteBuffer.allocateDirect(entry.size);
+		Inflater inflater = new Inflater(true);
+
+		try {
+			inflater.setInput(data);
+			while (inflated.hasRemaining() && !inflater.finished()) {
+				if (inflater.inflate(inflated) == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+					break;
+				}
+			}
+		} catch (DataFormatException e) {
+			throw new IOException("Error inflating " + name + ".", e);
+		} finally {
+			inflater.end();
+		}
+
+		if (inflated.hasRemaining()) {
+			throw new IOException("Inflated " + inflated.position() + " bytes of " + name + ", expected " + entry.size
+					+ ".");
+		}
+
+		inflated.flip();
+		return inflated.asReadOnlyBuffer();
+	}
+
+	/**
+	 * Parses the central directory.
+	 *
+	 * @return The {@link Map} of entry names to entries.
+	 * @throws IOException If the central directory is malformed.
+	 */
+	private Map<String, Entry> readCentralDirectory() throws IOException {
+		int end = findEndHeader(mapping);
+		int count = getUnsignedShort(mapping, end + 10);
+		int offset = getUnsignedInt(mapping, end + 16);
+
+		Map<String, Entry> entries = new LinkedHashMap<>(count * 2);
+		for (int index = 0; index < count; index++) {
+			if ((long) offset + ZipConstants.CENTRAL_HEADER_LENGTH > mapping.limit()
+					|| mapping.getInt(offset) != ZipConstants.CENTRAL_HEADER_SIGNATURE) {
+				throw new IOException("Malformed central directory header at " + offset + ".");
+			}
+
+			int method = getUnsignedShort(mapping, offset + 10);
+			int compressedSize = getUnsignedInt(mapping, offset + 20);
+			int size = getUnsignedInt(mapping, offset + 24);
+			int nameLength = getUnsignedShort(mapping, offset + 28);
+			int extraLength = getUnsignedShort(mapping, offset + 30);
+			int commentLength = getUnsignedShort(mapping, offset + 32);
+			int headerOffset = getUnsignedInt(mapping, offset + 42);
+
+			long next = (long) offset + ZipConstants.CENTRAL_HEADER_LENGTH + nameLength + extraLength + commentLength;
+			if (next > mapping.limit()) {
+				throw new IOException("Central directory header at " + offset + " extends past the end of the file.");
+			}
+
+			byte[] name = new byte[nameLength];
+			ByteBuffer duplicate = mapping.duplicate();
+			duplicate.position(offset + ZipConstants.CENTRAL_HEADER_LENGTH);
+			duplicate.get(name);
+
+			entries.put(new String(name, StandardCharsets.UTF_8), new Entry(method, compressedSize, size, headerOffset));
+			offset = (int) next;
+		}
+
+		return entries;
+	}
+
+	/**
+	 * Creates a read-only slice of the mapping containing the (possibly compressed) data of the specified entry.
+	 *
+	 * @param entry The entry.
+	 * @return The slice.
+	 * @throws IOException If the local header of the entry is malformed.
+	 */
+	private ByteBuffer slice(Entry entry) throws IOException {
+		int header = entry.headerOffset;
+		if ((long) header + ZipConstants.LOCAL_HEADER_LENGTH > mapping.limit()
+				|| mapping.getInt(header) != ZipConstants.LOCAL_HEADER_SIGNATURE) {
+			throw new IOException("Malformed local header at " + header + ".");
+		}
+
+		long start = (long) header + ZipConstants.LOCAL_HEADER_LENGTH + getUnsignedShort(mapping, header + 26)
+				+ getUnsignedShort(mapping, header + 28);
+		if (start + entry.compressedSize > mapping.limit()) {
+			throw new IOException("Entry data at " + start + " extends past the end of the file.");
+		}
+
+		ByteBuffer slice = mapping.duplicate();
+		slice.limit((int) (start + entry.compressedSize)).position((int) start);
+		return slice.slice().asReadOnlyBuffer();
+	}
+
+}
@@ -0,0 +1,47 @@
+package rs.emulate.lynx.zip;
+
+/**
+ * Contains constants of the zip file format.
+ *
+ * @author Major
+ */
+public final class ZipConstants {
+
+	/**
+	 * The size of a central directory file header, excluding the name, extra field and comment, in bytes.
+	 */
+	public static final int CENTRAL_HEADER_LENGTH = 46;
+
+	/**
+	 * The signature of a central directory file header.
+	 */
+	public static final int CENTRAL_HEADER_SIGNATURE = 0x02014B50;
+
+	/**
+	 * The size of the end of central directory record, excluding the comment, in bytes.
+	 */
+	public static final int END_HEADER_LENGTH = 22;
+
+	/**
+	 * The signature of the end of central directory record.
+	 */
+	public static final int END_HEADER_SIGNATURE = 0x06054B50;
+
+	/**
+	 * The size of a local file header, excluding the name and extra field, in bytes.
+	 */
+	public static final int LOCAL_HEADER_LENGTH = 30;
+
+	/**
+	 * The signature of a local file header.
+	 */
+	public static final int LOCAL_HEADER_SIGNATURE = 0x04034B50;
+
+	/**
+	 * Sole private constructor to prevent instantiation.
+	 */
+	private ZipConstants() {
+
+	}
+
+}
@@ -0,0 +1,4 @@
+/**
+ * Contains classes for reading and writing zip archives.
+ */
+package rs.emulate.lynx.zip;
\ No newline at end of file
@@ -0,0 +1,127 @@
+package rs.emulate.lynx.crypto;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.security.Provider;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Optional;
+import java.util.zip.GZIPOutputStream;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.junit.Test;
+
+/**
+ * Contains tests for {@link KeyProbe}.
+ *
+ * @author Major
+ */
+public final class KeyProbeTest {
+
+	/**
+	 * The initialisation vector the archives under test are encrypted with.
+	 */
+	private static final byte[] VECTOR = new byte[16];
+
+	/**
+	 * Creates a 128-bit key, every byte of which has the specified value.
+	 *
+	 * @param value The value.
+	 * @return The key.
+	 */
+	private static byte[] key(int value) {
+		byte[] key = new byte[16];
+		Arrays.fill(key, (byte) value);
+		return key;
+	}
+
+	/**
+	 * Gets the {@link Provider} of the AES/CBC cipher.
+	 *
+	 * @return The Provider.
+	 * @throws GeneralSecurityException If there is no provider of the cipher.
+	 */
+	private static Provider provider() throws GeneralSecurityException {
+		return Cipher.getInstance(AesCbcStrategy.TRANSFORMATION).getProvider();
+	}
+
+	/**
+	 * Creates the prefix of an archive encrypted with the specified key: the first {@link KeyProbe#PREFIX_LENGTH}
+	 * bytes of an encrypted gzip stream.
+	 *
+	 * @param key The key.
+	 * @return The {@link ByteBuffer} containing the prefix.
+	 * @throws GeneralSecurityException If there is an error encrypting the archive.
+	 * @throws IOException If there is an error compressing the archive.
+	 */
+	private static ByteBuffer prefix(byte[] key) throws GeneralSecurityException, IOException {
+		ByteArrayOutputStream gzipped = new ByteArrayOutputStream();
+		try (GZIPOutputStream gzip = new GZIPOutputStream(gzipped)) {
+			gzip.write(new byte[1024]);
+		}
+
+		Cipher cipher = Cipher.getInstance(AesCbcStrategy.TRANSFORMATION);
+		cipher.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(key, "AES"), new IvParameterSpec(VECTOR));
+
+		byte[] encrypted = cipher.doFinal(gzipped.toByteArray());
+		return ByteBuffer.wrap(encrypted, 0, KeyProbe.PREFIX_LENGTH).slice();
+	}
+
+	/**
+	 * Tests that only the strategy with the key the archive is encrypted with matches it, and that the prefix is not
+	 * consumed.
+	 *
+	 * @throws GeneralSecurityException If there is an error encrypting the archive.
+	 * @throws IOException If there is an error compressing the archive.
+	 */
+	@Test
+	public void matches() throws GeneralSecurityException, IOException {
+		ByteBuffer prefix = prefix(key(1));
+
+		assertTrue(KeyProbe.matches(new AesCbcStrategy(key(1), VECTOR, provider()), prefix));
+		assertFalse(KeyProbe.matches(new AesCbcStrategy(key(2), VECTOR, provider()), prefix));
+		assertEquals(KeyProbe.PREFIX_LENGTH, prefix.remaining());
+	}
+
+	/**
+	 * Tests that a strategy that fails to decrypt the prefix, rather than decrypting it incorrectly, does not match.
+	 *
+	 * @throws GeneralSecurityException If there is an error encrypting the archive.
+	 * @throws IOException If there is an error compressing the archive.
+	 */
+	@Test
+	public void matchesInvalidKey() throws GeneralSecurityException, IOException {
+		assertFalse(KeyProbe.matches(new AesCbcStrategy(new byte[3], VECTOR, provider()), prefix(key(1))));
+	}
+
+	/**
+	 * Tests that searching finds the first candidate, in order, that decrypts the archive.
+	 *
+	 * @throws GeneralSecurityException If there is an error encrypting the archive.
+	 * @throws IOException If there is an error compressing the archive.
+	 */
+	@Test
+	public void search() throws GeneralSecurityException, IOException {
+		ByteBuffer prefix = prefix(key(3));
+		AesCbcStrategy wrong = new AesCbcStrategy(key(4), VECTOR, provider());
+		AesCbcStrategy first = new AesCbcStrategy(key(3), VECTOR, provider());
+		AesCbcStrategy second = new AesCbcStrategy(key(3), VECTOR, provider());
+
+		Optional<AesCbcStrategy> found = KeyProbe.search(Arrays.asList(wrong, first, second), prefix);
+		assertTrue(found.isPresent());
+		assertTrue(found.get() == first);
+
+		assertFalse(KeyProbe.search(Collections.singletonList(wrong), prefix).isPresent());
+		assertFalse(KeyProbe.search(Collections.<AesCbcStrategy>emptyList(), prefix).isPresent());
+	}
+
+}
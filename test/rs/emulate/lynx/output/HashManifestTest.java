@@ -0,0 +1,119 @@
+package rs.emulate.lynx.output;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Contains tests for {@link HashManifest}.
+ *
+ * @author Major
+ */
+public final class HashManifestTest {
+
+	/**
+	 * The SHA-256 hash of {@code "abc"}.
+	 */
+	private static final String ABC_HASH = "ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad";
+
+	/**
+	 * The SHA-256 hash of the empty string.
+	 */
+	private static final String EMPTY_HASH = "e3b0c44298fc1c149afbf4c8996fb92427ae41e4649b934ca495991b7852b855";
+
+	/**
+	 * The temporary folder the manifests are written to.
+	 */
+	@Rule
+	public final TemporaryFolder folder = new TemporaryFolder();
+
+	/**
+	 * Tests that classes are hashed with SHA-256, from the position of the buffer, without changing its position.
+	 */
+	@Test
+	public void hash() {
+		ByteBuffer buffer = ByteBuffer.wrap("xabc".getBytes(StandardCharsets.US_ASCII));
+		buffer.position(1);
+
+		assertEquals(ABC_HASH, HashManifest.hash(buffer));
+		assertEquals(1, buffer.position());
+		assertEquals(EMPTY_HASH, HashManifest.hash(ByteBuffer.allocate(0)));
+	}
+
+	/**
+	 * Tests that the manifest of a directory is its sibling.
+	 */
+	@Test
+	public void locate() {
+		Path directory = Paths.get("data", "1", "bin");
+		assertEquals(Paths.get("data", "1", "bin.sha256"), HashManifest.locate(directory));
+	}
+
+	/**
+	 * Tests that manifests written in binary mode by {@code sha256sum}, which marks each name with an asterisk, can be
+	 * read.
+	 *
+	 * @throws IOException If there is an error reading the manifest.
+	 */
+	@Test
+	public void readBinaryMode() throws IOException {
+		Path path = folder.getRoot().toPath().resolve("bin.sha256");
+		Files.write(path, Arrays.asList(ABC_HASH + " *a/B.class", "", EMPTY_HASH + "  C.class"), StandardCharsets.UTF_8);
+
+		HashManifest manifest = HashManifest.read(path);
+		assertEquals(2, manifest.size());
+		assertEquals(ABC_HASH, manifest.get("a/B.class"));
+		assertEquals(EMPTY_HASH, manifest.get("C.class"));
+	}
+
+	/**
+	 * Tests that a manifest with a malformed line is rejected.
+	 *
+	 * @throws IOException If the manifest is rejected, as expected.
+	 */
+	@Test(expected = IOException.class)
+	public void readMalformed() throws IOException {
+		Path path = folder.getRoot().toPath().resolve("bin.sha256");
+		Files.write(path, Arrays.asList(ABC_HASH + "C.class"), StandardCharsets.UTF_8);
+
+		HashManifest.read(path);
+	}
+
+	/**
+	 * Tests that a written manifest is in the format of {@code sha256sum}, sorted by name, and reads back unchanged.
+	 *
+	 * @throws IOException If there is an error writing or reading the manifest.
+	 */
+	@Test
+	public void writeAndRead() throws IOException {
+		Map<String, String> hashes = new HashMap<>();
+		hashes.put("b/C.class", ABC_HASH);
+		hashes.put("A.class", EMPTY_HASH);
+
+		Path path = folder.getRoot().toPath().resolve("bin.sha256");
+		new HashManifest(hashes).write(path);
+
+		assertEquals(Arrays.asList(EMPTY_HASH + "  A.class", ABC_HASH + "  b/C.class"),
+				Files.readAllLines(path, StandardCharsets.UTF_8));
+
+		HashManifest manifest = HashManifest.read(path);
+		assertEquals(hashes.keySet(), manifest.getNames());
+		assertEquals(ABC_HASH, manifest.get("b/C.class"));
+		assertEquals(EMPTY_HASH, manifest.get("A.class"));
+		assertNull(manifest.get("D.class"));
+	}
+
+}
@@ -0,0 +1,143 @@
+package rs.emulate.lynx.output;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+/**
+ * Contains tests for {@link TarSink}.
+ *
+ * @author Major
+ */
+public final class TarSinkTest {
+
+	/**
+	 * The size of a tar block, in bytes.
+	 */
+	private static final int BLOCK_SIZE = 512;
+
+	/**
+	 * Parses the octal number in the specified header field.
+	 *
+	 * @param tar The tar archive.
+	 * @param offset The offset of the field.
+	 * @param length The length of the field, including its terminator.
+	 * @return The value.
+	 */
+	private static long octal(byte[] tar, int offset, int length) {
+		return Long.parseLong(string(tar, offset, length - 1), 8);
+	}
+
+	/**
+	 * Reads the NUL-terminated string in the specified header field.
+	 *
+	 * @param tar The tar archive.
+	 * @param offset The offset of the field.
+	 * @param length The length of the field.
+	 * @return The string.
+	 */
+	private static String string(byte[] tar, int offset, int length) {
+		int end = offset;
+		while (end < offset + length && tar[end] != 0) {
+			end++;
+		}
+
+		return new String(tar, offset, end - offset, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Writes the specified classes to a tar archive.
+	 *
+	 * @param entries The names and contents of the classes, alternately.
+	 * @return The tar archive.
+	 * @throws IOException If there is an error writing the archive.
+	 */
+	private static byte[] tar(Object... entries) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		TarSink sink = new TarSink("client.tar", Channels.newChannel(bytes), true);
+
+		for (int index = 0; index < entries.length; index += 2) {
+			sink.write((String) entries[index], ByteBuffer.wrap((byte[]) entries[index + 1]));
+		}
+
+		sink.finish();
+		return bytes.toByteArray();
+	}
+
+	/**
+	 * Tests that each entry has a valid ustar header, is padded to a whole block, and that the archive ends with two
+	 * empty blocks.
+	 *
+	 * @throws IOException If there is an error writing the archive.
+	 */
+	@Test
+	public void header() throws IOException {
+		byte[] data = new byte[600];
+		Arrays.fill(data, (byte) 7);
+
+		byte[] tar = tar("a/B.class", data, "C.class", new byte[0]);
+		assertEquals(BLOCK_SIZE * 6, tar.length); // Header, two data blocks, header, two end blocks.
+
+		assertEquals("a/B.class", string(tar, 0, 100));
+		assertEquals(0644, octal(tar, 100, 8));
+		assertEquals(data.length, octal(tar, 124, 12));
+		assertEquals(0, octal(tar, 136, 12)); // Reproducible, so every entry has the same time.
+		assertEquals('0', tar[156]);
+		assertEquals("ustar", string(tar, 257, 6));
+		assertEquals("00", new String(tar, 263, 2, StandardCharsets.US_ASCII));
+
+		byte[] header = Arrays.copyOf(tar, BLOCK_SIZE);
+		Arrays.fill(header, 148, 156, (byte) ' ');
+		long checksum = 0;
+		for (byte value : header) {
+			checksum += value & 0xFF;
+		}
+
+		assertEquals(checksum, octal(tar, 148, 7));
+		assertArrayEquals(data, Arrays.copyOfRange(tar, BLOCK_SIZE, BLOCK_SIZE + data.length));
+		assertArrayEquals(new byte[BLOCK_SIZE * 2 - data.length], Arrays.copyOfRange(tar, BLOCK_SIZE + data.length,
+				BLOCK_SIZE * 3));
+
+		assertEquals("C.class", string(tar, BLOCK_SIZE * 3, 100));
+		assertEquals(0, octal(tar, BLOCK_SIZE * 3 + 124, 12));
+		assertArrayEquals(new byte[BLOCK_SIZE * 2], Arrays.copyOfRange(tar, BLOCK_SIZE * 4, tar.length));
+	}
+
+	/**
+	 * Tests that a name longer than the name field is split into the prefix and name fields at a separator.
+	 *
+	 * @throws IOException If there is an error writing the archive.
+	 */
+	@Test
+	public void longName() throws IOException {
+		char[] directory = new char[120];
+		Arrays.fill(directory, 'd');
+		String name = new String(directory) + "/Long.class";
+
+		byte[] tar = tar(name, new byte[1]);
+		assertEquals("Long.class", string(tar, 0, 100));
+		assertEquals(new String(directory), string(tar, 345, 155));
+	}
+
+	/**
+	 * Tests that a name that can't be split into the prefix and name fields is rejected.
+	 *
+	 * @throws IOException If the name is rejected, as expected.
+	 */
+	@Test(expected = IOException.class)
+	public void nameTooLong() throws IOException {
+		char[] name = new char[101];
+		Arrays.fill(name, 'n');
+
+		tar(new String(name) + ".class", new byte[1]);
+	}
+
+}
@@ -0,0 +1,168 @@
+package rs.emulate.lynx.pack;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.Test;
+
+/**
+ * Contains tests for {@link SegmentReader}.
+ *
+ * @author Major
+ */
+public final class SegmentReaderTest {
+
+	/**
+	 * The archive option bit indicating that the segment header includes the size of the segment.
+	 */
+	private static final int AO_HAVE_FILE_HEADERS = 1 << 4;
+
+	/**
+	 * Concatenates the specified arrays.
+	 *
+	 * @param arrays The arrays.
+	 * @return The concatenation.
+	 */
+	private static byte[] concatenate(byte[]... arrays) {
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		for (byte[] array : arrays) {
+			output.write(array, 0, array.length);
+		}
+
+		return output.toByteArray();
+	}
+
+	/**
+	 * Gzips the specified data.
+	 *
+	 * @param data The data.
+	 * @return The gzipped data.
+	 * @throws IOException If there is an error compressing the data.
+	 */
+	private static byte[] gzip(byte[] data) throws IOException {
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		try (GZIPOutputStream gzip = new GZIPOutputStream(output)) {
+			gzip.write(data);
+		}
+
+		return output.toByteArray();
+	}
+
+	/**
+	 * Reads the rest of the specified stream.
+	 *
+	 * @param input The {@link InputStream}.
+	 * @return The data.
+	 * @throws IOException If there is an error reading the stream.
+	 */
+	private static byte[] read(InputStream input) throws IOException {
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		byte[] buffer = new byte[256];
+		int read;
+		while ((read = input.read(buffer)) != -1) {
+			output.write(buffer, 0, read);
+		}
+
+		return output.toByteArray();
+	}
+
+	/**
+	 * Creates a segment with the specified body. The body is opaque to the reader, so it need not be a valid
+	 * segment.
+	 *
+	 * @param body The body, which must be shorter than 192 bytes so that its size is a single UNSIGNED5 byte.
+	 * @param sized Whether or not the header declares the size of the segment.
+	 * @return The segment.
+	 */
+	private static byte[] segment(byte[] body, boolean sized) {
+		byte[] magic = { (byte) 0xCA, (byte) 0xFE, (byte) 0xD0, 0x0D };
+		byte[] header = sized ? new byte[] { 7, (byte) 150, AO_HAVE_FILE_HEADERS, 0, (byte) body.length }
+				: new byte[] { 7, (byte) 150, 0 };
+
+		return concatenate(magic, header, body);
+	}
+
+	/**
+	 * Tests that a gzipped archive is de-gzipped.
+	 *
+	 * @throws IOException If there is an error reading the archive.
+	 */
+	@Test
+	public void gzipped() throws IOException {
+		byte[] first = segment(new byte[] { 1, 2, 3 }, true);
+		SegmentReader reader = new SegmentReader(new ByteArrayInputStream(gzip(first)));
+
+		assertArrayEquals(first, read(reader.next()));
+		assertNull(reader.next());
+	}
+
+	/**
+	 * Tests that an archive that does not start with the segment magic is rejected.
+	 *
+	 * @throws IOException If the archive is rejected, as expected.
+	 */
+	@Test(expected = IOException.class)
+	public void invalidMagic() throws IOException {
+		byte[] segment = segment(new byte[] { 1 }, true);
+		segment[0] = 0;
+
+		new SegmentReader(new ByteArrayInputStream(segment)).next();
+	}
+
+	/**
+	 * Tests that segments that declare their size are split from each other, and read into memory.
+	 *
+	 * @throws IOException If there is an error reading the archive.
+	 */
+	@Test
+	public void sized() throws IOException {
+		byte[] first = segment(new byte[] { 1, 2, 3 }, true), second = segment(new byte[100], true);
+		SegmentReader reader = new SegmentReader(new ByteArrayInputStream(concatenate(first, second)));
+
+		assertArrayEquals(first, read(reader.next()));
+		assertFalse(reader.isStreamed());
+		assertArrayEquals(second, read(reader.next()));
+		assertFalse(reader.isStreamed());
+		assertNull(reader.next());
+	}
+
+	/**
+	 * Tests that a segment that does not declare its size is streamed, along with the rest of the archive.
+	 *
+	 * @throws IOException If there is an error reading the archive.
+	 */
+	@Test
+	public void streamed() throws IOException {
+		byte[] first = segment(new byte[] { 1, 2, 3 }, true), second = segment(new byte[] { 4, 5 }, false);
+		byte[] third = segment(new byte[] { 6 }, true);
+		SegmentReader reader = new SegmentReader(new ByteArrayInputStream(concatenate(first, second, third)));
+
+		assertArrayEquals(first, read(reader.next()));
+		assertArrayEquals(concatenate(second, third), read(reader.next()));
+		assertTrue(reader.isStreamed());
+		assertNull(reader.next());
+	}
+
+	/**
+	 * Tests that a segment shorter than its declared size is rejected.
+	 *
+	 * @throws IOException If the archive is rejected, as expected.
+	 */
+	@Test(expected = EOFException.class)
+	public void truncated() throws IOException {
+		byte[] segment = segment(new byte[10], true);
+
+		new SegmentReader(new ByteArrayInputStream(Arrays.copyOf(segment, segment.length - 1))).next();
+	}
+
+}
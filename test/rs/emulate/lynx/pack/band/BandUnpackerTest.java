@@ -0,0 +1,126 @@
+package rs.emulate.lynx.pack.band;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.jar.JarEntry;
+import java.util.jar.JarInputStream;
+import java.util.jar.JarOutputStream;
+
+import org.junit.Test;
+
+import rs.emulate.lynx.output.HashManifest;
+
+/**
+ * Contains tests for {@link BandUnpacker}.
+ * <p>
+ * Each fixture is a small gzipped archive written by the JDK packer, next to a manifest of the SHA-256 hashes of the
+ * classes that the JDK unpacker produced from it.
+ *
+ * @author Major
+ */
+public final class BandUnpackerTest {
+
+	/**
+	 * Unpacks the fixture with the specified name, and asserts that the classes match the hashes in its manifest.
+	 *
+	 * @param name The name of the fixture.
+	 * @throws IOException If there is an error reading or unpacking the fixture.
+	 * @throws URISyntaxException If the manifest cannot be located.
+	 */
+	private static void assertUnpacks(String name) throws IOException, URISyntaxException {
+		HashManifest manifest = HashManifest.read(Paths.get(BandUnpackerTest.class.getResource(name + ".sha256")
+				.toURI()));
+		Map<String, String> expected = new TreeMap<>();
+		for (String entry : manifest.getNames()) {
+			expected.put(entry, manifest.get(entry));
+		}
+
+		assertEquals(expected, unpack(name + ".pack.gz"));
+	}
+
+	/**
+	 * Reads the rest of the specified stream.
+	 *
+	 * @param input The {@link InputStream}.
+	 * @return The data.
+	 * @throws IOException If there is an error reading the stream.
+	 */
+	private static byte[] read(InputStream input) throws IOException {
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		byte[] buffer = new byte[256];
+		int read;
+		while ((read = input.read(buffer)) != -1) {
+			output.write(buffer, 0, read);
+		}
+
+		return output.toByteArray();
+	}
+
+	/**
+	 * Unpacks the fixture with the specified file name.
+	 *
+	 * @param fixture The file name of the fixture.
+	 * @return The {@link Map} of entry names to the hashes of the unpacked entries.
+	 * @throws IOException If there is an error reading or unpacking the fixture.
+	 */
+	private static Map<String, String> unpack(String fixture) throws IOException {
+		ByteArrayOutputStream jar = new ByteArrayOutputStream();
+		try (InputStream input = BandUnpackerTest.class.getResourceAsStream(fixture);
+				JarOutputStream output = new JarOutputStream(jar)) {
+			new BandUnpacker().unpack(input, output);
+		}
+
+		Map<String, String> hashes = new TreeMap<>();
+		try (JarInputStream input = new JarInputStream(new ByteArrayInputStream(jar.toByteArray()))) {
+			JarEntry entry;
+			while ((entry = input.getNextJarEntry()) != null) {
+				if (!entry.isDirectory()) {
+					hashes.put(entry.getName(), HashManifest.hash(ByteBuffer.wrap(read(input))));
+				}
+			}
+		}
+
+		return hashes;
+	}
+
+	/**
+	 * Tests that classes carrying an attribute with a layout defined by the packer (rather than one of the predefined
+	 * attributes) are unpacked identically to the JDK.
+	 *
+	 * @throws Exception If there is an error unpacking the fixture.
+	 */
+	@Test
+	public void customAttribute() throws Exception {
+		assertUnpacks("attribute");
+	}
+
+	/**
+	 * Tests that an archive split into several segments is unpacked identically to the JDK.
+	 *
+	 * @throws Exception If there is an error unpacking the fixture.
+	 */
+	@Test
+	public void multipleSegments() throws Exception {
+		assertUnpacks("multiple");
+	}
+
+	/**
+	 * Tests that an archive with a single segment is unpacked identically to the JDK.
+	 *
+	 * @throws Exception If there is an error unpacking the fixture.
+	 */
+	@Test
+	public void singleSegment() throws Exception {
+		assertUnpacks("single");
+	}
+
+}
@@ -0,0 +1,144 @@
+package rs.emulate.lynx.store;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Contains tests for {@link Delta}.
+ *
+ * @author Major
+ */
+public final class DeltaTest {
+
+	/**
+	 * Encodes the delta between the specified versions, and checks that applying it to the base reproduces the target.
+	 *
+	 * @param base The base version.
+	 * @param target The target version.
+	 * @return The delta.
+	 */
+	private static byte[] assertRoundTrip(byte[] base, byte[] target) {
+		byte[] delta = Delta.encode(base, target);
+		assertArrayEquals(target, Delta.apply(base, delta));
+		return delta;
+	}
+
+	/**
+	 * Creates an array of random bytes.
+	 *
+	 * @param random The {@link Random} to generate the bytes with.
+	 * @param length The amount of bytes.
+	 * @return The array.
+	 */
+	private static byte[] random(Random random, int length) {
+		byte[] bytes = new byte[length];
+		random.nextBytes(bytes);
+		return bytes;
+	}
+
+	/**
+	 * Tests that a delta is rejected if it copies from past the end of the base.
+	 */
+	@Test(expected = IllegalArgumentException.class)
+	public void copyOutOfBounds() {
+		byte[] base = random(new Random(1), 64);
+		byte[] delta = Delta.encode(base, base);
+
+		Delta.apply(Arrays.copyOf(base, 32), delta);
+	}
+
+	/**
+	 * Tests that random edits to a version round-trip, and that the delta is much smaller than the target.
+	 */
+	@Test
+	public void edited() {
+		Random random = new Random(4);
+
+		for (int iteration = 0; iteration < 100; iteration++) {
+			byte[] base = random(random, 256 + random.nextInt(8192));
+			byte[] target = base.clone();
+
+			for (int edit = 0; edit < 4; edit++) {
+				int offset = random.nextInt(target.length);
+				int length = 1 + random.nextInt(8);
+				byte[] inserted = random(random, length);
+
+				byte[] edited = new byte[target.length + length];
+				System.arraycopy(target, 0, edited, 0, offset);
+				System.arraycopy(inserted, 0, edited, offset, length);
+				System.arraycopy(target, offset, edited, offset + length, target.length - offset);
+				target = edited;
+			}
+
+			byte[] delta = assertRoundTrip(base, target);
+			assertTrue("An edited version should be encoded as copies.", delta.length < target.length / 2);
+		}
+	}
+
+	/**
+	 * Tests that empty versions round-trip, whether it is the base, the target, or both that are empty.
+	 */
+	@Test
+	public void empty() {
+		byte[] data = random(new Random(2), 100);
+
+		assertRoundTrip(new byte[0], new byte[0]);
+		assertRoundTrip(data, new byte[0]);
+		assertRoundTrip(new byte[0], data);
+	}
+
+	/**
+	 * Tests that identical versions round-trip, and are encoded as a single copy rather than the whole target.
+	 */
+	@Test
+	public void identical() {
+		byte[] data = random(new Random(3), 4096);
+		byte[] delta = assertRoundTrip(data, data);
+
+		assertTrue("Identical versions should be encoded as a copy.", delta.length < 16);
+	}
+
+	/**
+	 * Tests that unrelated random versions round-trip, whatever their lengths.
+	 */
+	@Test
+	public void random() {
+		Random random = new Random(5);
+
+		for (int iteration = 0; iteration < 200; iteration++) {
+			byte[] base = random(random, random.nextInt(512));
+			byte[] target = random(random, random.nextInt(512));
+			assertRoundTrip(base, target);
+		}
+	}
+
+	/**
+	 * Tests that versions shorter than a block, which can never be copied, round-trip.
+	 */
+	@Test
+	public void shorterThanBlock() {
+		byte[] base = random(new Random(6), Delta.BLOCK_SIZE - 1);
+
+		assertRoundTrip(base, base);
+		assertRoundTrip(base, Arrays.copyOf(base, 5));
+		assertRoundTrip(Arrays.copyOf(base, 5), base);
+	}
+
+	/**
+	 * Tests that a delta is rejected if it produces fewer bytes than it declares.
+	 */
+	@Test(expected = IllegalArgumentException.class)
+	public void truncated() {
+		byte[] base = random(new Random(7), 64);
+		byte[] target = random(new Random(8), 64);
+		byte[] delta = Delta.encode(base, target);
+
+		Delta.apply(base, Arrays.copyOf(delta, delta.length - 1));
+	}
+
+}
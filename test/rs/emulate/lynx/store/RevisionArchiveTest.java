@@ -0,0 +1,165 @@
+package rs.emulate.lynx.store;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Contains tests for {@link RevisionArchive}.
+ *
+ * @author Major
+ */
+public final class RevisionArchiveTest {
+
+	/**
+	 * The amount of revisions between snapshots in the archives under test.
+	 */
+	private static final int INTERVAL = 2;
+
+	/**
+	 * Checks that the specified revisions contain the same classes.
+	 *
+	 * @param expected The expected {@link Map} of class names to classes.
+	 * @param actual The actual Map of class names to classes.
+	 */
+	private static void assertClassesEqual(Map<String, byte[]> expected, Map<String, byte[]> actual) {
+		assertEquals(expected.keySet(), actual.keySet());
+
+		for (Map.Entry<String, byte[]> entry : expected.entrySet()) {
+			assertArrayEquals(entry.getKey(), entry.getValue(), actual.get(entry.getKey()));
+		}
+	}
+
+	/**
+	 * Creates the specified amount of revisions, each of which changes, adds and removes a class of the one before.
+	 *
+	 * @param count The amount of revisions.
+	 * @return The {@link List} of revisions.
+	 */
+	private static List<Map<String, byte[]>> createRevisions(int count) {
+		Random random = new Random(0);
+		List<Map<String, byte[]>> revisions = new ArrayList<>(count);
+
+		Map<String, byte[]> classes = new TreeMap<>();
+		for (int index = 0; index < 8; index++) {
+			classes.put("Class" + index + ".class", random(random, 512 + random.nextInt(2048)));
+		}
+
+		for (int revision = 0; revision < count; revision++) {
+			classes = new TreeMap<>(classes);
+
+			byte[] changed = classes.get("Class0.class").clone();
+			changed[random.nextInt(changed.length)] ^= 1;
+			classes.put("Class0.class", changed);
+
+			classes.remove("Class" + (revision + 1) + ".class");
+			classes.put("Added" + revision + ".class", random(random, 64));
+			revisions.add(classes);
+		}
+
+		return revisions;
+	}
+
+	/**
+	 * Creates an array of random bytes.
+	 *
+	 * @param random The {@link Random} to generate the bytes with.
+	 * @param length The amount of bytes.
+	 * @return The array.
+	 */
+	private static byte[] random(Random random, int length) {
+		byte[] bytes = new byte[length];
+		random.nextBytes(bytes);
+		return bytes;
+	}
+
+	/**
+	 * The temporary folder the archives are created in.
+	 */
+	@Rule
+	public final TemporaryFolder folder = new TemporaryFolder();
+
+	/**
+	 * Tests that every revision reads back exactly as it was added, including those after a snapshot.
+	 *
+	 * @throws IOException If there is an error adding or reading a revision.
+	 */
+	@Test
+	public void acrossSnapshot() throws IOException {
+		RevisionArchive archive = new RevisionArchive(folder.getRoot().toPath(), INTERVAL);
+		List<Map<String, byte[]>> revisions = createRevisions(INTERVAL * 2 + 1);
+
+		for (int index = 0; index < revisions.size(); index++) {
+			archive.add(Integer.toString(index), revisions.get(index), ForkJoinPool.commonPool());
+			assertEquals(Integer.toString(index), archive.getHead());
+		}
+
+		for (int index = 0; index < revisions.size(); index++) {
+			assertClassesEqual(revisions.get(index), archive.read(Integer.toString(index)));
+		}
+	}
+
+	/**
+	 * Tests that adding a revision that is already archived does nothing.
+	 *
+	 * @throws IOException If there is an error adding the revision.
+	 */
+	@Test
+	public void addExisting() throws IOException {
+		RevisionArchive archive = new RevisionArchive(folder.getRoot().toPath(), INTERVAL);
+		Map<String, byte[]> classes = createRevisions(1).get(0);
+
+		assertTrue(archive.add("1", classes, ForkJoinPool.commonPool()) != null);
+		assertNull(archive.add("1", new TreeMap<>(), ForkJoinPool.commonPool()));
+		assertClassesEqual(classes, archive.read("1"));
+	}
+
+	/**
+	 * Tests that a new snapshot is taken every {@link #INTERVAL} revisions: once the revisions before a snapshot are
+	 * deleted, the snapshot and the revisions after it can still be read, but the revisions before it can't.
+	 *
+	 * @throws IOException If there is an error adding or reading a revision.
+	 */
+	@Test
+	public void snapshotIsSelfContained() throws IOException {
+		RevisionArchive archive = new RevisionArchive(folder.getRoot().toPath(), INTERVAL);
+		List<Map<String, byte[]>> revisions = createRevisions(INTERVAL + 2);
+
+		List<Path> paths = new ArrayList<>();
+		for (int index = 0; index < revisions.size(); index++) {
+			paths.add(archive.add(Integer.toString(index), revisions.get(index), ForkJoinPool.commonPool()));
+		}
+
+		Files.delete(paths.get(0));
+		assertFalse(archive.contains("0"));
+
+		for (int index = INTERVAL; index < revisions.size(); index++) {
+			assertClassesEqual(revisions.get(index), archive.read(Integer.toString(index)));
+		}
+
+		try {
+			archive.read("1");
+			fail("A revision whose snapshot is missing should not be readable.");
+		} catch (IOException expected) {
+
+		}
+	}
+
+}
@@ -0,0 +1,179 @@
+package rs.emulate.lynx.zip;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import org.junit.Test;
+
+/**
+ * Contains tests for {@link JarWriter}.
+ *
+ * @author Major
+ */
+public final class JarWriterTest {
+
+	/**
+	 * Creates the entries written to the jars under test: one compressible and one random class, in two packages.
+	 *
+	 * @return The {@link Map} of entry names to data, in the order they are added.
+	 */
+	private static Map<String, byte[]> createEntries() {
+		byte[] random = new byte[4096];
+		new Random(0).nextBytes(random);
+
+		Map<String, byte[]> entries = new LinkedHashMap<>();
+		entries.put("b/Random.class", random);
+		entries.put("a/Zeroes.class", new byte[8192]);
+		entries.put("Empty.class", new byte[0]);
+		return entries;
+	}
+
+	/**
+	 * Reads every entry of the specified jar, checking that each was written with the specified method.
+	 *
+	 * @param jar The jar.
+	 * @param method The expected compression method.
+	 * @return The {@link Map} of entry names to data, in the order they are in the jar.
+	 * @throws IOException If there is an error reading the jar.
+	 */
+	private static Map<String, byte[]> read(byte[] jar, int method) throws IOException {
+		Map<String, byte[]> entries = new LinkedHashMap<>();
+
+		try (ZipInputStream input = new ZipInputStream(new ByteArrayInputStream(jar))) {
+			ZipEntry entry;
+			while ((entry = input.getNextEntry()) != null) {
+				assertEquals(entry.getName(), method, entry.getMethod());
+
+				ByteArrayOutputStream data = new ByteArrayOutputStream();
+				byte[] buffer = new byte[1024];
+				int read;
+				while ((read = input.read(buffer)) != -1) {
+					data.write(buffer, 0, read);
+				}
+
+				entries.put(entry.getName(), data.toByteArray());
+			}
+		}
+
+		return entries;
+	}
+
+	/**
+	 * Writes the specified entries to a jar.
+	 *
+	 * @param entries The {@link Map} of entry names to data.
+	 * @param level The compression level, or {@link JarWriter#STORED}.
+	 * @param reproducible Whether or not the jar is written in reproducible mode.
+	 * @param indexed Whether or not the jar has an index.
+	 * @return The jar.
+	 * @throws IOException If there is an error writing the jar.
+	 */
+	private static byte[] write(Map<String, byte[]> entries, int level, boolean reproducible, boolean indexed)
+			throws IOException {
+		ByteArrayOutputStream jar = new ByteArrayOutputStream();
+		JarWriter writer = new JarWriter("client.jar", Channels.newChannel(jar), ForkJoinPool.commonPool(), level,
+				reproducible, indexed);
+
+		for (Map.Entry<String, byte[]> entry : entries.entrySet()) {
+			writer.add(entry.getKey(), ByteBuffer.wrap(entry.getValue()));
+		}
+
+		writer.finish();
+		return jar.toByteArray();
+	}
+
+	/**
+	 * Tests that entries cannot be added once the jar has finished.
+	 *
+	 * @throws IOException If there is an error writing the jar.
+	 */
+	@Test(expected = IllegalStateException.class)
+	public void addAfterFinish() throws IOException {
+		JarWriter writer = new JarWriter("client.jar", Channels.newChannel(new ByteArrayOutputStream()),
+				ForkJoinPool.commonPool(), JarWriter.DEFAULT_LEVEL, false, false);
+		writer.finish();
+
+		writer.add("A.class", ByteBuffer.allocate(1));
+	}
+
+	/**
+	 * Tests that deflated entries read back unchanged, in the order they were added.
+	 *
+	 * @throws IOException If there is an error writing or reading the jar.
+	 */
+	@Test
+	public void deflated() throws IOException {
+		Map<String, byte[]> entries = createEntries();
+		Map<String, byte[]> read = read(write(entries, JarWriter.DEFAULT_LEVEL, false, false), ZipEntry.DEFLATED);
+
+		assertEquals(entries.keySet().toString(), read.keySet().toString());
+		for (Map.Entry<String, byte[]> entry : entries.entrySet()) {
+			assertArrayEquals(entry.getKey(), entry.getValue(), read.get(entry.getKey()));
+		}
+	}
+
+	/**
+	 * Tests that the jar index lists the package of every entry.
+	 *
+	 * @throws IOException If there is an error writing or reading the jar.
+	 */
+	@Test
+	public void index() throws IOException {
+		Map<String, byte[]> read = read(write(createEntries(), JarWriter.DEFAULT_LEVEL, false, true),
+				ZipEntry.DEFLATED);
+
+		String index = new String(read.get(JarWriter.INDEX_NAME), StandardCharsets.UTF_8);
+		assertEquals("JarIndex-Version: 1.0\n\nclient.jar\nEmpty.class\na\nb\n\n", index);
+	}
+
+	/**
+	 * Tests that, in reproducible mode, the jar does not depend on the order entries are added in or the time it is
+	 * written at, and that its entries are sorted by name.
+	 *
+	 * @throws IOException If there is an error writing or reading the jar.
+	 */
+	@Test
+	public void reproducible() throws IOException {
+		Map<String, byte[]> entries = createEntries();
+		Map<String, byte[]> reversed = new LinkedHashMap<>();
+		for (String name : new String[] { "Empty.class", "a/Zeroes.class", "b/Random.class" }) {
+			reversed.put(name, entries.get(name));
+		}
+
+		byte[] jar = write(entries, JarWriter.DEFAULT_LEVEL, true, false);
+		assertArrayEquals(jar, write(reversed, JarWriter.DEFAULT_LEVEL, true, false));
+		assertEquals("[Empty.class, a/Zeroes.class, b/Random.class]", read(jar, ZipEntry.DEFLATED).keySet()
+				.toString());
+	}
+
+	/**
+	 * Tests that stored entries read back unchanged, and that no index is written unless requested.
+	 *
+	 * @throws IOException If there is an error writing or reading the jar.
+	 */
+	@Test
+	public void stored() throws IOException {
+		Map<String, byte[]> entries = createEntries();
+		Map<String, byte[]> read = read(write(entries, JarWriter.STORED, false, false), ZipEntry.STORED);
+
+		assertNull(read.get(JarWriter.INDEX_NAME));
+		for (Map.Entry<String, byte[]> entry : entries.entrySet()) {
+			assertArrayEquals(entry.getKey(), entry.getValue(), read.get(entry.getKey()));
+		}
+	}
+
+}